@@ -19,6 +19,8 @@ import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator
 import static google.registry.backup.ExportCommitLogDiffAction.LOWER_CHECKPOINT_TIME_PARAM;
 import static google.registry.backup.ExportCommitLogDiffAction.UPPER_CHECKPOINT_TIME_PARAM;
 import static google.registry.backup.RestoreCommitLogsAction.FROM_TIME_PARAM;
+import static google.registry.backup.RestoreCommitLogsAction.PARALLEL_PARAM;
+import static google.registry.request.RequestParameters.extractBooleanParameter;
 import static google.registry.request.RequestParameters.extractRequiredDatetimeParameter;
 import static google.registry.request.RequestParameters.extractRequiredParameter;
 import static java.util.concurrent.Executors.newFixedThreadPool;
@@ -80,6 +82,12 @@ public final class BackupModule {
     return extractRequiredDatetimeParameter(req, FROM_TIME_PARAM);
   }
 
+  @Provides
+  @Parameter(PARALLEL_PARAM)
+  static boolean provideParallel(HttpServletRequest req) {
+    return extractBooleanParameter(req, PARALLEL_PARAM);
+  }
+
   @Provides
   @Backups
   static ListeningExecutorService provideListeningExecutorService() {
@@ -17,6 +17,7 @@ package google.registry.backup;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 
 import com.google.appengine.api.datastore.EntityTranslator;
+import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.storage.onestore.v3.OnestoreEntity.EntityProto;
@@ -26,6 +27,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Iterator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /** Utilities for working with backups. */
 public class BackupUtils {
@@ -38,6 +41,30 @@ public class BackupUtils {
     public static final String NUM_TRANSACTIONS = "num_transactions";
     public static final String LOWER_BOUND_CHECKPOINT = "lower_bound_checkpoint";
     public static final String UPPER_BOUND_CHECKPOINT = "upper_bound_checkpoint";
+    public static final String COMPRESSION = "compression";
+  }
+
+  /** Value of {@link GcsMetadataKeys#COMPRESSION} for diff files that are gzipped. */
+  public static final String GZIP_COMPRESSION = "gzip";
+
+  /** Size of the buffers used when compressing and decompressing diff files. */
+  private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+  /** Wraps the stream that a diff file is being written to in a gzipping stream. */
+  static OutputStream compressDiffFile(OutputStream output) throws IOException {
+    return new GZIPOutputStream(output, COMPRESSION_BUFFER_SIZE);
+  }
+
+  /**
+   * Wraps the stream that a diff file is being read from in a gunzipping stream, if the metadata
+   * of the file says that it was written compressed. Older diff files are uncompressed.
+   */
+  static InputStream decompressDiffFile(InputStream input, GcsFileMetadata metadata)
+      throws IOException {
+    return GZIP_COMPRESSION.equals(
+            metadata.getOptions().getUserMetadata().get(GcsMetadataKeys.COMPRESSION))
+        ? new GZIPInputStream(input, COMPRESSION_BUFFER_SIZE)
+        : input;
   }
 
   /**
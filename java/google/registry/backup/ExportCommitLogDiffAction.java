@@ -17,10 +17,12 @@ package google.registry.backup;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verifyNotNull;
 import static com.google.common.collect.Iterables.concat;
-import static com.google.common.collect.Lists.partition;
+import static google.registry.backup.BackupUtils.GZIP_COMPRESSION;
+import static google.registry.backup.BackupUtils.GcsMetadataKeys.COMPRESSION;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.LOWER_BOUND_CHECKPOINT;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.NUM_TRANSACTIONS;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.UPPER_BOUND_CHECKPOINT;
+import static google.registry.backup.BackupUtils.compressDiffFile;
 import static google.registry.backup.BackupUtils.serializeEntity;
 import static google.registry.model.ofy.CommitLogBucket.getBucketKey;
 import static google.registry.model.ofy.ObjectifyService.ofy;
@@ -33,12 +35,13 @@ import static java.util.Arrays.asList;
 import com.google.appengine.tools.cloudstorage.GcsFileOptions;
 import com.google.appengine.tools.cloudstorage.GcsFilename;
 import com.google.appengine.tools.cloudstorage.GcsService;
-import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.collect.ComparisonChain;
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+import com.googlecode.objectify.cmd.Query;
 import google.registry.config.ConfigModule.Config;
 import google.registry.model.ImmutableObject;
 import google.registry.model.ofy.CommitLogBucket;
@@ -50,8 +53,12 @@ import google.registry.request.Parameter;
 import google.registry.util.FormattingLogger;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -73,6 +80,9 @@ public final class ExportCommitLogDiffAction implements Runnable {
 
   public static final String DIFF_FILE_PREFIX = "commit_diff_until_";
 
+  /** Number of chunks of manifests to have loading at once, including the one being exported. */
+  private static final int CHUNKS_IN_FLIGHT = 4;
+
   @Inject GcsService gcsService;
   @Inject @Config("commitLogGcsBucket") String gcsBucket;
   @Inject @Config("commitLogDiffExportBatchSize") int batchSize;
@@ -92,88 +102,128 @@ public final class ExportCommitLogDiffAction implements Runnable {
     CommitLogCheckpoint upperCheckpoint =
         verifyNotNull(ofy().load().key(CommitLogCheckpoint.createKey(upperCheckpointTime)).now());
 
-    // Load the keys of all the manifests to include in this diff.
-    List<Key<CommitLogManifest>> sortedKeys = loadAllDiffKeys(lowerCheckpoint, upperCheckpoint);
-    logger.infofmt("Found %d manifests to export", sortedKeys.size());
-    // Open an output channel to GCS, wrapped in a stream for convenience.
-    try (OutputStream gcsStream = newOutputStream(gcsService.createOrReplace(
+    // Count the manifests to include in this diff, so that the count can go in the file's metadata,
+    // which has to be written first. The keys themselves are streamed in below.
+    int numManifests = countDiffKeys(lowerCheckpoint, upperCheckpoint);
+    logger.infofmt("Found %d manifests to export", numManifests);
+    // Open an output channel to GCS, wrapped in a compressing stream.
+    try (OutputStream gcsStream = compressDiffFile(newOutputStream(gcsService.createOrReplace(
         new GcsFilename(gcsBucket, DIFF_FILE_PREFIX + upperCheckpointTime),
         new GcsFileOptions.Builder()
             .addUserMetadata(LOWER_BOUND_CHECKPOINT, lowerCheckpointTime.toString())
             .addUserMetadata(UPPER_BOUND_CHECKPOINT, upperCheckpointTime.toString())
-            .addUserMetadata(NUM_TRANSACTIONS, Integer.toString(sortedKeys.size()))
-            .build()))) {
+            .addUserMetadata(NUM_TRANSACTIONS, Integer.toString(numManifests))
+            .addUserMetadata(COMPRESSION, GZIP_COMPRESSION)
+            .build())))) {
       // Export the upper checkpoint itself.
       serializeEntity(upperCheckpoint, gcsStream);
       // If there are no manifests to export, stop early, now that we've written out the file with
       // the checkpoint itself (which is needed for restores, even if it's empty).
-      if (sortedKeys.isEmpty()) {
+      if (numManifests == 0) {
         return;
       }
-      // Export to GCS in chunks, one per fixed batch of commit logs.  While processing one batch,
-      // asynchronously load the entities for the next one.
-      List<List<Key<CommitLogManifest>>> keyChunks = partition(sortedKeys, batchSize);
-      // Objectify's map return type is asynchronous. Calling .values() will block until it loads.
-      Map<?, CommitLogManifest> nextChunkToExport = ofy().load().keys(keyChunks.get(0));
-      for (int i = 0; i < keyChunks.size(); i++) {
-        // Force the async load to finish.
-        Collection<CommitLogManifest> chunkValues = nextChunkToExport.values();
-        logger.infofmt("Loaded %d manifests", chunkValues.size());
-        // Since there is no hard bound on how much data this might be, take care not to let the
-        // Objectify session cache fill up and potentially run out of memory. This is the only safe
-        // point to do this since at this point there is no async load in progress.
-        ofy().clearSessionCache();
-        // Kick off the next async load, which can happen in parallel to the current GCS export.
-        if (i + 1 < keyChunks.size()) {
-          nextChunkToExport = ofy().load().keys(keyChunks.get(i + 1));
+      // Export to GCS in chunks, one per fixed batch of commit logs. While processing one batch,
+      // asynchronously load the entities for the next few.
+      Iterator<List<Key<CommitLogManifest>>> keyChunks =
+          Iterators.partition(mergeDiffKeys(lowerCheckpoint, upperCheckpoint), batchSize);
+      Deque<Map<Key<CommitLogManifest>, CommitLogManifest>> chunksToExport = new ArrayDeque<>();
+      int numExported = 0;
+      while (keyChunks.hasNext() || !chunksToExport.isEmpty()) {
+        while (keyChunks.hasNext() && chunksToExport.size() < CHUNKS_IN_FLIGHT) {
+          chunksToExport.add(loadChunkAsync(keyChunks.next()));
         }
+        // Force the oldest async load to finish.
+        Collection<CommitLogManifest> chunkValues = chunksToExport.remove().values();
+        logger.infofmt("Loaded %d manifests", chunkValues.size());
         exportChunk(gcsStream, chunkValues);
+        numExported += chunkValues.size();
         logger.infofmt("Exported %d manifests", chunkValues.size());
+        // Since there is no hard bound on how much data this might be, take care not to let the
+        // Objectify session cache fill up and potentially run out of memory. This is safe even
+        // with loads in flight, since each of those has a session cache of its own.
+        ofy().clearSessionCache();
       }
+      logger.infofmt("Exported %d manifests in total", numExported);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    logger.infofmt("Exported %d manifests in total", sortedKeys.size());
   }
 
   /**
-   * Loads all the diff keys, sorted in a transaction-consistent chronological order.
+   * Starts an async load of a chunk of manifests, in a fresh session cache that is discarded along
+   * with the returned map.
+   */
+  private static Map<Key<CommitLogManifest>, CommitLogManifest> loadChunkAsync(
+      final List<Key<CommitLogManifest>> keys) {
+    // Objectify's map return type is asynchronous. Calling .values() will block until it loads.
+    return ofy().doWithFreshSessionCache(
+        new Work<Map<Key<CommitLogManifest>, CommitLogManifest>>() {
+          @Override
+          public Map<Key<CommitLogManifest>, CommitLogManifest> run() {
+            return ofy().load().keys(keys);
+          }});
+  }
+
+  /**
+   * Counts the diff keys in all buckets.
    *
    * @param lowerCheckpoint exclusive lower bound on keys in this diff, or null if no lower bound
    * @param upperCheckpoint inclusive upper bound on keys in this diff
    */
-  private ImmutableList<Key<CommitLogManifest>> loadAllDiffKeys(
-      @Nullable final CommitLogCheckpoint lowerCheckpoint,
-      final CommitLogCheckpoint upperCheckpoint) {
+  private int countDiffKeys(
+      @Nullable CommitLogCheckpoint lowerCheckpoint, CommitLogCheckpoint upperCheckpoint) {
+    int count = 0;
+    for (int bucketNum : upperCheckpoint.getBucketTimestamps().keySet()) {
+      Optional<Query<CommitLogManifest>> query =
+          queryDiffKeysFromBucket(lowerCheckpoint, upperCheckpoint, bucketNum);
+      if (query.isPresent()) {
+        count += query.get().count();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Streams all the diff keys, sorted in a transaction-consistent chronological order.
+   *
+   * @param lowerCheckpoint exclusive lower bound on keys in this diff, or null if no lower bound
+   * @param upperCheckpoint inclusive upper bound on keys in this diff
+   */
+  private Iterator<Key<CommitLogManifest>> mergeDiffKeys(
+      @Nullable CommitLogCheckpoint lowerCheckpoint, CommitLogCheckpoint upperCheckpoint) {
     // Fetch the keys (no data) between these checkpoints, and sort by timestamp. This ordering is
     // transaction-consistent by virtue of our checkpoint strategy and our customized Ofy; see
     // CommitLogCheckpointStrategy for the proof. We break ties by sorting on bucket ID to ensure
-    // a deterministic order.
-    return FluentIterable.from(upperCheckpoint.getBucketTimestamps().keySet())
-        .transformAndConcat(new Function<Integer, Iterable<Key<CommitLogManifest>>>() {
-          @Override
-          public Iterable<Key<CommitLogManifest>> apply(Integer bucketNum) {
-            return loadDiffKeysFromBucket(lowerCheckpoint, upperCheckpoint, bucketNum);
-          }})
-        .toSortedList(new Comparator<Key<CommitLogManifest>>() {
-          @Override
-          public int compare(Key<CommitLogManifest> a, Key<CommitLogManifest> b) {
-            // Compare keys by timestamp (which is encoded in the id as millis), then by bucket id.
-            return ComparisonChain.start()
-                .compare(a.getId(), b.getId())
-                .compare(a.getParent().getId(), b.getParent().getId())
-                .result();
-          }});
+    // a deterministic order. Each bucket's query already returns its keys in timestamp order, so
+    // they only need to be merged, which doesn't require holding all of them in memory.
+    List<Iterator<Key<CommitLogManifest>>> bucketIterators = new ArrayList<>();
+    for (int bucketNum : upperCheckpoint.getBucketTimestamps().keySet()) {
+      Optional<Query<CommitLogManifest>> query =
+          queryDiffKeysFromBucket(lowerCheckpoint, upperCheckpoint, bucketNum);
+      if (query.isPresent()) {
+        bucketIterators.add(query.get().keys().iterator());
+      }
+    }
+    return Iterators.mergeSorted(bucketIterators, new Comparator<Key<CommitLogManifest>>() {
+      @Override
+      public int compare(Key<CommitLogManifest> a, Key<CommitLogManifest> b) {
+        // Compare keys by timestamp (which is encoded in the id as millis), then by bucket id.
+        return ComparisonChain.start()
+            .compare(a.getId(), b.getId())
+            .compare(a.getParent().getId(), b.getParent().getId())
+            .result();
+      }});
   }
 
   /**
-   * Loads the diff keys for one bucket.
+   * Returns a query for the diff keys in one bucket, in timestamp order, or absent if there can't
+   * be any.
    *
    * @param lowerCheckpoint exclusive lower bound on keys in this diff, or null if no lower bound
    * @param upperCheckpoint inclusive upper bound on keys in this diff
    * @param bucketNum the bucket to load diff keys from
    */
-  private Iterable<Key<CommitLogManifest>> loadDiffKeysFromBucket(
+  private Optional<Query<CommitLogManifest>> queryDiffKeysFromBucket(
       @Nullable CommitLogCheckpoint lowerCheckpoint,
       CommitLogCheckpoint upperCheckpoint,
       int bucketNum) {
@@ -187,15 +237,14 @@ public final class ExportCommitLogDiffAction implements Runnable {
     DateTime upperBound = upperCheckpoint.getBucketTimestamps().get(bucketNum).plusMillis(1);
     // If the lower and upper bounds are equal, there can't be any results, so skip the query.
     if (lowerBound.equals(upperBound)) {
-      return ImmutableSet.of();
+      return Optional.absent();
     }
     Key<CommitLogBucket> bucketKey = getBucketKey(bucketNum);
-    return ofy().load()
+    return Optional.of(ofy().load()
         .type(CommitLogManifest.class)
         .ancestor(bucketKey)
         .filterKey(">=", CommitLogManifest.createKey(bucketKey, lowerBound))
-        .filterKey("<", CommitLogManifest.createKey(bucketKey, upperBound))
-        .keys();
+        .filterKey("<", CommitLogManifest.createKey(bucketKey, upperBound)));
   }
 
   /** Writes a chunks-worth of manifests and associated mutations to GCS. */
@@ -17,6 +17,7 @@ package google.registry.backup;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Iterators.peekingIterator;
 import static google.registry.backup.BackupUtils.createDeserializingIterator;
+import static google.registry.backup.BackupUtils.decompressDiffFile;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static java.util.Arrays.asList;
 
@@ -27,11 +28,17 @@ import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
 import com.google.appengine.tools.cloudstorage.GcsService;
 import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.PeekingIterator;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.Result;
 import com.googlecode.objectify.util.ResultNow;
+import google.registry.backup.BackupModule.Backups;
 import google.registry.config.RegistryEnvironment;
 import google.registry.model.ImmutableObject;
 import google.registry.model.ofy.CommitLogBucket;
@@ -46,16 +53,30 @@ import google.registry.util.Retrier;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.Channels;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
 
-/** Restore Registry 2 commit logs from GCS to datastore. */
+/**
+ * Restore Registry 2 commit logs from GCS to datastore.
+ *
+ * <p>By default each transaction is restored on its own, in order. With {@code parallel=true} the
+ * diff files are instead read and deserialized ahead of time on the {@link Backups} executor, and
+ * the net effect of many consecutive transactions is written with large batched puts and deletes
+ * that are themselves issued concurrently. See {@link #restoreInParallel}.
+ */
 @Action(
     path = RestoreCommitLogsAction.PATH,
     method = Action.Method.POST,
@@ -69,10 +90,22 @@ public class RestoreCommitLogsAction implements Runnable {
   static final String PATH = "/_dr/task/restoreCommitLogs";
   static final String DRY_RUN_PARAM = "dryRun";
   static final String FROM_TIME_PARAM = "fromTime";
+  static final String PARALLEL_PARAM = "parallel";
+
+  /** Number of diff files to read and deserialize ahead of the one being applied. */
+  static final int READ_AHEAD_FILES = 4;
+
+  /** Number of pending puts and deletes at which a parallel restore flushes to datastore. */
+  static final int MAX_BATCH_SIZE = 5000;
+
+  /** Maximum number of entities datastore accepts in a single put or delete. */
+  private static final int DATASTORE_BATCH_LIMIT = 500;
 
   @Inject GcsService gcsService;
   @Inject @Parameter(DRY_RUN_PARAM) boolean dryRun;
   @Inject @Parameter(FROM_TIME_PARAM) DateTime fromTime;
+  @Inject @Parameter(PARALLEL_PARAM) boolean parallel;
+  @Inject @Backups ListeningExecutorService executor;
   @Inject DatastoreService datastoreService;
   @Inject GcsDiffFileLister diffLister;
   @Inject Retrier retrier;
@@ -93,11 +126,33 @@ public class RestoreCommitLogsAction implements Runnable {
       return;
     }
     Map<Integer, DateTime> bucketTimestamps = new HashMap<>();
+    CommitLogCheckpoint lastCheckpoint = parallel
+        ? restoreInParallel(diffFiles, bucketTimestamps)
+        : restoreSerially(diffFiles, bucketTimestamps);
+    // Restore the CommitLogCheckpointRoot and CommitLogBuckets.
+    saveOfy(FluentIterable.from(bucketTimestamps.entrySet())
+        .transform(new Function<Entry<Integer, DateTime>, ImmutableObject> () {
+          @Override
+          public ImmutableObject apply(Entry<Integer, DateTime> entry) {
+            return new CommitLogBucket.Builder()
+                .setBucketNum(entry.getKey())
+                .setLastWrittenTime(entry.getValue())
+                .build();
+          }})
+        .append(CommitLogCheckpointRoot.create(lastCheckpoint.getCheckpointTime())));
+  }
+
+  /**
+   * Restores the diff files one transaction at a time.
+   *
+   * @return the checkpoint of the last diff file
+   */
+  private CommitLogCheckpoint restoreSerially(
+      List<GcsFileMetadata> diffFiles, Map<Integer, DateTime> bucketTimestamps) {
     CommitLogCheckpoint lastCheckpoint = null;
     for (GcsFileMetadata metadata : diffFiles) {
       logger.info("Restoring: " + metadata.getFilename().getObjectName());
-      try (InputStream input = Channels.newInputStream(
-          gcsService.openPrefetchingReadChannel(metadata.getFilename(), 0, BLOCK_SIZE))) {
+      try (InputStream input = openDiffFile(metadata)) {
         PeekingIterator<ImmutableObject> commitLogs =
             peekingIterator(createDeserializingIterator(input));
         lastCheckpoint = (CommitLogCheckpoint) commitLogs.next();
@@ -110,17 +165,131 @@ public class RestoreCommitLogsAction implements Runnable {
         throw new RuntimeException(e);
       }
     }
-    // Restore the CommitLogCheckpointRoot and CommitLogBuckets.
-    saveOfy(FluentIterable.from(bucketTimestamps.entrySet())
-        .transform(new Function<Entry<Integer, DateTime>, ImmutableObject> () {
+    return lastCheckpoint;
+  }
+
+  /**
+   * Restores the diff files with read-ahead and batched, concurrent writes.
+   *
+   * <p>Up to {@link #READ_AHEAD_FILES} diff files are fetched and deserialized on the executor
+   * while the current one is applied. Files, and the transactions within them, are still applied
+   * strictly in order, but instead of being written one by one their saves and deletes are folded
+   * into a {@link MutationBatch} that keeps only the last write to each key. Because each key then
+   * appears at most once per batch, a batch can be split into chunks that are written concurrently
+   * without changing the outcome, and each batch is fully written before the next is started.
+   *
+   * @return the checkpoint of the last diff file
+   */
+  private CommitLogCheckpoint restoreInParallel(
+      List<GcsFileMetadata> diffFiles, Map<Integer, DateTime> bucketTimestamps) {
+    long startNanos = System.nanoTime();
+    Iterator<GcsFileMetadata> filesToRead = diffFiles.iterator();
+    Deque<ListenableFuture<ImmutableList<ImmutableObject>>> pendingReads = new ArrayDeque<>();
+    MutationBatch batch = new MutationBatch();
+    CommitLogCheckpoint lastCheckpoint = null;
+    int filesRestored = 0;
+    long transactionsRestored = 0;
+    while (filesToRead.hasNext() || !pendingReads.isEmpty()) {
+      while (filesToRead.hasNext() && pendingReads.size() < READ_AHEAD_FILES) {
+        pendingReads.add(readDiffFileAsync(filesToRead.next()));
+      }
+      PeekingIterator<ImmutableObject> commitLogs =
+          peekingIterator(Futures.getUnchecked(pendingReads.remove()).iterator());
+      lastCheckpoint = (CommitLogCheckpoint) commitLogs.next();
+      batch.put(ofy().save().toEntity(lastCheckpoint));  // Save the checkpoint itself.
+      while (commitLogs.hasNext()) {
+        CommitLogManifest manifest = (CommitLogManifest) commitLogs.next();
+        batch.delete(manifest.getDeletions());
+        batch.put(ofy().save().toEntity(manifest));
+        while (commitLogs.hasNext() && commitLogs.peek() instanceof CommitLogMutation) {
+          CommitLogMutation mutation = (CommitLogMutation) commitLogs.next();
+          batch.put(ofy().save().toEntity(mutation));
+          batch.put(EntityTranslator.createFromPbBytes(mutation.getEntityProtoBytes()));
+        }
+        bucketTimestamps.put(manifest.getBucketId(), manifest.getCommitTime());
+        transactionsRestored++;
+        if (batch.size() >= MAX_BATCH_SIZE) {
+          flush(batch);
+        }
+      }
+      filesRestored++;
+      long elapsedSeconds =
+          Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos));
+      logger.infofmt(
+          "Restored %d/%d diff files (%d transactions, %d entities saved, %d deleted) "
+              + "in %ds, %d transactions/s: %s",
+          filesRestored,
+          diffFiles.size(),
+          transactionsRestored,
+          batch.entitiesSaved + batch.puts.size(),
+          batch.entitiesDeleted + batch.deletes.size(),
+          elapsedSeconds,
+          transactionsRestored / elapsedSeconds,
+          lastCheckpoint.getCheckpointTime());
+    }
+    flush(batch);
+    return lastCheckpoint;
+  }
+
+  /** Reads and deserializes an entire diff file on the executor. */
+  private ListenableFuture<ImmutableList<ImmutableObject>> readDiffFileAsync(
+      final GcsFileMetadata metadata) {
+    return executor.submit(new Callable<ImmutableList<ImmutableObject>>() {
+      @Override
+      public ImmutableList<ImmutableObject> call() throws IOException {
+        logger.info("Reading: " + metadata.getFilename().getObjectName());
+        try (InputStream input = openDiffFile(metadata)) {
+          return ImmutableList.copyOf(createDeserializingIterator(input));
+        }
+      }});
+  }
+
+  /** Opens a diff file for reading, decompressing it if it was written compressed. */
+  private InputStream openDiffFile(GcsFileMetadata metadata) throws IOException {
+    InputStream input = Channels.newInputStream(
+        gcsService.openPrefetchingReadChannel(metadata.getFilename(), 0, BLOCK_SIZE));
+    try {
+      return decompressDiffFile(input, metadata);
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
+  }
+
+  /** Writes out a batch in concurrent chunks, waits for all of them, and then empties it. */
+  private void flush(MutationBatch batch) {
+    if (dryRun) {
+      logger.infofmt(
+          "Would have saved %d and deleted %d entities", batch.puts.size(), batch.deletes.size());
+    } else {
+      List<ListenableFuture<?>> writes = new ArrayList<>();
+      for (final List<Entity> chunk
+          : Iterables.partition(batch.puts.values(), DATASTORE_BATCH_LIMIT)) {
+        writes.add(submitWithRetry(new Runnable() {
           @Override
-          public ImmutableObject apply(Entry<Integer, DateTime> entry) {
-            return new CommitLogBucket.Builder()
-                .setBucketNum(entry.getKey())
-                .setLastWrittenTime(entry.getValue())
-                .build();
-          }})
-        .append(CommitLogCheckpointRoot.create(lastCheckpoint.getCheckpointTime())));
+          public void run() {
+            datastoreService.put(chunk);
+          }}));
+      }
+      for (final List<com.google.appengine.api.datastore.Key> chunk
+          : Iterables.partition(batch.deletes, DATASTORE_BATCH_LIMIT)) {
+        writes.add(submitWithRetry(new Runnable() {
+          @Override
+          public void run() {
+            datastoreService.delete(chunk);
+          }}));
+      }
+      Futures.getUnchecked(Futures.allAsList(writes));
+    }
+    batch.clear();
+  }
+
+  private ListenableFuture<?> submitWithRetry(final Runnable runnable) {
+    return executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        retry(runnable);
+      }});
   }
 
   /**
@@ -200,4 +369,40 @@ public class RestoreCommitLogsAction implements Runnable {
           }},
         RuntimeException.class);
   }
+
+  /**
+   * The net saves and deletes of a run of consecutive transactions.
+   *
+   * <p>A later save of a key cancels an earlier delete of it and vice versa, so writing the saves
+   * and deletes in any order leaves datastore as if the transactions had been applied one by one.
+   */
+  private static final class MutationBatch {
+    final Map<com.google.appengine.api.datastore.Key, Entity> puts = new LinkedHashMap<>();
+    final Set<com.google.appengine.api.datastore.Key> deletes = new LinkedHashSet<>();
+    long entitiesSaved;
+    long entitiesDeleted;
+
+    void put(Entity entity) {
+      deletes.remove(entity.getKey());
+      puts.put(entity.getKey(), entity);
+    }
+
+    void delete(Iterable<Key<?>> keys) {
+      for (Key<?> key : keys) {
+        puts.remove(key.getRaw());
+        deletes.add(key.getRaw());
+      }
+    }
+
+    int size() {
+      return puts.size() + deletes.size();
+    }
+
+    void clear() {
+      entitiesSaved += puts.size();
+      entitiesDeleted += deletes.size();
+      puts.clear();
+      deletes.clear();
+    }
+  }
 }
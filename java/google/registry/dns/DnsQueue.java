@@ -55,11 +55,15 @@ public class DnsQueue {
 
   /**
    * Enqueues the given task type with the given target name to the DNS queue.
+   *
+   * <p>The task is tagged with its TLD, so that {@link #leaseTasksGroupedByTld} can lease all of
+   * the pending refreshes for a TLD together.
    */
   private TaskHandle addToQueue(TargetType targetType, String targetName, String tld) {
     return queue.add(TaskOptions.Builder
         .withDefaults()
         .method(Method.PULL)
+        .tag(tld)
         .param(DNS_TARGET_TYPE_PARAM, targetType.toString())
         .param(DNS_TARGET_NAME_PARAM, targetName)
         .param(PARAM_TLD, tld));
@@ -89,10 +93,17 @@ public class DnsQueue {
     return addToQueue(TargetType.ZONE, fullyQualifiedZoneName, fullyQualifiedZoneName);
   }
 
-  /** Returns handles for a batch of tasks, leased for the specified duration. */
-  public List<TaskHandle> leaseTasks(Duration leaseDuration) {
+  /**
+   * Returns handles for a batch of tasks that all have the same tag (and so, for tasks added by this
+   * class, the same TLD), leased for the specified duration.
+   *
+   * <p>The tag is that of the task that has been waiting the longest. Tasks enqueued without a tag
+   * are leased together as if they shared one.
+   */
+  public List<TaskHandle> leaseTasksGroupedByTld(Duration leaseDuration) {
     try {
-      return queue.leaseTasks(leaseDuration.getMillis(), MILLISECONDS, writeBatchSize);
+      return queue.leaseTasksByTag(
+          leaseDuration.getMillis(), MILLISECONDS, writeBatchSize, null);
     } catch (TransientFailureException | DeadlineExceededException e) {
       logger.severe(e, "Failed leasing tasks too fast");
       return ImmutableList.of();
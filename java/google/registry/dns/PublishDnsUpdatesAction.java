@@ -18,6 +18,7 @@ import static google.registry.model.server.Lock.executeWithLocks;
 import static google.registry.request.Action.Method.POST;
 import static google.registry.util.CollectionUtils.nullToEmpty;
 
+import com.google.common.base.Function;
 import com.google.common.net.InternetDomainName;
 import google.registry.config.ConfigModule.Config;
 import google.registry.dns.DnsMetrics.Status;
@@ -26,8 +27,11 @@ import google.registry.request.Action;
 import google.registry.request.HttpException.ServiceUnavailableException;
 import google.registry.request.Parameter;
 import google.registry.request.RequestParameters;
+import google.registry.util.Concurrent;
 import google.registry.util.DomainNameUtils;
 import google.registry.util.FormattingLogger;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import javax.inject.Inject;
@@ -47,6 +51,7 @@ public final class PublishDnsUpdatesAction implements Runnable, Callable<Void> {
   @Inject DnsWriterProxy dnsWriterProxy;
   @Inject DnsMetrics dnsMetrics;
   @Inject @Config("dnsWriteLockTimeout") Duration timeout;
+  @Inject @Config("dnsPublishThreads") int publishThreads;
   @Inject @Parameter(RequestParameters.PARAM_TLD) String tld;
   @Inject @Parameter(DOMAINS_PARAM) Set<String> domains;
   @Inject @Parameter(HOSTS_PARAM) Set<String> hosts;
@@ -72,27 +77,56 @@ public final class PublishDnsUpdatesAction implements Runnable, Callable<Void> {
     return null;
   }
 
-  /** Steps through the domain and host refreshes contained in the parameters and processes them. */
+  /**
+   * Steps through the domain and host refreshes contained in the parameters and processes them.
+   *
+   * <p>If the writer is thread-safe, the publishes are spread over up to {@link #publishThreads}
+   * threads, which all run under the lock that this request already holds for the TLD.
+   */
   private void processBatch() {
-    try (DnsWriter writer = dnsWriterProxy.getForTld(tld)) {
-      for (String domain : nullToEmpty(domains)) {
+    try (final DnsWriter writer = dnsWriterProxy.getForTld(tld)) {
+      List<Runnable> publishes = new ArrayList<>();
+      for (final String domain : nullToEmpty(domains)) {
         if (!DomainNameUtils.isUnder(
             InternetDomainName.from(domain), InternetDomainName.from(tld))) {
           dnsMetrics.incrementPublishDomainRequests(tld, Status.REJECTED);
           logger.severefmt("%s: skipping domain %s not under tld", tld, domain);
         } else {
           dnsMetrics.incrementPublishDomainRequests(tld, Status.ACCEPTED);
-          writer.publishDomain(domain);
+          publishes.add(new Runnable() {
+            @Override
+            public void run() {
+              writer.publishDomain(domain);
+            }});
         }
       }
-      for (String host : nullToEmpty(hosts)) {
+      for (final String host : nullToEmpty(hosts)) {
         if (!DomainNameUtils.isUnder(
             InternetDomainName.from(host), InternetDomainName.from(tld))) {
           dnsMetrics.incrementPublishHostRequests(tld, Status.REJECTED);
           logger.severefmt("%s: skipping host %s not under tld", tld, host);
         } else {
           dnsMetrics.incrementPublishHostRequests(tld, Status.ACCEPTED);
-          writer.publishHost(host);
+          publishes.add(new Runnable() {
+            @Override
+            public void run() {
+              writer.publishHost(host);
+            }});
+        }
+      }
+      if (publishThreads > 1 && publishes.size() > 1 && writer.isThreadSafe()) {
+        Concurrent.transform(
+            publishes,
+            Math.min(publishThreads, publishes.size()),
+            new Function<Runnable, Boolean>() {
+              @Override
+              public Boolean apply(Runnable publish) {
+                publish.run();
+                return true;
+              }});
+      } else {
+        for (Runnable publish : publishes) {
+          publish.run();
         }
       }
     }
@@ -39,9 +39,11 @@ import google.registry.model.registry.Registry;
 import google.registry.request.Action;
 import google.registry.request.Parameter;
 import google.registry.request.RequestParameters;
+import google.registry.util.Clock;
 import google.registry.util.FormattingLogger;
 import google.registry.util.TaskEnqueuer;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -50,6 +52,7 @@ import java.util.Random;
 import java.util.Set;
 import javax.inject.Inject;
 import javax.inject.Named;
+import org.joda.time.DateTime;
 import org.joda.time.Duration;
 
 /**
@@ -72,6 +75,8 @@ public final class ReadDnsQueueAction implements Runnable {
   private static final Random random = new Random();
   private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
 
+  @Inject Clock clock;
+  @Inject @Config("dnsMaxLeasesPerRun") int maxLeasesPerRun;
   @Inject @Config("dnsTldUpdateBatchSize") int tldUpdateBatchSize;
   @Inject @Config("dnsWriteLockTimeout") Duration writeLockTimeout;
   @Inject @Named(DNS_PUBLISH_PUSH_QUEUE_NAME) Queue dnsPublishPushQueue;
@@ -101,12 +106,40 @@ public final class ReadDnsQueueAction implements Runnable {
     }
   }
 
+  /**
+   * Leases tasks from the pull queue one TLD at a time, until the queue is empty, {@link
+   * #maxLeasesPerRun} leases have been made, or half of the lease duration has passed.
+   *
+   * <p>Each lease only returns tasks with a single tag, so a busy TLD doesn't crowd the others out
+   * of the lease, and all of its pending (and often duplicate) refreshes are fanned out together.
+   * Tasks stay leased until the end of the run, so no TLD is leased twice. The time limit leaves
+   * the other half of the lease duration to fan out and delete the tasks that were leased first,
+   * before they could be leased again by the next run; whatever is left in the queue is picked up
+   * by that run instead.
+   */
+  private List<TaskHandle> leaseTasks() {
+    DateTime leaseDeadline = clock.nowUtc().plus(writeLockTimeout.getMillis() / 2);
+    List<TaskHandle> tasks = new ArrayList<>();
+    for (int i = 0; i < maxLeasesPerRun; i++) {
+      if (i > 0 && !clock.nowUtc().isBefore(leaseDeadline)) {
+        logger.infofmt("stopped leasing after %d leases, since half the lease time has passed", i);
+        break;
+      }
+      List<TaskHandle> leased = dnsQueue.leaseTasksGroupedByTld(writeLockTimeout);
+      if (leased.isEmpty()) {
+        break;
+      }
+      tasks.addAll(leased);
+    }
+    return tasks;
+  }
+
   /** Leases all tasks from the pull queue and creates per-tld update actions for them. */
   @Override
   public void run() {
     Set<String> tldsOfInterest = getTlds();
 
-    List<TaskHandle> tasks = dnsQueue.leaseTasks(writeLockTimeout);
+    List<TaskHandle> tasks = leaseTasks();
     if (tasks.isEmpty()) {
       return;
     }
@@ -122,6 +155,9 @@ public final class ReadDnsQueueAction implements Runnable {
     // grouping and ordering of domains and hosts is not technically necessary, but a predictable
     // ordering makes it possible to write detailed tests.
     TreeMultimap<String, RefreshItem> refreshItemMultimap = TreeMultimap.create();
+    // The number of refresh requests for an item that was already requested in an earlier task,
+    // which are deleted along with it but don't cause another publish.
+    int duplicateCount = 0;
     // Read all tasks on the DNS pull queue and load them into the refresh item multimap.
     for (TaskHandle task : tasks) {
       try {
@@ -141,7 +177,9 @@ public final class ReadDnsQueueAction implements Runnable {
           switch (type) {
             case DOMAIN:
             case HOST:
-              refreshItemMultimap.put(tld, RefreshItem.create(type, name));
+              if (!refreshItemMultimap.put(tld, RefreshItem.create(type, name))) {
+                duplicateCount++;
+              }
               break;
             default:
               logger.severefmt("discarding DNS refresh request of type %s", typeString);
@@ -155,6 +193,7 @@ public final class ReadDnsQueueAction implements Runnable {
     if (!pausedTlds.isEmpty()) {
       logger.infofmt("the dns-pull queue is paused for tlds: %s", pausedTlds);
     }
+    logger.infofmt("coalesced %d duplicate refresh requests", duplicateCount);
     // Loop through the multimap by TLD and generate refresh tasks for the hosts and domains.
     for (Map.Entry<String, Collection<RefreshItem>> tldRefreshItemsEntry
         : refreshItemMultimap.asMap().entrySet()) {
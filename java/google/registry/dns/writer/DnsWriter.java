@@ -50,6 +50,13 @@ public interface DnsWriter extends AutoCloseable {
    */
   void publishHost(String hostName);
 
+  /**
+   * Returns {@code true} if {@link #publishDomain} and {@link #publishHost} may be called from
+   * several threads at once. Either way, {@link #close} is only called once all of them have
+   * returned.
+   */
+  boolean isThreadSafe();
+
   /** Commits the updates to the DNS server atomically. */
   @Override
   void close();
@@ -50,6 +50,11 @@ public final class VoidDnsWriter implements DnsWriter {
     names.add(hostName);
   }
 
+  @Override
+  public boolean isThreadSafe() {
+    return false;
+  }
+
   @Override
   public void close() {
     logger.warning("Ignoring DNS zone updates! No DnsWriterFactory implementation specified!\n"
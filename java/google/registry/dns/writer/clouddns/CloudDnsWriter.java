@@ -29,6 +29,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.net.InternetDomainName;
 import com.google.common.util.concurrent.RateLimiter;
 import google.registry.config.ConfigModule.Config;
@@ -45,10 +46,12 @@ import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.joda.time.Duration;
@@ -79,6 +82,7 @@ class CloudDnsWriter implements DnsWriter {
   private final String projectId;
   private final String zoneName;
   private final Dns dnsConnection;
+  @GuardedBy("this")
   private final ImmutableMap.Builder<String, ImmutableSet<ResourceRecordSet>>
       desiredRecordsBuilder = new ImmutableMap.Builder<>();
 
@@ -114,7 +118,7 @@ class CloudDnsWriter implements DnsWriter {
     // desiredRecordsBuilder is populated with an empty set to indicate that all existing records
     // should be deleted.
     if (!domainResource.isPresent() || !domainResource.get().shouldPublishToDns()) {
-      desiredRecordsBuilder.put(absoluteDomainName, ImmutableSet.<ResourceRecordSet>of());
+      putDesiredRecords(absoluteDomainName, ImmutableSet.<ResourceRecordSet>of());
       return;
     }
 
@@ -164,7 +168,7 @@ class CloudDnsWriter implements DnsWriter {
       }
     }
 
-    desiredRecordsBuilder.put(absoluteDomainName, domainRecords.build());
+    putDesiredRecords(absoluteDomainName, domainRecords.build());
     logger.finefmt(
         "Will write %s records for domain %s", domainRecords.build().size(), absoluteDomainName);
   }
@@ -182,7 +186,7 @@ class CloudDnsWriter implements DnsWriter {
 
     // Return early if the host is deleted.
     if (!host.isPresent()) {
-      desiredRecordsBuilder.put(absoluteHostName, ImmutableSet.<ResourceRecordSet>of());
+      putDesiredRecords(absoluteHostName, ImmutableSet.<ResourceRecordSet>of());
       return;
     }
 
@@ -220,7 +224,12 @@ class CloudDnsWriter implements DnsWriter {
               .setRrdatas(ImmutableList.copyOf(aaaaRrData)));
     }
 
-    desiredRecordsBuilder.put(absoluteHostName, domainRecords.build());
+    putDesiredRecords(absoluteHostName, domainRecords.build());
+  }
+
+  private synchronized void putDesiredRecords(
+      String absoluteName, ImmutableSet<ResourceRecordSet> records) {
+    desiredRecordsBuilder.put(absoluteName, records);
   }
 
   /**
@@ -254,6 +263,15 @@ class CloudDnsWriter implements DnsWriter {
     publishDomain(domain);
   }
 
+  /**
+   * Returns {@code true}, since the only state shared between publish calls is the map of desired
+   * records, and all calls to the Cloud DNS API go through the shared {@link RateLimiter}.
+   */
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
   /**
    * Sync changes in a zone requested by publishDomain and publishHost to Cloud DNS.
    *
@@ -265,7 +283,11 @@ class CloudDnsWriter implements DnsWriter {
    */
   @Override
   public void close() {
-    close(desiredRecordsBuilder.build());
+    close(getDesiredRecords());
+  }
+
+  private synchronized ImmutableMap<String, ImmutableSet<ResourceRecordSet>> getDesiredRecords() {
+    return desiredRecordsBuilder.build();
   }
 
   @VisibleForTesting
@@ -309,13 +331,55 @@ class CloudDnsWriter implements DnsWriter {
           flattenedDesiredRecords.addAll(records);
         }
 
-        // Delete all existing records and add back the desired records
-        updateResourceRecords(flattenedDesiredRecords.build(), existingRecords.build());
+        // Only delete and add the records that actually differ, which is usually few or none of
+        // them, since most refreshes are for domains whose records haven't changed.
+        ImmutableSet<ResourceRecordSet> desired = flattenedDesiredRecords.build();
+        ImmutableSet<ResourceRecordSet> existing = existingRecords.build();
+        ImmutableSet<ResourceRecordSet> additions = difference(desired, existing);
+        ImmutableSet<ResourceRecordSet> deletions = difference(existing, desired);
+        if (additions.isEmpty() && deletions.isEmpty()) {
+          logger.infofmt("No changes to %d names in Cloud DNS", desiredRecords.size());
+          return null;
+        }
+        logger.infofmt(
+            "Deleting %d and adding %d records in Cloud DNS", deletions.size(), additions.size());
+        updateResourceRecords(additions, deletions);
         return null;
       }
     };
   }
 
+  /**
+   * Returns the records in {@code records} that aren't also in {@code others}.
+   *
+   * <p>Records are compared by name, type, TTL and data, ignoring the order of the data and any
+   * other fields that Cloud DNS fills in when returning them.
+   */
+  private static ImmutableSet<ResourceRecordSet> difference(
+      ImmutableSet<ResourceRecordSet> records, ImmutableSet<ResourceRecordSet> others) {
+    Set<List<Object>> otherContents = new HashSet<>();
+    for (ResourceRecordSet other : others) {
+      otherContents.add(getContents(other));
+    }
+    ImmutableSet.Builder<ResourceRecordSet> difference = new ImmutableSet.Builder<>();
+    for (ResourceRecordSet record : records) {
+      if (!otherContents.contains(getContents(record))) {
+        difference.add(record);
+      }
+    }
+    return difference.build();
+  }
+
+  private static List<Object> getContents(ResourceRecordSet record) {
+    return Arrays.<Object>asList(
+        record.getName(),
+        record.getType(),
+        record.getTtl(),
+        record.getRrdatas() == null
+            ? ImmutableSet.of()
+            : ImmutableSortedSet.copyOf(record.getRrdatas()));
+  }
+
   /**
    * Fetch the {@link ResourceRecordSet}s for the given domain name under this zone.
    *
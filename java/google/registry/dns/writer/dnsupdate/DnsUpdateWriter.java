@@ -162,6 +162,12 @@ public class DnsUpdateWriter implements DnsWriter {
     publishDomain(domain, hostName);
   }
 
+  /** Returns {@code true}, since each publish call sends its own UPDATE message. */
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
   /**
    * Does nothing. Publish calls are synchronous and atomic.
    */
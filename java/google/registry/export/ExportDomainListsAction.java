@@ -15,25 +15,27 @@
 package google.registry.export;
 
 import static com.google.appengine.tools.cloudstorage.GcsServiceFactory.createGcsService;
-import static google.registry.mapreduce.inputs.EppResourceInputs.createEntityInput;
-import static google.registry.model.EppResourceUtils.isActive;
+import static com.googlecode.objectify.Key.getKind;
+import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.model.registry.Registries.getTldsOfType;
 import static google.registry.request.Action.Method.POST;
 import static google.registry.util.PipelineUtils.createJobPath;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.joda.time.DateTimeZone.UTC;
 
+import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.tools.cloudstorage.GcsFilename;
 import com.google.appengine.tools.cloudstorage.RetryParams;
 import com.google.appengine.tools.mapreduce.Mapper;
 import com.google.appengine.tools.mapreduce.Reducer;
 import com.google.appengine.tools.mapreduce.ReducerInput;
+import com.google.appengine.tools.mapreduce.inputs.DatastoreInput;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import google.registry.config.ConfigModule.Config;
 import google.registry.gcs.GcsUtils;
 import google.registry.mapreduce.MapreduceRunner;
-import google.registry.model.domain.DomainResource;
+import google.registry.model.index.ForeignKeyIndex.ForeignKeyDomainIndex;
 import google.registry.model.registry.Registry.TldType;
 import google.registry.request.Action;
 import google.registry.request.Response;
@@ -51,12 +53,17 @@ import org.joda.time.DateTime;
  *
  * Each TLD's active domain names are exported as a newline-delimited flat text file with the name
  * TLD.txt into the domain-lists bucket.  Note that this overwrites the files in place.
+ *
+ * <p>Rather than loading every {@link google.registry.model.domain.DomainResource}, this maps over
+ * the much smaller {@link ForeignKeyDomainIndex} entities, which are keyed by domain name and carry
+ * the domain's deletion time, so that only the name/TLD pairs that are needed are ever read.
  */
 @Action(path = "/_dr/task/exportDomainLists", method = POST)
 public class ExportDomainListsAction implements Runnable {
 
   private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
   private static final int MAX_NUM_REDUCE_SHARDS = 100;
+  private static final int NUM_MAP_SHARDS = 100;
 
   @Inject MapreduceRunner mrRunner;
   @Inject Response response;
@@ -75,10 +82,11 @@ public class ExportDomainListsAction implements Runnable {
         .runMapreduce(
             new ExportDomainListsMapper(DateTime.now(UTC), realTlds),
             new ExportDomainListsReducer(gcsBucket, gcsBufferSize),
-            ImmutableList.of(createEntityInput(DomainResource.class)))));
+            ImmutableList.of(
+                new DatastoreInput(getKind(ForeignKeyDomainIndex.class), NUM_MAP_SHARDS)))));
   }
 
-  static class ExportDomainListsMapper extends Mapper<DomainResource, String, String> {
+  static class ExportDomainListsMapper extends Mapper<Entity, String, String> {
 
     private static final long serialVersionUID = -7312206212434039854L;
 
@@ -91,10 +99,18 @@ public class ExportDomainListsAction implements Runnable {
     }
 
     @Override
-    public void map(DomainResource domain) {
-      if (realTlds.contains(domain.getTld()) && isActive(domain, exportTime)) {
-        emit(domain.getTld(), domain.getFullyQualifiedDomainName());
-        getContext().incrementCounter(String.format("domains in tld %s", domain.getTld()));
+    public void map(Entity entity) {
+      ForeignKeyDomainIndex index = ofy().load().fromEntity(entity);
+      if (!exportTime.isBefore(index.getDeletionTime())) {
+        return;
+      }
+      // Index ids are canonical domain names, and a domain's TLD is everything after its first
+      // label (see DomainBase.Builder#build), so there's no need to parse the name.
+      String fullyQualifiedDomainName = index.getForeignKey();
+      String tld = fullyQualifiedDomainName.substring(fullyQualifiedDomainName.indexOf('.') + 1);
+      if (realTlds.contains(tld)) {
+        emit(tld, fullyQualifiedDomainName);
+        getContext().incrementCounter(String.format("domains in tld %s", tld));
       }
     }
   }
@@ -45,8 +45,10 @@ import google.registry.request.Action;
 import google.registry.request.Parameter;
 import google.registry.request.RequestParameters;
 import google.registry.request.Response;
+import google.registry.util.Clock;
 import google.registry.util.FormattingLogger;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 
@@ -70,6 +72,7 @@ public class CheckApiAction implements Runnable {
   @Inject Response response;
   @Inject EppController eppController;
   @Inject RegistryConfig config;
+  @Inject Clock clock;
   @Inject CheckApiAction() {}
 
   @Override
@@ -82,70 +85,93 @@ public class CheckApiAction implements Runnable {
   }
 
   private Map<String, Object> doCheck() {
-    String domainString;
+    final String domainString;
+    String tld;
     try {
       domainString = canonicalizeDomainName(nullToEmpty(domain));
       // Validate the TLD.
-      findTldForNameOrThrow(InternetDomainName.from(domainString));
+      tld = findTldForNameOrThrow(InternetDomainName.from(domainString)).toString();
     } catch (IllegalStateException | IllegalArgumentException e) {
       return fail("Must supply a valid domain name on an authoritative TLD");
     }
     try {
-      byte[] inputXml = TOFU
-          .newRenderer(DomainCheckFeeEppSoyInfo.DOMAINCHECKFEE)
-          .setData(ImmutableMap.of("domainName", domainString))
-          .render()
-          .getBytes(UTF_8);
-      SessionMetadata sessionMetadata = new StatelessRequestSessionMetadata(
-          config.getCheckApiServletRegistrarClientId(),
-          FEE_EXTENSION_URIS);
-      EppResponse response = eppController
-          .handleEppCommand(
-              sessionMetadata,
-              new PasswordOnlyTransportCredentials(),
-              EppRequestSource.CHECK_API,
-              false,  // This endpoint is never a dry run.
-              false,  // This endpoint is never a superuser.
-              inputXml)
-          .getResponse();
-      if (!response.getResult().getCode().isSuccess()) {
-        return fail(response.getResult().getMsg());
-      }
-      DomainCheckData checkData = (DomainCheckData) response.getResponseData().get(0);
-      DomainCheck check = (DomainCheck) checkData.getChecks().get(0);
-      boolean available = check.getName().getAvail();
-      ImmutableMap.Builder<String, Object> builder = new ImmutableMap.Builder<>();
-      builder
-          .put("status", "success")
-          .put("available", available);
-      if (available) {
-        FeeCheckResponseExtension<?> feeCheckResponseExtension =
-            (FeeCheckResponseExtension<?>) response.getFirstExtensionOfType(
-                FEE_0_12.getResponseExtensionClass(),
-                FEE_0_11.getResponseExtensionClass(),
-                FEE_0_6.getResponseExtensionClass());
-        if (feeCheckResponseExtension != null) {
-          builder.put("tier",
-              firstNonNull(
-                  Iterables.getOnlyElement(feeCheckResponseExtension.getItems()).getFeeClass(),
-                  "standard"));
-        }
-      } else {
-        builder.put("reason", check.getReason());
-      }
-      return builder.build();
+      return CheckApiCache.get(
+          domainString,
+          tld,
+          clock.nowUtc(),
+          new Callable<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> call() throws Exception {
+              return runCheckFlow(domainString);
+            }});
+    } catch (CheckFailedException e) {
+      return fail(e.getMessage());
     } catch (Exception e) {
       logger.warning(e, "Unknown error");
       return fail("Invalid request");
     }
   }
 
+  /** Runs a domain check flow for a domain name, and returns the successful response for it. */
+  private Map<String, Object> runCheckFlow(String domainString) throws Exception {
+    byte[] inputXml = TOFU
+        .newRenderer(DomainCheckFeeEppSoyInfo.DOMAINCHECKFEE)
+        .setData(ImmutableMap.of("domainName", domainString))
+        .render()
+        .getBytes(UTF_8);
+    SessionMetadata sessionMetadata = new StatelessRequestSessionMetadata(
+        config.getCheckApiServletRegistrarClientId(),
+        FEE_EXTENSION_URIS);
+    EppResponse response = eppController
+        .handleEppCommand(
+            sessionMetadata,
+            new PasswordOnlyTransportCredentials(),
+            EppRequestSource.CHECK_API,
+            false,  // This endpoint is never a dry run.
+            false,  // This endpoint is never a superuser.
+            inputXml)
+        .getResponse();
+    if (!response.getResult().getCode().isSuccess()) {
+      throw new CheckFailedException(response.getResult().getMsg());
+    }
+    DomainCheckData checkData = (DomainCheckData) response.getResponseData().get(0);
+    DomainCheck check = (DomainCheck) checkData.getChecks().get(0);
+    boolean available = check.getName().getAvail();
+    ImmutableMap.Builder<String, Object> builder = new ImmutableMap.Builder<>();
+    builder
+        .put("status", "success")
+        .put("available", available);
+    if (available) {
+      FeeCheckResponseExtension<?> feeCheckResponseExtension =
+          (FeeCheckResponseExtension<?>) response.getFirstExtensionOfType(
+              FEE_0_12.getResponseExtensionClass(),
+              FEE_0_11.getResponseExtensionClass(),
+              FEE_0_6.getResponseExtensionClass());
+      if (feeCheckResponseExtension != null) {
+        builder.put("tier",
+            firstNonNull(
+                Iterables.getOnlyElement(feeCheckResponseExtension.getItems()).getFeeClass(),
+                "standard"));
+      }
+    } else {
+      builder.put("reason", check.getReason());
+    }
+    return builder.build();
+  }
+
   private Map<String, Object> fail(String reason) {
     return ImmutableMap.<String, Object>of(
         "status", "error",
         "reason", reason);
   }
 
+  /** A check flow that ran to completion, but returned an error to report to the caller. */
+  private static class CheckFailedException extends Exception {
+    CheckFailedException(String message) {
+      super(message);
+    }
+  }
+
   /** Dagger module for the check api endpoint. */
   @Module
   public static final class CheckApiModule {
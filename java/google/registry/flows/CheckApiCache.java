@@ -0,0 +1,206 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.SettableFuture;
+import com.googlecode.objectify.Key;
+import google.registry.model.registry.Registry;
+import google.registry.model.registry.Registry.TldState;
+import google.registry.model.registry.label.PremiumList;
+import google.registry.model.registry.label.ReservedList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.concurrent.ThreadSafe;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * Short-lived, single-flight cache of {@link CheckApiAction} results by domain name.
+ *
+ * <p>On launch days the check API receives bursts of identical queries for the same popular labels,
+ * each of which used to run a full domain check flow, with its foreign key loads, reserved and
+ * premium list lookups and fee calculation. Instead, concurrent checks of the same name share a
+ * single computation, and its result is reused for up to {@link #TTL} afterwards. A failed check
+ * is handed to the callers that were waiting for it, but is never reused after that.
+ *
+ * <p>A result is only reused while the TLD is in the same state, and while its {@link Registry},
+ * premium list revision and reserved lists are the same ones that it was computed with. Once their
+ * changes have committed, the domain create, allocate and delete flows {@link #invalidate} the names
+ * they modify; since the cache is per instance, changes made through other instances (or by the
+ * passage of time, such as the end of a pending delete) can take up to {@link #TTL} to show up.
+ */
+@ThreadSafe
+public final class CheckApiCache {
+
+  /** Maximum number of domain names to keep results for. */
+  private static final int MAX_ENTRIES = 10000;
+
+  /** How long a result is reused for after its computation started. */
+  @VisibleForTesting
+  static final Duration TTL = Duration.standardSeconds(5);
+
+  private static final ConcurrentMap<String, Entry> ENTRIES =
+      CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).<String, Entry>build().asMap();
+
+  /**
+   * Returns the result of checking a domain name, which is computed by the given check unless a
+   * usable result is cached or already being computed.
+   *
+   * @param domainName the canonical name of the domain being checked
+   * @param tld the TLD of the domain, which must exist
+   * @throws Exception whatever the check threw, if it failed
+   */
+  static <V> V get(String domainName, String tld, DateTime now, Callable<V> check)
+      throws Exception {
+    Version version = Version.of(tld, now);
+    while (true) {
+      Entry entry = ENTRIES.get(domainName);
+      if (entry != null && entry.isUsable(version, now)) {
+        return entry.<V>getResult();
+      }
+      Entry newEntry = new Entry(version, now);
+      if (entry == null
+          ? ENTRIES.putIfAbsent(domainName, newEntry) != null
+          : !ENTRIES.replace(domainName, entry, newEntry)) {
+        // Someone else got there first, so use (or replace) their entry instead.
+        continue;
+      }
+      try {
+        V result = check.call();
+        newEntry.result.set(result);
+        return result;
+      } catch (Throwable t) {
+        newEntry.result.setException(t);
+        ENTRIES.remove(domainName, newEntry);
+        Throwables.propagateIfPossible(t, Exception.class);
+        throw new RuntimeException(t);
+      }
+    }
+  }
+
+  /** Drops any cached result for a domain name, because the domain was modified. */
+  public static void invalidate(String domainName) {
+    ENTRIES.remove(domainName);
+  }
+
+  /** Returns a task that {@link #invalidate}s a domain name when it is run. */
+  public static Runnable invalidateTask(final String domainName) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        invalidate(domainName);
+      }};
+  }
+
+  /** Empties the cache. */
+  @VisibleForTesting
+  static void clear() {
+    ENTRIES.clear();
+  }
+
+  /** A check result for a domain name, which might still be being computed. */
+  private static final class Entry {
+
+    final Version version;
+    final DateTime startTime;
+    final SettableFuture<Object> result = SettableFuture.create();
+
+    Entry(Version version, DateTime startTime) {
+      this.version = version;
+      this.startTime = startTime;
+    }
+
+    boolean isUsable(Version currentVersion, DateTime now) {
+      // Checks that are still running are shared regardless of how long they've been running for.
+      return version.equals(currentVersion)
+          && (!result.isDone() || now.isBefore(startTime.plus(TTL)));
+    }
+
+    @SuppressWarnings("unchecked")
+    <V> V getResult() throws Exception {
+      try {
+        return (V) getUninterruptibly(result);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause(), Exception.class);
+        throw new RuntimeException(e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Everything besides the domain itself that a check result depends on, as of some point in time.
+   *
+   * <p>Lists are identified by their revision (for premium lists) or last update time (for reserved
+   * lists) rather than by their contents, which would be too expensive to compare on every check.
+   * The TLD state is compared separately, since it changes over time without the registry changing.
+   */
+  private static final class Version {
+
+    final Registry registry;
+    final TldState tldState;
+    final List<Object> listRevisions;
+
+    private Version(Registry registry, TldState tldState, List<Object> listRevisions) {
+      this.registry = registry;
+      this.tldState = tldState;
+      this.listRevisions = listRevisions;
+    }
+
+    static Version of(String tld, DateTime now) {
+      Registry registry = Registry.get(tld);
+      // Revisions and update times can be null, so this can't be an ImmutableList.
+      List<Object> listRevisions = new ArrayList<>();
+      if (registry.getPremiumList() != null) {
+        Optional<PremiumList> premiumList = PremiumList.get(registry.getPremiumList().getName());
+        listRevisions.add(premiumList.isPresent() ? premiumList.get().getRevisionKey() : null);
+      }
+      for (Key<ReservedList> key : registry.getReservedLists()) {
+        Optional<ReservedList> reservedList = ReservedList.load(key);
+        listRevisions.add(key.getName());
+        listRevisions.add(reservedList.isPresent() ? reservedList.get().getLastUpdateTime() : null);
+      }
+      return new Version(registry, registry.getTldState(now), listRevisions);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof Version)) {
+        return false;
+      }
+      Version other = (Version) object;
+      // The registry cache hands back the same instance until it is reloaded, so try that first.
+      return (registry == other.registry || registry.equals(other.registry))
+          && tldState == other.tldState
+          && listRevisions.equals(other.listRevisions);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(registry, tldState, listRevisions);
+    }
+  }
+
+  private CheckApiCache() {}
+}
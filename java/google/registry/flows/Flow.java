@@ -25,6 +25,7 @@ import google.registry.model.eppoutput.EppResponse.ResponseData;
 import google.registry.model.eppoutput.EppResponse.ResponseExtension;
 import google.registry.model.eppoutput.Result;
 import google.registry.model.poll.MessageQueueInfo;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -52,6 +53,9 @@ public abstract class Flow {
   /** The collection of allowed extensions for the flow. */
   private Set<Class<? extends CommandExtension>> validExtensions = new HashSet<>();
 
+  /** Actions to run once the changes made by this flow have been committed. */
+  private final List<Runnable> postCommitActions = new ArrayList<>();
+
   /** Flows can override this for custom initialization. */
   @SuppressWarnings("unused")
   protected void initFlow() throws EppException {}
@@ -131,6 +135,24 @@ public abstract class Flow {
     validExtensions.addAll(extensions);
   }
 
+  /**
+   * Schedules an action to run once the changes made by this flow have been committed.
+   *
+   * <p>This is for side effects outside of Datastore, such as dropping cached copies of the
+   * resources that the flow modified. Running those inside the transaction would let a concurrent
+   * read cache the old data again before the commit, and would be wrong if the commit then failed.
+   * The actions are not run for dry runs or failed flows, and since each transaction attempt runs
+   * a fresh flow instance, only the actions of the attempt that committed are run.
+   */
+  protected final void runAfterCommit(Runnable action) {
+    postCommitActions.add(action);
+  }
+
+  /** Get the actions that were scheduled using {@link #runAfterCommit}, in order. */
+  final ImmutableList<Runnable> getPostCommitActions() {
+    return ImmutableList.copyOf(postCommitActions);
+  }
+
   /** Get the legal command extension types for this flow. */
   protected final Set<Class<? extends CommandExtension>> getValidRequestExtensions() {
     return ImmutableSet.copyOf(validExtensions);
@@ -33,6 +33,7 @@ import google.registry.model.eppoutput.EppOutput;
 import google.registry.monitoring.whitebox.EppMetric;
 import google.registry.util.Clock;
 import google.registry.util.FormattingLogger;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.joda.time.DateTime;
@@ -99,7 +100,12 @@ public class FlowRunner {
             "xmlBytes", xmlBase64)));
     if (!isTransactional) {
       metric.incrementAttempts();
-      return createAndInitFlow(clock.nowUtc()).run();
+      Flow flow = createAndInitFlow(clock.nowUtc());
+      EppOutput output = flow.run();
+      if (!isDryRun) {
+        runPostCommitActions(flow);
+      }
+      return output;
     }
     // We log the command in a structured format. Note that we do this before the transaction;
     // if we did it after, we might miss a transaction that committed successfully but then crashed
@@ -108,6 +114,8 @@ public class FlowRunner {
         .add("client", clientId)
         .add("privileges", isSuperuser ? "SUPERUSER" : "NORMAL")
         .add("xmlBytes", xmlBase64));
+    // The flow of the most recent transaction attempt, which is the one that committed, if any.
+    final AtomicReference<Flow> lastAttempt = new AtomicReference<>();
     try {
       EppOutput flowResult =
           ofy()
@@ -117,7 +125,9 @@ public class FlowRunner {
                     public EppOutput run() {
                       metric.incrementAttempts();
                       try {
-                        EppOutput output = createAndInitFlow(ofy().getTransactionTime()).run();
+                        Flow flow = createAndInitFlow(ofy().getTransactionTime());
+                        lastAttempt.set(flow);
+                        EppOutput output = flow.run();
                         if (isDryRun) {
                           throw new DryRunException(output);
                         }
@@ -129,6 +139,7 @@ public class FlowRunner {
                   });
       logger.info("EPP_Mutation_Committed " + new JsonLogStatement(trid)
           .add("executionTime", flowResult.getResponse().getExecutionTime().getMillis()));
+      runPostCommitActions(lastAttempt.get());
       return flowResult;
     } catch (DryRunException e) {
       return e.output;
@@ -142,6 +153,21 @@ public class FlowRunner {
     }
   }
 
+  /**
+   * Runs the actions that a flow scheduled for after its changes were committed.
+   *
+   * <p>Failures are only logged, since the flow has already succeeded by then.
+   */
+  private static void runPostCommitActions(Flow flow) {
+    for (Runnable action : flow.getPostCommitActions()) {
+      try {
+        action.run();
+      } catch (RuntimeException e) {
+        logger.severe(e, "Post-commit action failed");
+      }
+    }
+  }
+
   private Flow createAndInitFlow(DateTime now) throws EppException {
       return flowProvider.get().init(
           eppInput,
@@ -45,6 +45,7 @@ import google.registry.model.eppinput.ResourceCommand;
 import google.registry.model.eppinput.ResourceCommand.AddRemoveSameValueException;
 import google.registry.model.eppoutput.EppOutput;
 import google.registry.model.reporting.HistoryEntry;
+import google.registry.rdds.LookupResponseCache;
 import javax.inject.Inject;
 
 /**
@@ -122,6 +123,7 @@ public final class ContactUpdateFlow extends LoggedInFlow implements Transaction
     }
     validateAsciiPostalInfo(newContact.getInternationalizedPostalInfo());
     validateContactAgainstPolicy(newContact);
+    runAfterCommit(LookupResponseCache.invalidateReferencesToTask(Key.create(existingContact)));
     ofy().save().<Object>entities(newContact, historyBuilder.build());
     return createOutput(SUCCESS);
   }
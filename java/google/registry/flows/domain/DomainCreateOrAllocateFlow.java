@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.googlecode.objectify.Key;
 import google.registry.dns.DnsQueue;
+import google.registry.flows.CheckApiCache;
 import google.registry.flows.EppException;
 import google.registry.model.billing.BillingEvent;
 import google.registry.model.billing.BillingEvent.Flag;
@@ -87,6 +88,7 @@ public abstract class DomainCreateOrAllocateFlow
 
   @Override
   protected final void enqueueTasks() {
+    runAfterCommit(CheckApiCache.invalidateTask(newResource.getFullyQualifiedDomainName()));
     if (newResource.shouldPublishToDns()) {
       dnsQueue.addDomainRefreshTask(newResource.getFullyQualifiedDomainName());
     }
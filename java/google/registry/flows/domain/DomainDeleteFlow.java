@@ -36,6 +36,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.googlecode.objectify.Key;
 import google.registry.dns.DnsQueue;
+import google.registry.flows.CheckApiCache;
 import google.registry.flows.EppException;
 import google.registry.flows.EppException.AssociationProhibitsOperationException;
 import google.registry.flows.FlowModule.ClientId;
@@ -65,6 +66,8 @@ import google.registry.model.poll.PollMessage;
 import google.registry.model.poll.PollMessage.OneTime;
 import google.registry.model.registry.Registry;
 import google.registry.model.reporting.HistoryEntry;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import java.util.Set;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -142,6 +145,8 @@ public final class DomainDeleteFlow extends LoggedInFlow implements Transactiona
     // event and poll message will already have been deleted in
     // ResourceDeleteFlow since it's listed in serverApproveEntities.
     dnsQueue.addDomainRefreshTask(existingDomain.getFullyQualifiedDomainName());
+    runAfterCommit(LookupResponseCache.invalidateTask(ResourceType.DOMAIN, targetId));
+    runAfterCommit(CheckApiCache.invalidateTask(targetId));
     // Cancel any grace periods that were still active.
     for (GracePeriod gracePeriod : existingDomain.getGracePeriods()) {
       // No cancellation is written if the grace period was not for a billable event.
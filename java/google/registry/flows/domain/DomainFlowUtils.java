@@ -100,7 +100,7 @@ import google.registry.model.smd.SignedMark;
 import google.registry.model.smd.SignedMarkRevocationList;
 import google.registry.model.transfer.TransferData;
 import google.registry.model.transfer.TransferResponse.DomainTransferResponse;
-import google.registry.tmch.TmchXmlSignature;
+import google.registry.tmch.SmdSignatureCache;
 import google.registry.tmch.TmchXmlSignature.CertificateSignatureException;
 import google.registry.util.Idn;
 import java.io.IOException;
@@ -519,7 +519,7 @@ public class DomainFlowUtils {
     }
 
     try {
-      TmchXmlSignature.verify(signedMarkData);
+      SmdSignatureCache.verify(signedMarkData);
     } catch (CertificateExpiredException e) {
       throw new SignedMarkCertificateExpiredException();
     } catch (CertificateNotYetValidException e) {
@@ -64,6 +64,8 @@ import google.registry.model.poll.PollMessage;
 import google.registry.model.registry.Registry;
 import google.registry.model.reporting.HistoryEntry;
 import google.registry.model.transfer.TransferStatus;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import javax.inject.Inject;
 import org.joda.money.Money;
 import org.joda.time.DateTime;
@@ -166,6 +168,7 @@ public final class DomainRenewFlow extends LoggedInFlow implements Transactional
         .setAutorenewPollMessage(Key.create(newAutorenewPollMessage))
         .addGracePeriod(GracePeriod.forBillingEvent(GracePeriodStatus.RENEW, explicitRenewEvent))
         .build();
+    runAfterCommit(LookupResponseCache.invalidateTask(ResourceType.DOMAIN, targetId));
     ofy().save().<Object>entities(
         newDomain, historyEntry, explicitRenewEvent, newAutorenewEvent, newAutorenewPollMessage);
     return createOutput(
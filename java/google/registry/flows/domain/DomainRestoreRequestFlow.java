@@ -63,6 +63,8 @@ import google.registry.model.eppoutput.EppOutput;
 import google.registry.model.poll.PollMessage;
 import google.registry.model.registry.Registry;
 import google.registry.model.reporting.HistoryEntry;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import javax.inject.Inject;
 import org.joda.money.Money;
 import org.joda.time.DateTime;
@@ -156,6 +158,7 @@ public final class DomainRestoreRequestFlow extends LoggedInFlow implements Tran
         performRestore(existingDomain, newExpirationTime, autorenewEvent, autorenewPollMessage);
     updateForeignKeyIndexDeletionTime(newDomain);
     entitiesToSave.add(newDomain, historyEntry, autorenewEvent, autorenewPollMessage);
+    runAfterCommit(LookupResponseCache.invalidateTask(ResourceType.DOMAIN, targetId));
     ofy().save().entities(entitiesToSave.build());
     ofy().delete().key(existingDomain.getDeletePollMessage());
     dnsQueue.addDomainRefreshTask(existingDomain.getFullyQualifiedDomainName());
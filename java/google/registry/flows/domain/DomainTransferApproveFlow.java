@@ -55,6 +55,8 @@ import google.registry.model.registry.Registry;
 import google.registry.model.reporting.HistoryEntry;
 import google.registry.model.transfer.TransferData;
 import google.registry.model.transfer.TransferStatus;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
 
@@ -176,6 +178,7 @@ public final class DomainTransferApproveFlow extends LoggedInFlow implements Tra
         newDomain.getTransferData(),
         newExpirationTime,
         historyEntry);
+    runAfterCommit(LookupResponseCache.invalidateTask(ResourceType.DOMAIN, targetId));
     ofy().save().<ImmutableObject>entities(
         newDomain,
         historyEntry,
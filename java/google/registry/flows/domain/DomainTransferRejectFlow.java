@@ -41,6 +41,8 @@ import google.registry.model.eppcommon.AuthInfo;
 import google.registry.model.eppoutput.EppOutput;
 import google.registry.model.reporting.HistoryEntry;
 import google.registry.model.transfer.TransferStatus;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import javax.inject.Inject;
 
 /**
@@ -88,6 +90,7 @@ public final class DomainTransferRejectFlow extends LoggedInFlow implements Tran
     checkAllowedAccessToTld(getAllowedTlds(), existingDomain.getTld());
     DomainResource newDomain =
         denyPendingTransfer(existingDomain, TransferStatus.CLIENT_REJECTED, now);
+    runAfterCommit(LookupResponseCache.invalidateTask(ResourceType.DOMAIN, targetId));
     ofy().save().<ImmutableObject>entities(
         newDomain,
         historyEntry,
@@ -69,6 +69,8 @@ import google.registry.model.eppinput.ResourceCommand.AddRemoveSameValueExceptio
 import google.registry.model.eppoutput.EppOutput;
 import google.registry.model.registry.Registry;
 import google.registry.model.reporting.HistoryEntry;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import javax.inject.Inject;
 import org.joda.money.Money;
 import org.joda.time.DateTime;
@@ -161,6 +163,7 @@ public final class DomainUpdateFlow extends LoggedInFlow implements Transactiona
     }
     validateNewState(newDomain);
     dnsQueue.addDomainRefreshTask(targetId);
+    runAfterCommit(LookupResponseCache.invalidateTask(ResourceType.DOMAIN, targetId));
     handleExtraFlowLogic(existingDomain, historyEntry);
     ImmutableList.Builder<ImmutableObject> entitiesToSave = new ImmutableList.Builder<>();
     entitiesToSave.add(newDomain, historyEntry);
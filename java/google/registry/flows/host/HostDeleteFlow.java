@@ -39,6 +39,8 @@ import google.registry.model.eppcommon.StatusValue;
 import google.registry.model.eppoutput.EppOutput;
 import google.registry.model.host.HostResource;
 import google.registry.model.reporting.HistoryEntry;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import javax.inject.Inject;
 
 /**
@@ -92,6 +94,7 @@ public final class HostDeleteFlow extends LoggedInFlow implements TransactionalF
       verifyResourceOwnership(clientId, existingHost);
     }
     asyncFlowEnqueuer.enqueueAsyncDelete(existingHost, clientId, isSuperuser);
+    runAfterCommit(LookupResponseCache.invalidateTask(ResourceType.HOST, targetId));
     HostResource newHost =
         existingHost.asBuilder().addStatusValue(StatusValue.PENDING_DELETE).build();
     historyBuilder
@@ -58,6 +58,8 @@ import google.registry.model.host.HostResource;
 import google.registry.model.host.HostResource.Builder;
 import google.registry.model.index.ForeignKeyIndex;
 import google.registry.model.reporting.HistoryEntry;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import java.util.Objects;
 import javax.inject.Inject;
 
@@ -156,6 +158,9 @@ public final class HostUpdateFlow extends LoggedInFlow implements TransactionalF
       updateSuperordinateDomains(existingHost, newHost);
     }
     enqueueTasks(existingHost, newHost);
+    runAfterCommit(LookupResponseCache.invalidateTask(ResourceType.HOST, oldHostName));
+    runAfterCommit(LookupResponseCache.invalidateTask(ResourceType.HOST, newHostName));
+    runAfterCommit(LookupResponseCache.invalidateReferencesToTask(Key.create(existingHost)));
     entitiesToSave.add(historyBuilder
         .setType(HistoryEntry.Type.HOST_UPDATE)
         .setModificationTime(now)
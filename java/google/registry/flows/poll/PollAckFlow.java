@@ -15,7 +15,6 @@
 package google.registry.flows.poll;
 
 import static com.google.common.base.Preconditions.checkState;
-import static google.registry.flows.poll.PollFlowUtils.getPollMessagesQuery;
 import static google.registry.model.eppoutput.Result.Code.SUCCESS;
 import static google.registry.model.eppoutput.Result.Code.SUCCESS_WITH_NO_MESSAGES;
 import static google.registry.model.ofy.ObjectifyService.ofy;
@@ -57,6 +56,8 @@ public class PollAckFlow extends LoggedInFlow implements TransactionalFlow {
 
   @Inject @ClientId String clientId;
   @Inject @PollMessageId String messageId;
+  @Inject PollMessagePrefetcher prefetcher;
+  @Inject PollMessageCountCache countCache;
   @Inject PollAckFlow() {}
 
   @Override
@@ -110,17 +111,23 @@ public class PollAckFlow extends LoggedInFlow implements TransactionalFlow {
         ofy().delete().entity(autorenewPollMessage);
       }
     }
+    prefetcher.onAck(clientId, pollMessageKey);
     // We need to return the new queue length. If this was the last message in the queue being
-    // acked, then we return a special status code indicating that. Note that the query will
+    // acked, then we return a special status code indicating that. Note that the count will
     // include the message being acked.
-
     int messageCount = ofy().doTransactionless(new Work<Integer>() {
       @Override
       public Integer run() {
-        return getPollMessagesQuery(clientId, now).count();
+        return countCache.getCount(clientId, now);
       }});
     if (!includeAckedMessageInCount) {
       messageCount--;
+      // Only count the ack against the cached queue length once it has actually happened.
+      runAfterCommit(new Runnable() {
+        @Override
+        public void run() {
+          countCache.decrement(clientId);
+        }});
     }
     if (messageCount <= 0) {
       return createOutput(SUCCESS_WITH_NO_MESSAGES);
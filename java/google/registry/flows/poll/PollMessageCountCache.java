@@ -0,0 +1,122 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.poll;
+
+import static google.registry.flows.poll.PollFlowUtils.getPollMessagesQuery;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * Per-registrar cache of the number of poll messages that are ready to be delivered.
+ *
+ * <p>Counting a registrar's poll messages is an index scan over all of them, which gets slow for
+ * registrars with hundreds of thousands of messages queued up. The count can't simply be maintained
+ * as messages are saved and acked, because messages also become deliverable just by time passing
+ * (autorenews and server-approved transfers are saved with future event times). Instead, counts of
+ * at least {@link #largeQueueSize} are remembered for up to {@link #maxAge}, and decremented as
+ * messages are acked; once an entry expires the next poll counts the queue again, which corrects
+ * any drift from messages that were enqueued or acked through other instances. Smaller queues are
+ * cheap to count and are always counted exactly.
+ *
+ * <p>The count reported in {@code <msgQ>} is therefore approximate for large queues only, which is
+ * fine since it is purely informational; whether there are any messages at all is always decided
+ * by querying for the oldest one.
+ */
+@Singleton
+@ThreadSafe
+public final class PollMessageCountCache {
+
+  /** Maximum number of registrars to remember counts for. */
+  private static final int MAX_ENTRIES = 1000;
+
+  private final int largeQueueSize;
+  private final Duration maxAge;
+  private final ConcurrentMap<String, Entry> counts =
+      CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).<String, Entry>build().asMap();
+
+  @Inject
+  PollMessageCountCache() {
+    this(1000, Duration.standardMinutes(1));
+  }
+
+  @VisibleForTesting
+  PollMessageCountCache(int largeQueueSize, Duration maxAge) {
+    this.largeQueueSize = largeQueueSize;
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * Returns the number of poll messages for the registrar which are not in the future, counting
+   * them only if there is no recent count of a large queue.
+   */
+  int getCount(String clientId, DateTime now) {
+    Entry entry = counts.get(clientId);
+    if (entry != null && now.isBefore(entry.countTime.plus(maxAge))) {
+      return entry.count;
+    }
+    int count = getPollMessagesQuery(clientId, now).count();
+    if (count >= largeQueueSize) {
+      counts.put(clientId, new Entry(count, now));
+    } else if (entry != null) {
+      counts.remove(clientId, entry);
+    }
+    return count;
+  }
+
+  /**
+   * Records that a message was removed from the registrar's queue by an ack, so that a remembered
+   * count stays close to the truth until it expires.
+   */
+  void decrement(String clientId) {
+    Entry entry = counts.get(clientId);
+    if (entry == null) {
+      return;
+    }
+    if (entry.count - 1 < largeQueueSize) {
+      // Small enough to be worth counting exactly again.
+      counts.remove(clientId, entry);
+    } else {
+      // If another ack raced with this one, one of the decrements is lost, which is no worse than
+      // any other drift and is corrected when the entry expires.
+      counts.replace(clientId, entry, new Entry(entry.count - 1, entry.countTime));
+    }
+  }
+
+  /** Empties the cache. */
+  @VisibleForTesting
+  void clear() {
+    counts.clear();
+  }
+
+  /** A count of a registrar's queue, and the time at which it was counted. */
+  @Immutable
+  private static final class Entry {
+    final int count;
+    final DateTime countTime;
+
+    Entry(int count, DateTime countTime) {
+      this.count = count;
+      this.countTime = countTime;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.poll;
+
+import static google.registry.flows.poll.PollFlowUtils.getPollMessagesQuery;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.util.DateTimeUtils.isBeforeOrAt;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.googlecode.objectify.Key;
+import google.registry.model.poll.PollMessage;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * Per-registrar window of the next poll messages to deliver, fetched with a single query.
+ *
+ * <p>Registrars drain their queues with alternating {@code <poll op="req">} and
+ * {@code <poll op="ack">} commands, and each request used to issue an ordered query for the oldest
+ * message. Instead, a request that has no usable window fetches the oldest {@link #windowSize}
+ * messages at once, and later requests take the head of the window, which costs a single get by
+ * key. The head is always loaded again rather than served from memory, so that messages which were
+ * acked (through this or any other instance) are skipped rather than delivered twice.
+ *
+ * <p>A window only contains messages whose event time was at or before the time it was fetched,
+ * so a message that becomes deliverable afterwards sorts after everything in it, and messages are
+ * delivered in the same order as if the oldest one were queried every time. The window is dropped
+ * whenever that could stop being true: when a message other than the head is acked, when an acked
+ * autorenew message comes due again within the window, and after {@link #maxAge}, which also picks
+ * up messages that the eventually consistent query hadn't seen yet.
+ */
+@Singleton
+@ThreadSafe
+public final class PollMessagePrefetcher {
+
+  /** Maximum number of registrars to keep windows for. */
+  private static final int MAX_ENTRIES = 1000;
+
+  private final int windowSize;
+  private final Duration maxAge;
+  private final ConcurrentMap<String, Window> windows =
+      CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).<String, Window>build().asMap();
+
+  @Inject
+  PollMessagePrefetcher() {
+    this(100, Duration.standardSeconds(30));
+  }
+
+  @VisibleForTesting
+  PollMessagePrefetcher(int windowSize, Duration maxAge) {
+    this.windowSize = windowSize;
+    this.maxAge = maxAge;
+  }
+
+  /** Returns the oldest poll message for the registrar which is not in the future, if any. */
+  @Nullable
+  PollMessage getOldest(String clientId, DateTime now) {
+    Window window = windows.get(clientId);
+    if (window != null
+        && isBeforeOrAt(window.fetchTime, now)
+        && now.isBefore(window.fetchTime.plus(maxAge))) {
+      PollMessage pollMessage = window.loadHead();
+      if (pollMessage != null) {
+        return pollMessage;
+      }
+    }
+    List<PollMessage> pollMessages = getPollMessagesQuery(clientId, now).limit(windowSize).list();
+    if (pollMessages.isEmpty()) {
+      windows.remove(clientId);
+      return null;
+    }
+    windows.put(clientId, new Window(pollMessages, now));
+    return pollMessages.get(0);
+  }
+
+  /**
+   * Records that the registrar acked a poll message.
+   *
+   * <p>Acking the head of the window leaves the window alone, since the next request loads the
+   * head again anyway and skips it if the ack went through. Acking anything else drops the window.
+   */
+  void onAck(String clientId, Key<PollMessage> pollMessageKey) {
+    Window window = windows.get(clientId);
+    if (window != null && !window.isHead(pollMessageKey)) {
+      windows.remove(clientId, window);
+    }
+  }
+
+  /** Drops all windows. */
+  @VisibleForTesting
+  void clear() {
+    windows.clear();
+  }
+
+  /** The keys and event times of a registrar's oldest poll messages, as of a point in time. */
+  private static final class Window {
+
+    final DateTime fetchTime;
+
+    @GuardedBy("this")
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    Window(List<PollMessage> pollMessages, DateTime fetchTime) {
+      this.fetchTime = fetchTime;
+      for (PollMessage pollMessage : pollMessages) {
+        entries.add(new Entry(Key.create(pollMessage), pollMessage.getEventTime()));
+      }
+    }
+
+    synchronized boolean isHead(Key<PollMessage> key) {
+      Entry head = entries.peek();
+      return head != null && head.key.equals(key);
+    }
+
+    /**
+     * Loads the first message in the window that is still pending, or returns null if the window
+     * is exhausted or can no longer be trusted to be in order.
+     */
+    @Nullable
+    PollMessage loadHead() {
+      while (true) {
+        Entry head;
+        synchronized (this) {
+          head = entries.peek();
+        }
+        if (head == null) {
+          return null;
+        }
+        // Don't hold the lock during the load.
+        PollMessage pollMessage = ofy().load().key(head.key).now();
+        if (pollMessage != null) {
+          if (pollMessage.getEventTime().equals(head.eventTime)) {
+            return pollMessage;
+          }
+          if (isBeforeOrAt(pollMessage.getEventTime(), fetchTime)) {
+            // An acked autorenew message that is already due again belongs somewhere in the
+            // middle of the window, so it has to be fetched again.
+            return null;
+          }
+        }
+        // The message was acked, or is no longer due before anything else in the window.
+        synchronized (this) {
+          if (entries.peek() == head) {
+            entries.poll();
+          }
+        }
+      }
+    }
+  }
+
+  /** A poll message's key, and its event time when it was fetched. */
+  private static final class Entry {
+    final Key<PollMessage> key;
+    final DateTime eventTime;
+
+    Entry(Key<PollMessage> key, DateTime eventTime) {
+      this.key = key;
+      this.eventTime = eventTime;
+    }
+  }
+}
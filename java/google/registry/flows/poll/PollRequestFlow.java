@@ -14,7 +14,6 @@
 
 package google.registry.flows.poll;
 
-import static google.registry.flows.poll.PollFlowUtils.getPollMessagesQuery;
 import static google.registry.model.eppoutput.Result.Code.SUCCESS_WITH_ACK_MESSAGE;
 import static google.registry.model.eppoutput.Result.Code.SUCCESS_WITH_NO_MESSAGES;
 import static google.registry.util.CollectionUtils.forceEmptyToNull;
@@ -35,9 +34,11 @@ import javax.inject.Inject;
  * An EPP flow for requesting {@link PollMessage}s.
  *
  * <p>This flow uses an eventually consistent Datastore query to return the oldest poll message for
- * the registrar, as well as the total number of pending messages. Note that poll messages whose
- * event time is in the future (i.e. they are speculative and could still be changed or rescinded)
- * are ignored. The externally visible id for the poll message that the registrar sees is generated
+ * the registrar (prefetching several at a time, see {@link PollMessagePrefetcher}), as well as the
+ * total number of pending messages (which is cached for registrars with very large queues, see
+ * {@link PollMessageCountCache}). Note that poll messages whose event time is in the future (i.e.
+ * they are speculative and could still be changed or rescinded) are ignored. The externally visible
+ * id for the poll message that the registrar sees is generated
  * by {@link PollMessageExternalKeyConverter}.
  *
  * @error {@link PollRequestFlow.UnexpectedMessageIdException}
@@ -46,6 +47,8 @@ public class PollRequestFlow extends LoggedInFlow {
 
   @Inject @ClientId String clientId;
   @Inject @PollMessageId String messageId;
+  @Inject PollMessagePrefetcher prefetcher;
+  @Inject PollMessageCountCache countCache;
   @Inject PollRequestFlow() {}
 
   @Override
@@ -54,7 +57,7 @@ public class PollRequestFlow extends LoggedInFlow {
       throw new UnexpectedMessageIdException();
     }
     // Return the oldest message from the queue.
-    PollMessage pollMessage = getPollMessagesQuery(clientId, now).first().now();
+    PollMessage pollMessage = prefetcher.getOldest(clientId, now);
     if (pollMessage == null) {
       return createOutput(SUCCESS_WITH_NO_MESSAGES);
     }
@@ -65,7 +68,7 @@ public class PollRequestFlow extends LoggedInFlow {
         MessageQueueInfo.create(
             pollMessage.getEventTime(),
             pollMessage.getMsg(),
-            getPollMessagesQuery(clientId, now).count(),
+            countCache.getCount(clientId, now),
             PollMessage.EXTERNAL_KEY_CONVERTER.convert(Key.create(pollMessage))));
   }
 
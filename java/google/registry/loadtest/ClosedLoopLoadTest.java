@@ -0,0 +1,374 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.loadtest;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static google.registry.util.ResourceUtils.readResourceUtf8;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
+import google.registry.model.domain.DomainRenewData;
+import google.registry.model.eppoutput.CreateData.DomainCreateData;
+import google.registry.model.eppoutput.EppOutput;
+import google.registry.util.Clock;
+import google.registry.util.FormattingLogger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * A load test in which a fixed number of clients each run one EPP command after another, as fast
+ * as the registry answers them.
+ *
+ * <p>Unlike the task queue driven load test, which sends commands at a fixed rate regardless of
+ * whether they keep up, this measures the throughput and latency that the flows actually achieve
+ * at a given concurrency. Each client picks its commands at random, in proportion to the weight of
+ * each {@link Workload}.
+ *
+ * <p>Every client starts by creating its own contact, host and domain, and then only mutates the
+ * domains that it created itself, so that clients never contend with each other over the same
+ * resource, and commands only fail when they are meant to.
+ */
+final class ClosedLoopLoadTest {
+
+  private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
+
+  private static final int MAX_CONTACT_LENGTH = 13;
+  private static final int ARBITRARY_VALID_HOST_LENGTH = 40;
+  private static final int MAX_DOMAIN_LABEL_LENGTH = 63;
+
+  /** Domains can be registered for at most ten years, and renews add one year. */
+  private static final int MAX_YEARS_BEFORE_RENEW = 9;
+
+  /** The kinds of commands that a closed-loop load test can run. */
+  enum Workload {
+    CONTACT_CREATE,
+    FAILED_CONTACT_CREATE,
+    CONTACT_INFO,
+    HOST_CREATE,
+    FAILED_HOST_CREATE,
+    HOST_INFO,
+    DOMAIN_CHECK,
+    DOMAIN_CREATE,
+    FAILED_DOMAIN_CREATE,
+    DOMAIN_INFO,
+    DOMAIN_UPDATE,
+    DOMAIN_RENEW,
+
+    /** A transfer request by the gaining registrar, which it then cancels. */
+    DOMAIN_TRANSFER,
+
+    POLL
+  }
+
+  /** Runs an EPP command on behalf of a registrar. */
+  interface EppRunner {
+    EppOutput run(String clientId, byte[] xml);
+  }
+
+  private final EppRunner eppRunner;
+  private final Clock clock;
+  private final ThreadFactory threadFactory;
+  private final String tld;
+  private final String clientId;
+  private final Optional<String> transferClientId;
+  private final Workload[] workloads;
+  private final int[] cumulativeWeights;
+  private final LoadTestResults results = new LoadTestResults();
+
+  private final String xmlContactCreateTmpl = loadXml("contact_create");
+  private final String xmlContactInfoTmpl = loadXml("contact_info");
+  private final String xmlHostCreateTmpl = loadXml("host_create");
+  private final String xmlHostInfoTmpl = loadXml("host_info");
+  private final String xmlDomainCheckTmpl = loadXml("domain_check");
+  private final String xmlDomainCreateTmpl = loadXml("domain_create");
+  private final String xmlDomainInfoTmpl = loadXml("domain_info");
+  private final String xmlDomainUpdateTmpl = loadXml("domain_update");
+  private final String xmlDomainRenewTmpl = loadXml("domain_renew");
+  private final String xmlDomainTransferRequestTmpl = loadXml("domain_transfer_request");
+  private final String xmlDomainTransferCancelTmpl = loadXml("domain_transfer_cancel");
+  private final String xmlPoll = loadXml("poll");
+
+  /**
+   * @param tld the TLD to create domains on, which the registrars must have access to
+   * @param clientId the registrar that runs the commands
+   * @param transferClientId the registrar that transfers domains away from {@code clientId}, which
+   *     is only needed if there are {@link Workload#DOMAIN_TRANSFER} commands
+   * @param weights how often each kind of command is run, relative to the others
+   */
+  ClosedLoopLoadTest(
+      EppRunner eppRunner,
+      Clock clock,
+      ThreadFactory threadFactory,
+      String tld,
+      String clientId,
+      Optional<String> transferClientId,
+      Map<Workload, Integer> weights) {
+    this.eppRunner = eppRunner;
+    this.clock = clock;
+    this.threadFactory = threadFactory;
+    this.tld = tld;
+    this.clientId = clientId;
+    this.transferClientId = transferClientId;
+    checkArgument(
+        transferClientId.isPresent() || !weights.containsKey(Workload.DOMAIN_TRANSFER)
+            || weights.get(Workload.DOMAIN_TRANSFER) == 0,
+        "Domain transfers need a registrar to transfer domains to");
+    List<Workload> workloadList = new ArrayList<>();
+    List<Integer> cumulativeWeightList = new ArrayList<>();
+    int totalWeight = 0;
+    for (Map.Entry<Workload, Integer> entry : weights.entrySet()) {
+      checkArgument(entry.getValue() >= 0, "Negative weight for %s", entry.getKey());
+      if (entry.getValue() > 0) {
+        totalWeight += entry.getValue();
+        workloadList.add(entry.getKey());
+        cumulativeWeightList.add(totalWeight);
+      }
+    }
+    checkArgument(totalWeight > 0, "No commands to run");
+    this.workloads = workloadList.toArray(new Workload[0]);
+    this.cumulativeWeights = new int[cumulativeWeightList.size()];
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      cumulativeWeights[i] = cumulativeWeightList.get(i);
+    }
+  }
+
+  /** Runs the load test with the given number of clients, and returns its results. */
+  LoadTestResults run(int concurrency, Duration duration) {
+    checkArgument(concurrency > 0, "Concurrency must be positive");
+    final DateTime deadline = clock.nowUtc().plus(duration);
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency, threadFactory);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < concurrency; i++) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            new LoadTestClient().run(deadline);
+          }}));
+      }
+      for (Future<?> future : futures) {
+        try {
+          Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+          throw new UncheckedExecutionException(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return results;
+  }
+
+  private static String loadXml(String name) {
+    return readResourceUtf8(ClosedLoopLoadTest.class, String.format("templates/%s.xml", name));
+  }
+
+  /** A single client of the load test, which runs its commands sequentially on one thread. */
+  private final class LoadTestClient {
+
+    private final Random random = new Random();
+    private final String contact = getRandomLabel(MAX_CONTACT_LENGTH);
+    private final String host = getRandomLabel(ARBITRARY_VALID_HOST_LENGTH);
+
+    /** The labels of the domains this client has created. */
+    private final List<String> domains = new ArrayList<>();
+
+    /** The expiration dates of the domains this client can still renew, by label. */
+    private final Map<String, DateTime> renewableDomains = new HashMap<>();
+
+    void run(DateTime deadline) {
+      // These aren't measured, since they only set up what the other commands need.
+      checkSucceeded(runCommand(
+          clientId, xmlContactCreateTmpl.replace("%contact%", contact)), "contact create");
+      checkSucceeded(runCommand(
+          clientId, xmlHostCreateTmpl.replace("%host%", host)), "host create");
+      checkSucceeded(createDomain(null), "domain create");
+      while (clock.nowUtc().isBefore(deadline)) {
+        try {
+          runWorkload(pickWorkload());
+        } catch (RuntimeException e) {
+          logger.warning(e, "Load test command failed");
+        }
+      }
+    }
+
+    private Workload pickWorkload() {
+      int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+      int i = 0;
+      while (cumulativeWeights[i] <= value) {
+        i++;
+      }
+      return workloads[i];
+    }
+
+    private void runWorkload(Workload workload) {
+      String domain = domains.get(random.nextInt(domains.size()));
+      switch (workload) {
+        case CONTACT_CREATE:
+          measure("contact_create", clientId,
+              xmlContactCreateTmpl.replace("%contact%", getRandomLabel(MAX_CONTACT_LENGTH)));
+          break;
+        case FAILED_CONTACT_CREATE:
+          measure("contact_create", clientId,
+              xmlContactCreateTmpl.replace("%contact%", contact));
+          break;
+        case CONTACT_INFO:
+          measure("contact_info", clientId, xmlContactInfoTmpl.replace("%contact%", contact));
+          break;
+        case HOST_CREATE:
+          measure("host_create", clientId,
+              xmlHostCreateTmpl.replace("%host%", getRandomLabel(ARBITRARY_VALID_HOST_LENGTH)));
+          break;
+        case FAILED_HOST_CREATE:
+          measure("host_create", clientId, xmlHostCreateTmpl.replace("%host%", host));
+          break;
+        case HOST_INFO:
+          measure("host_info", clientId, xmlHostInfoTmpl.replace("%host%", host));
+          break;
+        case DOMAIN_CHECK:
+          measure("domain_check", clientId, replaceDomain(xmlDomainCheckTmpl, domain));
+          break;
+        case DOMAIN_CREATE:
+          createDomain("domain_create");
+          break;
+        case FAILED_DOMAIN_CREATE:
+          measure("domain_create", clientId, replaceDomain(xmlDomainCreateTmpl, domain)
+              .replace("%contact%", contact)
+              .replace("%host%", host));
+          break;
+        case DOMAIN_INFO:
+          measure("domain_info", clientId, replaceDomain(xmlDomainInfoTmpl, domain));
+          break;
+        case DOMAIN_UPDATE:
+          measure("domain_update", clientId, replaceDomain(xmlDomainUpdateTmpl, domain));
+          break;
+        case DOMAIN_RENEW:
+          renewDomain();
+          break;
+        case DOMAIN_TRANSFER:
+          if (isSuccess(measure("domain_transfer_request", transferClientId.get(),
+              replaceDomain(xmlDomainTransferRequestTmpl, domain)))) {
+            measure("domain_transfer_cancel", transferClientId.get(),
+                replaceDomain(xmlDomainTransferCancelTmpl, domain));
+          }
+          break;
+        case POLL:
+          measure("poll", clientId, xmlPoll);
+          break;
+        default:
+          throw new IllegalStateException("Unknown workload " + workload);
+      }
+    }
+
+    /** Creates a domain, measuring it under the given command name unless that is null. */
+    private EppOutput createDomain(String command) {
+      String domain = getRandomLabel(MAX_DOMAIN_LABEL_LENGTH);
+      String xml = replaceDomain(xmlDomainCreateTmpl, domain)
+          .replace("%contact%", contact)
+          .replace("%host%", host);
+      EppOutput output =
+          (command == null) ? runCommand(clientId, xml) : measure(command, clientId, xml);
+      if (isSuccess(output)) {
+        domains.add(domain);
+        renewableDomains.put(domain, ((DomainCreateData) output.getResponse().getResponseData()
+            .get(0)).getExpirationDate());
+      }
+      return output;
+    }
+
+    /**
+     * Renews a domain that can be renewed for another year, creating a new domain instead if there
+     * is none.
+     */
+    private void renewDomain() {
+      if (renewableDomains.isEmpty()) {
+        createDomain("domain_create");
+        return;
+      }
+      List<String> candidates = new ArrayList<>(renewableDomains.keySet());
+      String domain = candidates.get(random.nextInt(candidates.size()));
+      EppOutput output = measure("domain_renew", clientId, replaceDomain(xmlDomainRenewTmpl, domain)
+          .replace("%curExpDate%", renewableDomains.get(domain).toLocalDate().toString()));
+      if (isSuccess(output)) {
+        DateTime expirationDate = ((DomainRenewData) output.getResponse().getResponseData().get(0))
+            .getExpirationDate();
+        if (expirationDate.isBefore(clock.nowUtc().plusYears(MAX_YEARS_BEFORE_RENEW))) {
+          renewableDomains.put(domain, expirationDate);
+        } else {
+          renewableDomains.remove(domain);
+        }
+      }
+    }
+
+    private String replaceDomain(String xml, String domain) {
+      return xml.replace("%tld%", tld).replace("%domain%", domain);
+    }
+
+    /** Runs a command, and records how long it took and what it returned. */
+    private EppOutput measure(String command, String commandClientId, String xml) {
+      DateTime start = clock.nowUtc();
+      EppOutput output;
+      try {
+        output = runCommand(commandClientId, xml);
+      } catch (RuntimeException e) {
+        results.record(
+            command, clock.nowUtc().getMillis() - start.getMillis(), e.getClass().getSimpleName());
+        throw e;
+      }
+      results.record(
+          command,
+          clock.nowUtc().getMillis() - start.getMillis(),
+          output.isResponse()
+              ? String.valueOf(output.getResponse().getResult().getCode().code)
+              : "greeting");
+      return output;
+    }
+
+    private EppOutput runCommand(String commandClientId, String xml) {
+      return eppRunner.run(commandClientId, xml.getBytes(UTF_8));
+    }
+
+    private String getRandomLabel(int numChars) {
+      StringBuilder name = new StringBuilder();
+      for (int j = 0; j < numChars; j++) {
+        name.append(Character.forDigit(random.nextInt(Character.MAX_RADIX), Character.MAX_RADIX));
+      }
+      return name.toString();
+    }
+  }
+
+  private static boolean isSuccess(EppOutput output) {
+    return output.isResponse() && output.getResponse().getResult().getCode().isSuccess();
+  }
+
+  private static void checkSucceeded(EppOutput output, String description) {
+    checkState(isSuccess(output), "Load test setup %s failed: %s",
+        description,
+        output.isResponse() ? output.getResponse().getResult().getMsg() : "no response");
+  }
+}
@@ -19,22 +19,36 @@ import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Lists.partition;
 import static com.google.common.collect.Lists.transform;
+import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.ResourceUtils.readResourceUtf8;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static org.joda.time.DateTimeZone.UTC;
 
+import com.google.appengine.api.ThreadManager;
 import com.google.appengine.api.taskqueue.TaskOptions;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
 import com.google.common.net.MediaType;
 import google.registry.config.RegistryEnvironment;
+import google.registry.flows.EppController;
+import google.registry.flows.EppRequestSource;
+import google.registry.flows.PasswordOnlyTransportCredentials;
+import google.registry.flows.StatelessRequestSessionMetadata;
+import google.registry.loadtest.ClosedLoopLoadTest.EppRunner;
+import google.registry.loadtest.ClosedLoopLoadTest.Workload;
+import google.registry.model.eppcommon.ProtocolDefinition;
+import google.registry.model.eppoutput.EppOutput;
 import google.registry.request.Action;
 import google.registry.request.Parameter;
+import google.registry.request.Response;
+import google.registry.util.Clock;
+import google.registry.util.FormattingLogger;
 import google.registry.util.TaskEnqueuer;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -43,16 +57,34 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import javax.inject.Inject;
+import javax.inject.Provider;
 import org.joda.time.DateTime;
-
-/** Simple load test action that can generate configurable QPSes of various EPP actions. */
+import org.joda.time.Duration;
+
+/**
+ * Simple load test action that can generate configurable QPSes of various EPP actions.
+ *
+ * <p>If {@code concurrency} is set, it instead runs a closed-loop load test within this request,
+ * in which that many clients each run EPP commands back to back for {@code runSeconds}. The
+ * per-second parameters are then the relative weights of each command, and the response is a
+ * summary of the throughput and latency percentiles of each. The domain update, renew, transfer
+ * and poll commands are only supported in this mode.
+ *
+ * @see ClosedLoopLoadTest
+ */
 @Action(
     path = "/_dr/loadtest",
     method = Action.Method.POST,
     automaticallyPrintOk = true)
 public class LoadTestAction implements Runnable {
 
+  private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
+
   private static final int NUM_QUEUES = 10;
+
+  /** The number of threads a single App Engine request is allowed to have. */
+  private static final int MAX_CONCURRENCY = 50;
+
   private static final int ARBITRARY_VALID_HOST_LENGTH = 40;
   private static final int MAX_CONTACT_LENGTH = 13;
   private static final int MAX_DOMAIN_LABEL_LENGTH = 63;
@@ -135,9 +167,51 @@ public class LoadTestAction implements Runnable {
   @Parameter("hostInfos")
   int hostInfosPerSecond;
 
+  /**
+   * The number of concurrent clients of a closed-loop load test, or zero to enqueue tasks at the
+   * configured rates instead.
+   */
+  @Inject
+  @Parameter("concurrency")
+  int concurrency;
+
+  /** The relative number of domain updates in a closed-loop load test. */
+  @Inject
+  @Parameter("domainUpdates")
+  int domainUpdatesPerSecond;
+
+  /** The relative number of domain renews in a closed-loop load test. */
+  @Inject
+  @Parameter("domainRenews")
+  int domainRenewsPerSecond;
+
+  /**
+   * The relative number of domain transfers in a closed-loop load test, each of which is a
+   * transfer request followed by a cancel.
+   */
+  @Inject
+  @Parameter("domainTransfers")
+  int domainTransfersPerSecond;
+
+  /** The relative number of poll requests in a closed-loop load test. */
+  @Inject
+  @Parameter("polls")
+  int pollsPerSecond;
+
+  /** The client identifier of the registrar that domains are transferred to, if any. */
+  @Inject
+  @Parameter("transferClientId")
+  Optional<String> transferClientId;
+
   @Inject
   TaskEnqueuer taskEnqueuer;
 
+  @Inject Clock clock;
+  @Inject Provider<EppController> eppControllerProvider;
+  @Inject Response response;
+
+  private final String tld;
+
   private final String xmlContactCreateTmpl;
   private final String xmlContactCreateFail;
   private final String xmlContactInfo;
@@ -151,6 +225,7 @@ public class LoadTestAction implements Runnable {
 
   @Inject
   LoadTestAction(@Parameter("tld") String tld) {
+    this.tld = tld;
     xmlContactCreateTmpl = loadXml("contact_create");
     xmlContactCreateFail = xmlContactCreateTmpl.replace("%contact%", EXISTING_CONTACT);
     xmlContactInfo = loadXml("contact_info").replace("%contact%", EXISTING_CONTACT);
@@ -174,6 +249,16 @@ public class LoadTestAction implements Runnable {
     checkArgument(
         RegistryEnvironment.get() != RegistryEnvironment.PRODUCTION,
         "DO NOT RUN LOADTESTS IN PROD!");
+    if (concurrency > 0) {
+      runClosedLoop();
+      return;
+    }
+    checkArgument(
+        domainUpdatesPerSecond == 0
+            && domainRenewsPerSecond == 0
+            && domainTransfersPerSecond == 0
+            && pollsPerSecond == 0,
+        "Domain updates, renews, transfers and polls need a concurrency");
 
     DateTime initialStartSecond = DateTime.now(UTC).plusSeconds(delaySeconds);
     ImmutableList.Builder<String> preTaskXmls = new ImmutableList.Builder<>();
@@ -239,6 +324,57 @@ public class LoadTestAction implements Runnable {
     enqueue(tasks.build());
   }
 
+  private void runClosedLoop() {
+    checkArgument(
+        concurrency <= MAX_CONCURRENCY, "Concurrency can be at most %s", MAX_CONCURRENCY);
+    ClosedLoopLoadTest loadTest = new ClosedLoopLoadTest(
+        new EppRunner() {
+          @Override
+          public EppOutput run(String commandClientId, byte[] xml) {
+            // EppController isn't thread-safe, so each command gets its own.
+            try {
+              return eppControllerProvider.get().handleEppCommand(
+                  new StatelessRequestSessionMetadata(
+                      commandClientId,
+                      ProtocolDefinition.getVisibleServiceExtensionUris()),
+                  new PasswordOnlyTransportCredentials(),
+                  EppRequestSource.TOOL,
+                  false,
+                  false,
+                  xml);
+            } finally {
+              // Don't let the session cache of each client grow over the whole test.
+              ofy().clearSessionCache();
+            }
+          }},
+        clock,
+        ThreadManager.currentRequestThreadFactory(),
+        tld,
+        clientId,
+        transferClientId,
+        new ImmutableMap.Builder<Workload, Integer>()
+            .put(Workload.CONTACT_CREATE, successfulContactCreatesPerSecond)
+            .put(Workload.FAILED_CONTACT_CREATE, failedContactCreatesPerSecond)
+            .put(Workload.CONTACT_INFO, contactInfosPerSecond)
+            .put(Workload.HOST_CREATE, successfulHostCreatesPerSecond)
+            .put(Workload.FAILED_HOST_CREATE, failedHostCreatesPerSecond)
+            .put(Workload.HOST_INFO, hostInfosPerSecond)
+            .put(Workload.DOMAIN_CHECK, domainChecksPerSecond)
+            .put(Workload.DOMAIN_CREATE, successfulDomainCreatesPerSecond)
+            .put(Workload.FAILED_DOMAIN_CREATE, failedDomainCreatesPerSecond)
+            .put(Workload.DOMAIN_INFO, domainInfosPerSecond)
+            .put(Workload.DOMAIN_UPDATE, domainUpdatesPerSecond)
+            .put(Workload.DOMAIN_RENEW, domainRenewsPerSecond)
+            .put(Workload.DOMAIN_TRANSFER, domainTransfersPerSecond)
+            .put(Workload.POLL, pollsPerSecond)
+            .build());
+    DateTime start = clock.nowUtc();
+    LoadTestResults results = loadTest.run(concurrency, Duration.standardSeconds(runSeconds));
+    String summary = results.getSummary(concurrency, new Duration(start, clock.nowUtc()));
+    logger.info(summary);
+    response.setPayload(summary);
+  }
+
   private String loadXml(String name) {
     return readResourceUtf8(LoadTestAction.class, String.format("templates/%s.xml", name));
   }
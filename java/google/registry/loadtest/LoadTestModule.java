@@ -15,8 +15,10 @@
 package google.registry.loadtest;
 
 import static google.registry.request.RequestParameters.extractOptionalIntParameter;
+import static google.registry.request.RequestParameters.extractOptionalParameter;
 import static google.registry.request.RequestParameters.extractRequiredParameter;
 
+import com.google.common.base.Optional;
 import dagger.Module;
 import dagger.Provides;
 import google.registry.request.Parameter;
@@ -112,4 +114,40 @@ public final class LoadTestModule {
   static int provideHostInfos(HttpServletRequest req) {
     return extractOptionalIntParameter(req, "hostInfos").or(0);
   }
+
+  @Provides
+  @Parameter("concurrency")
+  static int provideConcurrency(HttpServletRequest req) {
+    return extractOptionalIntParameter(req, "concurrency").or(0);
+  }
+
+  @Provides
+  @Parameter("domainUpdates")
+  static int provideDomainUpdates(HttpServletRequest req) {
+    return extractOptionalIntParameter(req, "domainUpdates").or(0);
+  }
+
+  @Provides
+  @Parameter("domainRenews")
+  static int provideDomainRenews(HttpServletRequest req) {
+    return extractOptionalIntParameter(req, "domainRenews").or(0);
+  }
+
+  @Provides
+  @Parameter("domainTransfers")
+  static int provideDomainTransfers(HttpServletRequest req) {
+    return extractOptionalIntParameter(req, "domainTransfers").or(0);
+  }
+
+  @Provides
+  @Parameter("polls")
+  static int providePolls(HttpServletRequest req) {
+    return extractOptionalIntParameter(req, "polls").or(0);
+  }
+
+  @Provides
+  @Parameter("transferClientId")
+  static Optional<String> provideTransferClientId(HttpServletRequest req) {
+    return extractOptionalParameter(req, "transferClientId");
+  }
 }
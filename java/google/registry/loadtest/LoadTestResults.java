@@ -0,0 +1,133 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.loadtest;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.TreeMultiset;
+import com.google.common.primitives.Longs;
+import google.registry.monitoring.metrics.EventMetric;
+import google.registry.monitoring.metrics.ExponentialFitter;
+import google.registry.monitoring.metrics.LabelDescriptor;
+import google.registry.monitoring.metrics.MetricRegistryImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.concurrent.ThreadSafe;
+import org.joda.time.Duration;
+
+/**
+ * Latencies and result codes of the commands run by a closed-loop load test.
+ *
+ * <p>Every latency is also recorded in the {@code /loadtest/latency} event metric, so that its
+ * histogram is exported by the {@code MetricReporter} of the tools instance running the test. The
+ * summary of a single run is computed from the exact latencies instead, since the percentiles of
+ * interest are finer than the histogram's buckets.
+ */
+@ThreadSafe
+final class LoadTestResults {
+
+  /** Buckets from 1 ms up to about seven minutes, each 1.5 times as wide as the one before. */
+  private static final ExponentialFitter LATENCY_FITTER = ExponentialFitter.create(32, 1.5, 1.0);
+
+  private static final EventMetric latencies =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/loadtest/latency",
+              "Latency of the EPP commands run by closed-loop load tests.",
+              "milliseconds",
+              ImmutableSet.of(
+                  LabelDescriptor.create("command", "The load test command."),
+                  LabelDescriptor.create("status", "The EPP result code of the command.")),
+              LATENCY_FITTER);
+
+  /** The latencies of every command run so far, by command name. */
+  private final Map<String, List<Long>> commandLatencies = new TreeMap<>();
+
+  /** The result codes of every command run so far, as "command code" strings. */
+  private final Multiset<String> resultCodes = TreeMultiset.create();
+
+  /**
+   * Records a command run by the load test.
+   *
+   * @param command the name of the command, such as {@code domain_create}
+   * @param status the EPP result code of the command, or a description of why it didn't return one
+   */
+  void record(String command, long latencyMillis, String status) {
+    latencies.record(latencyMillis, command, status);
+    synchronized (this) {
+      List<Long> values = commandLatencies.get(command);
+      if (values == null) {
+        values = new ArrayList<>();
+        commandLatencies.put(command, values);
+      }
+      values.add(latencyMillis);
+      resultCodes.add(command + " " + status);
+    }
+  }
+
+  /** Returns the number of commands run so far. */
+  synchronized int getCount() {
+    return resultCodes.size();
+  }
+
+  /** Returns the number of times each command returned each result code, by "command code". */
+  synchronized ImmutableSortedMap<String, Integer> getResultCodeCounts() {
+    ImmutableSortedMap.Builder<String, Integer> counts = ImmutableSortedMap.naturalOrder();
+    for (Multiset.Entry<String> entry : resultCodes.entrySet()) {
+      counts.put(entry.getElement(), entry.getCount());
+    }
+    return counts.build();
+  }
+
+  /**
+   * Returns a human-readable summary of the throughput and latency percentiles of each command,
+   * followed by the counts of each result code.
+   */
+  synchronized String getSummary(int concurrency, Duration elapsed) {
+    double seconds = Math.max(elapsed.getMillis(), 1) / 1000.0;
+    StringBuilder summary = new StringBuilder(String.format(
+        "Closed-loop load test with %d concurrent clients for %.1f s: %d commands, %.1f/s\n\n",
+        concurrency, seconds, getCount(), getCount() / seconds));
+    summary.append(String.format("%-25s %8s %10s %8s %8s %8s %8s\n",
+        "command", "count", "per sec", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+    for (Map.Entry<String, List<Long>> entry : commandLatencies.entrySet()) {
+      long[] values = Longs.toArray(entry.getValue());
+      Arrays.sort(values);
+      summary.append(String.format("%-25s %8d %10.1f %8d %8d %8d %8d\n",
+          entry.getKey(),
+          values.length,
+          values.length / seconds,
+          getPercentile(values, 0.5),
+          getPercentile(values, 0.99),
+          getPercentile(values, 0.999),
+          values[values.length - 1]));
+    }
+    summary.append(String.format("\n%-34s %8s\n", "command result", "count"));
+    for (Map.Entry<String, Integer> entry : getResultCodeCounts().entrySet()) {
+      summary.append(String.format("%-34s %8d\n", entry.getKey(), entry.getValue()));
+    }
+    return summary.toString();
+  }
+
+  /** Returns the nearest-rank percentile of some sorted values. */
+  static long getPercentile(long[] sortedValues, double fraction) {
+    int rank = (int) Math.ceil(fraction * sortedValues.length);
+    return sortedValues[Math.max(rank, 1) - 1];
+  }
+}
@@ -73,7 +73,7 @@ public final class EppResourceUtils {
 
   /** Helper to call {@link EppResource#cloneProjectedAtTime} without warnings. */
   @SuppressWarnings("unchecked")
-  private static final <T extends EppResource> T cloneProjectedAtTime(T resource, DateTime now) {
+  static final <T extends EppResource> T cloneProjectedAtTime(T resource, DateTime now) {
     return (T) resource.cloneProjectedAtTime(now);
   }
 
@@ -314,7 +314,7 @@ public final class EppResourceUtils {
   }
 
   @Nullable
-  private static <T extends EppResource> Key<CommitLogManifest>
+  static <T extends EppResource> Key<CommitLogManifest>
       findMostRecentRevisionAtTime(final T resource, final DateTime timestamp) {
     final Key<T> resourceKey = Key.create(resource);
     Entry<?, Key<CommitLogManifest>> revision = resource.getRevisions().floorEntry(timestamp);
@@ -0,0 +1,211 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static google.registry.model.EppResourceUtils.cloneProjectedAtTime;
+import static google.registry.model.EppResourceUtils.findMostRecentRevisionAtTime;
+import static google.registry.model.EppResourceUtils.isActive;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.util.DateTimeUtils.isAtOrAfter;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.googlecode.objectify.Key;
+import google.registry.model.host.HostResource;
+import google.registry.model.ofy.CommitLogManifest;
+import google.registry.model.ofy.CommitLogMutation;
+import google.registry.util.FormattingLogger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.joda.time.DateTime;
+
+/**
+ * Batching, memoizing alternative to {@link EppResourceUtils#loadAtPointInTime}.
+ *
+ * <p>Rewinding a resource requires loading the {@link CommitLogMutation} for its most recent
+ * revision. Rather than issuing one datastore fetch per resource and timestamp, this class gathers
+ * the mutation keys for a whole batch of resources (or a whole set of watermarks for a single
+ * resource) and loads them in one round trip.
+ *
+ * <p>Hosts loaded through an instance are additionally memoized per point in time in a size-bounded
+ * cache, since the same nameservers are referenced by many domains. Instances are intended to live
+ * for the duration of a single mapreduce shard and are not thread-safe; callers that don't need
+ * the memoized hosts should use the static methods directly.
+ *
+ * <p>The same warnings that apply to {@link EppResourceUtils#loadAtPointInTime} apply here:
+ * resources can only be rolled backwards in time, and revisions are granular to 24 hours.
+ */
+@NotThreadSafe
+public final class PointInTimeResolver {
+
+  private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
+
+  private final Cache<Entry<Key<HostResource>, DateTime>, Optional<HostResource>> hostCache;
+
+  /** Creates a resolver that remembers at most {@code maxCachedHosts} host projections. */
+  public PointInTimeResolver(int maxCachedHosts) {
+    checkArgument(maxCachedHosts > 0, "maxCachedHosts must be positive");
+    this.hostCache = CacheBuilder.newBuilder().maximumSize(maxCachedHosts).build();
+  }
+
+  /**
+   * Returns {@code resource} rewound to each of {@code timestamps}, loading all required commit log
+   * mutations in a single batch. Absent values mean the resource didn't exist at that time.
+   */
+  public static <T extends EppResource> ImmutableMap<DateTime, Optional<T>> loadAtPointsInTime(
+      T resource, Iterable<DateTime> timestamps) {
+    ImmutableList<DateTime> times = ImmutableList.copyOf(timestamps);
+    List<T> resources = new ArrayList<>(times.size());
+    for (int i = 0; i < times.size(); i++) {
+      resources.add(resource);
+    }
+    List<T> results = resolve(resources, times);
+    ImmutableMap.Builder<DateTime, Optional<T>> builder = new ImmutableMap.Builder<>();
+    for (int i = 0; i < times.size(); i++) {
+      builder.put(times.get(i), Optional.fromNullable(results.get(i)));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns each of {@code resources} rewound to {@code timestamp}, loading all required commit log
+   * mutations in a single batch. Resources that didn't exist at that time are omitted.
+   */
+  public static <T extends EppResource> ImmutableMap<Key<T>, T> loadAtPointInTime(
+      Iterable<T> resources, DateTime timestamp) {
+    ImmutableList<T> resourceList = ImmutableList.copyOf(resources);
+    List<DateTime> times = new ArrayList<>(resourceList.size());
+    for (int i = 0; i < resourceList.size(); i++) {
+      times.add(timestamp);
+    }
+    List<T> results = resolve(resourceList, times);
+    Map<Key<T>, T> map = new LinkedHashMap<>();
+    for (T result : results) {
+      if (result != null) {
+        map.put(Key.create(result), result);
+      }
+    }
+    return ImmutableMap.copyOf(map);
+  }
+
+  /**
+   * Returns the hosts referenced by {@code hostKeys} as they were at {@code timestamp}, in the
+   * iteration order of {@code hostKeys}. Hosts that didn't exist at that time are omitted.
+   *
+   * <p>Results are memoized, so only hosts not previously resolved at {@code timestamp} are loaded,
+   * and those are loaded (and rewound) in batches.
+   */
+  public ImmutableMap<Key<HostResource>, HostResource> loadHostsAtPointInTime(
+      Iterable<Key<HostResource>> hostKeys, DateTime timestamp) {
+    Map<Key<HostResource>, Optional<HostResource>> resolved = new LinkedHashMap<>();
+    Set<Key<HostResource>> misses = new LinkedHashSet<>();
+    for (Key<HostResource> hostKey : hostKeys) {
+      Optional<HostResource> cached =
+          hostCache.getIfPresent(Maps.immutableEntry(hostKey, timestamp));
+      resolved.put(hostKey, cached);
+      if (cached == null) {
+        misses.add(hostKey);
+      }
+    }
+    if (!misses.isEmpty()) {
+      ImmutableMap<Key<HostResource>, HostResource> loaded =
+          loadAtPointInTime(ofy().load().keys(misses).values(), timestamp);
+      for (Key<HostResource> hostKey : misses) {
+        Optional<HostResource> host = Optional.fromNullable(loaded.get(hostKey));
+        hostCache.put(Maps.immutableEntry(hostKey, timestamp), host);
+        resolved.put(hostKey, host);
+      }
+    }
+    ImmutableMap.Builder<Key<HostResource>, HostResource> builder = new ImmutableMap.Builder<>();
+    for (Entry<Key<HostResource>, Optional<HostResource>> entry : resolved.entrySet()) {
+      if (entry.getValue().isPresent()) {
+        builder.put(entry.getKey(), entry.getValue().get());
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Rewinds {@code resources.get(i)} to {@code timestamps.get(i)} for every {@code i}, returning a
+   * list of the same length with {@code null} entries for resources not active at that time.
+   */
+  private static <T extends EppResource> List<T> resolve(
+      List<T> resources, List<DateTime> timestamps) {
+    int size = resources.size();
+    List<Key<CommitLogMutation>> mutationKeys = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      mutationKeys.add(getMutationKeyIfRewindNeeded(resources.get(i), timestamps.get(i)));
+    }
+    // Fire off one batch load for every mutation that any resource needs.
+    Set<Key<CommitLogMutation>> keysToLoad = new LinkedHashSet<>(mutationKeys);
+    keysToLoad.remove(null);
+    Map<Key<CommitLogMutation>, CommitLogMutation> mutations = ofy().load().keys(keysToLoad);
+    List<T> results = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      T resource = resources.get(i);
+      DateTime timestamp = timestamps.get(i);
+      if (timestamp.isBefore(resource.getCreationTime())) {
+        results.add(null);
+        continue;
+      }
+      T loadedResource = resource;
+      Key<CommitLogMutation> mutationKey = mutationKeys.get(i);
+      if (mutationKey != null) {
+        CommitLogMutation mutation = mutations.get(mutationKey);
+        if (mutation != null) {
+          loadedResource = ofy().load().fromEntity(mutation.getEntity());
+        } else {
+          logger.severefmt(
+              "Couldn't load mutation for revision at %s for %s, falling back to resource."
+                  + " Mutation: %s",
+              timestamp, Key.create(resource), mutationKey);
+        }
+      }
+      results.add(isActive(loadedResource, timestamp)
+          ? cloneProjectedAtTime(loadedResource, timestamp)
+          : null);
+    }
+    return results;
+  }
+
+  /**
+   * Returns the key of the mutation that must be loaded to rewind {@code resource} to
+   * {@code timestamp}, or {@code null} if the resource can be used as-is.
+   */
+  private static <T extends EppResource> Key<CommitLogMutation> getMutationKeyIfRewindNeeded(
+      T resource, DateTime timestamp) {
+    if (timestamp.isBefore(resource.getCreationTime())
+        || isAtOrAfter(timestamp, resource.getUpdateAutoTimestamp().getTimestamp())) {
+      return null;
+    }
+    Key<CommitLogManifest> revision = findMostRecentRevisionAtTime(resource, timestamp);
+    if (revision == null) {
+      logger.severefmt("No revision found for %s, falling back to resource.", Key.create(resource));
+      return null;
+    }
+    return CommitLogMutation.createKey(revision, Key.create(resource));
+  }
+}
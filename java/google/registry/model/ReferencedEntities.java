@@ -0,0 +1,128 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import static google.registry.model.common.EntityGroupRoot.getCrossTldKey;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Key;
+import google.registry.model.domain.DomainBase;
+import google.registry.model.registrar.Registrar;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Entities referred to by resources that are being rendered, loaded in a single batch.
+ *
+ * <p>Rendering a domain for WHOIS or RDAP needs its contacts, its nameservers and often its
+ * sponsoring registrar, and loading those one at a time costs a sequential datastore round trip
+ * each. Instead, callers gather every key that they will need into a {@link Builder}, and
+ * {@link Builder#load} starts one asynchronous batch load for all of them. The load is only waited
+ * on when an entity is first looked up, so callers can do other work in the meantime.
+ *
+ * <p>The entities are in many different entity groups, so this must not be used inside a
+ * transaction.
+ */
+public final class ReferencedEntities {
+
+  private final Map<Key<Object>, Object> entities;
+
+  private ReferencedEntities(Map<Key<Object>, Object> entities) {
+    this.entities = entities;
+  }
+
+  /** Returns a builder to which the keys to load can be added. */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Returns the entity with the given key, or null if it doesn't exist or wasn't requested. */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(Key<T> key) {
+    return (T) entities.get(key);
+  }
+
+  /**
+   * Returns the entities with the given keys, in the iteration order of the keys, omitting any
+   * that don't exist or weren't requested.
+   */
+  public <T> ImmutableList<T> getAll(Iterable<Key<T>> keys) {
+    ImmutableList.Builder<T> builder = new ImmutableList.Builder<>();
+    for (Key<T> key : keys) {
+      T entity = get(key);
+      if (entity != null) {
+        builder.add(entity);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Waits for the load to finish and returns the loaded entities in a form that, unlike this
+   * instance, can be shared between threads, such as by caching it.
+   */
+  public ReferencedEntities loadNow() {
+    return new ReferencedEntities(ImmutableMap.copyOf(entities));
+  }
+
+  /** Returns the registrar with the given client id, or null if there is none. */
+  @Nullable
+  public Registrar getRegistrar(@Nullable String clientId) {
+    return (clientId == null) ? null : get(getRegistrarKey(clientId));
+  }
+
+  private static Key<Registrar> getRegistrarKey(String clientId) {
+    return Key.create(getCrossTldKey(), Registrar.class, clientId);
+  }
+
+  /** Builder for {@link ReferencedEntities}. */
+  public static final class Builder {
+
+    private final ImmutableSet.Builder<Key<?>> keys = new ImmutableSet.Builder<>();
+
+    private Builder() {}
+
+    /** Adds the keys of all the contacts and nameservers of a domain. */
+    public Builder addContactsAndNameservers(DomainBase domain) {
+      keys.addAll(domain.getReferencedContacts());
+      keys.addAll(domain.getNameservers());
+      return this;
+    }
+
+    /** Adds the key of the registrar with the given client id, if it isn't null. */
+    public Builder addRegistrar(@Nullable String clientId) {
+      if (clientId != null) {
+        keys.add(getRegistrarKey(clientId));
+      }
+      return this;
+    }
+
+    /** Returns the keys that have been added so far. */
+    public ImmutableSet<Key<?>> getKeys() {
+      return keys.build();
+    }
+
+    /** Starts loading all the keys that were added, in a single batch. */
+    @SuppressWarnings("unchecked")
+    public ReferencedEntities load() {
+      return new ReferencedEntities(
+          ofy().load().keys((Iterable<Key<Object>>) (Iterable<?>) keys.build()));
+    }
+  }
+}
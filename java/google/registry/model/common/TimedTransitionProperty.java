@@ -29,6 +29,7 @@ import com.google.common.collect.Ordering;
 import com.googlecode.objectify.mapper.Mapper;
 import google.registry.model.ImmutableObject;
 import google.registry.util.TypeUtils;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -265,9 +266,55 @@ public class TimedTransitionProperty<V, T extends TimedTransitionProperty.TimedT
         ImmutableSortedMap.of(START_OF_TIME, valueAtStartOfTime), timedTransitionSubclass);
   }
 
+  /**
+   * The transitions as parallel arrays of transition times in epoch millis and of the values they
+   * activate, so that lookups can binary search them without allocating.
+   */
+  private static final class CompiledTransitions {
+    final long[] transitionMillis;
+    final Object[] values;
+
+    CompiledTransitions(long[] transitionMillis, Object[] values) {
+      this.transitionMillis = transitionMillis;
+      this.values = values;
+    }
+  }
+
+  /** A value and the range of epoch millis, from inclusive to exclusive, in which it's active. */
+  private static final class Segment {
+    final long startMillis;
+    final long endMillis;
+    final Object value;
+
+    Segment(long startMillis, long endMillis, Object value) {
+      this.startMillis = startMillis;
+      this.endMillis = endMillis;
+      this.value = value;
+    }
+  }
+
   /** The backing map of DateTime to TimedTransition subclass used to store the transitions. */
   private final NavigableMap<DateTime, T> backingMap;
 
+  /**
+   * The backing map compiled into arrays, or null if it hasn't been compiled since it was last
+   * modified.
+   *
+   * <p>Only modifications made through {@link #put}, {@link #putAll}, {@link #remove} and
+   * {@link #clear} discard this; changes made through the {@link #entrySet}, {@link #keySet} or
+   * {@link #values} views aren't noticed.
+   */
+  @Nullable
+  private volatile CompiledTransitions compiledTransitions;
+
+  /**
+   * The segment containing the time of the last lookup. Almost all lookups are for the current
+   * time, which stays in the same segment until the next transition, so this answers them without
+   * a search.
+   */
+  @Nullable
+  private volatile Segment lastSegment;
+
   /** Returns a new {@code TimedTransitionProperty} backed by the provided map instance. */
   private TimedTransitionProperty(NavigableMap<DateTime, T> backingMap) {
     checkArgument(backingMap.get(START_OF_TIME) != null,
@@ -289,6 +336,69 @@ public class TimedTransitionProperty<V, T extends TimedTransitionProperty.TimedT
     return backingMap;
   }
 
+  // Objectify loads @Mapify fields by clearing and refilling the existing map, so the compiled
+  // transitions must be discarded whenever the backing map is modified. They are discarded after
+  // the modification, since a lookup made during it could otherwise cache the old transitions.
+
+  @Override
+  public T put(DateTime key, T value) {
+    try {
+      return super.put(key, value);
+    } finally {
+      invalidateCompiledTransitions();
+    }
+  }
+
+  @Override
+  public void putAll(Map<? extends DateTime, ? extends T> map) {
+    try {
+      super.putAll(map);
+    } finally {
+      invalidateCompiledTransitions();
+    }
+  }
+
+  @Override
+  public T remove(Object key) {
+    try {
+      return super.remove(key);
+    } finally {
+      invalidateCompiledTransitions();
+    }
+  }
+
+  @Override
+  public void clear() {
+    try {
+      super.clear();
+    } finally {
+      invalidateCompiledTransitions();
+    }
+  }
+
+  private void invalidateCompiledTransitions() {
+    compiledTransitions = null;
+    lastSegment = null;
+  }
+
+  private CompiledTransitions getCompiledTransitions() {
+    CompiledTransitions compiled = compiledTransitions;
+    if (compiled == null) {
+      checkState(!backingMap.isEmpty(), "Timed transition values cannot be empty");
+      long[] transitionMillis = new long[backingMap.size()];
+      Object[] values = new Object[backingMap.size()];
+      int i = 0;
+      for (Map.Entry<DateTime, T> entry : backingMap.entrySet()) {
+        transitionMillis[i] = entry.getKey().getMillis();
+        values[i] = entry.getValue().getValue();
+        i++;
+      }
+      compiled = new CompiledTransitions(transitionMillis, values);
+      compiledTransitions = compiled;
+    }
+    return compiled;
+  }
+
   /** Returns the map of DateTime to value that is the "natural" representation of this property. */
   public ImmutableSortedMap<DateTime, V> toValueMap() {
     return ImmutableSortedMap.copyOfSorted(Maps.transformValues(
@@ -304,10 +414,31 @@ public class TimedTransitionProperty<V, T extends TimedTransitionProperty.TimedT
    * Returns the value of the property that is active at the specified time.  The active value for
    * a time before START_OF_TIME is extrapolated to be the value that is active at START_OF_TIME.
    */
+  @SuppressWarnings("unchecked")
   public V getValueAtTime(DateTime time) {
-    // Retrieve the current value by finding the latest transition before or at the given time,
-    // where any given time earlier than START_OF_TIME is replaced by START_OF_TIME.
-    return backingMap.floorEntry(latestOf(START_OF_TIME, time)).getValue().getValue();
+    long millis = time.getMillis();
+    Segment segment = lastSegment;
+    if (segment == null || millis < segment.startMillis || millis >= segment.endMillis) {
+      segment = findSegment(millis);
+      lastSegment = segment;
+    }
+    return (V) segment.value;
+  }
+
+  /** Returns the segment containing the given time, by binary search of the transition times. */
+  private Segment findSegment(long millis) {
+    CompiledTransitions compiled = getCompiledTransitions();
+    long[] transitionMillis = compiled.transitionMillis;
+    int index = Arrays.binarySearch(transitionMillis, millis);
+    // If the time isn't a transition time, use the latest transition before it, where any time
+    // earlier than the first transition (i.e. START_OF_TIME) is extrapolated to that transition.
+    if (index < 0) {
+      index = Math.max(-index - 2, 0);
+    }
+    return new Segment(
+        (index == 0) ? Long.MIN_VALUE : transitionMillis[index],
+        (index == transitionMillis.length - 1) ? Long.MAX_VALUE : transitionMillis[index + 1],
+        compiled.values[index]);
   }
 
   /**
@@ -36,4 +36,8 @@ public class DomainRenewData implements ResponseData {
     instance.expirationDate = expirationDate;
     return instance;
   }
+
+  public DateTime getExpirationDate() {
+    return expirationDate;
+  }
 }
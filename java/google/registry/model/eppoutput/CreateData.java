@@ -63,6 +63,10 @@ public abstract class CreateData implements ResponseData {
       instance.expirationDate = expirationDate;
       return instance;
     }
+
+    public DateTime getExpirationDate() {
+      return expirationDate;
+    }
   }
 
   /** An acknowledgment message indicating that a host was created. */
@@ -35,6 +35,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.UncheckedExecutionException;
@@ -53,10 +54,13 @@ import google.registry.model.Buildable;
 import google.registry.model.ImmutableObject;
 import google.registry.model.annotations.VirtualEntity;
 import google.registry.model.registry.Registry;
+import google.registry.util.Concurrent;
+import google.registry.util.FormattingLogger;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import org.joda.money.Money;
 import org.joda.time.DateTime;
@@ -68,9 +72,14 @@ import org.joda.time.DateTime;
 @Cache(expirationSeconds = RECOMMENDED_MEMCACHE_EXPIRATION)
 public final class PremiumList extends BaseDomainLabelList<Money, PremiumList.PremiumListEntry> {
 
-  /** The number of premium list entry entities that are created and deleted per batch. */
+  private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
+
+  /** The number of premium list entry entities that are created and deleted per transaction. */
   private static final int TRANSACTION_BATCH_SIZE = 200;
 
+  /** The number of batches between log messages reporting progress. */
+  private static final int PROGRESS_LOG_INTERVAL = 20;
+
   /** Stores the revision key for the set of currently used premium list entry entities. */
   Key<PremiumListRevision> revisionKey;
 
@@ -260,22 +269,36 @@ public final class PremiumList extends BaseDomainLabelList<Money, PremiumList.Pr
    * old revision.
    */
   public PremiumList saveAndUpdateEntries() {
-    final Optional<PremiumList> oldPremiumList = get(name);
+    Optional<PremiumList> oldPremiumList = get(name);
+    PremiumList updated = saveAndSwapRevision(oldPremiumList);
+    // If needed and there are any, delete the entities under the old PremiumList.
+    if (oldPremiumList.isPresent()
+        && !Objects.equals(oldPremiumList.get().revisionKey, this.revisionKey)) {
+      deleteEntries(oldPremiumList.get().revisionKey);
+    }
+    return updated;
+  }
+
+  /**
+   * Persists a PremiumList object to Datastore, leaving the entries of the revision that it
+   * replaces in place so that they can be deleted later using {@link #deleteRevision}.
+   */
+  public PremiumList saveWithoutDeletingOldEntries() {
+    return saveAndSwapRevision(get(name));
+  }
+
+  /**
+   * Saves the new premium list entries, then points the PremiumList at them in one transaction.
+   *
+   * <p>The entries are saved in parallel batches of separate transactions, since nothing can see
+   * them until the PremiumList's revision key is switched over to their revision.
+   */
+  private PremiumList saveAndSwapRevision(final Optional<PremiumList> oldPremiumList) {
     // Only update entries if there's actually a new revision of the list to save (which there will
     // be if the list content changes, vs just the description/metadata).
-    boolean entriesToUpdate =
-        !oldPremiumList.isPresent()
-            || !Objects.equals(oldPremiumList.get().revisionKey, this.revisionKey);
-    // If needed, save the new child entities in a series of transactions.
-    if (entriesToUpdate) {
-      for (final List<PremiumListEntry> batch
-          : partition(premiumListMap.values(), TRANSACTION_BATCH_SIZE)) {
-        ofy().transactNew(new VoidWork() {
-          @Override
-          public void vrun() {
-            ofy().save().entities(batch);
-          }});
-      }
+    if (!oldPremiumList.isPresent()
+        || !Objects.equals(oldPremiumList.get().revisionKey, this.revisionKey)) {
+      saveEntries();
     }
     // Save the new PremiumList itself.
     PremiumList updated = ofy().transactNew(new Work<PremiumList>() {
@@ -298,13 +321,58 @@ public final class PremiumList extends BaseDomainLabelList<Money, PremiumList.Pr
         }});
     // Update the cache.
     PremiumList.cache.put(name, updated);
-    // If needed and there are any, delete the entities under the old PremiumList.
-    if (entriesToUpdate && oldPremiumList.isPresent()) {
-      oldPremiumList.get().deleteEntries();
-    }
     return updated;
   }
 
+  private void saveEntries() {
+    final int total = premiumListMap.size();
+    final List<List<PremiumListEntry>> batches =
+        ImmutableList.copyOf(partition(premiumListMap.values(), TRANSACTION_BATCH_SIZE));
+    final AtomicInteger batchesDone = new AtomicInteger();
+    final AtomicInteger entriesDone = new AtomicInteger();
+    Concurrent.transform(batches, new Function<List<PremiumListEntry>, Integer>() {
+      @Override
+      public Integer apply(final List<PremiumListEntry> batch) {
+        ofy().transactNew(new VoidWork() {
+          @Override
+          public void vrun() {
+            ofy().save().entities(batch);
+          }});
+        logProgress(
+            "Saved", batchesDone.incrementAndGet(), batches.size(),
+            entriesDone.addAndGet(batch.size()), total);
+        return batch.size();
+      }});
+  }
+
+  /**
+   * Deletes the entries of a premium list revision that has been replaced, in parallel batches of
+   * separate transactions.
+   *
+   * @throws IllegalArgumentException if it is still the current revision of its premium list
+   */
+  public static void deleteRevision(Key<PremiumListRevision> revisionKey) {
+    checkArgument(
+        !revisionKey.equals(loadCurrentRevisionKey(revisionKey.<PremiumList>getParent())),
+        "Refusing to delete the current revision of premium list %s",
+        revisionKey.getParent().getName());
+    deleteEntries(revisionKey);
+  }
+
+  /** Loads the revision key of a PremiumList without loading all of its entries. */
+  @Nullable
+  private static Key<PremiumListRevision> loadCurrentRevisionKey(Key<PremiumList> key) {
+    try {
+      // Use DatastoreService to bypass the @OnLoad method that loads the premium list entries.
+      Object revisionKey = getDatastoreService().get(key.getRaw()).getProperty("revisionKey");
+      return revisionKey == null
+          ? null
+          : Key.<PremiumListRevision>create((com.google.appengine.api.datastore.Key) revisionKey);
+    } catch (EntityNotFoundException e) {
+      return null;
+    }
+  }
+
   @Override
   public boolean refersToKey(Registry registry, Key<? extends BaseDomainLabelList<?, ?>> key) {
     return Objects.equals(registry.getPremiumList(), key);
@@ -317,22 +385,40 @@ public final class PremiumList extends BaseDomainLabelList<Money, PremiumList.Pr
       public void vrun() {
         ofy().delete().entity(PremiumList.this);
       }});
-    deleteEntries();
+    deleteEntries(revisionKey);
     cache.invalidate(name);
   }
 
-  private void deleteEntries() {
+  private static void deleteEntries(@Nullable Key<PremiumListRevision> revisionKey) {
     if (revisionKey == null) {
       return;
     }
-    for (final List<Key<PremiumListEntry>> batch : partition(
-        loadEntriesForCurrentRevision().keys(),
-        TRANSACTION_BATCH_SIZE)) {
-      ofy().transactNew(new VoidWork() {
-        @Override
-        public void vrun() {
-          ofy().delete().keys(batch);
-        }});
+    List<Key<PremiumListEntry>> keys =
+        ofy().load().type(PremiumListEntry.class).ancestor(revisionKey).keys().list();
+    final int total = keys.size();
+    final List<List<Key<PremiumListEntry>>> batches =
+        ImmutableList.copyOf(partition(keys, TRANSACTION_BATCH_SIZE));
+    final AtomicInteger batchesDone = new AtomicInteger();
+    final AtomicInteger entriesDone = new AtomicInteger();
+    Concurrent.transform(batches, new Function<List<Key<PremiumListEntry>>, Integer>() {
+      @Override
+      public Integer apply(final List<Key<PremiumListEntry>> batch) {
+        ofy().transactNew(new VoidWork() {
+          @Override
+          public void vrun() {
+            ofy().delete().keys(batch);
+          }});
+        logProgress(
+            "Deleted", batchesDone.incrementAndGet(), batches.size(),
+            entriesDone.addAndGet(batch.size()), total);
+        return batch.size();
+      }});
+  }
+
+  private static void logProgress(
+      String verb, int batchesDone, int batchCount, int entriesDone, int entryCount) {
+    if (batchesDone % PROGRESS_LOG_INTERVAL == 0 || batchesDone == batchCount) {
+      logger.infofmt("%s %d of %d premium list entries", verb, entriesDone, entryCount);
     }
   }
 
@@ -0,0 +1,241 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.smd;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.joda.time.DateTimeZone.UTC;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import javax.annotation.concurrent.Immutable;
+import org.joda.time.DateTime;
+
+/**
+ * Compact table of revoked SMD IDs and the times at which they were revoked.
+ *
+ * <p>SMD IDs always match {@code [0-9]+-[0-9]+}, so each one is packed four bits per character
+ * into a pair of longs, and the table is stored as three sorted parallel arrays of primitives that
+ * can be binary searched without allocating. This takes a small fraction of the heap of a map from
+ * strings to {@link DateTime}. IDs that are too long or contain other characters (which the TMCH
+ * never issues) are kept in an ordinary map instead.
+ */
+@Immutable
+final class PackedRevocations {
+
+  /** Number of characters packed into each long. */
+  private static final int CHARS_PER_LONG = 16;
+
+  /** Maximum length of an SMD ID that can be packed into a pair of longs. */
+  private static final int MAX_PACKED_LENGTH = 2 * CHARS_PER_LONG;
+
+  /** Nibble used for {@code '-'}; digits use 1 through 10, and 0 marks the end of the ID. */
+  private static final int DASH_NIBBLE = 11;
+
+  private final long[] highs;
+  private final long[] lows;
+  private final long[] revokedMillis;
+  private final ImmutableMap<String, Long> unpackable;
+
+  private PackedRevocations(
+      long[] highs, long[] lows, long[] revokedMillis, ImmutableMap<String, Long> unpackable) {
+    this.highs = highs;
+    this.lows = lows;
+    this.revokedMillis = revokedMillis;
+    this.unpackable = unpackable;
+  }
+
+  /** Returns {@code true} if the SMD ID was revoked at or before {@code nowMillis}. */
+  boolean isRevoked(String smdId, long nowMillis) {
+    if (!isPackable(smdId)) {
+      Long revoked = unpackable.get(smdId);
+      return revoked != null && revoked <= nowMillis;
+    }
+    long high = pack(smdId, 0);
+    long low = pack(smdId, CHARS_PER_LONG);
+    int index = indexOf(high, low);
+    return index >= 0 && revokedMillis[index] <= nowMillis;
+  }
+
+  /** Returns the number of revoked SMD IDs. */
+  int size() {
+    return highs.length + unpackable.size();
+  }
+
+  /** Expands the table back into a map from SMD IDs to revocation times. */
+  ImmutableMap<String, DateTime> toMap() {
+    ImmutableMap.Builder<String, DateTime> builder = new ImmutableMap.Builder<>();
+    for (int i = 0; i < highs.length; i++) {
+      builder.put(unpack(highs[i], lows[i]), new DateTime(revokedMillis[i], UTC));
+    }
+    for (Entry<String, Long> entry : unpackable.entrySet()) {
+      builder.put(entry.getKey(), new DateTime(entry.getValue(), UTC));
+    }
+    return builder.build();
+  }
+
+  private int indexOf(long high, long low) {
+    int min = 0;
+    int max = highs.length - 1;
+    while (min <= max) {
+      int mid = (min + max) >>> 1;
+      int comparison = compare(highs[mid], lows[mid], high, low);
+      if (comparison < 0) {
+        min = mid + 1;
+      } else if (comparison > 0) {
+        max = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private static int compare(long high1, long low1, long high2, long low2) {
+    int comparison = Long.compare(high1, high2);
+    return comparison != 0 ? comparison : Long.compare(low1, low2);
+  }
+
+  private static boolean isPackable(String smdId) {
+    int length = smdId.length();
+    if (length == 0 || length > MAX_PACKED_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = smdId.charAt(i);
+      if ((c < '0' || c > '9') && c != '-') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Packs the {@value #CHARS_PER_LONG} characters starting at {@code start}, zero-padded. */
+  private static long pack(String smdId, int start) {
+    long packed = 0;
+    for (int i = start; i < start + CHARS_PER_LONG; i++) {
+      packed <<= 4;
+      if (i < smdId.length()) {
+        char c = smdId.charAt(i);
+        packed |= (c == '-') ? DASH_NIBBLE : c - '0' + 1;
+      }
+    }
+    return packed;
+  }
+
+  private static String unpack(long high, long low) {
+    StringBuilder smdId = new StringBuilder(MAX_PACKED_LENGTH);
+    for (long packed : new long[] {high, low}) {
+      for (int shift = 4 * (CHARS_PER_LONG - 1); shift >= 0; shift -= 4) {
+        int nibble = (int) (packed >>> shift) & 0xF;
+        if (nibble == 0) {
+          return smdId.toString();
+        }
+        smdId.append(nibble == DASH_NIBBLE ? '-' : (char) ('0' + nibble - 1));
+      }
+    }
+    return smdId.toString();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof PackedRevocations)) {
+      return false;
+    }
+    PackedRevocations that = (PackedRevocations) other;
+    return Arrays.equals(highs, that.highs)
+        && Arrays.equals(lows, that.lows)
+        && Arrays.equals(revokedMillis, that.revokedMillis)
+        && unpackable.equals(that.unpackable);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        Arrays.hashCode(highs), Arrays.hashCode(lows), Arrays.hashCode(revokedMillis), unpackable);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("PackedRevocations (%d revoked SMD IDs)", size());
+  }
+
+  /** Builder for {@link PackedRevocations}, which may be given the SMD IDs in any order. */
+  static final class Builder {
+
+    private long[] highs = new long[16];
+    private long[] lows = new long[16];
+    private long[] revokedMillis = new long[16];
+    private int size;
+    private final ImmutableMap.Builder<String, Long> unpackable = new ImmutableMap.Builder<>();
+
+    Builder put(String smdId, DateTime revoked) {
+      checkNotNull(smdId, "smdId");
+      checkNotNull(revoked, "revoked");
+      if (!isPackable(smdId)) {
+        unpackable.put(smdId, revoked.getMillis());
+        return this;
+      }
+      if (size == highs.length) {
+        highs = Arrays.copyOf(highs, size * 2);
+        lows = Arrays.copyOf(lows, size * 2);
+        revokedMillis = Arrays.copyOf(revokedMillis, size * 2);
+      }
+      highs[size] = pack(smdId, 0);
+      lows[size] = pack(smdId, CHARS_PER_LONG);
+      revokedMillis[size] = revoked.getMillis();
+      size++;
+      return this;
+    }
+
+    Builder putAll(Map<String, DateTime> revokes) {
+      for (Entry<String, DateTime> entry : revokes.entrySet()) {
+        put(entry.getKey(), entry.getValue());
+      }
+      return this;
+    }
+
+    PackedRevocations build() {
+      // Sort a permutation rather than the arrays themselves, which have to move in lockstep.
+      Integer[] order = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          return PackedRevocations.compare(highs[a], lows[a], highs[b], lows[b]);
+        }});
+      long[] sortedHighs = new long[size];
+      long[] sortedLows = new long[size];
+      long[] sortedRevokedMillis = new long[size];
+      for (int i = 0; i < size; i++) {
+        sortedHighs[i] = highs[order[i]];
+        sortedLows[i] = lows[order[i]];
+        sortedRevokedMillis[i] = revokedMillis[order[i]];
+        if (i > 0
+            && compare(sortedHighs[i - 1], sortedLows[i - 1], sortedHighs[i], sortedLows[i])
+                == 0) {
+          throw new IllegalArgumentException(
+              "Duplicate SMD ID: " + unpack(sortedHighs[i], sortedLows[i]));
+        }
+      }
+      return new PackedRevocations(sortedHighs, sortedLows, sortedRevokedMillis, unpackable.build());
+    }
+  }
+}
@@ -22,7 +22,6 @@ import static google.registry.model.ofy.ObjectifyService.allocateId;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.CacheUtils.memoizeWithShortExpiration;
 import static google.registry.util.DateTimeUtils.START_OF_TIME;
-import static google.registry.util.DateTimeUtils.isBeforeOrAt;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
@@ -79,10 +78,14 @@ public class SignedMarkRevocationList extends ImmutableObject {
   /** Time when this list was last updated, as specified in the first line of the CSV file. */
   DateTime creationTime;
 
-  /** A map from SMD IDs to revocation time. */
+  /** A map from SMD IDs to revocation time, which is only populated on shards. */
   @EmbedMap
   Map</*@MatchesPattern("[0-9]+-[0-9]+")*/ String, DateTime> revokes;
 
+  /** The revocations in compact form, which is all that the combined list holds in memory. */
+  @Ignore
+  PackedRevocations packedRevokes;
+
   /** Indicates that this is a shard rather than a "full" list. */
   @Ignore
   boolean isShard;
@@ -107,7 +110,7 @@ public class SignedMarkRevocationList extends ImmutableObject {
                   isEmpty(shards)
                       ? START_OF_TIME
                       : checkNotNull(Iterables.get(shards, 0).creationTime, "creationTime");
-              ImmutableMap.Builder<String, DateTime> revokes = new ImmutableMap.Builder<>();
+              PackedRevocations.Builder revokes = new PackedRevocations.Builder();
               for (SignedMarkRevocationList shard : shards) {
                 revokes.putAll(shard.revokes);
                 checkState(
@@ -126,19 +129,26 @@ public class SignedMarkRevocationList extends ImmutableObject {
   /** Create a new {@link SignedMarkRevocationList} without saving it. */
   public static SignedMarkRevocationList create(
       DateTime creationTime, ImmutableMap<String, DateTime> revokes) {
+    return create(
+        creationTime,
+        new PackedRevocations.Builder().putAll(checkNotNull(revokes, "revokes")).build());
+  }
+
+  private static SignedMarkRevocationList create(
+      DateTime creationTime, PackedRevocations packedRevokes) {
     SignedMarkRevocationList instance = new SignedMarkRevocationList();
     instance.creationTime = checkNotNull(creationTime, "creationTime");
-    instance.revokes = checkNotNull(revokes, "revokes");
+    instance.packedRevokes = packedRevokes;
     return instance;
   }
 
-  /** Returns {@code true} if the SMD ID has been revoked at the given point in time. */
+  /**
+   * Returns {@code true} if the SMD ID has been revoked at the given point in time.
+   *
+   * <p>This doesn't allocate, since it's called for every sunrise application and create.
+   */
   public boolean isSmdRevoked(String smdId, DateTime now) {
-    DateTime revoked = revokes.get(checkNotNull(smdId, "smdId"));
-    if (revoked == null) {
-      return false;
-    }
-    return isBeforeOrAt(revoked, now);
+    return packedRevokes.isRevoked(checkNotNull(smdId, "smdId"), now.getMillis());
   }
 
   /** Returns the creation timestamp specified at the top of the SMDRL CSV file. */
@@ -148,7 +158,7 @@ public class SignedMarkRevocationList extends ImmutableObject {
 
   /** Returns the number of revocations. */
   public int size() {
-    return revokes.size();
+    return packedRevokes.size();
   }
 
   /** Save this list to the datastore in sharded form. Returns {@code this}. */
@@ -162,11 +172,13 @@ public class SignedMarkRevocationList extends ImmutableObject {
             .ancestor(getCrossTldKey())
             .keys());
         ofy().saveWithoutBackup().entities(FluentIterable
-            .from(CollectionUtils.partitionMap(revokes, SHARD_SIZE))
+            .from(CollectionUtils.partitionMap(packedRevokes.toMap(), SHARD_SIZE))
             .transform(new Function<ImmutableMap<String, DateTime>, SignedMarkRevocationList>() {
               @Override
               public SignedMarkRevocationList apply(ImmutableMap<String, DateTime> shardRevokes) {
-                SignedMarkRevocationList shard = create(creationTime, shardRevokes);
+                SignedMarkRevocationList shard = new SignedMarkRevocationList();
+                shard.creationTime = creationTime;
+                shard.revokes = shardRevokes;
                 shard.id = allocateId();
                 shard.isShard = true;  // Avoid the exception in disallowUnshardedSaves().
                 return shard;
@@ -23,6 +23,8 @@ import google.registry.groups.GroupsModule;
 import google.registry.groups.GroupssettingsModule;
 import google.registry.keyring.api.DummyKeyringModule;
 import google.registry.keyring.api.KeyModule;
+import google.registry.monitoring.metrics.MetricReporter;
+import google.registry.monitoring.whitebox.StackdriverModule;
 import google.registry.request.Modules.AppIdentityCredentialModule;
 import google.registry.request.Modules.DatastoreServiceModule;
 import google.registry.request.Modules.GoogleCredentialModule;
@@ -52,6 +54,7 @@ import javax.inject.Singleton;
         Jackson2Module.class,
         KeyModule.class,
         ModulesServiceModule.class,
+        StackdriverModule.class,
         UrlFetchTransportModule.class,
         UseAppIdentityCredentialForGoogleApisModule.class,
         SystemClockModule.class,
@@ -59,4 +62,5 @@ import javax.inject.Singleton;
     })
 interface ToolsComponent {
   ToolsRequestComponent startRequest(RequestModule requestModule);
+  MetricReporter metricReporter();
 }
@@ -15,11 +15,20 @@
 package google.registry.monitoring.metrics;
 
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -31,42 +40,85 @@ import java.util.logging.Logger;
 /**
  * Background service to asynchronously push bundles of {@link MetricPoint} instances to a {@link
  * MetricWriter}.
+ *
+ * <p>If the writer fails, the points are kept in a bounded backlog and retried with exponential
+ * backoff. Meanwhile newer bundles keep being taken from the queue, and a newer point for a time
+ * series replaces any older one in the backlog, since only the latest value of each time series is
+ * worth writing late; the whole backlog is then written in one go, filling the writer's requests to
+ * the backend. When the backlog is full the oldest points are dropped, so that the exporter never
+ * falls arbitrarily far behind the {@link MetricReporter}.
  */
 class MetricExporter extends AbstractExecutionThreadService {
 
   private static final Logger logger = Logger.getLogger(MetricReporter.class.getName());
 
+  /** Default number of points to hold while the writer is failing. */
+  private static final int DEFAULT_MAX_BACKLOG = 100000;
+
+  /** Delay before the first retry after a failed export, doubled after each further failure. */
+  @VisibleForTesting static final long INITIAL_BACKOFF_NANOS = SECONDS.toNanos(1);
+
+  /** Longest delay between retries of a failing export. */
+  @VisibleForTesting static final long MAX_BACKOFF_NANOS = MINUTES.toNanos(5);
+
   private final BlockingQueue<Optional<ImmutableList<MetricPoint<?>>>> writeQueue;
   private final MetricWriter writer;
   private final ThreadFactory threadFactory;
+  private final int maxBacklog;
+  private final Ticker ticker;
+
+  /** Points taken from the queue that haven't been written yet, oldest first. */
+  private ImmutableList<MetricPoint<?>> backlog = ImmutableList.of();
+
+  /** Current retry delay, or zero if the last export succeeded. */
+  private long backoffNanos = 0;
+
+  /** {@link Ticker} reading after which the backlog may be exported again. */
+  private long nextExportNanos;
 
   MetricExporter(
       BlockingQueue<Optional<ImmutableList<MetricPoint<?>>>> writeQueue,
       MetricWriter writer,
       ThreadFactory threadFactory) {
+    this(writeQueue, writer, threadFactory, DEFAULT_MAX_BACKLOG, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  MetricExporter(
+      BlockingQueue<Optional<ImmutableList<MetricPoint<?>>>> writeQueue,
+      MetricWriter writer,
+      ThreadFactory threadFactory,
+      int maxBacklog,
+      Ticker ticker) {
     this.writeQueue = writeQueue;
     this.writer = writer;
     this.threadFactory = threadFactory;
+    this.maxBacklog = maxBacklog;
+    this.ticker = ticker;
   }
 
   @Override
   protected void run() throws Exception {
     logger.info("Started up MetricExporter");
     while (isRunning()) {
-      Optional<ImmutableList<MetricPoint<?>>> batch = writeQueue.take();
-      logger.info("Got a batch of points from the writeQueue");
-      if (batch.isPresent()) {
-        logger.info("Batch contains data, writing to MetricWriter");
-        try {
-          for (MetricPoint<?> point : batch.get()) {
-            writer.write(point);
-          }
-          writer.flush();
-        } catch (IOException exception) {
-          logger.log(
-              Level.SEVERE, "Threw an exception while writing or flushing metrics", exception);
-        }
-      } else {
+      // The backlog is only left over after a failed export, in which case wait no longer than
+      // the backoff for more points before retrying.
+      Optional<ImmutableList<MetricPoint<?>>> batch =
+          backlog.isEmpty()
+              ? writeQueue.take()
+              : writeQueue.poll(nextExportNanos - ticker.read(), NANOSECONDS);
+      MetricMetrics.exportQueueDepth.set((long) writeQueue.size());
+      boolean stopping = batch != null && !batch.isPresent();
+      if (batch != null && batch.isPresent()) {
+        logger.info("Got a batch of points from the writeQueue");
+        addToBacklog(batch.get());
+      }
+      if (stopping || !isBackingOff()) {
+        logger.info("Writing backlog of points to MetricWriter");
+        export();
+      }
+      MetricMetrics.exportBacklog.set((long) backlog.size());
+      if (stopping) {
         logger.info("Received a poison pill, stopping now");
         // An absent optional indicates that the Reporter wants this service to shut down.
         return;
@@ -74,6 +126,66 @@ class MetricExporter extends AbstractExecutionThreadService {
     }
   }
 
+  private boolean isBackingOff() {
+    return backoffNanos > 0 && ticker.read() - nextExportNanos < 0;
+  }
+
+  /**
+   * Appends a batch of points to the backlog, replacing older points of the same time series, and
+   * then drops the oldest points if the backlog has grown too big.
+   */
+  private void addToBacklog(ImmutableList<MetricPoint<?>> batch) {
+    if (backlog.isEmpty()) {
+      backlog = batch;
+    } else {
+      Set<List<Object>> replaced = new HashSet<>();
+      for (MetricPoint<?> point : batch) {
+        replaced.add(timeSeriesOf(point));
+      }
+      ImmutableList.Builder<MetricPoint<?>> merged = new ImmutableList.Builder<>();
+      for (MetricPoint<?> point : backlog) {
+        if (!replaced.contains(timeSeriesOf(point))) {
+          merged.add(point);
+        }
+      }
+      backlog = merged.addAll(batch).build();
+    }
+    if (backlog.size() > maxBacklog) {
+      int dropped = backlog.size() - maxBacklog;
+      logger.warning(String.format("Backlog full, dropped the %d oldest points", dropped));
+      MetricMetrics.droppedPoints.incrementBy(dropped, "backlog_full");
+      backlog = backlog.subList(dropped, backlog.size());
+    }
+  }
+
+  private static List<Object> timeSeriesOf(MetricPoint<?> point) {
+    return Arrays.<Object>asList(point.metric(), point.labelValues());
+  }
+
+  /** Writes and flushes the backlog, backing off further if that fails. */
+  private void export() {
+    long start = ticker.read();
+    try {
+      for (MetricPoint<?> point : backlog) {
+        writer.write(point);
+      }
+      writer.flush();
+      backlog = ImmutableList.of();
+      backoffNanos = 0;
+      MetricMetrics.exportLatency.record(NANOSECONDS.toMillis(ticker.read() - start));
+    } catch (IOException exception) {
+      backoffNanos =
+          backoffNanos == 0 ? INITIAL_BACKOFF_NANOS : Math.min(2 * backoffNanos, MAX_BACKOFF_NANOS);
+      nextExportNanos = ticker.read() + backoffNanos;
+      logger.log(
+          Level.SEVERE,
+          String.format(
+              "Threw an exception while writing or flushing metrics, retrying in %d ms",
+              NANOSECONDS.toMillis(backoffNanos)),
+          exception);
+    }
+  }
+
   @Override
   protected Executor executor() {
     final ExecutorService executor = Executors.newSingleThreadExecutor(threadFactory);
@@ -48,6 +48,48 @@ final class MetricMetrics {
               "Points Pushed",
               LABELS);
 
+  /**
+   * A counter representing the total number of points dropped before they could be exported, with
+   * the reason they were dropped as a label.
+   */
+  static final IncrementableMetric droppedPoints =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/metrics/export/points_dropped",
+              "Count of points dropped because the exporter couldn't keep up.",
+              "Points Dropped",
+              ImmutableSet.of(LabelDescriptor.create("reason", "Reason Dropped")));
+
+  /** A gauge representing the number of push intervals waiting to be taken by the exporter. */
+  static final SettableMetric<Long> exportQueueDepth =
+      MetricRegistryImpl.getDefault()
+          .newSettableMetric(
+              "/metrics/export/queue_depth",
+              "Count of push intervals waiting to be exported.",
+              "Queue Depth",
+              ImmutableSet.<LabelDescriptor>of(),
+              Long.class);
+
+  /** A gauge representing the number of points taken by the exporter but not yet written. */
+  static final SettableMetric<Long> exportBacklog =
+      MetricRegistryImpl.getDefault()
+          .newSettableMetric(
+              "/metrics/export/backlog",
+              "Count of points waiting to be written by the exporter.",
+              "Backlog",
+              ImmutableSet.<LabelDescriptor>of(),
+              Long.class);
+
+  /** A distribution of the time taken to write and flush each export, in milliseconds. */
+  static final EventMetric exportLatency =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/metrics/export/latency",
+              "Time taken to write and flush exported points.",
+              "Latency (ms)",
+              ImmutableSet.<LabelDescriptor>of(),
+              EventMetric.DEFAULT_FITTER);
+
   /** A gauge representing a snapshot of the number of active timeseries being reported. */
   @SuppressWarnings("unused")
   private static final Metric<Long> timeseriesCount =
@@ -108,9 +108,7 @@ public class MetricReporter extends AbstractScheduledService {
           metric.getMetricSchema().kind().name(), metric.getValueClass().toString());
     }
 
-    if (!writeQueue.offer(Optional.of(points.build()))) {
-      logger.severe("writeQueue full, dropped a reporting interval of points");
-    }
+    enqueue(Optional.of(points.build()));
 
     MetricMetrics.pushIntervals.increment();
   }
@@ -122,7 +120,7 @@ public class MetricReporter extends AbstractScheduledService {
     runOneIteration();
 
     // Offer a poision pill to inform the exporter to stop.
-    writeQueue.offer(Optional.<ImmutableList<MetricPoint<?>>>absent());
+    enqueue(Optional.<ImmutableList<MetricPoint<?>>>absent());
     try {
       metricExporter.awaitTerminated(10, TimeUnit.SECONDS);
       logger.info("Shut down MetricExporter");
@@ -136,6 +134,27 @@ public class MetricReporter extends AbstractScheduledService {
     }
   }
 
+  /**
+   * Offers a batch to the exporter without blocking, dropping the oldest queued batch to make room
+   * if the queue is full, since newer points supersede older ones anyway.
+   */
+  private void enqueue(Optional<ImmutableList<MetricPoint<?>>> batch) {
+    if (writeQueue.offer(batch)) {
+      return;
+    }
+    Optional<ImmutableList<MetricPoint<?>>> oldest = writeQueue.poll();
+    if (oldest != null && oldest.isPresent()) {
+      logger.severe("writeQueue full, dropped the oldest reporting interval of points");
+      MetricMetrics.droppedPoints.incrementBy(oldest.get().size(), "queue_full");
+    }
+    if (!writeQueue.offer(batch)) {
+      logger.severe("writeQueue full, dropped a reporting interval of points");
+      if (batch.isPresent()) {
+        MetricMetrics.droppedPoints.incrementBy(batch.get().size(), "queue_full");
+      }
+    }
+  }
+
   @Override
   protected void startUp() {
     startMetricExporter();
@@ -18,6 +18,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.googlecode.objectify.Key.getKind;
 import static google.registry.model.EppResourceUtils.isActive;
+import static google.registry.model.ofy.CommitLogBucket.getAllBucketKeys;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.request.Action.Method.POST;
 import static google.registry.util.DateTimeUtils.END_OF_TIME;
@@ -33,12 +34,14 @@ import com.google.appengine.tools.mapreduce.Input;
 import com.google.appengine.tools.mapreduce.Mapper;
 import com.google.appengine.tools.mapreduce.Reducer;
 import com.google.appengine.tools.mapreduce.ReducerInput;
-import com.google.appengine.tools.mapreduce.inputs.DatastoreKeyInput;
+import com.google.appengine.tools.mapreduce.inputs.DatastoreInput;
+import com.google.appengine.tools.mapreduce.inputs.InMemoryInput;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
-import com.google.common.collect.FluentIterable;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Iterables;
 import com.googlecode.objectify.Key;
 import google.registry.mapreduce.MapreduceRunner;
 import google.registry.mapreduce.inputs.EppResourceInputs;
@@ -56,13 +59,18 @@ import google.registry.model.index.ForeignKeyIndex;
 import google.registry.model.index.ForeignKeyIndex.ForeignKeyContactIndex;
 import google.registry.model.index.ForeignKeyIndex.ForeignKeyDomainIndex;
 import google.registry.model.index.ForeignKeyIndex.ForeignKeyHostIndex;
-import google.registry.model.transfer.TransferData.TransferServerApproveEntity;
+import google.registry.model.ofy.CommitLogBucket;
+import google.registry.model.ofy.CommitLogManifest;
+import google.registry.model.ofy.CommitLogMutation;
 import google.registry.request.Action;
+import google.registry.request.Parameter;
 import google.registry.request.Response;
+import google.registry.util.Concurrent;
 import google.registry.util.FormattingLogger;
 import google.registry.util.NonFinalForTesting;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -87,6 +95,11 @@ import org.joda.time.DateTime;
  *       {@link DomainApplicationIndex} that links to all of them, and has a matching
  *       fullyQualifiedDomainName.
  * </ul>
+ *
+ * <p>By default every entity is scanned.  If the {@value #CHANGED_SINCE_PARAM} parameter is given,
+ * only the entities affected by transactions committed after that time are verified, as found by
+ * reading the {@link CommitLogManifest} entities written since then.  This finishes in minutes
+ * rather than hours, and so can be run frequently between full scans.
  */
 @Action(path = "/_dr/task/verifyEntityIntegrity", method = POST)
 public class VerifyEntityIntegrityAction implements Runnable {
@@ -115,21 +128,58 @@ public class VerifyEntityIntegrityAction implements Runnable {
   static final String KIND_HOST_RESOURCE = getKind(HostResource.class);
   static final String KIND_HOST_INDEX = getKind(ForeignKeyHostIndex.class);
 
+  /**
+   * Kinds whose changes are picked up from commit logs in incremental mode.  Any change that could
+   * break an invariant checked here saves or deletes at least one entity of these kinds.
+   */
+  private static final ImmutableSet<String> INCREMENTAL_KINDS =
+      ImmutableSet.of(
+          KIND_CONTACT_RESOURCE,
+          KIND_CONTACT_INDEX,
+          KIND_DOMAIN_APPLICATION_INDEX,
+          KIND_DOMAIN_BASE_RESOURCE,
+          KIND_DOMAIN_INDEX,
+          KIND_EPPRESOURCE_INDEX,
+          KIND_HOST_RESOURCE,
+          KIND_HOST_INDEX);
+
+  static final String CHANGED_SINCE_PARAM = "changedSince";
+
   @Inject MapreduceRunner mrRunner;
   @Inject Response response;
+  @Inject @Parameter(CHANGED_SINCE_PARAM) Optional<DateTime> changedSince;
   @Inject VerifyEntityIntegrityAction() {}
 
   @Override
   public void run() {
     DateTime scanTime = DateTime.now(UTC);
+    ImmutableSet<Input<? extends Object>> inputs;
+    String jobName;
+    if (changedSince.isPresent()) {
+      ImmutableSet<Key<?>> keys = getKeysToVerify(changedSince.get(), scanTime);
+      if (keys.isEmpty()) {
+        String message = String.format(
+            "No entities to verify changed between %s and %s", changedSince.get(), scanTime);
+        logger.info(message);
+        response.setPayload(message);
+        return;
+      }
+      logger.infofmt(
+          "Verifying %d entities affected by changes since %s", keys.size(), changedSince.get());
+      inputs = ImmutableSet.<Input<? extends Object>>of(createInMemoryInput(keys));
+      jobName = "Verify entity integrity of changes since " + changedSince.get();
+    } else {
+      inputs = getInputs();
+      jobName = "Verify entity integrity";
+    }
     response.sendJavaScriptRedirect(createJobPath(mrRunner
-        .setJobName("Verify entity integrity")
+        .setJobName(jobName)
         .setModuleName("backend")
         .setDefaultReduceShards(NUM_SHARDS)
         .runMapreduce(
             new VerifyEntityIntegrityMapper(scanTime),
             new VerifyEntityIntegrityReducer(scanTime),
-            getInputs())));
+            inputs)));
   }
 
   private static ImmutableSet<Input<? extends Object>> getInputs() {
@@ -137,11 +187,155 @@ public class VerifyEntityIntegrityAction implements Runnable {
         new ImmutableSet.Builder<Input<? extends Object>>()
             .add(EppResourceInputs.createIndexInput());
     for (Class<?> clazz : RESOURCE_CLASSES) {
-      builder.add(new DatastoreKeyInput(getKind(clazz), NUM_SHARDS));
+      // Read whole entities rather than keys, so that the mapper doesn't have to load each one.
+      builder.add(new DatastoreInput(getKind(clazz), NUM_SHARDS));
     }
     return builder.build();
   }
 
+  /** Spreads the raw datastore keys of the given entities evenly over up to NUM_SHARDS shards. */
+  private static Input<Object> createInMemoryInput(ImmutableSet<Key<?>> keys) {
+    int shardSize = (keys.size() + NUM_SHARDS - 1) / NUM_SHARDS;
+    ImmutableList.Builder<List<Object>> shards = new ImmutableList.Builder<>();
+    for (List<Key<?>> shard : Iterables.partition(keys, shardSize)) {
+      ImmutableList.Builder<Object> rawKeys = new ImmutableList.Builder<>();
+      for (Key<?> key : shard) {
+        rawKeys.add(key.getRaw());
+      }
+      shards.add(rawKeys.build());
+    }
+    return new InMemoryInput<>(shards.build());
+  }
+
+  /**
+   * Returns the keys of all existing entities that must be verified to check the invariants that
+   * could have been broken by transactions committed in the range (changedSince, scanTime].
+   *
+   * <p>The mapreduce only checks the foreign key and EPP resource index invariants over the groups
+   * of keys it is given, so verifying a changed entity on its own would report spurious errors.
+   * Each changed entity is therefore expanded to its whole group: every resource brings along its
+   * {@link EppResourceIndex} and the index for its foreign key, and every foreign key index brings
+   * along the resources it points to.  A group can also contain unchanged resources that no index
+   * points to (e.g. old deleted contacts with the same contact ID); those aren't included, which is
+   * fine because they can only break an invariant by changing, at which point they're included.
+   */
+  @VisibleForTesting
+  static ImmutableSet<Key<?>> getKeysToVerify(DateTime changedSince, DateTime scanTime) {
+    ImmutableSet<Key<?>> changedKeys = loadChangedKeys(changedSince, scanTime);
+    Set<Key<?>> resourceKeys = new HashSet<>();
+    Set<Key<?>> indexKeys = new HashSet<>();
+    for (Key<?> key : changedKeys) {
+      String kind = key.getKind();
+      if (kind.equals(KIND_EPPRESOURCE_INDEX)) {
+        // EppResourceIndex ids are the web-safe key strings of the resources they point to.
+        resourceKeys.add(Key.create(key.getName()));
+      } else if (isResourceKind(kind)) {
+        resourceKeys.add(key);
+      } else {
+        indexKeys.add(key);
+      }
+    }
+    for (Object resource : loadAll(resourceKeys).values()) {
+      indexKeys.add(resource instanceof DomainApplication
+          ? DomainApplicationIndex.createKey((DomainApplication) resource)
+          : ForeignKeyIndex.createKey((EppResource) resource));
+    }
+    Set<Key<?>> candidates = new HashSet<>(resourceKeys);
+    for (Map.Entry<Key<?>, Object> entry : loadAll(indexKeys).entrySet()) {
+      candidates.add(entry.getKey());
+      Object index = entry.getValue();
+      if (index instanceof ForeignKeyIndex<?>) {
+        candidates.add(((ForeignKeyIndex<?>) index).getResourceKey());
+      } else {
+        candidates.addAll(((DomainApplicationIndex) index).getKeys());
+      }
+    }
+    for (Key<?> key : ImmutableList.copyOf(candidates)) {
+      if (isResourceKind(key.getKind())) {
+        @SuppressWarnings("unchecked")
+        Key<EppResource> resourceKey = (Key<EppResource>) key;
+        candidates.add(Key.create(EppResourceIndex.create(resourceKey)));
+      }
+    }
+    // Only verify entities that exist; dangling references are reported by whatever refers to them.
+    return ImmutableSet.copyOf(loadAll(candidates).keySet());
+  }
+
+  /**
+   * Returns the keys of all entities of {@link #INCREMENTAL_KINDS} that were saved or deleted by
+   * transactions committed in the range (since, until].
+   *
+   * <p>Each bucket is read with two range queries, one for the manifests and one for all of their
+   * mutations, rather than with a query per manifest, and the buckets are read in parallel.
+   */
+  private static ImmutableSet<Key<?>> loadChangedKeys(DateTime since, DateTime until) {
+    // Since START_OF_TIME=0 is not a valid id in a key, add 1 to both bounds. Then instead of
+    // loading since < x <= until, we can load since <= x < until.
+    final DateTime lowerBound = since.plusMillis(1);
+    final DateTime upperBound = until.plusMillis(1);
+    ImmutableSet.Builder<Key<?>> changedKeys = new ImmutableSet.Builder<>();
+    for (ImmutableSet<Key<?>> bucketKeys : Concurrent.transform(
+        getAllBucketKeys(),
+        new Function<Key<CommitLogBucket>, ImmutableSet<Key<?>>>() {
+          @Override
+          public ImmutableSet<Key<?>> apply(Key<CommitLogBucket> bucketKey) {
+            return loadChangedKeysInBucket(bucketKey, lowerBound, upperBound);
+          }})) {
+      changedKeys.addAll(bucketKeys);
+    }
+    return changedKeys.build();
+  }
+
+  /**
+   * Returns the keys of all entities of {@link #INCREMENTAL_KINDS} that were saved or deleted by
+   * transactions in a bucket committed in the range [lowerBound, upperBound).
+   */
+  private static ImmutableSet<Key<?>> loadChangedKeysInBucket(
+      Key<CommitLogBucket> bucketKey, DateTime lowerBound, DateTime upperBound) {
+    Key<CommitLogManifest> lowerKey = CommitLogManifest.createKey(bucketKey, lowerBound);
+    Key<CommitLogManifest> upperKey = CommitLogManifest.createKey(bucketKey, upperBound);
+    ImmutableSet.Builder<Key<?>> changedKeys = new ImmutableSet.Builder<>();
+    for (CommitLogManifest manifest : ofy().load()
+        .type(CommitLogManifest.class)
+        .ancestor(bucketKey)
+        .filterKey(">=", lowerKey)
+        .filterKey("<", upperKey)) {
+      for (Key<?> key : manifest.getDeletions()) {
+        if (INCREMENTAL_KINDS.contains(key.getKind())) {
+          changedKeys.add(key);
+        }
+      }
+    }
+    // A mutation's key is its manifest's key with one more element, so it sorts between its
+    // manifest and the next one, and the same bounds select exactly the mutations of the manifests
+    // above. Mutations are keyed by the saved entity's key, so there's no need to load contents.
+    for (Key<CommitLogMutation> mutationKey : ofy().load()
+        .type(CommitLogMutation.class)
+        .ancestor(bucketKey)
+        .filterKey(">=", lowerKey)
+        .filterKey("<", upperKey)
+        .keys()) {
+      Key<?> key = Key.create(mutationKey.getName());
+      if (INCREMENTAL_KINDS.contains(key.getKind())) {
+        changedKeys.add(key);
+      }
+    }
+    return changedKeys.build();
+  }
+
+  private static boolean isResourceKind(String kind) {
+    return kind.equals(KIND_DOMAIN_BASE_RESOURCE)
+        || kind.equals(KIND_CONTACT_RESOURCE)
+        || kind.equals(KIND_HOST_RESOURCE);
+  }
+
+  /** Loads entities of any kinds in a single batch, omitting the ones that don't exist. */
+  @SuppressWarnings("unchecked")
+  private static Map<Key<?>, Object> loadAll(Iterable<? extends Key<?>> keys) {
+    return (Map<Key<?>, Object>) (Map<?, ?>)
+        ofy().load().keys((Iterable<Key<Object>>) (Iterable<?>) keys);
+  }
+
   /**
    * The mapreduce key that the mapper outputs.  Each {@link EppResource} has two different
    * mapreduce keys that are output for it: one for its specific type (domain, application, host, or
@@ -207,11 +401,14 @@ public class VerifyEntityIntegrityAction implements Runnable {
     @Override
     public final void map(Object keyOrEntity) {
       try {
-        // We use different inputs, some that return keys and some that return entities.  Load any
-        // keys that we get so we're dealing only with entities.
+        // We use different inputs, some that return keys, some that return raw entities, and some
+        // that return Objectify entities.  Convert them all so we're dealing only with the latter.
         if (keyOrEntity instanceof com.google.appengine.api.datastore.Key) {
           Key<?> key = Key.create((com.google.appengine.api.datastore.Key) keyOrEntity);
           keyOrEntity = ofy().load().key(key).now();
+        } else if (keyOrEntity instanceof com.google.appengine.api.datastore.Entity) {
+          keyOrEntity =
+              ofy().load().fromEntity((com.google.appengine.api.datastore.Entity) keyOrEntity);
         }
         mapEntity(keyOrEntity);
       } catch (Throwable e) {
@@ -239,25 +436,15 @@ public class VerifyEntityIntegrityAction implements Runnable {
       emit(MapperKey.create(EntityKind.EPP_RESOURCE, resource.getRepoId()), Key.create(resource));
       if (resource instanceof DomainBase) {
         DomainBase domainBase = (DomainBase) resource;
-        Key<?> key = Key.create(domainBase);
-        verifyExistence(key, domainBase.getReferencedContacts());
-        verifyExistence(key, domainBase.getNameservers());
-        verifyExistence(key, domainBase.getTransferData().getServerApproveAutorenewEvent());
-        verifyExistence(key, domainBase.getTransferData().getServerApproveAutorenewPollMessage());
-        verifyExistence(key, domainBase.getTransferData().getServerApproveBillingEvent());
-        verifyExistence(key, FluentIterable
-            .from(domainBase.getTransferData().getServerApproveEntities())
-            .transform(
-              new Function<Key<? extends TransferServerApproveEntity>,
-                  Key<TransferServerApproveEntity>>() {
-                @SuppressWarnings("unchecked")
-                @Override
-                public Key<TransferServerApproveEntity> apply(
-                    Key<? extends TransferServerApproveEntity> key) {
-                  return (Key<TransferServerApproveEntity>) key;
-                }})
-            .toSet());
+        ReferenceChecker references = new ReferenceChecker(Key.create(domainBase))
+            .addAll(domainBase.getReferencedContacts())
+            .addAll(domainBase.getNameservers())
+            .add(domainBase.getTransferData().getServerApproveAutorenewEvent())
+            .add(domainBase.getTransferData().getServerApproveAutorenewPollMessage())
+            .add(domainBase.getTransferData().getServerApproveBillingEvent())
+            .addAll(domainBase.getTransferData().getServerApproveEntities());
         if (domainBase instanceof DomainApplication) {
+          references.verify();
           getContext().incrementCounter("domain applications");
           DomainApplication application = (DomainApplication) domainBase;
           emit(
@@ -266,12 +453,15 @@ public class VerifyEntityIntegrityAction implements Runnable {
         } else if (domainBase instanceof DomainResource) {
           getContext().incrementCounter("domain resources");
           DomainResource domain = (DomainResource) domainBase;
-          verifyExistence(key, domain.getApplication());
-          verifyExistence(key, domain.getAutorenewBillingEvent());
+          references
+              .add(domain.getApplication())
+              .add(domain.getAutorenewBillingEvent());
           for (GracePeriod gracePeriod : domain.getGracePeriods()) {
-            verifyExistence(key, gracePeriod.getOneTimeBillingEvent());
-            verifyExistence(key, gracePeriod.getRecurringBillingEvent());
+            references
+                .add(gracePeriod.getOneTimeBillingEvent())
+                .add(gracePeriod.getRecurringBillingEvent());
           }
+          references.verify();
           emit(
               MapperKey.create(EntityKind.DOMAIN, domain.getFullyQualifiedDomainName()),
               Key.create(domain));
@@ -327,8 +517,13 @@ public class VerifyEntityIntegrityAction implements Runnable {
     private void mapDomainApplicationIndex(DomainApplicationIndex dai) {
       getContext().incrementCounter("domain application indexes");
       Key<DomainApplicationIndex> daiKey = Key.create(dai);
+      ReferenceChecker references = new ReferenceChecker(daiKey);
+      for (Key<DomainApplication> key : dai.getKeys()) {
+        references.add(key);
+      }
+      Map<Key<?>, Object> applications = references.verify();
       for (Key<DomainApplication> key : dai.getKeys()) {
-        DomainApplication application = verifyExistence(daiKey, key);
+        DomainApplication application = (DomainApplication) applications.get(key);
         if (application != null) {
           integrity().check(
               dai.getFullyQualifiedDomainName().equals(application.getFullyQualifiedDomainName()),
@@ -355,16 +550,6 @@ public class VerifyEntityIntegrityAction implements Runnable {
       getContext().incrementCounter("EPP resource indexes to " + eri.getKind());
     }
 
-    private <E> void verifyExistence(Key<?> source, Set<Key<E>> targets) {
-      Set<Key<E>> missingEntityKeys =
-          Sets.difference(targets, ofy().load().<E>keys(targets).keySet());
-      integrity().checkOneToMany(
-          missingEntityKeys.isEmpty(),
-          source,
-          targets,
-          "Target entity does not exist");
-    }
-
     @Nullable
     private <E> E verifyExistence(Key<?> source, @Nullable Key<E> target) {
       if (target == null) {
@@ -374,6 +559,56 @@ public class VerifyEntityIntegrityAction implements Runnable {
       integrity().check(entity != null, source, target, "Target entity does not exist");
       return entity;
     }
+
+    /**
+     * Collects the keys referenced by an entity so that they can all be checked for existence with
+     * a single batch load, rather than with a round trip to Datastore per reference.
+     */
+    private class ReferenceChecker {
+
+      private final Key<?> source;
+      private final List<Key<?>> targets = new ArrayList<>();
+      private final List<Set<? extends Key<?>>> targetSets = new ArrayList<>();
+
+      ReferenceChecker(Key<?> source) {
+        this.source = source;
+      }
+
+      /** Adds a single reference, which is reported individually if it doesn't exist. */
+      ReferenceChecker add(@Nullable Key<?> target) {
+        if (target != null) {
+          targets.add(target);
+        }
+        return this;
+      }
+
+      /** Adds a set of references, which is reported as a whole if any of them don't exist. */
+      ReferenceChecker addAll(Set<? extends Key<?>> targetSet) {
+        targetSets.add(targetSet);
+        return this;
+      }
+
+      /** Loads all of the references, reports any that don't exist, and returns the rest. */
+      Map<Key<?>, Object> verify() {
+        Set<Key<?>> allTargets = new HashSet<>(targets);
+        for (Set<? extends Key<?>> targetSet : targetSets) {
+          allTargets.addAll(targetSet);
+        }
+        Map<Key<?>, Object> entities = loadAll(allTargets);
+        for (Key<?> target : targets) {
+          integrity().check(
+              entities.containsKey(target), source, target, "Target entity does not exist");
+        }
+        for (Set<? extends Key<?>> targetSet : targetSets) {
+          integrity().checkOneToMany(
+              entities.keySet().containsAll(targetSet),
+              source,
+              targetSet,
+              "Target entity does not exist");
+        }
+        return entities;
+      }
+    }
   }
 
   /** Reducer that checks integrity of foreign key entities. */
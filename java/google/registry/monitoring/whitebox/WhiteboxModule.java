@@ -14,10 +14,12 @@
 
 package google.registry.monitoring.whitebox;
 
+import static google.registry.request.RequestParameters.extractOptionalDatetimeParameter;
 import static google.registry.request.RequestParameters.extractRequiredParameter;
 
 import com.google.api.services.bigquery.model.TableFieldSchema;
 import com.google.apphosting.api.ApiProxy;
+import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import dagger.Module;
@@ -29,6 +31,7 @@ import google.registry.util.Clock;
 import java.util.UUID;
 import javax.inject.Named;
 import javax.servlet.http.HttpServletRequest;
+import org.joda.time.DateTime;
 
 /**
  * Dagger module for injecting common settings for Whitebox tasks.
@@ -64,6 +67,12 @@ public class WhiteboxModule {
     return extractRequiredParameter(req, "insertId");
   }
 
+  @Provides
+  @Parameter(VerifyEntityIntegrityAction.CHANGED_SINCE_PARAM)
+  static Optional<DateTime> provideChangedSince(HttpServletRequest req) {
+    return extractOptionalDatetimeParameter(req, VerifyEntityIntegrityAction.CHANGED_SINCE_PARAM);
+  }
+
   @Provides
   @Named("insertIdGenerator")
   static Supplier<String> provideInsertIdGenerator() {
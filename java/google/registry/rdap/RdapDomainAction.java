@@ -19,8 +19,12 @@ import static google.registry.request.Action.Method.GET;
 import static google.registry.request.Action.Method.HEAD;
 
 import com.google.common.collect.ImmutableMap;
+import google.registry.model.ReferencedEntities;
 import google.registry.model.domain.DomainResource;
 import google.registry.rdap.RdapJsonFormatter.OutputDataType;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
+import google.registry.rdds.LookupResponseCache.Slot;
 import google.registry.request.Action;
 import google.registry.request.HttpException.NotFoundException;
 import google.registry.util.Clock;
@@ -33,6 +37,9 @@ import org.joda.time.DateTime;
 @Action(path = RdapDomainAction.PATH, method = {GET, HEAD}, isPrefix = true)
 public class RdapDomainAction extends RdapActionBase {
 
+  /** Options key under which RDAP responses are stored in the {@link LookupResponseCache}. */
+  private static final String CACHE_OPTIONS = "rdap";
+
   public static final String PATH = "/rdap/domain/";
 
   @Inject Clock clock;
@@ -55,11 +62,20 @@ public class RdapDomainAction extends RdapActionBase {
     pathSearchString = canonicalizeName(pathSearchString);
     validateDomainName(pathSearchString);
     // The query string is not used; the RDAP syntax is /rdap/domain/mydomain.com.
+    Slot slot = LookupResponseCache.getSlot(ResourceType.DOMAIN, pathSearchString, now);
+    ImmutableMap<String, Object> cached = slot.get(CACHE_OPTIONS);
+    if (cached != null) {
+      return cached;
+    }
     DomainResource domainResource = loadByForeignKey(DomainResource.class, pathSearchString, now);
     if (domainResource == null) {
       throw new NotFoundException(pathSearchString + " not found");
     }
-    return RdapJsonFormatter.makeRdapJsonForDomain(
+    slot.addReferencedKeys(
+        ReferencedEntities.builder().addContactsAndNameservers(domainResource).getKeys());
+    ImmutableMap<String, Object> jsonObject = RdapJsonFormatter.makeRdapJsonForDomain(
         domainResource, true, rdapLinkBase, rdapWhoisServer, now, OutputDataType.FULL);
+    slot.put(CACHE_OPTIONS, jsonObject);
+    return jsonObject;
   }
 }
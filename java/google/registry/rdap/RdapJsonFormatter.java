@@ -29,8 +29,8 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.net.InetAddresses;
-import com.googlecode.objectify.Key;
 import google.registry.model.EppResource;
+import google.registry.model.ReferencedEntities;
 import google.registry.model.contact.ContactPhoneNumber;
 import google.registry.model.contact.ContactResource;
 import google.registry.model.contact.PostalInfo;
@@ -466,16 +466,13 @@ public class RdapJsonFormatter {
       if (!events.isEmpty()) {
         jsonBuilder.put("events", events);
       }
-      // Kick off the database loads of the nameservers that we will need.
-      Map<Key<HostResource>, HostResource> loadedHosts =
-          ofy().load().keys(domainResource.getNameservers());
-      // And the registrant and other contacts.
-      Map<Key<ContactResource>, ContactResource> loadedContacts =
-          ofy().load().keys(domainResource.getReferencedContacts());
+      // Kick off a single database load of the nameservers and contacts that we will need.
+      ReferencedEntities references =
+          ReferencedEntities.builder().addContactsAndNameservers(domainResource).load();
       // Nameservers
       ImmutableList.Builder<Object> nsBuilder = new ImmutableList.Builder<>();
-      for (HostResource hostResource
-          : HOST_RESOURCE_ORDERING.immutableSortedCopy(loadedHosts.values())) {
+      for (HostResource hostResource : HOST_RESOURCE_ORDERING.immutableSortedCopy(
+          references.getAll(domainResource.getNameservers()))) {
         nsBuilder.add(makeRdapJsonForHost(
             hostResource, false, linkBase, null, now, outputDataType));
       }
@@ -488,7 +485,7 @@ public class RdapJsonFormatter {
       for (DesignatedContact designatedContact : FluentIterable.from(domainResource.getContacts())
           .append(DesignatedContact.create(Type.REGISTRANT, domainResource.getRegistrant()))
           .toSortedList(DESIGNATED_CONTACT_ORDERING)) {
-        ContactResource loadedContact = loadedContacts.get(designatedContact.getContactKey());
+        ContactResource loadedContact = references.get(designatedContact.getContactKey());
         entitiesBuilder.add(makeRdapJsonForContact(
             loadedContact,
             false,
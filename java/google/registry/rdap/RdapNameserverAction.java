@@ -21,6 +21,9 @@ import static google.registry.request.Action.Method.HEAD;
 import com.google.common.collect.ImmutableMap;
 import google.registry.model.host.HostResource;
 import google.registry.rdap.RdapJsonFormatter.OutputDataType;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
+import google.registry.rdds.LookupResponseCache.Slot;
 import google.registry.request.Action;
 import google.registry.request.HttpException.NotFoundException;
 import google.registry.util.Clock;
@@ -33,6 +36,9 @@ import org.joda.time.DateTime;
 @Action(path = RdapNameserverAction.PATH, method = {GET, HEAD}, isPrefix = true)
 public class RdapNameserverAction extends RdapActionBase {
 
+  /** Options key under which RDAP responses are stored in the {@link LookupResponseCache}. */
+  private static final String CACHE_OPTIONS = "rdap";
+
   public static final String PATH = "/rdap/nameserver/";
 
   @Inject Clock clock;
@@ -55,11 +61,18 @@ public class RdapNameserverAction extends RdapActionBase {
     pathSearchString = canonicalizeName(pathSearchString);
     // The RDAP syntax is /rdap/nameserver/ns1.mydomain.com.
     validateDomainName(pathSearchString);
+    Slot slot = LookupResponseCache.getSlot(ResourceType.HOST, pathSearchString, now);
+    ImmutableMap<String, Object> cached = slot.get(CACHE_OPTIONS);
+    if (cached != null) {
+      return cached;
+    }
     HostResource hostResource = loadByForeignKey(HostResource.class, pathSearchString, now);
     if (hostResource == null) {
       throw new NotFoundException(pathSearchString + " not found");
     }
-    return RdapJsonFormatter.makeRdapJsonForHost(
+    ImmutableMap<String, Object> jsonObject = RdapJsonFormatter.makeRdapJsonForHost(
         hostResource, true, rdapLinkBase, rdapWhoisServer, now, OutputDataType.FULL);
+    slot.put(CACHE_OPTIONS, jsonObject);
+    return jsonObject;
   }
 }
@@ -0,0 +1,278 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rdds;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.googlecode.objectify.Key;
+import google.registry.monitoring.metrics.IncrementableMetric;
+import google.registry.monitoring.metrics.LabelDescriptor;
+import google.registry.monitoring.metrics.Metric;
+import google.registry.monitoring.metrics.MetricRegistryImpl;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * Bounded, short-lived cache of WHOIS and RDAP responses for domain and nameserver lookups.
+ *
+ * <p>Lookups are heavily skewed towards a small set of popular (or abused) names, and every one of
+ * them used to repeat the foreign key load, the loads of the linked contacts, hosts and registrar,
+ * and the rendering. Instead, responses (or the data they are rendered from) are kept for up to
+ * {@link #TTL} in a {@link Slot} per resource name, under a key describing the output options they
+ * were rendered with. Only successful lookups are cached. RDAP responses are cached as rendered, so
+ * their "last update of RDAP database" event is the time at which their data was read.
+ *
+ * <p>Once their changes have committed, the flows that modify domains and hosts {@link #invalidate}
+ * the names they modified, and the flows that modify contacts and hosts
+ * {@link #invalidateReferencesTo invalidate} the domains whose cached responses show them. Either
+ * detaches the affected slots, so that responses still being rendered from the old data are never
+ * seen. Since the cache is per instance, that only reaches lookups served by the same instance;
+ * everywhere else (and for changes that are not made by flows, such as registrar updates and
+ * server-approved transfers) responses can be up to {@link #TTL} out of date, which is well within
+ * the RDDS update time that registries are held to.
+ */
+@ThreadSafe
+public final class LookupResponseCache {
+
+  /** The type of resource whose lookup responses are cached. */
+  public enum ResourceType { DOMAIN, HOST }
+
+  /** Why a slot was removed from the cache. */
+  private enum EvictionCause { SIZE, EXPIRED, INVALIDATED }
+
+  /** Maximum number of resource names to keep responses for. */
+  private static final int MAX_ENTRIES = 10000;
+
+  /** How long responses are served from the cache after their slot was created. */
+  @VisibleForTesting
+  public static final Duration TTL = Duration.standardMinutes(1);
+
+  private static final IncrementableMetric lookups =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/rdds/lookup_cache/lookups",
+              "Count of cached WHOIS and RDAP response lookups.",
+              "Lookups",
+              ImmutableSet.of(
+                  LabelDescriptor.create("type", "Resource type."),
+                  LabelDescriptor.create("result", "Whether the lookup was a hit or a miss.")));
+
+  private static final IncrementableMetric evictions =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/rdds/lookup_cache/evictions",
+              "Count of resource names whose cached WHOIS and RDAP responses were dropped.",
+              "Evictions",
+              ImmutableSet.of(
+                  LabelDescriptor.create("type", "Resource type."),
+                  LabelDescriptor.create("cause", "Why the responses were dropped.")));
+
+  private static final Cache<Name, Slot> CACHE = CacheBuilder.newBuilder()
+      .maximumSize(MAX_ENTRIES)
+      .removalListener(new RemovalListener<Name, Slot>() {
+          @Override
+          public void onRemoval(RemovalNotification<Name, Slot> notification) {
+            // Expired and invalidated slots are counted where they are removed.
+            if (notification.getCause() == RemovalCause.SIZE) {
+              recordEviction(notification.getKey().type, EvictionCause.SIZE);
+            }
+          }})
+      .build();
+
+  /** A gauge of the number of resource names that responses are cached for. */
+  @SuppressWarnings("unused")
+  private static final Metric<Long> size =
+      MetricRegistryImpl.getDefault()
+          .newGauge(
+              "/rdds/lookup_cache/size",
+              "Count of resource names with cached WHOIS and RDAP responses.",
+              "Size",
+              ImmutableSet.<LabelDescriptor>of(),
+              new Supplier<ImmutableMap<ImmutableList<String>, Long>>() {
+                @Override
+                public ImmutableMap<ImmutableList<String>, Long> get() {
+                  return ImmutableMap.of(ImmutableList.<String>of(), CACHE.size());
+                }
+              },
+              Long.class);
+
+  /**
+   * Returns the slot holding the cached responses for the named resource.
+   *
+   * <p>Callers should get the slot before loading anything, and render into that same slot on a
+   * miss, so that an invalidation in the meantime discards what they render.
+   *
+   * @param name the fully qualified domain or host name, in its canonical ASCII form
+   */
+  public static Slot getSlot(ResourceType type, String name, DateTime now) {
+    Name key = new Name(type, name);
+    Slot slot = CACHE.getIfPresent(key);
+    if (slot != null && now.isBefore(slot.creationTime.plus(TTL))) {
+      return slot;
+    }
+    Slot newSlot = new Slot(type, now);
+    if (slot == null) {
+      slot = CACHE.asMap().putIfAbsent(key, newSlot);
+      return (slot == null) ? newSlot : slot;
+    }
+    if (CACHE.asMap().replace(key, slot, newSlot)) {
+      recordEviction(type, EvictionCause.EXPIRED);
+    }
+    return newSlot;
+  }
+
+  /** Drops all cached responses for the named resource, because it has been modified. */
+  public static void invalidate(ResourceType type, String name) {
+    if (CACHE.asMap().remove(new Name(type, name)) != null) {
+      recordEviction(type, EvictionCause.INVALIDATED);
+    }
+  }
+
+  /**
+   * Drops all cached responses that show the entity with the given key, because it has been
+   * modified.
+   *
+   * <p>This scans the whole cache, which is bounded by {@link #MAX_ENTRIES}.
+   */
+  public static void invalidateReferencesTo(Key<?> key) {
+    for (Map.Entry<Name, Slot> entry : CACHE.asMap().entrySet()) {
+      Slot slot = entry.getValue();
+      if (slot.referencedKeys.contains(key) && CACHE.asMap().remove(entry.getKey(), slot)) {
+        recordEviction(slot.type, EvictionCause.INVALIDATED);
+      }
+    }
+  }
+
+  /** Returns a task that {@link #invalidate}s the named resource when it is run. */
+  public static Runnable invalidateTask(final ResourceType type, final String name) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        invalidate(type, name);
+      }};
+  }
+
+  /** Returns a task that {@link #invalidateReferencesTo invalidates references} to an entity. */
+  public static Runnable invalidateReferencesToTask(final Key<?> key) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        invalidateReferencesTo(key);
+      }};
+  }
+
+  /** Empties the cache. */
+  @VisibleForTesting
+  public static void clear() {
+    CACHE.invalidateAll();
+  }
+
+  private static void recordEviction(ResourceType type, EvictionCause cause) {
+    evictions.increment(type.name(), cause.name());
+  }
+
+  /** The cached responses for a single resource name, keyed by their output options. */
+  @ThreadSafe
+  public static final class Slot {
+
+    private final ResourceType type;
+    private final DateTime creationTime;
+    private final ConcurrentMap<Object, Object> responses = new ConcurrentHashMap<>();
+    private final Set<Key<?>> referencedKeys = Sets.newConcurrentHashSet();
+
+    private Slot(ResourceType type, DateTime creationTime) {
+      this.type = type;
+      this.creationTime = creationTime;
+    }
+
+    /**
+     * Returns the response that was rendered with the given output options, or null if there is
+     * none.
+     *
+     * @param options a key, with value semantics, for everything besides the resource name that
+     *     the response depends on
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object options) {
+      T response = (T) responses.get(options);
+      lookups.increment(type.name(), (response == null) ? "MISS" : "HIT");
+      return response;
+    }
+
+    /** Stores the response that was rendered with the given output options. */
+    public void put(Object options, Object response) {
+      responses.put(checkNotNull(options), checkNotNull(response));
+    }
+
+    /**
+     * Records the keys of other entities that the responses show, so that modifying them drops the
+     * responses.
+     *
+     * <p>Callers must do this before loading those entities, so that a modification that commits
+     * in the meantime either is seen by the load or drops this slot.
+     */
+    public void addReferencedKeys(Iterable<? extends Key<?>> keys) {
+      Iterables.addAll(referencedKeys, keys);
+    }
+  }
+
+  /** The type and normalized name of a resource. */
+  @Immutable
+  private static final class Name {
+    final ResourceType type;
+    final String name;
+
+    Name(ResourceType type, String name) {
+      this.type = type;
+      this.name = Ascii.toLowerCase(name);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Name
+          && type == ((Name) other).type
+          && name.equals(((Name) other).name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(type, name);
+    }
+  }
+
+  private LookupResponseCache() {}
+}
@@ -14,21 +14,108 @@
 
 package google.registry.rde;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import com.google.auto.value.AutoValue;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
 
-/** Container of datastore resource marshalled by {@link RdeMarshaller}. */
+/**
+ * Container of datastore resource marshalled by {@link RdeMarshaller}.
+ *
+ * <p>The XML is held as pre-encoded UTF-8 bytes rather than a {@link String}, so that the
+ * mapreduce shuffle doesn't have to serialize UTF-16 character data and the reducer can copy it
+ * straight into the Ghostryde output stream via {@link #writeXmlTo}. Fragments at least
+ * {@link #DEFLATE_THRESHOLD} bytes long are additionally deflated when that makes them smaller.
+ */
 @AutoValue
 public abstract class DepositFragment implements Serializable {
 
-  private static final long serialVersionUID = -5241410684255467454L;
+  private static final long serialVersionUID = -5241410684255467455L;
+
+  /** Minimum size in bytes of encoded XML before we bother trying to deflate it. */
+  static final int DEFLATE_THRESHOLD = 512;
 
   public abstract RdeResourceType type();
-  public abstract String xml();
+
+  /** Returns XML fragment as UTF-8 bytes, deflated if {@link #deflated()} is true. */
+  @SuppressWarnings("mutable")
+  abstract byte[] encodedXml();
+
+  /** Returns {@code true} if {@link #encodedXml()} is compressed with {@link Deflater}. */
+  abstract boolean deflated();
+
   public abstract String error();
 
   public static DepositFragment create(RdeResourceType type, String xml, String error) {
-    return new AutoValue_DepositFragment(type, xml, error);
+    byte[] bytes = xml.getBytes(UTF_8);
+    if (bytes.length >= DEFLATE_THRESHOLD) {
+      byte[] deflatedBytes = deflate(bytes);
+      if (deflatedBytes.length < bytes.length) {
+        return new AutoValue_DepositFragment(type, deflatedBytes, true, error);
+      }
+    }
+    return new AutoValue_DepositFragment(type, bytes, false, error);
+  }
+
+  /** Returns {@code true} if this fragment contains no XML, e.g. because marshalling failed. */
+  public boolean isEmpty() {
+    return encodedXml().length == 0;
+  }
+
+  /** Returns the XML fragment decoded as a string. */
+  public String xml() {
+    try (InputStream input = openXml()) {
+      return new String(ByteStreams.toByteArray(input), UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Writes the XML fragment to {@code output} as UTF-8 without materializing a string. */
+  public void writeXmlTo(OutputStream output) throws IOException {
+    if (!deflated()) {
+      output.write(encodedXml());
+      return;
+    }
+    try (InputStream input = openXml()) {
+      ByteStreams.copy(input, output);
+    }
+  }
+
+  private InputStream openXml() {
+    InputStream input = new ByteArrayInputStream(encodedXml());
+    return deflated() ? new InflaterInputStream(input) : input;
+  }
+
+  private static byte[] deflate(byte[] bytes) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2);
+      byte[] buffer = new byte[bytes.length];
+      while (!deflater.finished()) {
+        output.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return output.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  @Override
+  public final String toString() {
+    return String.format(
+        "DepositFragment{type=%s, encodedXml=%d bytes, deflated=%s, error=%s}",
+        type(), encodedXml().length, deflated(), error());
   }
 
   DepositFragment() {}
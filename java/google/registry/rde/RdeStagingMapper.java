@@ -25,10 +25,8 @@ import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
-import com.google.common.collect.Maps;
-import com.googlecode.objectify.Result;
 import google.registry.model.EppResource;
-import google.registry.model.EppResourceUtils;
+import google.registry.model.PointInTimeResolver;
 import google.registry.model.contact.ContactResource;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.host.HostResource;
@@ -104,14 +102,9 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
               }})
             .toSet();
 
-    // Launch asynchronous fetches of point-in-time representations of resource.
-    ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes =
-        ImmutableMap.copyOf(Maps.asMap(dates,
-            new Function<DateTime, Result<EppResource>>() {
-              @Override
-              public Result<EppResource> apply(DateTime input) {
-                return EppResourceUtils.loadAtPointInTime(resource, input);
-              }}));
+    // Fetch point-in-time representations of resource, loading all revisions in one batch.
+    ImmutableMap<DateTime, Optional<EppResource>> resourceAtTimes =
+        PointInTimeResolver.loadAtPointsInTime(resource, dates);
 
     // Convert resource to an XML fragment for each watermark/mode pair lazily and cache the result.
     Fragmenter fragmenter = new Fragmenter(resourceAtTimes);
@@ -139,9 +132,9 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
   /** Loading cache that turns a resource into XML for the various points in time and modes. */
   private class Fragmenter {
     private final Map<WatermarkModePair, Optional<DepositFragment>> cache = new HashMap<>();
-    private final ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes;
+    private final ImmutableMap<DateTime, Optional<EppResource>> resourceAtTimes;
 
-    Fragmenter(ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes) {
+    Fragmenter(ImmutableMap<DateTime, Optional<EppResource>> resourceAtTimes) {
       this.resourceAtTimes = resourceAtTimes;
     }
 
@@ -150,7 +143,7 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
       if (result != null) {
         return result;
       }
-      EppResource resource = resourceAtTimes.get(watermark).now();
+      EppResource resource = resourceAtTimes.get(watermark).orNull();
       if (resource == null) {
         result = Optional.absent();
         cache.put(WatermarkModePair.create(watermark, RdeMode.FULL), result);
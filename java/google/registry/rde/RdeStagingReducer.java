@@ -47,8 +47,6 @@ import google.registry.xjc.rdeheader.XjcRdeHeaderElement;
 import google.registry.xml.XmlException;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.security.Security;
 import java.util.Iterator;
 import java.util.concurrent.Callable;
@@ -124,17 +122,18 @@ public final class RdeStagingReducer extends Reducer<PendingDeposit, DepositFrag
     try (OutputStream gcsOutput = cloudStorage.openOutputStream(xmlFilename);
         Ghostryde.Encryptor encryptor = ghostryde.openEncryptor(gcsOutput, stagingKey);
         Ghostryde.Compressor kompressor = ghostryde.openCompressor(encryptor);
-        Ghostryde.Output gOutput = ghostryde.openOutput(kompressor, prefix + ".xml", watermark);
-        Writer output = new OutputStreamWriter(gOutput, UTF_8)) {
+        Ghostryde.Output output = ghostryde.openOutput(kompressor, prefix + ".xml", watermark)) {
 
       // Output the top portion of the XML document.
-      output.write(marshaller.makeHeader(id, watermark, RdeResourceType.getUris(mode), revision));
+      writeUtf8(output,
+          marshaller.makeHeader(id, watermark, RdeResourceType.getUris(mode), revision));
 
-      // Output XML fragments emitted to us by RdeStagingMapper while counting them.
+      // Output XML fragments emitted to us by RdeStagingMapper while counting them. These are
+      // already UTF-8 encoded, so they're copied straight into the Ghostryde stream.
       while (fragments.hasNext()) {
         DepositFragment fragment = fragments.next();
-        if (!fragment.xml().isEmpty()) {
-          output.write(fragment.xml());
+        if (!fragment.isEmpty()) {
+          fragment.writeXmlTo(output);
           counter.increment(fragment.type());
         }
         if (!fragment.error().isEmpty()) {
@@ -143,20 +142,20 @@ public final class RdeStagingReducer extends Reducer<PendingDeposit, DepositFrag
         }
       }
       for (IdnTableEnum idn : IdnTableEnum.values()) {
-        output.write(marshaller.marshalIdn(idn.getTable()));
+        writeUtf8(output, marshaller.marshalIdn(idn.getTable()));
         counter.increment(RdeResourceType.IDN);
       }
 
       // Output XML that says how many resources were emitted.
       header = counter.makeHeader(tld, mode);
-      output.write(marshaller.marshalStrictlyOrDie(new XjcRdeHeaderElement(header)));
+      writeUtf8(output, marshaller.marshalStrictlyOrDie(new XjcRdeHeaderElement(header)));
 
       // Output the bottom of the XML document.
-      output.write(marshaller.makeFooter());
+      writeUtf8(output, marshaller.makeFooter());
 
       // And we're done! How many raw XML bytes did we write?
       output.flush();
-      xmlLength = gOutput.getBytesWritten();
+      xmlLength = output.getBytesWritten();
     } catch (IOException | PGPException e) {
       throw new RuntimeException(e);
     }
@@ -221,4 +220,8 @@ public final class RdeStagingReducer extends Reducer<PendingDeposit, DepositFrag
         }
       }});
   }
+
+  private static void writeUtf8(OutputStream output, String xml) throws IOException {
+    output.write(xml.getBytes(UTF_8));
+  }
 }
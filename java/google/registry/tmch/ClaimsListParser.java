@@ -14,11 +14,10 @@
 
 package google.registry.tmch;
 
-import static com.google.common.base.Preconditions.checkArgument;
-
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
 import google.registry.model.tmch.ClaimsListShard;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import org.joda.time.DateTime;
 
@@ -32,47 +31,68 @@ import org.joda.time.DateTime;
  */
 public class ClaimsListParser {
 
+  /**
+   * Parses a DNL CSV file into a {@link ClaimsListShard} object, streaming it line by line.
+   *
+   * <p>Please note that this does <b>not</b> insert the object into the datastore.
+   */
+  public static ClaimsListShard parse(InputStream input) throws IOException {
+    return new DnlLineProcessor().parse(input);
+  }
+
   /**
    * Converts the lines from the DNL CSV file into a {@link ClaimsListShard} object.
    *
    * <p>Please note that this does <b>not</b> insert the object into the datastore.
    */
   public static ClaimsListShard parse(List<String> lines) {
-    ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<>();
+    return new DnlLineProcessor().parse(lines);
+  }
+
+  private static final class DnlLineProcessor extends MarksdbCsvLineProcessor<ClaimsListShard> {
 
-    // First line: <version>,<DNL List creation datetime>
-    List<String> firstLine = Splitter.on(',').splitToList(lines.get(0));
-    checkArgument(firstLine.size() == 2, String.format(
-        "Line 1: Expected 2 elements, found %d", firstLine.size()));
+    private final ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<>();
+    private DateTime creationTime;
 
-    Integer version = Integer.valueOf(firstLine.get(0));
-    DateTime creationTime = DateTime.parse(firstLine.get(1));
-    checkArgument(version == 1, String.format(
-        "Line 1: Expected version 1, found %d", version));
+    DnlLineProcessor() {
+      super(3);
+    }
 
-    // Second line contains headers: DNL,lookup-key,insertion-datetime
-    List<String> secondLine = Splitter.on(',').splitToList(lines.get(1));
-    checkArgument(secondLine.size() == 3, String.format(
-        "Line 2: Expected 3 elements, found %d", secondLine.size()));
-    checkArgument("DNL".equals(secondLine.get(0)), String.format(
-        "Line 2: Expected header \"DNL\", found \"%s\"", secondLine.get(0)));
-    checkArgument("lookup-key".equals(secondLine.get(1)), String.format(
-        "Line 2: Expected header \"lookup-key\", found \"%s\"", secondLine.get(1)));
-    checkArgument("insertion-datetime".equals(secondLine.get(2)), String.format(
-        "Line 2: Expected header \"insertion-datetime\", found \"%s\"", secondLine.get(2)));
+    /** First line: {@code <version>,<DNL List creation datetime>} */
+    @Override
+    void processFirstLine(String line) {
+      int comma = line.indexOf(',');
+      if (comma < 0 || line.indexOf(',', comma + 1) >= 0) {
+        throw fieldCountMismatch(line, 2);
+      }
+      int version = Integer.parseInt(line.substring(0, comma));
+      if (version != 1) {
+        throw error("Expected version 1, found %d", version);
+      }
+      creationTime = DateTime.parse(line.substring(comma + 1));
+    }
 
-    // Subsequent lines: <DNL>,<lookup key>,<DNL insertion datetime>
-    for (int i = 2; i < lines.size(); i++) {
-      List<String> currentLine = Splitter.on(',').splitToList(lines.get(i));
-      checkArgument(currentLine.size() == 3, String.format(
-          "Line %d: Expected 3 elements, found %d", i + 1, currentLine.size()));
+    /** Second line contains headers: {@code DNL,lookup-key,insertion-datetime} */
+    @Override
+    void processHeaderLine(String line, int[] commas) {
+      checkHeader(line, commas, 0, "DNL");
+      checkHeader(line, commas, 1, "lookup-key");
+      checkHeader(line, commas, 2, "insertion-datetime");
+    }
 
-      String label = currentLine.get(0);
-      String lookupKey = currentLine.get(1);
-      DateTime.parse(currentLine.get(2));  // This is the insertion time, currently unused.
-      builder.put(label, lookupKey);
+    /**
+     * Subsequent lines: {@code <DNL>,<lookup key>,<DNL insertion datetime>}
+     *
+     * <p>The insertion time is currently unused, so it isn't even parsed.
+     */
+    @Override
+    void processRow(String line, int[] commas) {
+      builder.put(field(line, commas, 0), field(line, commas, 1));
     }
 
-    return ClaimsListShard.create(creationTime, builder.build());
+    @Override
+    ClaimsListShard buildResult() {
+      return ClaimsListShard.create(creationTime, builder.build());
+    }
   }
 }
@@ -18,23 +18,21 @@ import static com.google.appengine.api.urlfetch.FetchOptions.Builder.validateCer
 import static com.google.appengine.api.urlfetch.HTTPMethod.GET;
 import static google.registry.util.HexDumper.dumpHex;
 import static google.registry.util.UrlFetchUtils.setAuthorizationHeader;
-import static java.nio.charset.StandardCharsets.US_ASCII;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 import com.google.appengine.api.urlfetch.HTTPRequest;
 import com.google.appengine.api.urlfetch.HTTPResponse;
 import com.google.appengine.api.urlfetch.URLFetchService;
 import com.google.common.base.Optional;
-import com.google.common.io.ByteSource;
 import google.registry.config.ConfigModule.Config;
 import google.registry.keyring.api.KeyModule.Key;
 import google.registry.util.UrlFetchException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.security.Security;
 import java.security.SignatureException;
-import java.util.List;
 import javax.annotation.Tainted;
 import javax.inject.Inject;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -115,12 +113,13 @@ public final class Marksdb {
     return rsp.getContent();
   }
 
-  List<String> fetchSignedCsv(
+  /** Fetches a CSV file and its signature, returning the CSV once its signature is verified. */
+  InputStream fetchSignedCsv(
       Optional<String> login, String csvPath, String sigPath)
       throws IOException, SignatureException, PGPException {
     byte[] csv = fetch(new URL(tmchMarksdbUrl + csvPath), login);
     byte[] sig = fetch(new URL(tmchMarksdbUrl + sigPath), login);
     pgpVerifySignature(csv, sig, marksdbPublicKey);
-    return ByteSource.wrap(csv).asCharSource(US_ASCII).readLines();
+    return new ByteArrayInputStream(csv);
   }
 }
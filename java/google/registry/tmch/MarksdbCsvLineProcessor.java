@@ -0,0 +1,134 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tmch;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import com.google.common.base.Splitter;
+import com.google.common.io.CharStreams;
+import com.google.common.io.LineProcessor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+
+/**
+ * Base class for streaming parsers of the simple CSV files published by MarksDB.
+ *
+ * <p>Lines are handed to the subclass one at a time, along with the positions of their commas, so
+ * that it can take substrings of just the fields it needs. Nothing is split into lists or
+ * formatted unless a line turns out to be malformed.
+ *
+ * @param <T> the type of the parsed file
+ */
+abstract class MarksdbCsvLineProcessor<T> implements LineProcessor<T> {
+
+  private final int fieldCount;
+  private final int[] commas;
+  private int lineNumber;
+
+  /** @param fieldCount number of comma separated fields expected on every line after the first */
+  MarksdbCsvLineProcessor(int fieldCount) {
+    this.fieldCount = fieldCount;
+    this.commas = new int[fieldCount - 1];
+  }
+
+  /** Parses a file of US-ASCII bytes from the given stream, which is not closed. */
+  T parse(InputStream input) throws IOException {
+    return CharStreams.readLines(new InputStreamReader(input, US_ASCII), this);
+  }
+
+  /** Parses a file that has already been split into lines. */
+  T parse(List<String> lines) {
+    for (String line : lines) {
+      processLine(line);
+    }
+    return getResult();
+  }
+
+  @Override
+  public final boolean processLine(String line) {
+    lineNumber++;
+    if (lineNumber == 1) {
+      processFirstLine(line);
+      return true;
+    }
+    int start = 0;
+    for (int i = 0; i < commas.length; i++) {
+      commas[i] = line.indexOf(',', start);
+      if (commas[i] < 0) {
+        throw fieldCountMismatch(line, fieldCount);
+      }
+      start = commas[i] + 1;
+    }
+    if (line.indexOf(',', start) >= 0) {
+      throw fieldCountMismatch(line, fieldCount);
+    }
+    if (lineNumber == 2) {
+      processHeaderLine(line, commas);
+    } else {
+      processRow(line, commas);
+    }
+    return true;
+  }
+
+  @Override
+  public final T getResult() {
+    if (lineNumber < 2) {
+      throw new IllegalArgumentException(
+          String.format("Expected at least 2 lines, found %d", lineNumber));
+    }
+    return buildResult();
+  }
+
+  /** Returns the parsed file once all of its lines have been processed. */
+  abstract T buildResult();
+
+  /** Handles the first line, which has its own format and must be split by the subclass. */
+  abstract void processFirstLine(String line);
+
+  /** Handles the second line, which names the fields. */
+  abstract void processHeaderLine(String line, int[] commas);
+
+  /** Handles a data row; {@code commas} is only valid for the duration of the call. */
+  abstract void processRow(String line, int[] commas);
+
+  /** Returns the field of {@code line} that ends at {@code commas[index]}, or the end of line. */
+  static String field(String line, int[] commas, int index) {
+    int start = index == 0 ? 0 : commas[index - 1] + 1;
+    int end = index == commas.length ? line.length() : commas[index];
+    return line.substring(start, end);
+  }
+
+  /** Checks that a header field has the expected name. */
+  void checkHeader(String line, int[] commas, int index, String expected) {
+    String actual = field(line, commas, index);
+    if (!expected.equals(actual)) {
+      throw error("Expected header \"%s\", found \"%s\"", expected, actual);
+    }
+  }
+
+  /** Returns an exception for a line with the wrong number of fields. */
+  IllegalArgumentException fieldCountMismatch(String line, int expected) {
+    return error(
+        "Expected %d elements, found %d", expected, Splitter.on(',').splitToList(line).size());
+  }
+
+  /** Returns an exception for the current line, prefixed with its line number. */
+  IllegalArgumentException error(String format, Object... args) {
+    return new IllegalArgumentException(
+        String.format("Line %d: ", lineNumber) + String.format(format, args));
+  }
+}
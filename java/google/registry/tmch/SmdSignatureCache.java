@@ -0,0 +1,131 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tmch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import google.registry.model.smd.SignedMarkRevocationList;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.xml.crypto.MarshalException;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.parsers.ParserConfigurationException;
+import org.joda.time.DateTime;
+import org.xml.sax.SAXException;
+
+/**
+ * Bounded cache of signed mark data whose signatures {@link TmchXmlSignature} has verified.
+ *
+ * <p>During sunrise, registrars submit the same SMD over and over, and verifying its signature
+ * (DOM parsing, schema validation, certificate and CRL checks, and XML-DSig) dominates the cost of
+ * the flow. Successful verifications are therefore remembered by the SHA-256 digest of the SMD
+ * bytes. An entry is only reused while the TMCH root certificate, CRL and SMD revocation list are
+ * the same ones it was verified against, and while the signing certificate is still within its
+ * validity period; otherwise the SMD is verified from scratch. Failures are never cached.
+ *
+ * <p>Like {@link TmchXmlSignature}, this does not check whether the SMD ID is revoked, which
+ * callers must still do on every call.
+ */
+@ThreadSafe
+public final class SmdSignatureCache {
+
+  /** Maximum number of verified SMDs to remember. */
+  private static final int MAX_ENTRIES = 10000;
+
+  private static final Cache<HashCode, Verification> CACHE =
+      CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).recordStats().build();
+
+  /**
+   * Verifies that signed mark data contains a valid signature, unless identical data has already
+   * been verified against the current root certificate, CRL and SMD revocation list.
+   *
+   * @throws GeneralSecurityException for unsupported protocols, certs not signed by the TMCH,
+   *         incorrect keys, and for invalid, old, not-yet-valid or revoked certificates.
+   * @see TmchXmlSignature#verify
+   */
+  public static void verify(byte[] smdXml)
+      throws GeneralSecurityException,
+             IOException,
+             MarshalException,
+             ParserConfigurationException,
+             SAXException,
+             XMLSignatureException {
+    HashCode digest = Hashing.sha256().hashBytes(smdXml);
+    // Snapshot the versions before verifying, so that an entry can never claim to have been
+    // verified against something newer than it actually was.
+    X509Certificate root = TmchCertificateAuthority.getRoot();
+    X509CRL crl = TmchCertificateAuthority.getCrl();
+    DateTime smdrlCreationTime = SignedMarkRevocationList.get().getCreationTime();
+    Verification cached = CACHE.getIfPresent(digest);
+    if (cached != null && cached.isCurrent(root, crl, smdrlCreationTime)) {
+      try {
+        TmchCertificateAuthority.checkValidity(cached.certificate);
+        return;
+      } catch (GeneralSecurityException e) {
+        // Fall through, so that the full verification throws exactly as it would have.
+        CACHE.invalidate(digest);
+      }
+    }
+    X509Certificate certificate = TmchXmlSignature.verify(smdXml);
+    CACHE.put(digest, new Verification(root, crl, smdrlCreationTime, certificate));
+  }
+
+  /** Empties the cache. */
+  @VisibleForTesting
+  static void clear() {
+    CACHE.invalidateAll();
+  }
+
+  @VisibleForTesting
+  static CacheStats stats() {
+    return CACHE.stats();
+  }
+
+  /** A successful verification, and the versions of everything it was verified against. */
+  @Immutable
+  private static final class Verification {
+    final X509Certificate root;
+    final X509CRL crl;
+    final DateTime smdrlCreationTime;
+    final X509Certificate certificate;
+
+    Verification(
+        X509Certificate root,
+        X509CRL crl,
+        DateTime smdrlCreationTime,
+        X509Certificate certificate) {
+      this.root = root;
+      this.crl = crl;
+      this.smdrlCreationTime = smdrlCreationTime;
+      this.certificate = certificate;
+    }
+
+    boolean isCurrent(X509Certificate currentRoot, X509CRL currentCrl, DateTime currentSmdrl) {
+      // The caches that these come from usually hand back the same instances, which is cheap to
+      // check; otherwise these compare the encoded certificate and CRL.
+      return (root == currentRoot || root.equals(currentRoot))
+          && (crl == currentCrl || crl.equals(currentCrl))
+          && smdrlCreationTime.equals(currentSmdrl);
+    }
+  }
+}
@@ -14,12 +14,12 @@
 
 package google.registry.tmch;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static org.joda.time.DateTimeZone.UTC;
 
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
 import google.registry.model.smd.SignedMarkRevocationList;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import org.joda.time.DateTime;
 
@@ -33,38 +33,56 @@ import org.joda.time.DateTime;
  */
 public final class SmdrlCsvParser {
 
-  /** Converts the lines from the DNL CSV file into a data structure. */
+  /** Parses an SMDRL CSV file into a data structure, streaming it line by line. */
+  public static SignedMarkRevocationList parse(InputStream input) throws IOException {
+    return new SmdrlLineProcessor().parse(input);
+  }
+
+  /** Converts the lines from the SMDRL CSV file into a data structure. */
   public static SignedMarkRevocationList parse(List<String> lines) {
-    ImmutableMap.Builder<String, DateTime> revokes = new ImmutableMap.Builder<>();
+    return new SmdrlLineProcessor().parse(lines);
+  }
+
+  private static final class SmdrlLineProcessor
+      extends MarksdbCsvLineProcessor<SignedMarkRevocationList> {
+
+    private final ImmutableMap.Builder<String, DateTime> revokes = new ImmutableMap.Builder<>();
+    private DateTime creationTime;
 
-    // First line: <version>,<SMD Revocation List creation datetime>
-    List<String> firstLine = Splitter.on(',').splitToList(lines.get(0));
-    checkArgument(firstLine.size() == 2, String.format(
-        "Line 1: Expected 2 elements, found %d", firstLine.size()));
-    Integer version = Integer.valueOf(firstLine.get(0));
-    checkArgument(version == 1, String.format(
-        "Line 1: Expected version 1, found %d", version));
-    DateTime creationTime = DateTime.parse(firstLine.get(1)).withZone(UTC);
+    SmdrlLineProcessor() {
+      super(2);
+    }
 
-    // Second line contains headers: smd-id,insertion-datetime
-    List<String> secondLine = Splitter.on(',').splitToList(lines.get(1));
-    checkArgument(secondLine.size() == 2, String.format(
-        "Line 2: Expected 2 elements, found %d", secondLine.size()));
-    checkArgument("smd-id".equals(secondLine.get(0)), String.format(
-        "Line 2: Expected header \"smd-id\", found \"%s\"", secondLine.get(0)));
-    checkArgument("insertion-datetime".equals(secondLine.get(1)), String.format(
-        "Line 2: Expected header \"insertion-datetime\", found \"%s\"", secondLine.get(1)));
+    /** First line: {@code <version>,<SMD Revocation List creation datetime>} */
+    @Override
+    void processFirstLine(String line) {
+      int comma = line.indexOf(',');
+      if (comma < 0 || line.indexOf(',', comma + 1) >= 0) {
+        throw fieldCountMismatch(line, 2);
+      }
+      int version = Integer.parseInt(line.substring(0, comma));
+      if (version != 1) {
+        throw error("Expected version 1, found %d", version);
+      }
+      creationTime = DateTime.parse(line.substring(comma + 1)).withZone(UTC);
+    }
 
-    // Subsequent lines: <smd-id>,<revoked SMD datetime>
-    for (int i = 2; i < lines.size(); i++) {
-      List<String> currentLine = Splitter.on(',').splitToList(lines.get(i));
-      checkArgument(currentLine.size() == 2, String.format(
-          "Line %d: Expected 2 elements, found %d", i + 1, currentLine.size()));
-      String smdId = currentLine.get(0);
-      DateTime revokedTime = DateTime.parse(currentLine.get(1));
-      revokes.put(smdId, revokedTime);
+    /** Second line contains headers: {@code smd-id,insertion-datetime} */
+    @Override
+    void processHeaderLine(String line, int[] commas) {
+      checkHeader(line, commas, 0, "smd-id");
+      checkHeader(line, commas, 1, "insertion-datetime");
     }
 
-    return SignedMarkRevocationList.create(creationTime, revokes.build());
+    /** Subsequent lines: {@code <smd-id>,<revoked SMD datetime>} */
+    @Override
+    void processRow(String line, int[] commas) {
+      revokes.put(field(line, commas, 0), DateTime.parse(field(line, commas, 1)));
+    }
+
+    @Override
+    SignedMarkRevocationList buildResult() {
+      return SignedMarkRevocationList.create(creationTime, revokes.build());
+    }
   }
 }
@@ -103,6 +103,11 @@ public final class TmchCertificateAuthority {
     }
   }
 
+  /** Check that {@code cert} is within its validity period at the current time. */
+  static void checkValidity(X509Certificate cert) throws GeneralSecurityException {
+    cert.checkValidity(clock.nowUtc().toDate());
+  }
+
   /**
    * Update to the latest TMCH X.509 certificate revocation list and save to the datastore.
    *
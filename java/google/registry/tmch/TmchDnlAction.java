@@ -22,8 +22,8 @@ import google.registry.model.tmch.ClaimsListShard;
 import google.registry.request.Action;
 import google.registry.util.FormattingLogger;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.SignatureException;
-import java.util.List;
 import javax.inject.Inject;
 import org.bouncycastle.openpgp.PGPException;
 
@@ -42,13 +42,12 @@ public final class TmchDnlAction implements Runnable {
   /** Synchronously fetches latest domain name list and saves it to datastore. */
   @Override
   public void run() {
-    List<String> lines;
-    try {
-      lines = marksdb.fetchSignedCsv(marksdbDnlLogin, DNL_CSV_PATH, DNL_SIG_PATH);
+    ClaimsListShard claims;
+    try (InputStream csv = marksdb.fetchSignedCsv(marksdbDnlLogin, DNL_CSV_PATH, DNL_SIG_PATH)) {
+      claims = ClaimsListParser.parse(csv);
     } catch (SignatureException | IOException | PGPException e) {
       throw new RuntimeException(e);
     }
-    ClaimsListShard claims = ClaimsListParser.parse(lines);
     claims.save();
     logger.infofmt("Inserted %,d claims into datastore, created at %s",
         claims.size(), claims.getCreationTime());
@@ -22,8 +22,8 @@ import google.registry.model.smd.SignedMarkRevocationList;
 import google.registry.request.Action;
 import google.registry.util.FormattingLogger;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.SignatureException;
-import java.util.List;
 import javax.inject.Inject;
 import org.bouncycastle.openpgp.PGPException;
 
@@ -42,13 +42,13 @@ public final class TmchSmdrlAction implements Runnable {
   /** Synchronously fetches latest signed mark revocation list and saves it to datastore. */
   @Override
   public void run() {
-    List<String> lines;
-    try {
-      lines = marksdb.fetchSignedCsv(marksdbSmdrlLogin, SMDRL_CSV_PATH, SMDRL_SIG_PATH);
+    SignedMarkRevocationList smdrl;
+    try (InputStream csv =
+        marksdb.fetchSignedCsv(marksdbSmdrlLogin, SMDRL_CSV_PATH, SMDRL_SIG_PATH)) {
+      smdrl = SmdrlCsvParser.parse(csv);
     } catch (SignatureException | IOException | PGPException e) {
       throw new RuntimeException(e);
     }
-    SignedMarkRevocationList smdrl = SmdrlCsvParser.parse(lines);
     smdrl.save();
     logger.infofmt("Inserted %,d smd revocations into datastore, created at %s",
         smdrl.size(), smdrl.getCreationTime());
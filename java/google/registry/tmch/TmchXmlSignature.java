@@ -65,6 +65,7 @@ public final class TmchXmlSignature {
    * <p>This method DOES NOT check if the SMD ID is revoked. It's only concerned with the
    * cryptographic stuff.
    *
+   * @return the certificate whose key the signature was verified with
    * @throws GeneralSecurityException for unsupported protocols, certs not signed by the TMCH,
    *         incorrect keys, and for invalid, old, not-yet-valid or revoked certificates.
    * @throws IOException
@@ -72,7 +73,7 @@ public final class TmchXmlSignature {
    * @throws ParserConfigurationException
    * @throws SAXException
    */
-  public static void verify(byte[] smdXml)
+  public static X509Certificate verify(byte[] smdXml)
       throws GeneralSecurityException,
              IOException,
              MarshalException,
@@ -102,6 +103,7 @@ public final class TmchXmlSignature {
     if (!isValid) {
       throw new XMLSignatureException(explainValidationProblem(context, signature));
     }
+    return checkNotNull(selector.certificate, "certificate");
   }
 
   private static Document parseSmdDocument(InputStream input)
@@ -134,6 +136,11 @@ public final class TmchXmlSignature {
 
   /** Callback class for DOM validator checks validity of {@code <ds:KeyInfo>} elements. */
   private static final class KeyValueKeySelector extends KeySelector {
+
+    /** The certificate that was selected, once validation has called {@link #select}. */
+    @Nullable
+    X509Certificate certificate;
+
     @Nullable
     @Override
     public KeySelectorResult select(
@@ -157,6 +164,7 @@ public final class TmchXmlSignature {
               } catch (GeneralSecurityException e) {
                 throw new KeySelectorException(e);
               }
+              certificate = cert;
               return new SimpleKeySelectorResult(cert.getPublicKey());
             }
           }
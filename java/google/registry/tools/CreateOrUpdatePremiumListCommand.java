@@ -122,7 +122,10 @@ abstract class CreateOrUpdatePremiumListCommand extends ConfirmingCommand
     // See: j/c/g/d/r/ui/server/RegistrarFormFields.java
     String status = (String) responseMap.get("status");
     Verify.verify(!status.equals("error"), "Server error: %s", responseMap.get("error"));
-    return String.format("Successfully saved premium list %s\n", name);
+    String message = (String) responseMap.get("message");
+    return isNullOrEmpty(message)
+        ? String.format("Successfully saved premium list %s\n", name)
+        : message;
   }
 
   @SuppressWarnings("unchecked")
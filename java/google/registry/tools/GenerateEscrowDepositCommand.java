@@ -136,7 +136,7 @@ final class GenerateEscrowDepositCommand implements RemoteApiCommand {
           } else {
             continue;  // Surprise polymorphic entities, e.g. DomainApplication.
           }
-          if (!frag.xml().isEmpty()) {
+          if (!frag.isEmpty()) {
             xmlOutput.write(frag.xml());
             counter.increment(frag.type());
           }
@@ -44,6 +44,11 @@ final class GenerateZoneFilesCommand implements ServerSideCommand {
       validateWith = DateTimeParameter.class)
   private DateTime exportTime = DateTime.now(UTC).minus(standardMinutes(2)).withTimeAtStartOfDay();
 
+  @Parameter(
+      names = "--streaming",
+      description = "Generate gzipped zone files directly on the server instead of via mapreduce.")
+  private boolean streaming = false;
+
   private Connection connection;
 
   @Override
@@ -56,14 +61,17 @@ final class GenerateZoneFilesCommand implements ServerSideCommand {
     for (String tld : mainParameters) {
       assertTldExists(tld);
     }
-    ImmutableMap<String, Object> params = ImmutableMap.of(
+    ImmutableMap<String, Object> params = ImmutableMap.<String, Object>of(
         "tlds", mainParameters,
-        "exportTime", exportTime.toString());
+        "exportTime", exportTime.toString(),
+        "streaming", streaming);
     Map<String, Object> response = connection.sendJson(GenerateZoneFilesAction.PATH, params);
-    System.out.printf(
-        "Job started at %s%s\n",
-        connection.getServerUrl(),
-        response.get("jobPath"));
+    if (response.containsKey("jobPath")) {
+      System.out.printf(
+          "Job started at %s%s\n",
+          connection.getServerUrl(),
+          response.get("jobPath"));
+    }
     System.out.println("Output files:");
     @SuppressWarnings("unchecked")
     List<String> filenames = (List<String>) response.get("filenames");
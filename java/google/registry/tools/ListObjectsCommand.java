@@ -15,8 +15,11 @@
 package google.registry.tools;
 
 import static google.registry.security.JsonHttp.JSON_SAFETY_PREFIX;
+import static google.registry.tools.server.ListObjectsAction.CURSOR_PARAM;
 import static google.registry.tools.server.ListObjectsAction.FIELDS_PARAM;
+import static google.registry.tools.server.ListObjectsAction.FORMAT_PARAM;
 import static google.registry.tools.server.ListObjectsAction.FULL_FIELD_NAMES_PARAM;
+import static google.registry.tools.server.ListObjectsAction.PAGE_SIZE_PARAM;
 import static google.registry.tools.server.ListObjectsAction.PRINT_HEADER_ROW_PARAM;
 
 import com.beust.jcommander.Parameter;
@@ -24,6 +27,7 @@ import com.google.common.base.VerifyException;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.net.MediaType;
 import google.registry.tools.Command.RemoteApiCommand;
+import google.registry.tools.server.ListObjectsAction.OutputFormat;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -33,6 +37,8 @@ import org.json.simple.JSONValue;
  * Abstract base class for commands that list objects by calling a server task.
  *
  * <p>The formatting is done on the server side; this class just dumps the results to the screen.
+ * In the paged output formats, the server is called once per page, and each page is printed as soon
+ * as it arrives.
  */
 abstract class ListObjectsCommand implements RemoteApiCommand, ServerSideCommand {
 
@@ -55,6 +61,19 @@ abstract class ListObjectsCommand implements RemoteApiCommand, ServerSideCommand
       description = "Whether to print full field names in header row (as opposed to aliases)")
   private boolean fullFieldNames = false;
 
+  @Parameter(
+      names = {"--format"},
+      description = "Output format: TABLE lays out all objects at once in aligned columns, while "
+          + "CSV and JSON (one object per line) fetch and print the objects a page at a time, in "
+          + "no particular order, which is much faster for large listings")
+  private OutputFormat format = OutputFormat.TABLE;
+
+  @Nullable
+  @Parameter(
+      names = {"--page_size"},
+      description = "Number of objects to fetch per request in the CSV and JSON formats")
+  private Integer pageSize;
+
   private Connection connection;
 
   @Override
@@ -88,10 +107,31 @@ abstract class ListObjectsCommand implements RemoteApiCommand, ServerSideCommand
     if (extraParams != null) {
       params.putAll(extraParams);
     }
+    if (format == OutputFormat.TABLE) {
+      printLines(callServer(params.build()));
+      return;
+    }
+    params.put(FORMAT_PARAM, format.name());
+    if (pageSize != null) {
+      params.put(PAGE_SIZE_PARAM, pageSize);
+    }
+    // Fetch and print pages until the server stops returning a cursor for the next one.
+    ImmutableMap<String, Object> firstPageParams = params.build();
+    Map<String, Object> responseMap = callServer(firstPageParams);
+    while (printLines(responseMap) && responseMap.get("cursor") != null) {
+      responseMap = callServer(new ImmutableMap.Builder<String, Object>()
+          .putAll(firstPageParams)
+          .put(CURSOR_PARAM, responseMap.get("cursor"))
+          .build());
+    }
+  }
+
+  /** Calls the server and returns the parsed JSON response. */
+  private Map<String, Object> callServer(ImmutableMap<String, Object> params) throws Exception {
     // Call the server and get the response data.
     String response = connection.send(
         getCommandPath(),
-        params.build(),
+        params,
         MediaType.PLAIN_TEXT_UTF_8,
         new byte[0]);
     // Parse the returned JSON and make sure it's a map.
@@ -101,8 +141,17 @@ abstract class ListObjectsCommand implements RemoteApiCommand, ServerSideCommand
     }
     @SuppressWarnings("unchecked")
     Map<String, Object> responseMap = (Map<String, Object>) obj;
+    return responseMap;
+  }
+
+  /**
+   * Prints the lines of a successful response, or the error message of a failed one.
+   *
+   * @return whether the response was successful
+   */
+  private static boolean printLines(Map<String, Object> responseMap) {
     // Get the status.
-    obj = responseMap.get("status");
+    Object obj = responseMap.get("status");
     if (obj == null) {
       throw new VerifyException("Server returned no status");
     }
@@ -117,6 +166,7 @@ abstract class ListObjectsCommand implements RemoteApiCommand, ServerSideCommand
         throw new VerifyException("Server returned no error message");
       }
       System.out.println(obj);
+      return false;
     // Handle success.
     } else if (status.equals("success")) {
       obj = responseMap.get("lines");
@@ -129,6 +179,7 @@ abstract class ListObjectsCommand implements RemoteApiCommand, ServerSideCommand
       for (Object lineObj : (List<?>) obj) {
         System.out.println(lineObj);
       }
+      return true;
     // Handle unexpected status values.
     } else {
       throw new VerifyException("Server returned unexpected status");
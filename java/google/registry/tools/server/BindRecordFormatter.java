@@ -0,0 +1,171 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tools.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Hand-rolled formatter for BIND zone file records that writes into a reusable byte buffer.
+ *
+ * <p>This produces byte-for-byte the same records as the {@code String.format} patterns in
+ * {@link GenerateZoneFilesAction}, but without allocating intermediate strings, so that it can
+ * keep up with streaming millions of records to GCS. Domain and host names are expected to be
+ * ASCII (i.e. punycoded) which is always the case for names stored in datastore; anything else is
+ * encoded as UTF-8.
+ */
+@NotThreadSafe
+final class BindRecordFormatter {
+
+  private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(UTF_8);
+  private static final byte[] ORIGIN = "$ORIGIN\t".getBytes(UTF_8);
+  private static final byte[] IN_NS = "\tIN\tNS\t".getBytes(UTF_8);
+  private static final byte[] IN_DS = "\tIN\tDS\t".getBytes(UTF_8);
+  private static final byte[] IN_A = "\tIN\tA\t".getBytes(UTF_8);
+  private static final byte[] IN_AAAA = "\tIN\tAAAA\t".getBytes(UTF_8);
+
+  private byte[] buffer;
+  private int size;
+
+  BindRecordFormatter(int initialCapacity) {
+    buffer = new byte[initialCapacity];
+  }
+
+  /** Appends the {@code $ORIGIN} header line followed by a blank line. */
+  BindRecordFormatter appendHeader(String tld) {
+    append(ORIGIN).append(tld).append('.').append('\n').append('\n');
+    return this;
+  }
+
+  /** Appends an NS record, e.g. {@code foo.tld 180 IN NS ns.example.com.}. */
+  BindRecordFormatter appendNs(String name, int ttl, String nameserver) {
+    append(name).append('\t').append(ttl).append(IN_NS).append(nameserver).append('.').append('\n');
+    return this;
+  }
+
+  /** Appends a DS record, e.g. {@code foo.tld 86400 IN DS 1 2 3 000102}. */
+  BindRecordFormatter appendDs(
+      String name, int ttl, int keyTag, int algorithm, int digestType, byte[] digest) {
+    append(name).append('\t').append(ttl).append(IN_DS)
+        .append(keyTag).append(' ')
+        .append(algorithm).append(' ')
+        .append(digestType).append(' ');
+    ensureCapacity(digest.length * 2);
+    for (byte b : digest) {
+      buffer[size++] = HEX_DIGITS[(b >> 4) & 0xF];
+      buffer[size++] = HEX_DIGITS[b & 0xF];
+    }
+    return append('\n');
+  }
+
+  /** Appends an A or AAAA record, e.g. {@code ns.foo.tld 3600 IN A 127.0.0.1}. */
+  BindRecordFormatter appendAddress(String name, int ttl, InetAddress address) {
+    append(name).append('\t').append(ttl);
+    if (address instanceof Inet4Address) {
+      append(IN_A);
+      byte[] octets = address.getAddress();
+      for (int i = 0; i < octets.length; i++) {
+        if (i > 0) {
+          append('.');
+        }
+        append(octets[i] & 0xFF);
+      }
+    } else {
+      // IPv6 records are rare enough that matching InetAddress's textual form exactly matters more.
+      append(IN_AAAA).append(address.getHostAddress());
+    }
+    return append('\n');
+  }
+
+  /** Appends a bare newline, used to separate stanzas. */
+  BindRecordFormatter appendNewline() {
+    return append('\n');
+  }
+
+  /** Returns the number of bytes currently buffered. */
+  int size() {
+    return size;
+  }
+
+  /** Writes the buffered bytes to {@code output} and empties the buffer for reuse. */
+  void flushTo(OutputStream output) throws IOException {
+    output.write(buffer, 0, size);
+    size = 0;
+  }
+
+  /** Returns a copy of the buffered bytes. */
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  private BindRecordFormatter append(byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+    return this;
+  }
+
+  private BindRecordFormatter append(String string) {
+    int length = string.length();
+    ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      char c = string.charAt(i);
+      if (c >= 0x80) {
+        // Not ASCII; discard what we copied of this string and fall back to a real encoder.
+        size -= i;
+        return append(string.getBytes(UTF_8));
+      }
+      buffer[size++] = (byte) c;
+    }
+    return this;
+  }
+
+  private BindRecordFormatter append(char c) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) c;
+    return this;
+  }
+
+  private BindRecordFormatter append(int value) {
+    if (value < 0) {
+      // Never happens for TTLs or DS fields, but don't silently produce garbage if it does.
+      return append(Integer.toString(value));
+    }
+    int digits = 1;
+    for (int n = value; n >= 10; n /= 10) {
+      digits++;
+    }
+    ensureCapacity(digits);
+    int position = size + digits;
+    do {
+      buffer[--position] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    size += digits;
+    return this;
+  }
+
+  private void ensureCapacity(int additional) {
+    if (size + additional > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+    }
+  }
+}
@@ -17,8 +17,10 @@ package google.registry.tools.server;
 import static com.google.common.base.Preconditions.checkArgument;
 import static google.registry.model.registry.Registries.assertTldExists;
 import static google.registry.request.Action.Method.POST;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
 import google.registry.model.registry.label.PremiumList;
 import google.registry.request.Action;
@@ -56,12 +58,20 @@ public class CreatePremiumListAction extends CreateOrUpdatePremiumListAction {
         .setName(name)
         .setPremiumListMapFromLines(inputDataPreProcessed)
         .build();
+    Stopwatch stopwatch = Stopwatch.createStarted();
     premiumList.saveAndUpdateEntries();
 
     logger.infofmt("Saved premium list %s with entries %s",
         premiumList.getName(),
         premiumList.getPremiumListEntries());
 
-    response.setPayload(ImmutableMap.of("status", "success"));
+    String message = String.format(
+        "Saved premium list %s with %d entries in %d ms.\n",
+        premiumList.getName(),
+        premiumList.getPremiumListEntries().size(),
+        stopwatch.elapsed(MILLISECONDS));
+    response.setPayload(ImmutableMap.of(
+        "status", "success",
+        "message", message));
   }
 }
@@ -0,0 +1,79 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tools.server;
+
+import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
+import static com.google.appengine.api.taskqueue.TaskOptions.Builder.withUrl;
+import static google.registry.request.Action.Method.POST;
+
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.googlecode.objectify.Key;
+import google.registry.model.registry.label.PremiumList;
+import google.registry.model.registry.label.PremiumList.PremiumListRevision;
+import google.registry.request.Action;
+import google.registry.request.HttpException.BadRequestException;
+import google.registry.request.Parameter;
+import google.registry.request.Response;
+import google.registry.util.FormattingLogger;
+import google.registry.util.TaskEnqueuer;
+import javax.inject.Inject;
+
+/**
+ * A task that deletes the entries of a premium list revision after {@link UpdatePremiumListAction}
+ * has replaced it, so that uploading a large list doesn't have to wait for the old one's entries to
+ * be deleted.
+ */
+@Action(path = DeletePremiumListRevisionAction.PATH, method = POST)
+public class DeletePremiumListRevisionAction implements Runnable {
+
+  private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
+
+  public static final String PATH = "/_dr/task/deletePremiumListRevision";
+  public static final String QUEUE = "premium-list-cleanup";
+  public static final String REVISION_PARAM = "revision";
+
+  @Inject @Parameter(REVISION_PARAM) String revision;
+  @Inject Response response;
+  @Inject DeletePremiumListRevisionAction() {}
+
+  /** Enqueues a task to delete the entries of the given premium list revision. */
+  public static void enqueue(TaskEnqueuer taskEnqueuer, Key<PremiumListRevision> revisionKey) {
+    TaskOptions task = withUrl(PATH).param(REVISION_PARAM, revisionKey.getString());
+    taskEnqueuer.enqueue(getQueue(QUEUE), task);
+  }
+
+  @Override
+  public void run() {
+    Key<PremiumListRevision> revisionKey;
+    try {
+      revisionKey = Key.create(revision);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid premium list revision key: " + revision, e);
+    }
+    if (!revisionKey.getKind().equals(Key.getKind(PremiumListRevision.class))) {
+      throw new BadRequestException("Not a premium list revision key: " + revisionKey);
+    }
+    logger.infofmt("Deleting entries of premium list revision %s", revisionKey);
+    try {
+      PremiumList.deleteRevision(revisionKey);
+    } catch (IllegalArgumentException e) {
+      // The revision is in use again, which retrying won't change, so don't fail the task.
+      logger.warning(e, e.getMessage());
+      response.setPayload(e.getMessage() + "\n");
+      return;
+    }
+    response.setPayload(String.format("Deleted premium list revision %s\n", revisionKey));
+  }
+}
@@ -20,7 +20,6 @@ import static com.google.common.collect.Iterators.filter;
 import static com.google.common.io.BaseEncoding.base16;
 import static google.registry.mapreduce.inputs.EppResourceInputs.createEntityInput;
 import static google.registry.model.EppResourceUtils.loadAtPointInTime;
-import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.request.Action.Method.POST;
 import static google.registry.util.PipelineUtils.createJobPath;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -31,16 +30,19 @@ import com.google.appengine.tools.cloudstorage.RetryParams;
 import com.google.appengine.tools.mapreduce.Mapper;
 import com.google.appengine.tools.mapreduce.Reducer;
 import com.google.appengine.tools.mapreduce.ReducerInput;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Key;
 import google.registry.config.ConfigModule.Config;
 import google.registry.gcs.GcsUtils;
 import google.registry.mapreduce.MapreduceRunner;
 import google.registry.mapreduce.inputs.NullInput;
 import google.registry.model.EppResource;
+import google.registry.model.PointInTimeResolver;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.host.HostResource;
@@ -55,6 +57,7 @@ import java.io.PrintWriter;
 import java.io.Writer;
 import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -68,6 +71,9 @@ import org.joda.time.Duration;
  * <p>Zone files for each requested TLD are written to GCS. TLDs without entries produce zone files
  * with only a header. The export time must be at least two minutes in the past and no more than
  * 29 days in the past, and must be at midnight UTC.
+ *
+ * <p>If the request sets {@code streaming} to true, the mapreduce is skipped and each zone file is
+ * instead generated synchronously by {@link StreamingZoneFileGenerator} as a gzipped file.
  */
 @Action(
     path = GenerateZoneFilesAction.PATH,
@@ -81,6 +87,9 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
   /** Format for the zone file name. */
   private static final String FILENAME_FORMAT = "%s-%s.zone";
 
+  /** Format for the gzipped zone file name written in streaming mode. */
+  private static final String STREAMING_FILENAME_FORMAT = "%s-%s.zone.gz";
+
   /** Format for the GCS path to a file. */
   private static final String GCS_PATH_FORMAT = "gs://%s/%s";
 
@@ -98,13 +107,16 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
 
   // TODO(b/20454352): Overhaul TTL configuration mechanism.
   /** The time to live for exported NS record, in seconds. */
-  private static final int TTL_NS = 180;
+  static final int TTL_NS = 180;
 
   /** The time to live for exported DS record, in seconds. */
-  private static final int TTL_DS = 86400;
+  static final int TTL_DS = 86400;
 
   /** The time to live for exported A/AAAA record, in seconds. */
-  private static final int TTL_A = 3600;
+  static final int TTL_A = 3600;
+
+  /** Maximum number of point-in-time nameserver projections each mapper shard keeps in memory. */
+  private static final int MAX_CACHED_NAMESERVERS = 20000;
 
   @Inject MapreduceRunner mrRunner;
   @Inject JsonActionRunner jsonActionRunner;
@@ -139,6 +151,9 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
     if (!exportTime.equals(exportTime.toDateTime(UTC).withTimeAtStartOfDay())) {
       throw new BadRequestException("Invalid export time: must be midnight UTC");
     }
+    if (Boolean.TRUE.equals(json.get("streaming"))) {
+      return ImmutableMap.<String, Object>of("filenames", generateStreaming(tlds, exportTime));
+    }
     String jobId = mrRunner
         .setJobName("Generate bind file stanzas")
         .setModuleName("tools")
@@ -165,6 +180,25 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
         "filenames", filenames);
   }
 
+  /** Generates the zone files in-process with {@link StreamingZoneFileGenerator}. */
+  private ImmutableList<String> generateStreaming(ImmutableSet<String> tlds, DateTime exportTime) {
+    StreamingZoneFileGenerator generator = new StreamingZoneFileGenerator(
+        new GcsUtils(createGcsService(RetryParams.getDefaultInstance()), gcsBufferSize),
+        gcsBufferSize);
+    ImmutableList.Builder<String> filenames = new ImmutableList.Builder<>();
+    for (String tld : tlds) {
+      GcsFilename filename =
+          new GcsFilename(bucket, String.format(STREAMING_FILENAME_FORMAT, tld, exportTime));
+      try {
+        generator.generate(tld, exportTime, filename);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      filenames.add(String.format(GCS_PATH_FORMAT, bucket, filename.getObjectName()));
+    }
+    return filenames.build();
+  }
+
   /** Mapper to find domains and hosts that were active at a given time. */
   static class GenerateBindFileMapper extends Mapper<EppResource, String, String> {
 
@@ -173,6 +207,9 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
     private final ImmutableSet<String> tlds;
     private final DateTime exportTime;
 
+    /** Memoizes nameservers at the export time, since many domains share the same hosts. */
+    private transient PointInTimeResolver resolver;
+
     GenerateBindFileMapper(ImmutableSet<String> tlds, DateTime exportTime) {
       this.tlds = tlds;
       this.exportTime = exportTime;
@@ -196,7 +233,14 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
       if (tlds.contains(domain.getTld())) {
         domain = loadAtPointInTime(domain, exportTime).now();
         if (domain != null) {  // A null means the domain was deleted (or not created) at this time.
-          String stanza = domainStanza(domain, exportTime);
+          List<String> nameserverNames = new ArrayList<>();
+          Map<Key<HostResource>, HostResource> nameservers =
+              getResolver().loadHostsAtPointInTime(domain.getNameservers(), exportTime);
+          for (HostResource nameserver : nameservers.values()) {
+            nameserverNames.add(nameserver.getFullyQualifiedHostName());
+          }
+          String stanza = domainStanza(
+              domain.getFullyQualifiedDomainName(), nameserverNames, domain.getDsData());
           if (!stanza.isEmpty()) {
             emit(domain.getTld(), stanza);
             getContext().incrementCounter(domain.getTld() + " domains");
@@ -212,7 +256,7 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
         String fullyQualifiedHostName = host.getFullyQualifiedHostName();
         for (String tld : tlds) {
           if (fullyQualifiedHostName.endsWith("." + tld)) {
-            String stanza = hostStanza(host);
+            String stanza = hostStanza(fullyQualifiedHostName, host.getInetAddresses());
             if (!stanza.isEmpty()) {
               emit(tld, stanza);
               getContext().incrementCounter(tld + " hosts");
@@ -222,6 +266,13 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
         }
       }
     }
+
+    private PointInTimeResolver getResolver() {
+      if (resolver == null) {
+        resolver = new PointInTimeResolver(MAX_CACHED_NAMESERVERS);
+      }
+      return resolver;
+    }
   }
 
   /** Reducer to write zone files to GCS. */
@@ -269,21 +320,27 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
    *   foo.tld 180 IN NS ns.example.com.
    *   foo.tld 86400 IN DS 1 2 3 000102
    * }
+   *
+   * <p>The nameserver names must be those of the nameservers as of the export time, in case
+   * they've been renamed or deleted since.
    */
-  private static String domainStanza(DomainResource domain, DateTime exportTime) {
+  @VisibleForTesting
+  static String domainStanza(
+      String fullyQualifiedDomainName,
+      Iterable<String> nameserverNames,
+      Iterable<DelegationSignerData> dsDatas) {
     StringBuilder result = new StringBuilder();
-    for (HostResource nameserver : ofy().load().keys(domain.getNameservers()).values()) {
+    for (String nameserverName : nameserverNames) {
       result.append(String.format(
           NS_FORMAT,
-          domain.getFullyQualifiedDomainName(),
+          fullyQualifiedDomainName,
           TTL_NS,
-          // Load the nameservers at the export time in case they've been renamed or deleted.
-          loadAtPointInTime(nameserver, exportTime).now().getFullyQualifiedHostName()));
+          nameserverName));
     }
-    for (DelegationSignerData dsData : domain.getDsData()) {
+    for (DelegationSignerData dsData : dsDatas) {
       result.append(String.format(
           DS_FORMAT,
-          domain.getFullyQualifiedDomainName(),
+          fullyQualifiedDomainName,
           TTL_DS,
           dsData.getKeyTag(),
           dsData.getAlgorithm(),
@@ -302,14 +359,15 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
    *   ns.foo.tld 3600 IN AAAA 0:0:0:0:0:0:0:1
    * }
    */
-  private static String hostStanza(HostResource host) {
+  @VisibleForTesting
+  static String hostStanza(String fullyQualifiedHostName, Iterable<InetAddress> addresses) {
     StringBuilder result = new StringBuilder();
-    for (InetAddress addr : host.getInetAddresses()) {
+    for (InetAddress addr : addresses) {
       // must be either IPv4 or IPv6
       String rrSetClass = (addr instanceof Inet4Address) ? "A" : "AAAA";
       result.append(String.format(
           A_FORMAT,
-          host.getFullyQualifiedHostName(),
+          fullyQualifiedHostName,
           TTL_A,
           rrSetClass,
           addr.getHostAddress()));
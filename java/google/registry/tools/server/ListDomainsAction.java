@@ -14,13 +14,17 @@
 
 package google.registry.tools.server;
 
+import static google.registry.model.EppResourceUtils.cloneProjectedAtTime;
 import static google.registry.model.EppResourceUtils.queryNotDeleted;
+import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.model.registry.Registries.assertTldExists;
 import static google.registry.request.Action.Method.GET;
 import static google.registry.request.Action.Method.POST;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.cmd.Query;
 import google.registry.model.domain.DomainResource;
 import google.registry.request.Action;
 import google.registry.request.Parameter;
@@ -54,4 +58,16 @@ public final class ListDomainsAction extends ListObjectsAction<DomainResource> {
             return a.getFullyQualifiedDomainName().compareTo(b.getFullyQualifiedDomainName());
           }});
   }
+
+  @Override
+  Optional<Query<DomainResource>> getPagedQuery() {
+    return Optional.of(ofy().load().type(DomainResource.class)
+        .filter("tld", assertTldExists(tld))
+        .filter("deletionTime >", clock.nowUtc().toDate()));
+  }
+
+  @Override
+  DomainResource projectPagedObject(DomainResource domain) {
+    return cloneProjectedAtTime(domain, clock.nowUtc());
+  }
 }
@@ -18,14 +18,17 @@ import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.request.Action.Method.GET;
 import static google.registry.request.Action.Method.POST;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.cmd.Query;
 import google.registry.model.EppResourceUtils;
 import google.registry.model.host.HostResource;
 import google.registry.request.Action;
 import google.registry.util.Clock;
 import java.util.Comparator;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
 
@@ -63,4 +66,16 @@ public final class ListHostsAction extends ListObjectsAction<HostResource> {
             }})
         .toSortedSet(comparator);
   }
+
+  @Override
+  Optional<Query<HostResource>> getPagedQuery() {
+    return Optional.of(ofy().load().type(HostResource.class)
+        .filter("deletionTime >", clock.nowUtc().toDate()));
+  }
+
+  @Override
+  @Nullable
+  HostResource projectPagedObject(HostResource host) {
+    return EppResourceUtils.isActive(host, clock.nowUtc()) ? host : null;
+  }
 }
@@ -16,6 +16,10 @@ package google.registry.tools.server;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.common.base.Ascii;
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Joiner;
@@ -31,6 +35,7 @@ import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
+import com.googlecode.objectify.cmd.Query;
 import google.registry.model.ImmutableObject;
 import google.registry.request.JsonResponse;
 import google.registry.request.Parameter;
@@ -40,13 +45,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import org.json.simple.JSONValue;
 
 /**
  * Abstract base class for actions that list ImmutableObjects.
  *
  * <p>Returns formatted text to be displayed on the screen.
  *
+ * <p>By default, all the objects are loaded, sorted and laid out as a table with aligned columns,
+ * all at once. Actions that can list their objects from a single query also support the CSV and
+ * JSON output formats, which list one page of objects per request, in query order, and return a
+ * Datastore cursor for fetching the next page; this keeps memory use and request time bounded
+ * however many objects there are.
+ *
  * @param <T> type of object
  */
 public abstract class ListObjectsAction<T extends ImmutableObject> implements Runnable {
@@ -54,11 +67,33 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
   public static final String FIELDS_PARAM = "fields";
   public static final String PRINT_HEADER_ROW_PARAM = "printHeaderRow";
   public static final String FULL_FIELD_NAMES_PARAM = "fullFieldNames";
+  public static final String FORMAT_PARAM = "format";
+  public static final String CURSOR_PARAM = "cursor";
+  public static final String PAGE_SIZE_PARAM = "pageSize";
+
+  /** Number of objects to list per page if the page size isn't specified. */
+  private static final int DEFAULT_PAGE_SIZE = 1000;
+
+  /** Largest number of objects that may be listed per page. */
+  private static final int MAX_PAGE_SIZE = 10000;
+
+  /** Formats in which objects can be listed. */
+  public enum OutputFormat {
+    /** All objects at once, sorted, in a table with aligned columns. */
+    TABLE,
+    /** One page at a time, with one line of comma separated values per object. */
+    CSV,
+    /** One page at a time, with one JSON object per object, keyed by field name. */
+    JSON
+  }
 
   @Inject JsonResponse response;
   @Inject @Parameter("fields") Optional<String> fields;
   @Inject @Parameter("printHeaderRow") Optional<Boolean> printHeaderRow;
   @Inject @Parameter("fullFieldNames") Optional<Boolean> fullFieldNames;
+  @Inject @Parameter("format") Optional<String> format;
+  @Inject @Parameter("cursor") Optional<String> cursor;
+  @Inject @Parameter("pageSize") Optional<Integer> pageSize;
 
   /** Returns the set of objects to list, in the desired listing order. */
   abstract ImmutableSet<T> loadObjects();
@@ -96,25 +131,34 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
     return ImmutableMap.of();
   }
 
+  /**
+   * Returns a query for the objects to list a page at a time, or absent if this action can only
+   * list all of its objects at once via {@link #loadObjects}.
+   *
+   * <p>Paged output is in the order of the query rather than the listing order, and each result of
+   * the query is passed through {@link #projectPagedObject} before being listed.
+   */
+  Optional<Query<T>> getPagedQuery() {
+    return Optional.absent();
+  }
+
+  /** Returns the object to list for a result of {@link #getPagedQuery}, or null to skip it. */
+  @Nullable
+  T projectPagedObject(T object) {
+    return object;
+  }
+
   @Override
   public void run() {
     try {
-      // Get the object data first, so we can figure out the list of all available fields using the
-      // data if necessary.
-      ImmutableSet<T> objects = loadObjects();
-      // Get the list of fields we should return.
-      ImmutableSet<String> fieldsToUse = getFieldsToUse(objects);
-      // Convert the data into a table.
-      ImmutableTable<T, String, String> data = extractData(fieldsToUse, objects);
-      // Now that we have the data table, compute the column widths.
-      ImmutableMap<String, Integer> columnWidths =
-          computeColumnWidths(data, isHeaderRowInUse(data));
-      // Finally, convert the table to an array of lines of text.
-      List<String> lines = generateFormattedData(data, columnWidths);
-      // Return the results.
-      response.setPayload(ImmutableMap.of(
-          "lines", lines,
-          "status", "success"));
+      OutputFormat outputFormat = getOutputFormat();
+      if (outputFormat == OutputFormat.TABLE) {
+        response.setPayload(ImmutableMap.of(
+            "lines", listAllAsTable(),
+            "status", "success"));
+      } else {
+        response.setPayload(listPage(outputFormat));
+      }
     } catch (Exception e) {
       String message = e.getMessage();
       if (message == null) {
@@ -126,11 +170,96 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
     }
   }
 
+  private OutputFormat getOutputFormat() {
+    if ((format == null) || !format.isPresent()) {
+      return OutputFormat.TABLE;
+    }
+    try {
+      return OutputFormat.valueOf(Ascii.toUpperCase(format.get()));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(String.format("Unknown format '%s'", format.get()));
+    }
+  }
+
+  /** Lists all the objects as the lines of a table. */
+  private List<String> listAllAsTable() {
+    // Get the object data first, so we can figure out the list of all available fields using the
+    // data if necessary.
+    ImmutableSet<T> objects = loadObjects();
+    // Get the list of fields we should return.
+    ImmutableSet<String> fieldsToUse = getFieldsToUse(objects);
+    // Convert the data into a table.
+    ImmutableTable<T, String, String> data = extractData(fieldsToUse, objects);
+    // Now that we have the data table, compute the column widths.
+    ImmutableMap<String, Integer> columnWidths =
+        computeColumnWidths(data, isHeaderRowInUse(data.columnKeySet()));
+    // Finally, convert the table to an array of lines of text.
+    return generateFormattedData(data, columnWidths);
+  }
+
+  /**
+   * Lists the page of objects starting at the cursor parameter, if any, and returns the response
+   * payload, which includes the cursor of the next page unless this was the last one.
+   */
+  private ImmutableMap<String, Object> listPage(OutputFormat outputFormat) {
+    Optional<Query<T>> pagedQuery = getPagedQuery();
+    checkArgument(pagedQuery.isPresent(), "Format %s is not supported for this type", outputFormat);
+    checkArgument(outputFormat != OutputFormat.CSV || !isWildcardRequested(),
+        "Wildcard fields are not supported in CSV format, since pages might have different fields");
+    int limit = ((pageSize == null) || !pageSize.isPresent()) ? DEFAULT_PAGE_SIZE : pageSize.get();
+    checkArgument(limit > 0 && limit <= MAX_PAGE_SIZE,
+        "Page size must be between 1 and %s", MAX_PAGE_SIZE);
+    boolean isFirstPage = (cursor == null) || !cursor.isPresent();
+    Query<T> query = pagedQuery.get().limit(limit);
+    if (!isFirstPage) {
+      query = query.startAt(Cursor.fromWebSafeString(cursor.get()));
+    }
+    QueryResultIterator<T> iterator = query.iterator();
+    List<T> objects = new ArrayList<>();
+    int resultCount = 0;
+    while (iterator.hasNext()) {
+      resultCount++;
+      T object = projectPagedObject(iterator.next());
+      if (object != null) {
+        objects.add(object);
+      }
+    }
+    ImmutableSet<String> fieldsToUse = getFieldsToUse(objects);
+    ImmutableTable<T, String, String> data = extractData(fieldsToUse, objects);
+    List<String> lines = new ArrayList<>();
+    if (outputFormat == OutputFormat.CSV) {
+      if (isFirstPage && isHeaderRowInUse(fieldsToUse)) {
+        lines.add(formatCsvRow(fieldsToUse));
+      }
+      for (Map<String, String> row : data.rowMap().values()) {
+        lines.add(formatCsvRow(row.values()));
+      }
+    } else {
+      for (Map<String, String> row : data.rowMap().values()) {
+        lines.add(JSONValue.toJSONString(row));
+      }
+    }
+    ImmutableMap.Builder<String, Object> payload = new ImmutableMap.Builder<String, Object>()
+        .put("lines", lines)
+        .put("status", "success");
+    // A short page means the query is exhausted; a full one might be followed by an empty page.
+    if (resultCount == limit) {
+      payload.put("cursor", iterator.getCursor().toWebSafeString());
+    }
+    return payload.build();
+  }
+
+  private boolean isWildcardRequested() {
+    return (fields != null)
+        && fields.isPresent()
+        && Splitter.on(',').splitToList(fields.get()).contains("*");
+  }
+
   /**
    * Returns the set of fields to return, aliased or not according to --full_field_names, and
    * with duplicates eliminated but the ordering otherwise preserved.
    */
-  private ImmutableSet<String> getFieldsToUse(ImmutableSet<T> objects) {
+  private ImmutableSet<String> getFieldsToUse(Iterable<T> objects) {
     // Get the list of fields from the received parameter.
     List<String> fieldsToUse;
     if ((fields == null) || !fields.isPresent()) {
@@ -160,7 +289,7 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
    * Constructs a list of all available fields for use by the wildcard field specification.
    * Don't include aliases, since then we'd wind up returning the same field twice.
    */
-  private ImmutableList<String> getAllAvailableFields(ImmutableSet<T> objects) {
+  private ImmutableList<String> getAllAvailableFields(Iterable<T> objects) {
     ImmutableList.Builder<String> fields = new ImmutableList.Builder<>();
     for (T object : objects) {
       // Base case of the mapping is to use ImmutableObject's toDiffableFieldMap().
@@ -176,7 +305,7 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
    * object and column-keyed by field, in the same iteration order as the provided sets.
    */
   private ImmutableTable<T, String, String>
-      extractData(ImmutableSet<String> fields, ImmutableSet<T> objects) {
+      extractData(ImmutableSet<String> fields, Iterable<T> objects) {
     ImmutableTable.Builder<T, String, String> builder = new ImmutableTable.Builder<>();
     for (T object : objects) {
       Map<String, Object> fieldMap = new HashMap<>();
@@ -227,9 +356,9 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
    * Check whether to display headers. If the parameter is not set, print headers only if there
    * is more than one column.
    */
-  private boolean isHeaderRowInUse(final ImmutableTable<?, String, String> data) {
+  private boolean isHeaderRowInUse(Set<String> columns) {
     return ((printHeaderRow != null) && printHeaderRow.isPresent())
-        ? printHeaderRow.get() : (data.columnKeySet().size() > 1);
+        ? printHeaderRow.get() : (columns.size() > 1);
   }
 
   /** Converts the provided table of data to text, formatted using the provided column widths. */
@@ -239,7 +368,7 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
     Function<Map<String, String>, String> rowFormatter = makeRowFormatter(columnWidths);
     List<String> lines = new ArrayList<>();
 
-    if (isHeaderRowInUse(data)) {
+    if (isHeaderRowInUse(data.columnKeySet())) {
       // Add a row of headers (column names mapping to themselves).
       Map<String, String> headerRow =
           Maps.asMap(data.columnKeySet(), Functions.<String>identity());
@@ -281,4 +410,18 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
           return Joiner.on("  ").join(paddedFields);
         }};
   }
+
+  /**
+   * Formats values as a line of comma separated values, quoting any value that contains a comma,
+   * quote or line break as described in RFC 4180.
+   */
+  private static String formatCsvRow(Iterable<String> values) {
+    List<String> quotedValues = new ArrayList<>();
+    for (String value : values) {
+      quotedValues.add(CharMatcher.anyOf(",\"\r\n").matchesAnyOf(value)
+          ? "\"" + value.replace("\"", "\"\"") + "\""
+          : value);
+    }
+    return Joiner.on(',').join(quotedValues);
+  }
 }
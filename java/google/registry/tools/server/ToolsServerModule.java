@@ -16,6 +16,7 @@ package google.registry.tools.server;
 
 import static com.google.common.base.Strings.emptyToNull;
 import static google.registry.request.RequestParameters.extractBooleanParameter;
+import static google.registry.request.RequestParameters.extractOptionalIntParameter;
 import static google.registry.request.RequestParameters.extractOptionalParameter;
 import static google.registry.request.RequestParameters.extractRequiredParameter;
 
@@ -37,12 +38,24 @@ public class ToolsServerModule {
     return Optional.fromNullable(emptyToNull(req.getParameter(CreateGroupsAction.CLIENT_ID_PARAM)));
   }
 
+  @Provides
+  @Parameter("cursor")
+  static Optional<String> provideCursor(HttpServletRequest req) {
+    return extractOptionalParameter(req, ListObjectsAction.CURSOR_PARAM);
+  }
+
   @Provides
   @Parameter("fields")
   static Optional<String> provideFields(HttpServletRequest req) {
     return extractOptionalParameter(req, ListObjectsAction.FIELDS_PARAM);
   }
 
+  @Provides
+  @Parameter("format")
+  static Optional<String> provideFormat(HttpServletRequest req) {
+    return extractOptionalParameter(req, ListObjectsAction.FORMAT_PARAM);
+  }
+
   @Provides
   @Parameter("fullFieldNames")
   static Optional<Boolean> provideFullFieldNames(HttpServletRequest req) {
@@ -56,6 +69,12 @@ public class ToolsServerModule {
     return extractRequiredParameter(req, CreatePremiumListAction.INPUT_PARAM);
   }
 
+  @Provides
+  @Parameter("pageSize")
+  static Optional<Integer> providePageSize(HttpServletRequest req) {
+    return extractOptionalIntParameter(req, ListObjectsAction.PAGE_SIZE_PARAM);
+  }
+
   @Provides
   @Parameter("premiumListName")
   static String provideName(HttpServletRequest req) {
@@ -68,6 +87,12 @@ public class ToolsServerModule {
    return extractBooleanParameter(req, CreatePremiumListAction.OVERRIDE_PARAM);
   }
 
+  @Provides
+  @Parameter(DeletePremiumListRevisionAction.REVISION_PARAM)
+  static String provideRevision(HttpServletRequest req) {
+    return extractRequiredParameter(req, DeletePremiumListRevisionAction.REVISION_PARAM);
+  }
+
   @Provides
   @Parameter("printHeaderRow")
   static Optional<Boolean> providePrintHeaderRow(HttpServletRequest req) {
@@ -16,12 +16,17 @@ package google.registry.tools.server;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static google.registry.request.Action.Method.POST;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
+import com.googlecode.objectify.Key;
 import google.registry.model.registry.label.PremiumList;
+import google.registry.model.registry.label.PremiumList.PremiumListRevision;
 import google.registry.request.Action;
+import google.registry.util.TaskEnqueuer;
 import java.util.List;
 import javax.inject.Inject;
 
@@ -34,6 +39,7 @@ public class UpdatePremiumListAction extends CreateOrUpdatePremiumListAction {
 
   public static final String PATH = "/_dr/admin/updatePremiumList";
 
+  @Inject TaskEnqueuer taskEnqueuer;
   @Inject UpdatePremiumListAction() {}
 
   @Override
@@ -51,16 +57,27 @@ public class UpdatePremiumListAction extends CreateOrUpdatePremiumListAction {
     PremiumList premiumList = existingName.get().asBuilder()
         .setPremiumListMapFromLines(inputDataPreProcessed)
         .build();
-    premiumList.saveAndUpdateEntries();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    premiumList.saveWithoutDeletingOldEntries();
+    // Deleting the old entries takes about as long as saving the new ones did, and nothing depends
+    // on them any more, so leave it to a task rather than making the caller wait for it.
+    Key<PremiumListRevision> oldRevisionKey = existingName.get().getRevisionKey();
+    boolean entriesReplaced =
+        oldRevisionKey != null && !oldRevisionKey.equals(premiumList.getRevisionKey());
+    if (entriesReplaced) {
+      DeletePremiumListRevisionAction.enqueue(taskEnqueuer, oldRevisionKey);
+    }
 
     logger.infofmt("Updated premium list %s with entries %s",
         premiumList.getName(),
         premiumList.getPremiumListEntries());
 
     String message = String.format(
-        "Saved premium list %s with %d entries.\n",
+        "Saved premium list %s with %d entries in %d ms.%s\n",
         premiumList.getName(),
-        premiumList.getPremiumListEntries().size());
+        premiumList.getPremiumListEntries().size(),
+        stopwatch.elapsed(MILLISECONDS),
+        entriesReplaced ? " The old entries will be deleted in the background." : "");
     response.setPayload(ImmutableMap.of(
         "status", "success",
         "message", message));
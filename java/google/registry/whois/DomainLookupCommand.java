@@ -15,7 +15,9 @@
 package google.registry.whois;
 
 import com.google.common.net.InternetDomainName;
+import google.registry.model.ReferencedEntities;
 import google.registry.model.domain.DomainResource;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import javax.annotation.Nullable;
 import org.joda.time.DateTime;
 
@@ -27,11 +29,17 @@ class DomainLookupCommand extends DomainOrHostLookupCommand<DomainResource> {
   }
 
   public DomainLookupCommand(InternetDomainName domainName, @Nullable InternetDomainName tld) {
-    super(domainName, tld, "Domain");
+    super(domainName, tld, ResourceType.DOMAIN, "Domain");
   }
 
   @Override
-  WhoisResponse getSuccessResponse(DomainResource domain, DateTime now) {
-    return new DomainWhoisResponse(domain, now);
+  ReferencedEntities.Builder getReferences(DomainResource domain) {
+    return DomainWhoisResponse.getReferences(domain);
+  }
+
+  @Override
+  WhoisResponse getSuccessResponse(
+      DomainResource domain, ReferencedEntities references, DateTime now) {
+    return new DomainWhoisResponse(domain, references, now);
   }
 }
@@ -24,6 +24,10 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.net.InternetDomainName;
 import google.registry.model.EppResource;
+import google.registry.model.ReferencedEntities;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
+import google.registry.rdds.LookupResponseCache.Slot;
 import google.registry.util.TypeUtils.TypeInstantiator;
 import javax.annotation.Nullable;
 import org.joda.time.DateTime;
@@ -31,15 +35,24 @@ import org.joda.time.DateTime;
 /** Represents a WHOIS lookup on a domain name (i.e. SLD) or a nameserver. */
 abstract class DomainOrHostLookupCommand<T extends EppResource> implements WhoisCommand {
 
+  /** Options key under which WHOIS data is stored in the {@link LookupResponseCache}. */
+  private static final String CACHE_OPTIONS = "whois";
+
   @VisibleForTesting
   final InternetDomainName domainOrHostName;
 
+  private final ResourceType resourceType;
+
   private final String errorPrefix;
 
   private Optional<InternetDomainName> tld;
 
   DomainOrHostLookupCommand(
-      InternetDomainName domainName, @Nullable InternetDomainName tld, String errorPrefix) {
+      InternetDomainName domainName,
+      @Nullable InternetDomainName tld,
+      ResourceType resourceType,
+      String errorPrefix) {
+    this.resourceType = resourceType;
     this.errorPrefix = errorPrefix;
     this.domainOrHostName = checkNotNull(domainName, "domainOrHostName");
     this.tld = Optional.fromNullable(tld);
@@ -52,17 +65,44 @@ abstract class DomainOrHostLookupCommand<T extends EppResource> implements Whois
     }
     // Google Policy: Do not return records under TLDs for which we're not authoritative.
     if (tld.isPresent() && getTlds().contains(tld.get().toString())) {
+      // The loaded data is cached rather than the rendered text, since the text includes the time
+      // of the query.
+      Slot slot = LookupResponseCache.getSlot(resourceType, domainOrHostName.toString(), now);
+      LookupData<T> cached = slot.get(CACHE_OPTIONS);
+      if (cached != null) {
+        return getSuccessResponse(cached.domainOrHost, cached.references, now);
+      }
       T domainOrHost = loadByForeignKey(
           new TypeInstantiator<T>(getClass()){}.getExactType(),
           domainOrHostName.toString(),
           now);
       if (domainOrHost != null) {
-        return getSuccessResponse(domainOrHost, now);
+        ReferencedEntities.Builder referencesBuilder = getReferences(domainOrHost);
+        slot.addReferencedKeys(referencesBuilder.getKeys());
+        LookupData<T> data = new LookupData<>(domainOrHost, referencesBuilder.load().loadNow());
+        slot.put(CACHE_OPTIONS, data);
+        return getSuccessResponse(data.domainOrHost, data.references, now);
       }
     }
     throw new WhoisException(now, SC_NOT_FOUND, errorPrefix + " not found.");
   }
 
-  /** Renders a response record, provided its successfully retrieved datastore entity. */
-  abstract WhoisResponse getSuccessResponse(T domainOrHost, DateTime now);
+  /** Returns a builder with the keys of the entities that a response record needs. */
+  abstract ReferencedEntities.Builder getReferences(T domainOrHost);
+
+  /** Renders a response record, provided its successfully retrieved datastore entities. */
+  abstract WhoisResponse getSuccessResponse(
+      T domainOrHost, ReferencedEntities references, DateTime now);
+
+  /** A successfully retrieved resource, along with the entities that it refers to. */
+  private static final class LookupData<T> {
+
+    final T domainOrHost;
+    final ReferencedEntities references;
+
+    LookupData(T domainOrHost, ReferencedEntities references) {
+      this.domainOrHost = domainOrHost;
+      this.references = references;
+    }
+  }
 }
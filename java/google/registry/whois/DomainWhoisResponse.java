@@ -16,15 +16,18 @@ package google.registry.whois;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.tryFind;
-import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.CollectionUtils.isNullOrEmpty;
 import static google.registry.xml.UtcDateTimeAdapter.getFormattedString;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
+import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
 import com.googlecode.objectify.Key;
+import google.registry.model.ReferencedEntities;
 import google.registry.model.contact.ContactPhoneNumber;
 import google.registry.model.contact.ContactResource;
 import google.registry.model.contact.PostalInfo;
@@ -33,6 +36,7 @@ import google.registry.model.domain.DesignatedContact.Type;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.GracePeriod;
 import google.registry.model.eppcommon.StatusValue;
+import google.registry.model.host.HostResource;
 import google.registry.model.registrar.Registrar;
 import google.registry.model.translators.EnumToAttributeAdapter.EppEnum;
 import google.registry.util.FormattingLogger;
@@ -55,16 +59,38 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
   /** Domain which was the target of this WHOIS command. */
   private final DomainResource domain;
 
+  /** The registrar, contacts and nameservers of the domain. */
+  private final ReferencedEntities references;
+
   /** Creates new WHOIS domain response on the given domain. */
   DomainWhoisResponse(DomainResource domain, DateTime timestamp) {
+    this(domain, getReferences(domain).load(), timestamp);
+  }
+
+  /**
+   * Creates new WHOIS domain response on the given domain, whose {@link #getReferences references}
+   * have already been loaded.
+   */
+  DomainWhoisResponse(DomainResource domain, ReferencedEntities references, DateTime timestamp) {
     super(timestamp);
     this.domain = checkNotNull(domain, "domain");
+    this.references = checkNotNull(references, "references");
+  }
+
+  /**
+   * Returns a builder with the keys of the registrar, contacts and nameservers of a domain, so that
+   * they can be loaded in one batch rather than one at a time.
+   */
+  static ReferencedEntities.Builder getReferences(DomainResource domain) {
+    return ReferencedEntities.builder()
+        .addRegistrar(domain.getCurrentSponsorClientId())
+        .addContactsAndNameservers(domain);
   }
 
   @Override
   public String getPlainTextOutput(final boolean preferUnicode, String disclaimer) {
-    Registrar registrar = getRegistrar(domain.getCurrentSponsorClientId());
-    return new DomainEmitter()
+    Registrar registrar = getRegistrar(references, domain.getCurrentSponsorClientId());
+    return new DomainEmitter(references)
         .emitField(
             "Domain Name", maybeFormatHostname(domain.getFullyQualifiedDomainName(), preferUnicode))
         .emitField("Domain ID", domain.getRepoId())
@@ -85,7 +111,7 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
         .emitContact("Billing", getContactReference(Type.BILLING), preferUnicode)
         .emitSet(
             "Name Server",
-            domain.loadNameserverFullyQualifiedHostNames(),
+            getNameserverFullyQualifiedHostNames(),
             new Function<String, String>() {
               @Override
               public String apply(String hostName) {
@@ -99,6 +125,19 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
         .toString();
   }
 
+  /** Returns the sorted host names of the domain's nameservers. */
+  private ImmutableSortedSet<String> getNameserverFullyQualifiedHostNames() {
+    return FluentIterable.from(references.getAll(domain.getNameservers()))
+        .transform(
+            new Function<HostResource, String>() {
+              @Override
+              public String apply(HostResource host) {
+                return host.getFullyQualifiedHostName();
+              }
+            })
+        .toSortedSet(Ordering.natural());
+  }
+
   /** Returns the contact of the given type, or null if it does not exist. */
   @Nullable
   private Key<ContactResource> getContactReference(final Type type) {
@@ -113,6 +152,13 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
 
   /** Output emitter with logic for domains. */
   class DomainEmitter extends Emitter<DomainEmitter> {
+
+    private final ReferencedEntities references;
+
+    DomainEmitter(ReferencedEntities references) {
+      this.references = references;
+    }
+
     DomainEmitter emitPhone(
         String contactType, String title, @Nullable ContactPhoneNumber phoneNumber) {
       return emitField(
@@ -132,7 +178,7 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
       // If we refer to a contact that doesn't exist, that's a bug. It means referential integrity
       // has somehow been broken. We skip the rest of this contact, but log it to hopefully bring it
       // someone's attention.
-      ContactResource contactResource = ofy().load().key(contact).now();
+      ContactResource contactResource = references.get(contact);
       if (contactResource == null) {
         logger.severefmt("(BUG) Broken reference found from domain %s to contact %s",
             domain.getFullyQualifiedDomainName(), contact);
@@ -15,7 +15,10 @@
 package google.registry.whois;
 
 import com.google.common.net.InternetDomainName;
+import com.google.common.collect.ImmutableList;
+import google.registry.model.ReferencedEntities;
 import google.registry.model.host.HostResource;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import javax.annotation.Nullable;
 import org.joda.time.DateTime;
 
@@ -27,11 +30,17 @@ final class NameserverLookupByHostCommand extends DomainOrHostLookupCommand<Host
   }
 
   NameserverLookupByHostCommand(InternetDomainName hostName, @Nullable InternetDomainName tld) {
-    super(hostName, tld, "Nameserver");
+    super(hostName, tld, ResourceType.HOST, "Nameserver");
   }
 
   @Override
-  WhoisResponse getSuccessResponse(HostResource host, DateTime now) {
-    return new NameserverWhoisResponse(host, now);
+  ReferencedEntities.Builder getReferences(HostResource host) {
+    return NameserverWhoisResponse.getReferences(ImmutableList.of(host));
+  }
+
+  @Override
+  WhoisResponse getSuccessResponse(
+      HostResource host, ReferencedEntities references, DateTime now) {
+    return new NameserverWhoisResponse(ImmutableList.of(host), references, now);
   }
 }
@@ -19,6 +19,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.net.InetAddresses;
+import google.registry.model.ReferencedEntities;
 import google.registry.model.host.HostResource;
 import google.registry.model.registrar.Registrar;
 import java.net.InetAddress;
@@ -30,6 +31,9 @@ final class NameserverWhoisResponse extends WhoisResponseImpl {
   /** Nameserver(s) which were the target of this WHOIS command. */
   private final ImmutableList<HostResource> hosts;
 
+  /** The registrars of the hosts. */
+  private final ReferencedEntities references;
+
   /** Creates new WHOIS nameserver response on the given host. */
   NameserverWhoisResponse(HostResource host, DateTime timestamp) {
     this(ImmutableList.of(checkNotNull(host, "host")), timestamp);
@@ -37,8 +41,30 @@ final class NameserverWhoisResponse extends WhoisResponseImpl {
 
   /** Creates new WHOIS nameserver response on the given list of hosts. */
   NameserverWhoisResponse(ImmutableList<HostResource> hosts, DateTime timestamp) {
+    this(hosts, getReferences(hosts).load(), timestamp);
+  }
+
+  /**
+   * Creates new WHOIS nameserver response on the given list of hosts, whose
+   * {@link #getReferences references} have already been loaded.
+   */
+  NameserverWhoisResponse(
+      ImmutableList<HostResource> hosts, ReferencedEntities references, DateTime timestamp) {
     super(timestamp);
     this.hosts = checkNotNull(hosts, "hosts");
+    this.references = checkNotNull(references, "references");
+  }
+
+  /**
+   * Returns a builder with the keys of the registrars of the hosts, so that they can be loaded in
+   * one batch rather than one at a time.
+   */
+  static ReferencedEntities.Builder getReferences(ImmutableList<HostResource> hosts) {
+    ReferencedEntities.Builder referencesBuilder = ReferencedEntities.builder();
+    for (HostResource host : hosts) {
+      referencesBuilder.addRegistrar(host.getCurrentSponsorClientId());
+    }
+    return referencesBuilder;
   }
 
   @Override
@@ -46,7 +72,7 @@ final class NameserverWhoisResponse extends WhoisResponseImpl {
     BasicEmitter emitter = new BasicEmitter();
     for (int i = 0; i < hosts.size(); i++) {
       HostResource host = hosts.get(i);
-      Registrar registrar = getRegistrar(host.getCurrentSponsorClientId());
+      Registrar registrar = getRegistrar(references, host.getCurrentSponsorClientId());
       emitter
           .emitField("Server Name", maybeFormatHostname(
               host.getFullyQualifiedHostName(), preferUnicode))
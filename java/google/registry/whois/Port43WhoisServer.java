@@ -0,0 +1,447 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.whois;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.nio.channels.SelectionKey.OP_ACCEPT;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.channels.SelectionKey.OP_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import google.registry.util.Clock;
+import google.registry.util.FormattingLogger;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.Nullable;
+import org.joda.time.Duration;
+
+/**
+ * Optional embedded WHOIS server that speaks RFC 3912 directly over TCP.
+ *
+ * <p>Port 43 queries normally reach {@link WhoisServer} as HTTP POSTs from an external proxy, so
+ * each one costs an HTTP request, a request component and a servlet thread. Wherever the registry
+ * can accept TCP connections itself, this server can take the proxy's place: a single selector
+ * thread accepts connections, reads the query line and writes the response back, and only the
+ * queries themselves run on a pool of worker threads, using the same {@link WhoisReader} and
+ * {@link WhoisCommand} code as {@link WhoisServer}.
+ *
+ * <p>Each client address may send {@code burst} queries at once and {@code queriesPerSecond} on
+ * average after that, and at most {@code maxInFlight} queries run at the same time. Queries beyond
+ * either limit are answered with a short refusal straight away, since WHOIS has no way to return
+ * errors other than as text, rather than being queued. Clients that don't send a complete query
+ * line (or read their response) within {@link #TIMEOUT} are disconnected.
+ *
+ * @see <a href="http://www.ietf.org/rfc/rfc3912.txt">RFC 3912: WHOIS Protocol Specification</a>
+ */
+public final class Port43WhoisServer extends AbstractExecutionThreadService {
+
+  private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
+
+  /** Longest query line that is accepted, in bytes, including the line terminator. */
+  @VisibleForTesting
+  static final int MAX_QUERY_BYTES = 1024;
+
+  /** How long a client has to send its query, and then to read the response. */
+  @VisibleForTesting
+  static final Duration TIMEOUT = Duration.standardSeconds(10);
+
+  /** How long the selector waits for activity before looking for timed out connections. */
+  private static final long SELECT_TIMEOUT_MILLIS = 500;
+
+  /** Maximum number of client addresses to keep track of the query rates of. */
+  private static final int MAX_TRACKED_ADDRESSES = 100000;
+
+  @VisibleForTesting
+  static final String RATE_LIMITED_RESPONSE =
+      "Query rate limit exceeded. Please try again later.\r\n";
+
+  @VisibleForTesting
+  static final String BUSY_RESPONSE = "Server busy. Please try again later.\r\n";
+
+  @VisibleForTesting
+  static final String QUERY_TOO_LONG_RESPONSE = "Query too long.\r\n";
+
+  /** Computes the plain text response to a single WHOIS query. */
+  public interface Responder {
+
+    /**
+     * Returns the response to a query, including its line terminator. This is called on a worker
+     * thread, and must turn any errors into text as well.
+     */
+    String getResponseText(String query);
+  }
+
+  /** Returns a responder that answers queries exactly the same way as {@link WhoisServer}. */
+  public static Responder newWhoisResponder(final Clock clock, final String disclaimer) {
+    return new Responder() {
+      @Override
+      public String getResponseText(String query) {
+        return WhoisServer.getResponseText(new StringReader(query), clock.nowUtc(), disclaimer);
+      }};
+  }
+
+  private final InetSocketAddress address;
+  private final Responder responder;
+  private final Clock clock;
+  private final ThreadFactory threadFactory;
+  private final int maxInFlight;
+  private final Semaphore inFlight;
+  private final double queriesPerMilli;
+  private final int burst;
+
+  /** Connections whose query has been answered by a worker, waiting to be written back. */
+  private final Queue<SelectionKey> answered = new ConcurrentLinkedQueue<>();
+
+  /** Query rates by client address, only ever touched by the selector thread. */
+  private final ConcurrentMap<InetAddress, TokenBucket> tokenBuckets =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_TRACKED_ADDRESSES)
+          .expireAfterAccess(1, MINUTES)
+          .<InetAddress, TokenBucket>build()
+          .asMap();
+
+  private volatile Selector selector;
+  private volatile InetSocketAddress localAddress;
+  private ServerSocketChannel serverChannel;
+  private ExecutorService workers;
+
+  /**
+   * Returns a new server, which starts listening once the service is started.
+   *
+   * @param address address to listen on; a port of zero picks any free port
+   * @param responder computes the responses to queries
+   * @param threadFactory factory for the selector thread and the worker threads, which on App
+   *     Engine must create threads that are allowed to use the App Engine APIs
+   * @param maxInFlight maximum number of queries to run at the same time
+   * @param queriesPerSecond average number of queries accepted per second from each client address
+   * @param burst maximum number of queries accepted at once from each client address
+   */
+  public Port43WhoisServer(
+      InetSocketAddress address,
+      Responder responder,
+      Clock clock,
+      ThreadFactory threadFactory,
+      int maxInFlight,
+      int queriesPerSecond,
+      int burst) {
+    checkArgument(maxInFlight > 0, "maxInFlight must be greater than zero");
+    checkArgument(queriesPerSecond > 0, "queriesPerSecond must be greater than zero");
+    checkArgument(burst > 0, "burst must be greater than zero");
+    this.address = checkNotNull(address, "address");
+    this.responder = checkNotNull(responder, "responder");
+    this.clock = checkNotNull(clock, "clock");
+    this.threadFactory = checkNotNull(threadFactory, "threadFactory");
+    this.maxInFlight = maxInFlight;
+    this.inFlight = new Semaphore(maxInFlight);
+    this.queriesPerMilli = queriesPerSecond / 1000.0;
+    this.burst = burst;
+  }
+
+  /** Returns the address that the server is listening on, once it is running. */
+  @Nullable
+  public InetSocketAddress getLocalAddress() {
+    return localAddress;
+  }
+
+  @Override
+  protected void startUp() throws IOException {
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.configureBlocking(false);
+    serverChannel.socket().bind(address);
+    serverChannel.register(selector, OP_ACCEPT);
+    workers = Executors.newFixedThreadPool(maxInFlight, threadFactory);
+    localAddress = (InetSocketAddress) serverChannel.socket().getLocalSocketAddress();
+    logger.infofmt("Serving WHOIS on %s", localAddress);
+  }
+
+  @Override
+  protected void run() throws IOException {
+    while (isRunning()) {
+      selector.select(SELECT_TIMEOUT_MILLIS);
+      Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+      while (selectedKeys.hasNext()) {
+        SelectionKey key = selectedKeys.next();
+        selectedKeys.remove();
+        if (key.channel() == serverChannel) {
+          accept();
+          continue;
+        }
+        try {
+          if (key.isValid() && key.isReadable()) {
+            read(key);
+          }
+          if (key.isValid() && key.isWritable()) {
+            write(key);
+          }
+        } catch (IOException e) {
+          logger.info(e, "WHOIS connection failed");
+          close(key);
+        }
+      }
+      long nowMillis = clock.nowUtc().getMillis();
+      for (SelectionKey key = answered.poll(); key != null; key = answered.poll()) {
+        if (key.isValid()) {
+          ((Connection) key.attachment()).deadlineMillis = nowMillis + TIMEOUT.getMillis();
+          key.interestOps(OP_WRITE);
+        }
+      }
+      for (SelectionKey key : selector.keys()) {
+        Connection connection = (Connection) key.attachment();
+        if (connection != null && nowMillis >= connection.deadlineMillis) {
+          close(key);
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void triggerShutdown() {
+    Selector selector = this.selector;
+    if (selector != null) {
+      selector.wakeup();
+    }
+  }
+
+  @Override
+  protected void shutDown() throws IOException {
+    workers.shutdownNow();
+    for (SelectionKey key : selector.keys()) {
+      key.channel().close();
+    }
+    selector.close();
+  }
+
+  @Override
+  protected Executor executor() {
+    final ExecutorService executor = Executors.newSingleThreadExecutor(threadFactory);
+    // Make sure the ExecutorService terminates when this service does.
+    addListener(
+        new Listener() {
+          @Override
+          public void terminated(State from) {
+            executor.shutdown();
+          }
+
+          @Override
+          public void failed(State from, Throwable failure) {
+            executor.shutdown();
+          }
+        },
+        directExecutor());
+    return executor;
+  }
+
+  private void accept() {
+    SocketChannel channel;
+    try {
+      channel = serverChannel.accept();
+      if (channel == null) {
+        return;
+      }
+    } catch (IOException e) {
+      logger.warning(e, "Failed to accept WHOIS connection");
+      return;
+    }
+    long nowMillis = clock.nowUtc().getMillis();
+    Connection connection = new Connection(nowMillis + TIMEOUT.getMillis());
+    // The query is still read before a rate limited client is refused, so that closing the
+    // connection doesn't reset it before the client got to read the refusal.
+    if (!tryTakeToken(channel.socket().getInetAddress(), nowMillis)) {
+      connection.refusal = RATE_LIMITED_RESPONSE;
+    }
+    try {
+      channel.configureBlocking(false);
+      channel.register(selector, OP_READ, connection);
+    } catch (IOException e) {
+      logger.info(e, "WHOIS connection failed");
+      closeQuietly(channel);
+    }
+  }
+
+  private void read(SelectionKey key) throws IOException {
+    Connection connection = (Connection) key.attachment();
+    if (((SocketChannel) key.channel()).read(connection.input) < 0) {
+      close(key);
+      return;
+    }
+    int length = getQueryLength(connection.input);
+    if (length < 0) {
+      if (!connection.input.hasRemaining()) {
+        respond(key, QUERY_TOO_LONG_RESPONSE);
+      }
+      return;
+    }
+    if (connection.refusal != null) {
+      respond(key, connection.refusal);
+      return;
+    }
+    if (!inFlight.tryAcquire()) {
+      respond(key, BUSY_RESPONSE);
+      return;
+    }
+    key.interestOps(0);
+    connection.deadlineMillis = Long.MAX_VALUE;
+    try {
+      workers.execute(new Query(key, new String(connection.input.array(), 0, length, UTF_8)));
+    } catch (RejectedExecutionException e) {
+      // The server is shutting down.
+      inFlight.release();
+      close(key);
+    }
+  }
+
+  private void write(SelectionKey key) throws IOException {
+    Connection connection = (Connection) key.attachment();
+    ((SocketChannel) key.channel()).write(connection.output);
+    if (!connection.output.hasRemaining()) {
+      // RFC 3912: the server closes the connection as soon as the output is finished.
+      close(key);
+    }
+  }
+
+  private static void respond(SelectionKey key, String responseText) {
+    ((Connection) key.attachment()).output = UTF_8.encode(responseText);
+    key.interestOps(OP_WRITE);
+  }
+
+  /**
+   * Returns the length of the query line in the buffer, including its line terminator, or -1 if
+   * the line isn't complete yet.
+   */
+  private static int getQueryLength(ByteBuffer input) {
+    byte[] bytes = input.array();
+    for (int i = 0; i < input.position(); i++) {
+      if (bytes[i] == '\n') {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  private boolean tryTakeToken(InetAddress clientAddress, long nowMillis) {
+    TokenBucket tokenBucket = tokenBuckets.get(clientAddress);
+    if (tokenBucket == null) {
+      tokenBucket = new TokenBucket(burst, nowMillis);
+      tokenBuckets.put(clientAddress, tokenBucket);
+    }
+    return tokenBucket.tryTake(nowMillis);
+  }
+
+  private static void close(SelectionKey key) {
+    key.cancel();
+    closeQuietly((SocketChannel) key.channel());
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.info(e, "Failed to close WHOIS connection");
+    }
+  }
+
+  /** Runs a query on a worker thread, and hands the response back to the selector thread. */
+  private final class Query implements Runnable {
+
+    private final SelectionKey key;
+    private final String query;
+
+    Query(SelectionKey key, String query) {
+      this.key = key;
+      this.query = query;
+    }
+
+    @Override
+    public void run() {
+      String responseText;
+      try {
+        responseText = responder.getResponseText(query);
+      } catch (Throwable t) {
+        logger.severe(t, "WHOIS query crashed");
+        responseText = "Internal Server Error\r\n";
+      } finally {
+        inFlight.release();
+      }
+      ((Connection) key.attachment()).output = UTF_8.encode(responseText);
+      answered.add(key);
+      selector.wakeup();
+    }
+  }
+
+  /** The state of a single client connection. */
+  private static final class Connection {
+
+    final ByteBuffer input = ByteBuffer.allocate(MAX_QUERY_BYTES);
+
+    /** Time after which the connection is closed, in millis; only used by the selector thread. */
+    long deadlineMillis;
+
+    /** Response to send instead of running the query, if the client is being refused. */
+    @Nullable String refusal;
+
+    /** The response, which is set by a worker thread for queries that were run. */
+    volatile ByteBuffer output;
+
+    Connection(long deadlineMillis) {
+      this.deadlineMillis = deadlineMillis;
+    }
+  }
+
+  /** Token bucket for the query rate of a single client address. */
+  private final class TokenBucket {
+
+    private double tokens;
+    private long refillMillis;
+
+    TokenBucket(double tokens, long refillMillis) {
+      this.tokens = tokens;
+      this.refillMillis = refillMillis;
+    }
+
+    boolean tryTake(long nowMillis) {
+      tokens = Math.min(burst, tokens + Math.max(0, nowMillis - refillMillis) * queriesPerMilli);
+      refillMillis = nowMillis;
+      if (tokens < 1) {
+        return false;
+      }
+      tokens--;
+      return true;
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
+import google.registry.model.ReferencedEntities;
 import google.registry.model.eppcommon.Address;
 import google.registry.model.registrar.Registrar;
 import google.registry.util.Idn;
@@ -192,10 +193,11 @@ abstract class WhoisResponseImpl implements WhoisResponse {
   /** An emitter that needs no special logic. */
   static class BasicEmitter extends Emitter<BasicEmitter> {}
 
-  /** Returns the registrar for this client id, or an empty registrar with null values. */
-  static Registrar getRegistrar(@Nullable String clientId) {
-    return Optional
-        .fromNullable(clientId == null ? null : Registrar.loadByClientId(clientId))
-        .or(EMPTY_REGISTRAR);
+  /**
+   * Returns the registrar for this client id from entities that were loaded in a batch, or an
+   * empty registrar with null values.
+   */
+  static Registrar getRegistrar(ReferencedEntities references, @Nullable String clientId) {
+    return Optional.fromNullable(references.getRegistrar(clientId)).or(EMPTY_REGISTRAR);
   }
 }
@@ -65,20 +65,7 @@ public class WhoisServer implements Runnable {
 
   @Override
   public void run() {
-    String responseText;
-    DateTime now = clock.nowUtc();
-    try {
-      responseText =
-          new WhoisReader(input, now)
-              .readCommand()
-              .executeQuery(now)
-              .getPlainTextOutput(PREFER_UNICODE, disclaimer);
-    } catch (WhoisException e) {
-      responseText = e.getPlainTextOutput(PREFER_UNICODE, disclaimer);
-    } catch (Throwable t) {
-      logger.severe(t, "WHOIS request crashed");
-      responseText = "Internal Server Error";
-    }
+    String responseText = getResponseText(input, clock.nowUtc(), disclaimer);
     // Note that we always return 200 (OK) even if an error was hit. This is because returning an
     // non-OK HTTP status code will cause the proxy server to silently close the connection. Since
     // WHOIS has no way to return errors, it's better to convert any such errors into strings and
@@ -87,4 +74,22 @@ public class WhoisServer implements Runnable {
     response.setContentType(CONTENT_TYPE);
     response.setPayload(responseText);
   }
+
+  /**
+   * Reads a WHOIS command and returns the plain text response to it, turning any errors into text
+   * as well, since WHOIS has no other way to report them.
+   */
+  static String getResponseText(Reader input, DateTime now, String disclaimer) {
+    try {
+      return new WhoisReader(input, now)
+          .readCommand()
+          .executeQuery(now)
+          .getPlainTextOutput(PREFER_UNICODE, disclaimer);
+    } catch (WhoisException e) {
+      return e.getPlainTextOutput(PREFER_UNICODE, disclaimer);
+    } catch (Throwable t) {
+      logger.severe(t, "WHOIS request crashed");
+      return "Internal Server Error";
+    }
+  }
 }
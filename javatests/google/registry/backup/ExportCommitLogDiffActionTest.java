@@ -16,6 +16,8 @@ package google.registry.backup;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
+import static google.registry.backup.BackupUtils.GZIP_COMPRESSION;
+import static google.registry.backup.BackupUtils.GcsMetadataKeys.COMPRESSION;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.LOWER_BOUND_CHECKPOINT;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.NUM_TRANSACTIONS;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.UPPER_BOUND_CHECKPOINT;
@@ -28,6 +30,7 @@ import com.google.appengine.tools.cloudstorage.GcsFilename;
 import com.google.appengine.tools.cloudstorage.GcsService;
 import com.google.appengine.tools.cloudstorage.GcsServiceFactory;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.ObjectifyService;
 import google.registry.config.TestRegistryConfig;
@@ -40,7 +43,11 @@ import google.registry.testing.AppEngineRule;
 import google.registry.testing.GcsTestingUtils;
 import google.registry.testing.RegistryConfigRule;
 import google.registry.testing.TestObject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Rule;
@@ -108,9 +115,10 @@ public class ExportCommitLogDiffActionTest {
             UPPER_BOUND_CHECKPOINT,
             now.toString(),
             NUM_TRANSACTIONS,
-            "0");
-    List<ImmutableObject> exported =
-        deserializeEntities(GcsTestingUtils.readGcsFile(gcsService, expectedFilename));
+            "0",
+            COMPRESSION,
+            GZIP_COMPRESSION);
+    List<ImmutableObject> exported = readDiffFile(expectedFilename);
     assertThat(exported).containsExactly(upperCheckpoint);
   }
 
@@ -163,9 +171,10 @@ public class ExportCommitLogDiffActionTest {
             UPPER_BOUND_CHECKPOINT,
             now.toString(),
             NUM_TRANSACTIONS,
-            "4");
-    List<ImmutableObject> exported =
-        deserializeEntities(GcsTestingUtils.readGcsFile(gcsService, expectedFilename));
+            "4",
+            COMPRESSION,
+            GZIP_COMPRESSION);
+    List<ImmutableObject> exported = readDiffFile(expectedFilename);
     assertThat(exported.get(0)).isEqualTo(upperCheckpoint);
     // We expect these manifests, in time order, with matching mutations.
     CommitLogManifest manifest1 = createManifest(2, now.minusDays(1).minusMillis(1));
@@ -215,9 +224,10 @@ public class ExportCommitLogDiffActionTest {
             UPPER_BOUND_CHECKPOINT,
             now.toString(),
             NUM_TRANSACTIONS,
-            "4");
-    List<ImmutableObject> exported =
-        deserializeEntities(GcsTestingUtils.readGcsFile(gcsService, expectedFilename));
+            "4",
+            COMPRESSION,
+            GZIP_COMPRESSION);
+    List<ImmutableObject> exported = readDiffFile(expectedFilename);
     assertThat(exported.get(0)).isEqualTo(upperCheckpoint);
     // We expect these manifests, in the order below, with matching mutations.
     CommitLogManifest manifest1 = createManifest(1, oneMinuteAgo);
@@ -270,9 +280,10 @@ public class ExportCommitLogDiffActionTest {
             UPPER_BOUND_CHECKPOINT,
             now.toString(),
             NUM_TRANSACTIONS,
-            "6");
-    List<ImmutableObject> exported =
-        deserializeEntities(GcsTestingUtils.readGcsFile(gcsService, expectedFilename));
+            "6",
+            COMPRESSION,
+            GZIP_COMPRESSION);
+    List<ImmutableObject> exported = readDiffFile(expectedFilename);
     assertThat(exported.get(0)).isEqualTo(upperCheckpoint);
     // We expect these manifests, in the order below, with matching mutations.
     CommitLogManifest manifest1 = createManifest(1, oneMinuteAgo);
@@ -325,9 +336,10 @@ public class ExportCommitLogDiffActionTest {
             UPPER_BOUND_CHECKPOINT,
             now.toString(),
             NUM_TRANSACTIONS,
-            "0");
-    List<ImmutableObject> exported =
-        deserializeEntities(GcsTestingUtils.readGcsFile(gcsService, expectedFilename));
+            "0",
+            COMPRESSION,
+            GZIP_COMPRESSION);
+    List<ImmutableObject> exported = readDiffFile(expectedFilename);
     // We expect no manifests or mutations, only the upper checkpoint.
     assertThat(exported).containsExactly(upperCheckpoint);
   }
@@ -358,9 +370,10 @@ public class ExportCommitLogDiffActionTest {
             UPPER_BOUND_CHECKPOINT,
             now.toString(),
             NUM_TRANSACTIONS,
-            "3");
-    List<ImmutableObject> exported =
-        deserializeEntities(GcsTestingUtils.readGcsFile(gcsService, expectedFilename));
+            "3",
+            COMPRESSION,
+            GZIP_COMPRESSION);
+    List<ImmutableObject> exported = readDiffFile(expectedFilename);
     assertThat(exported.get(0)).isEqualTo(upperCheckpoint);
     // We expect these manifests, in the order below, with matching mutations.
     CommitLogManifest manifest1 = createManifest(1, START_OF_TIME.plusMillis(1));
@@ -391,4 +404,11 @@ public class ExportCommitLogDiffActionTest {
     persistResource(
         createMutation(persistResource(createManifest(bucketNum, commitTime))));
   }
+
+  private List<ImmutableObject> readDiffFile(GcsFilename filename) throws IOException {
+    try (InputStream input = new GZIPInputStream(
+        new ByteArrayInputStream(GcsTestingUtils.readGcsFile(gcsService, filename)))) {
+      return deserializeEntities(ByteStreams.toByteArray(input));
+    }
+  }
 }
@@ -20,7 +20,10 @@ import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Maps.toMap;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static google.registry.backup.BackupUtils.GZIP_COMPRESSION;
+import static google.registry.backup.BackupUtils.GcsMetadataKeys.COMPRESSION;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.LOWER_BOUND_CHECKPOINT;
+import static google.registry.backup.BackupUtils.compressDiffFile;
 import static google.registry.backup.BackupUtils.serializeEntity;
 import static google.registry.backup.ExportCommitLogDiffAction.DIFF_FILE_PREFIX;
 import static google.registry.model.ofy.CommitLogBucket.getBucketIds;
@@ -55,6 +58,7 @@ import google.registry.testing.TestObject;
 import google.registry.util.Retrier;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
@@ -89,6 +93,8 @@ public class RestoreCommitLogsActionTest {
     ObjectifyService.register(TestObject.class);
     action.gcsService = gcsService;
     action.dryRun = false;
+    action.parallel = false;
+    action.executor = newDirectExecutorService();
     action.datastoreService = DatastoreServiceFactory.getDatastoreService();
     action.fromTime = now.minusMillis(1);
     action.retrier = new Retrier(new FakeSleeper(new FakeClock()), 1);
@@ -153,6 +159,114 @@ public class RestoreCommitLogsActionTest {
     assertCommitLogBuckets(ImmutableMap.of(1, now.minusMinutes(1), 2, now.minusMinutes(2)));
   }
 
+  @Test
+  public void testRestore_parallel_laterWritesWinAcrossTransactionsAndFiles() throws Exception {
+    action.parallel = true;
+    ofy().saveWithoutBackup().entities(
+        TestObject.create("previous to keep"),
+        TestObject.create("previous to delete and recreate", "old")).now();
+    // 1a: Add {"a", "b"}, Delete {"previous to delete and recreate"}
+    // 1b: Add {"previous to delete and recreate" = "new"}, Delete {"a"}
+    // 2:  Add {"a" = "again"}, Delete {"b"}
+    Key<CommitLogManifest> manifest1aKey =
+        CommitLogManifest.createKey(getBucketKey(1), now.minusMinutes(3));
+    Key<CommitLogManifest> manifest1bKey =
+        CommitLogManifest.createKey(getBucketKey(2), now.minusMinutes(2));
+    Key<CommitLogManifest> manifest2Key =
+        CommitLogManifest.createKey(getBucketKey(1), now.minusMinutes(1));
+    saveDiffFileNotToRestore(now.minusMinutes(2));
+    Iterable<ImmutableObject> file1CommitLogs = saveDiffFile(
+        createCheckpoint(now.minusMinutes(1)),
+        CommitLogManifest.create(
+            getBucketKey(1),
+            now.minusMinutes(3),
+            ImmutableSet.<Key<?>>of(
+                Key.create(TestObject.create("previous to delete and recreate")))),
+        CommitLogMutation.create(manifest1aKey, TestObject.create("a")),
+        CommitLogMutation.create(manifest1aKey, TestObject.create("b")),
+        CommitLogManifest.create(
+            getBucketKey(2),
+            now.minusMinutes(2),
+            ImmutableSet.<Key<?>>of(Key.create(TestObject.create("a")))),
+        CommitLogMutation.create(
+            manifest1bKey, TestObject.create("previous to delete and recreate", "new")));
+    Iterable<ImmutableObject> file2CommitLogs = saveDiffFile(
+        createCheckpoint(now),
+        CommitLogManifest.create(
+            getBucketKey(1),
+            now.minusMinutes(1),
+            ImmutableSet.<Key<?>>of(Key.create(TestObject.create("b")))),
+        CommitLogMutation.create(manifest2Key, TestObject.create("a", "again")));
+    action.fromTime = now.minusMinutes(1).minusMillis(1);
+    action.run();
+    ofy().clearSessionCache();
+    assertExpectedIds("previous to keep", "previous to delete and recreate", "a");
+    assertThat(ofy().load().entity(TestObject.create("previous to delete and recreate")).now()
+        .getField()).isEqualTo("new");
+    assertThat(ofy().load().entity(TestObject.create("a")).now().getField()).isEqualTo("again");
+    assertInDatastore(file1CommitLogs);
+    assertInDatastore(file2CommitLogs);
+    assertInDatastore(asList(CommitLogCheckpointRoot.create(now)));
+    assertCommitLogBuckets(ImmutableMap.of(1, now.minusMinutes(1), 2, now.minusMinutes(2)));
+  }
+
+  @Test
+  public void testRestore_parallel_dryRun_writesNothing() throws Exception {
+    action.parallel = true;
+    action.dryRun = true;
+    ofy().saveWithoutBackup().entity(TestObject.create("previous to keep")).now();
+    Key<CommitLogManifest> manifestKey = CommitLogManifest.createKey(getBucketKey(1), now);
+    saveDiffFileNotToRestore(now.minusMinutes(1));
+    saveDiffFile(
+        createCheckpoint(now),
+        CommitLogManifest.create(
+            getBucketKey(1),
+            now,
+            ImmutableSet.<Key<?>>of(Key.create(TestObject.create("previous to keep")))),
+        CommitLogMutation.create(manifestKey, TestObject.create("a")));
+    action.run();
+    ofy().clearSessionCache();
+    assertExpectedIds("previous to keep");
+    assertCommitLogBuckets(ImmutableMap.<Integer, DateTime>of());
+  }
+
+  @Test
+  public void testRestore_compressedDiffFiles() throws Exception {
+    doTestRestore_compressedDiffFiles();
+  }
+
+  @Test
+  public void testRestore_parallel_compressedDiffFiles() throws Exception {
+    action.parallel = true;
+    doTestRestore_compressedDiffFiles();
+  }
+
+  private void doTestRestore_compressedDiffFiles() throws Exception {
+    Key<CommitLogManifest> manifest1Key =
+        CommitLogManifest.createKey(getBucketKey(1), now.minusMinutes(1));
+    Key<CommitLogManifest> manifest2Key = CommitLogManifest.createKey(getBucketKey(1), now);
+    saveDiffFileNotToRestore(now.minusMinutes(2));
+    // An uncompressed file from before diffs were compressed, followed by a compressed one.
+    Iterable<ImmutableObject> file1CommitLogs = saveDiffFile(
+        createCheckpoint(now.minusMinutes(1)),
+        CommitLogManifest.create(getBucketKey(1), now.minusMinutes(1), null),
+        CommitLogMutation.create(manifest1Key, TestObject.create("a")));
+    Iterable<ImmutableObject> file2CommitLogs = saveDiffFile(
+        true,
+        createCheckpoint(now),
+        CommitLogManifest.create(
+            getBucketKey(1), now, ImmutableSet.<Key<?>>of(Key.create(TestObject.create("a")))),
+        CommitLogMutation.create(manifest2Key, TestObject.create("b")));
+    action.fromTime = now.minusMinutes(1).minusMillis(1);
+    action.run();
+    ofy().clearSessionCache();
+    assertExpectedIds("b");
+    assertInDatastore(file1CommitLogs);
+    assertInDatastore(file2CommitLogs);
+    assertInDatastore(asList(CommitLogCheckpointRoot.create(now)));
+    assertCommitLogBuckets(ImmutableMap.of(1, now));
+  }
+
   @Test
   public void testRestore_noManifests() throws Exception {
     ofy().saveWithoutBackup().entity(
@@ -265,18 +379,29 @@ public class RestoreCommitLogsActionTest {
 
   private Iterable<ImmutableObject> saveDiffFile(
       CommitLogCheckpoint checkpoint, ImmutableObject... entities) throws IOException {
+    return saveDiffFile(false, checkpoint, entities);
+  }
+
+  private Iterable<ImmutableObject> saveDiffFile(
+      boolean compressed, CommitLogCheckpoint checkpoint, ImmutableObject... entities)
+      throws IOException {
     DateTime now = checkpoint.getCheckpointTime();
     List<ImmutableObject> allEntities = Lists.<ImmutableObject>asList(checkpoint, entities);
-    ByteArrayOutputStream output = new ByteArrayOutputStream();
-    for (ImmutableObject entity : allEntities) {
-      serializeEntity(entity, output);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream output = compressed ? compressDiffFile(bytes) : bytes) {
+      for (ImmutableObject entity : allEntities) {
+        serializeEntity(entity, output);
+      }
+    }
+    GcsFileOptions.Builder options = new GcsFileOptions.Builder()
+        .addUserMetadata(LOWER_BOUND_CHECKPOINT, now.minusMinutes(1).toString());
+    if (compressed) {
+      options.addUserMetadata(COMPRESSION, GZIP_COMPRESSION);
     }
     gcsService.createOrReplace(
         new GcsFilename(GCS_BUCKET, DIFF_FILE_PREFIX + now),
-        new GcsFileOptions.Builder()
-            .addUserMetadata(LOWER_BOUND_CHECKPOINT, now.minusMinutes(1).toString())
-            .build(),
-        ByteBuffer.wrap(output.toByteArray()));
+        options.build(),
+        ByteBuffer.wrap(bytes.toByteArray()));
     return allEntities;
   }
 
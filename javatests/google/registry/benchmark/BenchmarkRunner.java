@@ -0,0 +1,210 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import google.registry.config.RegistryEnvironment;
+import google.registry.config.TestRegistryConfig;
+import google.registry.testing.AppEngineRule;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import javax.annotation.Nullable;
+import org.joda.time.Duration;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+/**
+ * Runs microbenchmarks with a fixed amount of work per iteration, and reports their results in a
+ * format that later runs can be compared against.
+ *
+ * <p>Each benchmark is run for {@link #WARMUP_ITERATIONS} unmeasured iterations, so that the JIT
+ * has compiled its hot paths, and then for {@link #MEASUREMENT_ITERATIONS} measured ones. Every
+ * iteration runs the same number of operations over the same inputs, so two reports only differ
+ * by the speed of the code and of the machine.
+ *
+ * <p>A report has one tab-separated line per benchmark, with its name, mean time per operation and
+ * standard deviation across iterations, preceded by comment lines starting with {@code #} that
+ * describe the JVM and machine it was produced on.
+ *
+ * <p>Benchmarks live next to the code they measure, so that they can reach package-private entry
+ * points, and each package's benchmarks are a {@link BenchmarkSuite} run by a {@code main} method
+ * that calls {@link #runMain}.
+ */
+public final class BenchmarkRunner {
+
+  public static final int WARMUP_ITERATIONS = 5;
+  public static final int MEASUREMENT_ITERATIONS = 10;
+
+  /** A benchmarked operation, along with the inputs that it is run over. */
+  public abstract static class Benchmark {
+
+    protected final String name;
+    protected final int operationsPerIteration;
+
+    protected Benchmark(String name, int operationsPerIteration) {
+      this.name = name;
+      this.operationsPerIteration = operationsPerIteration;
+    }
+
+    /** Prepares whatever the next iteration needs, which isn't measured. */
+    protected void setUpIteration() throws Exception {}
+
+    /**
+     * Runs the given operation of the current iteration, and returns its result so that the JIT
+     * can't optimize it away.
+     */
+    protected abstract Object run(int operation) throws Exception;
+  }
+
+  /** Benchmarks that are run together by a single program. */
+  public interface BenchmarkSuite {
+
+    /** Sets up the inputs of the benchmarks, and passes each of them to the runner. */
+    void runBenchmarks(BenchmarkRunner runner) throws Exception;
+  }
+
+  /** Compared against every result, which the JIT can't prove it never equals. */
+  private static volatile Object sink = new Object();
+
+  private final ImmutableList.Builder<String> reportLines = new ImmutableList.Builder<>();
+  private final ImmutableMap<String, Double> baseline;
+
+  /**
+   * Runs a suite of benchmarks against a locally stubbed datastore, as the {@code main} method of a
+   * program that takes the arguments {@code [reportFile] [baselineReportFile]}.
+   *
+   * <p>The registry and label lists stay cached for the whole run as they would in production,
+   * rather than being reloaded on every use as they are in unit tests.
+   *
+   * <p>The report of the run is written to the report file, if given, and the report of an earlier
+   * run can be passed as the baseline to print how each benchmark changed.
+   */
+  public static void runMain(String[] args, final BenchmarkSuite suite) throws Throwable {
+    final File reportFile = args.length > 0 ? new File(args[0]) : null;
+    final File baselineFile = args.length > 1 ? new File(args[1]) : null;
+    RegistryEnvironment.overrideConfigurationForTesting(new TestRegistryConfig() {
+        @Override
+        public Duration getSingletonCacheRefreshDuration() {
+          return Duration.standardDays(1);
+        }
+
+        @Override
+        public Duration getDomainLabelListCacheDuration() {
+          return Duration.standardDays(1);
+        }});
+    AppEngineRule.builder()
+        .withDatastore()
+        .build()
+        .apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+              BenchmarkRunner runner = new BenchmarkRunner(baselineFile);
+              suite.runBenchmarks(runner);
+              if (reportFile != null) {
+                Files.write(runner.getReport(), reportFile, UTF_8);
+              }
+            }},
+            Description.EMPTY)
+        .evaluate();
+  }
+
+  /** @param baselineFile a report from an earlier run to compare against, if any */
+  private BenchmarkRunner(@Nullable File baselineFile) throws IOException {
+    baseline = (baselineFile == null)
+        ? ImmutableMap.<String, Double>of()
+        : parseReport(Files.readLines(baselineFile, UTF_8));
+    reportLines
+        .add(String.format("# java.version: %s", System.getProperty("java.version")))
+        .add(String.format("# java.vm.name: %s", System.getProperty("java.vm.name")))
+        .add(String.format("# os: %s %s %s",
+            System.getProperty("os.name"),
+            System.getProperty("os.version"),
+            System.getProperty("os.arch")))
+        .add(String.format("# processors: %d", Runtime.getRuntime().availableProcessors()))
+        .add(String.format("# iterations: %d warmup, %d measured",
+            WARMUP_ITERATIONS, MEASUREMENT_ITERATIONS))
+        .add("# benchmark\tns/op\tstddev");
+  }
+
+  /** Runs a benchmark, and prints and records its result. */
+  public void run(Benchmark benchmark) throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      runIteration(benchmark);
+    }
+    double[] nanosPerOperation = new double[MEASUREMENT_ITERATIONS];
+    double sum = 0;
+    for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+      nanosPerOperation[i] = (double) runIteration(benchmark) / benchmark.operationsPerIteration;
+      sum += nanosPerOperation[i];
+    }
+    double mean = sum / MEASUREMENT_ITERATIONS;
+    double squaredDeviations = 0;
+    for (double nanos : nanosPerOperation) {
+      squaredDeviations += (nanos - mean) * (nanos - mean);
+    }
+    double stddev = Math.sqrt(squaredDeviations / (MEASUREMENT_ITERATIONS - 1));
+    reportLines.add(String.format(Locale.US, "%s\t%.1f\t%.1f", benchmark.name, mean, stddev));
+    Double baselineMean = baseline.get(benchmark.name);
+    System.out.printf(Locale.US, "%-55s %,12.1f ns/op  ± %,10.1f%s\n",
+        benchmark.name,
+        mean,
+        stddev,
+        (baselineMean == null)
+            ? ""
+            : String.format(Locale.US, "  (%+.1f%% vs. baseline)",
+                (mean - baselineMean) * 100 / baselineMean));
+  }
+
+  /** Runs a single iteration of a benchmark, and returns how long it took in nanoseconds. */
+  private static long runIteration(Benchmark benchmark) throws Exception {
+    benchmark.setUpIteration();
+    Object sinkValue = sink;
+    long start = System.nanoTime();
+    for (int i = 0; i < benchmark.operationsPerIteration; i++) {
+      if (benchmark.run(i) == sinkValue) {
+        throw new AssertionError();
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  /** Returns the report of all benchmarks run so far. */
+  private String getReport() {
+    StringBuilder report = new StringBuilder();
+    for (String line : reportLines.build()) {
+      report.append(line).append('\n');
+    }
+    return report.toString();
+  }
+
+  private static ImmutableMap<String, Double> parseReport(List<String> lines) {
+    ImmutableMap.Builder<String, Double> results = new ImmutableMap.Builder<>();
+    for (String line : lines) {
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      List<String> fields = Splitter.on('\t').splitToList(line);
+      results.put(fields.get(0), Double.parseDouble(fields.get(1)));
+    }
+    return results.build();
+  }
+}
@@ -0,0 +1,278 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.benchmark;
+
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistPremiumList;
+import static google.registry.testing.DatastoreHelper.persistReservedList;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.FullFieldsTestEntityHelper.makeAndPersistContactResource;
+import static google.registry.testing.FullFieldsTestEntityHelper.makeAndPersistHostResource;
+import static google.registry.testing.FullFieldsTestEntityHelper.makeDomainResource;
+import static google.registry.testing.FullFieldsTestEntityHelper.makeRegistrar;
+import static google.registry.util.DateTimeUtils.START_OF_TIME;
+import static google.registry.util.ResourceUtils.readResourceUtf8;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.joda.money.CurrencyUnit.USD;
+import static org.joda.time.DateTimeZone.UTC;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import google.registry.flows.EppXmlTransformer;
+import google.registry.flows.picker.FlowPicker;
+import google.registry.loadtest.LoadTestAction;
+import google.registry.model.domain.DomainResource;
+import google.registry.model.eppcommon.Trid;
+import google.registry.model.eppinput.EppInput;
+import google.registry.model.eppoutput.CheckData.DomainCheck;
+import google.registry.model.eppoutput.CheckData.DomainCheckData;
+import google.registry.model.eppoutput.EppOutput;
+import google.registry.model.eppoutput.EppResponse;
+import google.registry.model.eppoutput.Result;
+import google.registry.model.registrar.Registrar;
+import google.registry.model.registry.Registry;
+import google.registry.model.registry.Registry.TldState;
+import google.registry.model.registry.label.PremiumList;
+import google.registry.model.registry.label.ReservedList;
+import google.registry.model.tmch.ClaimsListShard;
+import google.registry.tldconfig.idn.IdnLabelValidator;
+import google.registry.xml.ValidationMode;
+import java.util.List;
+import java.util.Random;
+import org.joda.money.Money;
+import org.joda.time.DateTime;
+
+/**
+ * Microbenchmarks of the code that every EPP command, check, WHOIS or RDAP query runs through.
+ *
+ * <p>EPP commands are built from the load test templates, and the reserved, premium and claims
+ * lists are synthesized with {@value #LIST_SIZE} labels each. All inputs come from a fixed random
+ * seed, so that reports from different releases measure the same work. Domain name validation and RDAP formatting aren't public, so they are
+ * benchmarked from their own packages instead.
+ *
+ * <p>Usage: {@code EppHotPathBenchmark [reportFile] [baselineReportFile]}, where the report of a
+ * run can be passed as the baseline of a later one to print how each benchmark changed.
+ */
+public final class EppHotPathBenchmark {
+
+  private static final String TLD = "bench";
+  private static final int LIST_SIZE = 10000;
+  private static final int LABEL_COUNT = 1000;
+  private static final long RANDOM_SEED = 20161001;
+  private static final DateTime NOW = DateTime.parse("2016-10-01T00:00:00Z");
+
+  private static final ImmutableList<String> TEMPLATES = ImmutableList.of(
+      "contact_create",
+      "contact_info",
+      "domain_check",
+      "domain_create",
+      "domain_info",
+      "host_create",
+      "host_info");
+
+  public static void main(String[] args) throws Throwable {
+    BenchmarkRunner.runMain(args, new BenchmarkRunner.BenchmarkSuite() {
+        @Override
+        public void runBenchmarks(BenchmarkRunner runner) throws Exception {
+          EppHotPathBenchmark.runBenchmarks(runner);
+        }});
+  }
+
+  private static void runBenchmarks(BenchmarkRunner runner) throws Exception {
+    Random random = new Random(RANDOM_SEED);
+    createTld(TLD);
+    ImmutableList<String> listedLabels = SyntheticLabels.randomLabels(random, LIST_SIZE);
+    persistLabelLists(listedLabels);
+    // Half of the labels that are looked up are on the lists, and half aren't.
+    ImmutableList.Builder<String> labelsBuilder = new ImmutableList.Builder<>();
+    for (int i = 0; i < LABEL_COUNT / 2; i++) {
+      labelsBuilder.add(listedLabels.get(random.nextInt(LIST_SIZE)));
+    }
+    final ImmutableList<String> labels =
+        labelsBuilder.addAll(SyntheticLabels.randomLabels(random, LABEL_COUNT / 2)).build();
+    final ImmutableList<String> idnLabels = SyntheticLabels.randomIdnLabels(random, LABEL_COUNT);
+    runEppBenchmarks(runner, labels);
+    runLabelBenchmarks(runner, labels, idnLabels);
+    runDomainBenchmarks(runner);
+    runRegistryBenchmarks(runner, random);
+  }
+
+  private static void runEppBenchmarks(BenchmarkRunner runner, ImmutableList<String> labels)
+      throws Exception {
+    ImmutableList.Builder<EppInput> eppInputs = new ImmutableList.Builder<>();
+    for (String template : TEMPLATES) {
+      final byte[] xml = readResourceUtf8(
+              LoadTestAction.class, String.format("templates/%s.xml", template))
+          .replace("%tld%", TLD)
+          .replace("%domain%", labels.get(0))
+          .replace("%contact%", "contact1234")
+          .replace("%host%", "ns1")
+          .getBytes(UTF_8);
+      eppInputs.add(EppXmlTransformer.unmarshal(EppInput.class, xml));
+      runner.run(new BenchmarkRunner.Benchmark(
+          String.format("EppXmlTransformer.unmarshal(%s)", template), 2000) {
+            @Override
+            protected Object run(int operation) throws Exception {
+              return EppXmlTransformer.unmarshal(EppInput.class, xml);
+            }});
+    }
+
+    ImmutableList.Builder<DomainCheck> checks = new ImmutableList.Builder<>();
+    for (int i = 0; i < 5; i++) {
+      checks.add(DomainCheck.create(i % 2 == 0, labels.get(i) + "." + TLD, null));
+    }
+    final EppOutput checkOutput = EppOutput.create(new EppResponse.Builder()
+        .setTrid(Trid.create("client-trid", "server-trid"))
+        .setResult(Result.create(Result.Code.SUCCESS))
+        .setResData(ImmutableList.of(DomainCheckData.create(checks.build())))
+        .build());
+    runner.run(new BenchmarkRunner.Benchmark("EppXmlTransformer.marshal(domain check)", 2000) {
+        @Override
+        protected Object run(int operation) throws Exception {
+          return EppXmlTransformer.marshal(checkOutput, ValidationMode.STRICT);
+        }});
+
+    final ImmutableList<EppInput> inputs = eppInputs.build();
+    runner.run(new BenchmarkRunner.Benchmark("FlowPicker.getFlowClass", 100000) {
+        @Override
+        protected Object run(int operation) throws Exception {
+          return FlowPicker.getFlowClass(inputs.get(operation % inputs.size()));
+        }});
+  }
+
+  private static void runLabelBenchmarks(
+      BenchmarkRunner runner,
+      final ImmutableList<String> labels,
+      final ImmutableList<String> idnLabels) throws Exception {
+    runner.run(new BenchmarkRunner.Benchmark(
+        "IdnLabelValidator.findValidIdnTableForTld", 100000) {
+          @Override
+          protected Object run(int operation) throws Exception {
+            return IdnLabelValidator.findValidIdnTableForTld(
+                idnLabels.get(operation % LABEL_COUNT), TLD);
+          }});
+    runner.run(new BenchmarkRunner.Benchmark("ReservedList.getReservation", 100000) {
+        @Override
+        protected Object run(int operation) throws Exception {
+          return ReservedList.getReservation(labels.get(operation % LABEL_COUNT), TLD);
+        }});
+    runner.run(new BenchmarkRunner.Benchmark("PremiumList.getPremiumPrice", 100000) {
+        @Override
+        protected Object run(int operation) throws Exception {
+          return PremiumList.getPremiumPrice(labels.get(operation % LABEL_COUNT), TLD);
+        }});
+    runner.run(new BenchmarkRunner.Benchmark("ClaimsListShard.getClaimKey", 100000) {
+        @Override
+        protected Object run(int operation) throws Exception {
+          // Returns null for most labels, so return the list instead.
+          ClaimsListShard claimsList = ClaimsListShard.get();
+          claimsList.getClaimKey(labels.get(operation % LABEL_COUNT));
+          return claimsList;
+        }});
+  }
+
+  private static void runDomainBenchmarks(BenchmarkRunner runner) throws Exception {
+    Registrar registrar = persistResource(
+        makeRegistrar("benchregistrar", "Bench Registrar", Registrar.State.ACTIVE));
+    final DomainResource domain = persistResource(makeDomainResource(
+        "cat." + TLD,
+        makeAndPersistContactResource("5372808-ERL", "Goblin Market", "lol@cat.lol", NOW),
+        makeAndPersistContactResource("5372808-IRL", "Santa Claus", "BOFH@cat.lol", NOW),
+        makeAndPersistContactResource("5372808-TRL", "The Raven", "bog@cat.lol", NOW),
+        makeAndPersistHostResource("ns1.example.net", "1.2.3.4", NOW),
+        makeAndPersistHostResource("ns2.example.net", "bad:f00d:cafe::15:beef", NOW),
+        registrar));
+
+    runner.run(new BenchmarkRunner.Benchmark("ImmutableObject.hashCode(DomainResource)", 10000) {
+        final DomainResource[] copies = new DomainResource[operationsPerIteration];
+
+        @Override
+        protected void setUpIteration() {
+          // Hash codes are memoized, so every operation needs an object that hasn't been hashed.
+          for (int i = 0; i < copies.length; i++) {
+            copies[i] = domain.asBuilder().build();
+          }
+        }
+
+        @Override
+        protected Object run(int operation) throws Exception {
+          return copies[operation].hashCode();
+        }});
+  }
+
+  private static void runRegistryBenchmarks(BenchmarkRunner runner, Random random)
+      throws Exception {
+    ImmutableSortedMap.Builder<DateTime, Money> renewCosts = ImmutableSortedMap.naturalOrder();
+    renewCosts.put(START_OF_TIME, Money.of(USD, 8));
+    for (int year = 2010; year <= 2030; year++) {
+      renewCosts.put(new DateTime(year, 1, 1, 0, 0, UTC), Money.of(USD, year - 2000));
+    }
+    final Registry registry = Registry.get(TLD).asBuilder()
+        .setTldStateTransitions(ImmutableSortedMap.of(
+            START_OF_TIME, TldState.PREDELEGATION,
+            NOW.minusYears(2), TldState.SUNRISE,
+            NOW.minusYears(1), TldState.LANDRUSH,
+            NOW.minusMonths(6), TldState.GENERAL_AVAILABILITY))
+        .setRenewBillingCostTransitions(renewCosts.build())
+        .build();
+    // Times spread over all of the renew cost transitions, so that every lookup has to search.
+    final DateTime[] times = new DateTime[LABEL_COUNT];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = NOW.minusYears(10).plus((long) (random.nextDouble() * 20 * 365 * 86400000L));
+    }
+
+    runner.run(new BenchmarkRunner.Benchmark("Registry.getTldState(now)", 1000000) {
+        @Override
+        protected Object run(int operation) throws Exception {
+          return registry.getTldState(NOW);
+        }});
+    runner.run(new BenchmarkRunner.Benchmark("Registry.getStandardRenewCost(now)", 1000000) {
+        @Override
+        protected Object run(int operation) throws Exception {
+          return registry.getStandardRenewCost(NOW);
+        }});
+    runner.run(new BenchmarkRunner.Benchmark(
+        "Registry.getStandardRenewCost(random times)", 1000000) {
+          @Override
+          protected Object run(int operation) throws Exception {
+            return registry.getStandardRenewCost(times[operation % LABEL_COUNT]);
+          }});
+  }
+
+  /** Persists synthetic reserved, premium and claims lists for the TLD. */
+  private static void persistLabelLists(List<String> listedLabels) {
+    String[] reservationTypes =
+        {"FULLY_BLOCKED", "NAME_COLLISION", "ALLOWED_IN_SUNRISE", "MISTAKEN_PREMIUM"};
+    String[] reservedLines = new String[listedLabels.size() / 2];
+    for (int i = 0; i < reservedLines.length; i++) {
+      reservedLines[i] = listedLabels.get(i) + "," + reservationTypes[i % reservationTypes.length];
+    }
+    String[] premiumLines = new String[listedLabels.size() / 2];
+    ImmutableMap.Builder<String, String> claims = new ImmutableMap.Builder<>();
+    for (int i = 0; i < premiumLines.length; i++) {
+      String label = listedLabels.get(reservedLines.length + i);
+      premiumLines[i] = String.format("%s,USD %d", label, 100 + i % 900);
+      claims.put(label, String.format("2013041500/%d/a/b/%08x", i % 10, i));
+    }
+    persistResource(Registry.get(TLD).asBuilder()
+        .setReservedLists(persistReservedList(TLD + "-reserved", reservedLines))
+        .setPremiumList(persistPremiumList(TLD, premiumLines))
+        .build());
+    ClaimsListShard.create(NOW, claims.build()).save();
+  }
+
+  private EppHotPathBenchmark() {}
+}
@@ -0,0 +1,57 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import google.registry.util.Idn;
+import java.util.Random;
+
+/** Synthetic domain labels, for benchmarks whose inputs come from a fixed random seed. */
+public final class SyntheticLabels {
+
+  /** Returns distinct random ASCII labels of between 3 and 12 letters and digits. */
+  public static ImmutableList<String> randomLabels(Random random, int count) {
+    String characters = "abcdefghijklmnopqrstuvwxyz0123456789";
+    ImmutableList.Builder<String> labels = new ImmutableList.Builder<>();
+    for (int i = 0; i < count; i++) {
+      StringBuilder label = new StringBuilder();
+      for (int j = 3 + random.nextInt(10); j > 0; j--) {
+        label.append(characters.charAt(random.nextInt(characters.length())));
+      }
+      // Make the labels distinct without changing how long they are on average.
+      labels.add(label.append(Integer.toString(i, 36)).toString());
+    }
+    return labels.build();
+  }
+
+  /** Returns random Latin or Japanese IDN labels, in their ASCII form. */
+  public static ImmutableList<String> randomIdnLabels(Random random, int count) {
+    String[] alphabets = {
+        "abcdeéèêëfghiïîjklmnoôöpqrstuùüvwxyz",
+        "あいうえおかきくけこさしすせそアイウエオ"};
+    ImmutableList.Builder<String> labels = new ImmutableList.Builder<>();
+    for (int i = 0; i < count; i++) {
+      String alphabet = alphabets[i % alphabets.length];
+      StringBuilder label = new StringBuilder();
+      for (int j = 3 + random.nextInt(6); j > 0; j--) {
+        label.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      labels.add(Idn.toASCII(label.toString()));
+    }
+    return labels.build();
+  }
+
+  private SyntheticLabels() {}
+}
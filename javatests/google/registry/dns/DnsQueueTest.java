@@ -55,7 +55,9 @@ public class DnsQueueTest {
     createTld("tld");
     dnsQueue.addHostRefreshTask("octopus.tld");
     assertTasksEnqueued("dns-pull",
-        new TaskMatcher().payload("Target-Type=HOST&Target-Name=octopus.tld&tld=tld"));
+        new TaskMatcher()
+            .payload("Target-Type=HOST&Target-Name=octopus.tld&tld=tld")
+            .tag("tld"));
   }
 
   @Test
@@ -74,7 +76,9 @@ public class DnsQueueTest {
     createTld("tld");
     dnsQueue.addDomainRefreshTask("octopus.tld");
     assertTasksEnqueued("dns-pull",
-        new TaskMatcher().payload("Target-Type=DOMAIN&Target-Name=octopus.tld&tld=tld"));
+        new TaskMatcher()
+            .payload("Target-Type=DOMAIN&Target-Name=octopus.tld&tld=tld")
+            .tag("tld"));
   }
 
   @Test
@@ -22,6 +22,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -75,6 +76,7 @@ public class PublishDnsUpdatesActionTest {
   private PublishDnsUpdatesAction createAction(String tld) throws Exception {
     PublishDnsUpdatesAction action = new PublishDnsUpdatesAction();
     action.timeout = Duration.standardSeconds(10);
+    action.publishThreads = 1;
     action.tld = tld;
     action.hosts = ImmutableSet.<String>of();
     action.domains = ImmutableSet.<String>of();
@@ -132,6 +134,30 @@ public class PublishDnsUpdatesActionTest {
     verifyNoMoreInteractions(dnsMetrics);
   }
 
+  @Test
+  public void testHostAndDomain_threadSafeWriter_publishedInParallel() throws Exception {
+    when(dnsWriter.isThreadSafe()).thenReturn(true);
+    action = createAction("xn--q9jyb4c");
+    action.publishThreads = 4;
+    action.domains = ImmutableSet.of("example.xn--q9jyb4c", "example2.xn--q9jyb4c");
+    action.hosts = ImmutableSet.of(
+        "ns1.example.xn--q9jyb4c", "ns2.example.xn--q9jyb4c", "ns1.example2.xn--q9jyb4c");
+    action.run();
+
+    verify(dnsWriter).isThreadSafe();
+    verify(dnsWriter).publishDomain("example.xn--q9jyb4c");
+    verify(dnsWriter).publishDomain("example2.xn--q9jyb4c");
+    verify(dnsWriter).publishHost("ns1.example.xn--q9jyb4c");
+    verify(dnsWriter).publishHost("ns2.example.xn--q9jyb4c");
+    verify(dnsWriter).publishHost("ns1.example2.xn--q9jyb4c");
+    verify(dnsWriter).close();
+    verifyNoMoreInteractions(dnsWriter);
+
+    verify(dnsMetrics, times(2)).incrementPublishDomainRequests("xn--q9jyb4c", Status.ACCEPTED);
+    verify(dnsMetrics, times(3)).incrementPublishHostRequests("xn--q9jyb4c", Status.ACCEPTED);
+    verifyNoMoreInteractions(dnsMetrics);
+  }
+
   @Test
   public void testWrongTld_notPublished() throws Exception {
     action = createAction("xn--q9jyb4c");
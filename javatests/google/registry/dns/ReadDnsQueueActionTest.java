@@ -42,6 +42,7 @@ import google.registry.request.RequestParameters;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
 import google.registry.testing.TaskQueueHelper.TaskMatcher;
+import google.registry.util.Clock;
 import google.registry.util.Retrier;
 import google.registry.util.TaskEnqueuer;
 import java.util.ArrayList;
@@ -91,7 +92,13 @@ public class ReadDnsQueueActionTest {
   }
 
   private void run(boolean keepTasks) throws Exception {
+    run(keepTasks, 20, clock);
+  }
+
+  private void run(boolean keepTasks, int maxLeasesPerRun, Clock actionClock) throws Exception {
     ReadDnsQueueAction action = new ReadDnsQueueAction();
+    action.clock = actionClock;
+    action.maxLeasesPerRun = maxLeasesPerRun;
     action.tldUpdateBatchSize = TEST_TLD_UPDATE_BATCH_SIZE;
     action.writeLockTimeout = Duration.standardSeconds(10);
     action.dnsQueue = dnsQueue;
@@ -191,6 +198,59 @@ public class ReadDnsQueueActionTest {
             .param("hosts", "ns1.domain.com"));
   }
 
+  @Test
+  public void testSuccess_duplicatesAcrossLeases_coalesced() throws Exception {
+    // Force each TLD's refreshes to be spread over several leases.
+    dnsQueue.writeBatchSize = 2;
+    dnsQueue.addDomainRefreshTask("domain.com");
+    dnsQueue.addDomainRefreshTask("domain.net");
+    dnsQueue.addDomainRefreshTask("domain.com");
+    dnsQueue.addDomainRefreshTask("domain2.com");
+    dnsQueue.addDomainRefreshTask("domain.com");
+    dnsQueue.addDomainRefreshTask("domain.net");
+    run(false);
+    assertNoTasksEnqueued(DnsConstants.DNS_PULL_QUEUE_NAME);
+    assertTasksEnqueued(DNS_PUBLISH_PUSH_QUEUE_NAME,
+        new TaskMatcher()
+            .url(PublishDnsUpdatesAction.PATH)
+            .param(RequestParameters.PARAM_TLD, "com")
+            .param("domains", "domain.com")
+            .param("domains", "domain2.com"),
+        new TaskMatcher()
+            .url(PublishDnsUpdatesAction.PATH)
+            .param(RequestParameters.PARAM_TLD, "net")
+            .param("domains", "domain.net"));
+  }
+
+  @Test
+  public void testSuccess_maxLeasesPerRun_leavesTheRestForTheNextRun() throws Exception {
+    dnsQueue.writeBatchSize = 2;
+    dnsQueue.addDomainRefreshTask("domain1.com");
+    dnsQueue.addDomainRefreshTask("domain2.com");
+    dnsQueue.addDomainRefreshTask("domain3.com");
+    run(false, 1, clock);
+    assertTasksEnqueued(DnsConstants.DNS_PULL_QUEUE_NAME, new TaskMatcher());
+    assertTldsEnqueuedInPushQueue("com");
+  }
+
+  @Test
+  public void testSuccess_halfOfLeaseTimePassed_stopsLeasing() throws Exception {
+    dnsQueue.writeBatchSize = 2;
+    dnsQueue.addDomainRefreshTask("domain1.com");
+    dnsQueue.addDomainRefreshTask("domain2.com");
+    dnsQueue.addDomainRefreshTask("domain3.com");
+    // Make the first lease appear to take longer than half of the 10 second lease duration.
+    run(false, 20, new Clock() {
+      @Override
+      public DateTime nowUtc() {
+        DateTime now = clock.nowUtc();
+        clock.advanceBy(Duration.standardSeconds(6));
+        return now;
+      }});
+    assertTasksEnqueued(DnsConstants.DNS_PULL_QUEUE_NAME, new TaskMatcher());
+    assertTldsEnqueuedInPushQueue("com");
+  }
+
   @Test
   public void testSuccess_manyDomainsAndHosts() throws Exception {
     List<TaskMatcher> expectedTasks = new ArrayList<>();
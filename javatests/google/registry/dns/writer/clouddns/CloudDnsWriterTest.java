@@ -21,6 +21,7 @@ import static google.registry.testing.DatastoreHelper.newDomainResource;
 import static google.registry.testing.DatastoreHelper.newHostResource;
 import static google.registry.testing.DatastoreHelper.persistResource;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -331,6 +332,31 @@ public class CloudDnsWriterTest {
     verifyZone(fakeDomainRecords("example.tld", 0, 0, 0, 0));
   }
 
+  @Test
+  public void testLoadDomain_unchanged_noChangeSubmitted() throws Exception {
+    stubZone = fakeDomainRecords("example.tld", 0, 0, 1, 1);
+    persistResource(
+        fakeDomain("example.tld", ImmutableSet.of(persistResource(fakeHost("0.external"))), 1));
+    writer.publishDomain("example.tld");
+
+    verifyZone(fakeDomainRecords("example.tld", 0, 0, 1, 1));
+    verify(changes, never()).create(anyString(), anyString(), Matchers.any(Change.class));
+  }
+
+  @Test
+  public void testLoadDomain_partiallyChanged_onlyDifferencesSubmitted() throws Exception {
+    stubZone = fakeDomainRecords("example.tld", 0, 0, 1, 1);
+    persistResource(
+        fakeDomain("example.tld", ImmutableSet.of(persistResource(fakeHost("0.external"))), 0));
+    writer.publishDomain("example.tld");
+
+    verifyZone(fakeDomainRecords("example.tld", 0, 0, 1, 0));
+    Change change = changeCaptor.getValue();
+    assertThat(change.getAdditions()).isEmpty();
+    assertThat(change.getDeletions()).hasSize(1);
+    assertThat(change.getDeletions().get(0).getType()).isEqualTo("DS");
+  }
+
   @Test
   public void testLoadDomain_withExternalNs() throws Exception {
     persistResource(
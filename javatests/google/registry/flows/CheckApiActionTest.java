@@ -49,6 +49,7 @@ public class CheckApiActionTest {
 
   @Before
   public void init() throws Exception {
+    CheckApiCache.clear();
     createTld("example");
     persistResource(
         Registry.get("example")
@@ -62,6 +63,7 @@ public class CheckApiActionTest {
     action.domain = domain;
     action.response = new FakeResponse();
     action.config = RegistryEnvironment.UNITTEST.config();
+    action.clock = new FakeClock();
     action.eppController = DaggerEppTestComponent.builder()
         .fakesAndMocksModule(new FakesAndMocksModule(new FakeClock()))
         .build()
@@ -168,6 +170,18 @@ public class CheckApiActionTest {
         "reason", "In use");
   }
 
+  @Test
+  public void testSuccess_registeredAfterCheck_cachedUntilInvalidated() throws Exception {
+    assertThat(getCheckResponse("somedomain.example")).containsEntry("available", true);
+    persistActiveDomain("somedomain.example");
+    assertThat(getCheckResponse("somedomain.example")).containsEntry("available", true);
+    CheckApiCache.invalidate("somedomain.example");
+    assertThat(getCheckResponse("somedomain.example")).containsExactly(
+        "status", "success",
+        "available", false,
+        "reason", "In use");
+  }
+
   @Test
   public void testSuccess_reserved() throws Exception {
     assertThat(getCheckResponse("foo.example")).containsExactly(
@@ -0,0 +1,190 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.fail;
+
+import com.google.appengine.api.datastore.DatastoreTimeoutException;
+import com.google.apphosting.api.ApiProxy;
+import com.google.apphosting.api.ApiProxy.Environment;
+import com.google.common.collect.ImmutableList;
+import google.registry.model.registry.Registry;
+import google.registry.model.registry.label.ReservedList;
+import google.registry.testing.AppEngineRule;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CheckApiCache}. */
+@RunWith(JUnit4.class)
+public class CheckApiCacheTest {
+
+  private static final DateTime NOW = DateTime.parse("2009-06-29T20:13:00Z");
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .build();
+
+  private final AtomicInteger checks = new AtomicInteger();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  /** A check that returns how many checks have been run so far. */
+  private final Callable<Integer> countingCheck = new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return checks.incrementAndGet();
+      }};
+
+  @Before
+  public void setUp() throws Exception {
+    CheckApiCache.clear();
+    createTld("tld");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+  }
+
+  /** Runs a cached check on another thread, which needs this thread's App Engine environment. */
+  private Future<Integer> getInBackground(final Callable<Integer> check) {
+    final Environment environment = ApiProxy.getCurrentEnvironment();
+    return executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          ApiProxy.setEnvironmentForCurrentThread(environment);
+          return CheckApiCache.get("example.tld", "tld", NOW, check);
+        }});
+  }
+
+  @Test
+  public void testGet_withinTtl_reused() throws Exception {
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+    assertThat(
+            CheckApiCache.get(
+                "example.tld", "tld", NOW.plus(CheckApiCache.TTL).minusMillis(1), countingCheck))
+        .isEqualTo(1);
+    assertThat(checks.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testGet_afterTtl_recomputed() throws Exception {
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+    assertThat(
+            CheckApiCache.get("example.tld", "tld", NOW.plus(CheckApiCache.TTL), countingCheck))
+        .isEqualTo(2);
+  }
+
+  @Test
+  public void testGet_differentNames_notShared() throws Exception {
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+    assertThat(CheckApiCache.get("other.tld", "tld", NOW, countingCheck)).isEqualTo(2);
+  }
+
+  @Test
+  public void testGet_failure_notCached() throws Exception {
+    try {
+      CheckApiCache.get("example.tld", "tld", NOW, new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            throw new DatastoreTimeoutException("timed out");
+          }});
+      fail("Expected DatastoreTimeoutException");
+    } catch (DatastoreTimeoutException e) {
+      // Expected.
+    }
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+  }
+
+  @Test
+  public void testGet_concurrentCallers_shareOneCheck() throws Exception {
+    final CountDownLatch firstCheckStarted = new CountDownLatch(1);
+    final CountDownLatch firstCheckReleased = new CountDownLatch(1);
+    Future<Integer> first = getInBackground(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          firstCheckStarted.countDown();
+          firstCheckReleased.await(10, SECONDS);
+          return countingCheck.call();
+        }});
+    assertThat(firstCheckStarted.await(10, SECONDS)).isTrue();
+    Future<Integer> second = getInBackground(countingCheck);
+    firstCheckReleased.countDown();
+    assertThat(first.get(10, SECONDS)).isEqualTo(1);
+    // Whether or not the second caller started waiting before the first check finished, it sees
+    // the first check's result.
+    assertThat(second.get(10, SECONDS)).isEqualTo(1);
+    assertThat(checks.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testInvalidate_recomputed() throws Exception {
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+    assertThat(CheckApiCache.get("other.tld", "tld", NOW, countingCheck)).isEqualTo(2);
+    CheckApiCache.invalidate("example.tld");
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(3);
+    assertThat(CheckApiCache.get("other.tld", "tld", NOW, countingCheck)).isEqualTo(2);
+  }
+
+  @Test
+  public void testInvalidateTask_invalidatesWhenRun() throws Exception {
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+    Runnable task = CheckApiCache.invalidateTask("example.tld");
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+    task.run();
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(2);
+  }
+
+  @Test
+  public void testGet_reservedListUpdated_recomputed() throws Exception {
+    ReservedList reservedList = persistResource(
+        new ReservedList.Builder()
+            .setName("tld-reserved")
+            .setReservedListMapFromLines(ImmutableList.of("foo,FULLY_BLOCKED"))
+            .setLastUpdateTime(NOW.minusDays(1))
+            .build());
+    persistResource(Registry.get("tld").asBuilder().setReservedLists(reservedList).build());
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+    persistResource(
+        reservedList.asBuilder()
+            .setReservedListMapFromLines(ImmutableList.of("example,FULLY_BLOCKED"))
+            .setLastUpdateTime(NOW)
+            .build());
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(2);
+  }
+
+  @Test
+  public void testGet_registryUpdated_recomputed() throws Exception {
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(1);
+    persistResource(Registry.get("tld").asBuilder().setPremiumPriceAckRequired(false).build());
+    assertThat(CheckApiCache.get("example.tld", "tld", NOW, countingCheck)).isEqualTo(2);
+  }
+}
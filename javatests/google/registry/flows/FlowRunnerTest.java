@@ -16,6 +16,7 @@ package google.registry.flows;
 
 import static com.google.common.io.BaseEncoding.base64;
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.testing.TestDataHelper.loadFileWithSubstitutions;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.mockito.Mockito.mock;
@@ -42,6 +43,7 @@ import google.registry.testing.Providers;
 import google.registry.testing.ShardableTestCase;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 import org.joda.time.DateTime;
@@ -63,11 +65,12 @@ public class FlowRunnerTest extends ShardableTestCase {
 
   private final TestLogHandler handler = new TestLogHandler();
 
+  private final EppOutput eppOutput = mock(EppOutput.class);
+
   @Before
   public void before() {
     Logger.getLogger(FlowRunner.class.getCanonicalName()).addHandler(handler);
 
-    final EppOutput eppOutput = mock(EppOutput.class);
     EppResponse eppResponse = mock(EppResponse.class);
     when(eppResponse.getExecutionTime()).thenReturn(new DateTime(1337));
     when(eppOutput.getResponse()).thenReturn(eppResponse);
@@ -120,6 +123,50 @@ public class FlowRunnerTest extends ShardableTestCase {
     assertThat(flowRunner.metric.build().getAttempts()).isEqualTo(1);
   }
 
+  /** Makes the flow schedule an action that counts how many times it was run. */
+  private AtomicInteger schedulePostCommitAction() {
+    final AtomicInteger runCount = new AtomicInteger();
+    flowRunner.flowProvider =
+        Providers.<Flow>of(
+            new Flow() {
+              @Override
+              protected EppOutput run() {
+                runAfterCommit(new Runnable() {
+                  @Override
+                  public void run() {
+                    assertThat(ofy().inTransaction()).isFalse();
+                    runCount.incrementAndGet();
+                  }});
+                return eppOutput;
+              }
+            });
+    return runCount;
+  }
+
+  @Test
+  public void testRun_isTransactional_runsPostCommitActionsAfterCommit() throws Exception {
+    AtomicInteger runCount = schedulePostCommitAction();
+    flowRunner.isTransactional = true;
+    flowRunner.run();
+    assertThat(runCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRun_notIsTransactional_runsPostCommitActions() throws Exception {
+    AtomicInteger runCount = schedulePostCommitAction();
+    flowRunner.run();
+    assertThat(runCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRun_dryRun_doesNotRunPostCommitActions() throws Exception {
+    AtomicInteger runCount = schedulePostCommitAction();
+    flowRunner.isTransactional = true;
+    flowRunner.isDryRun = true;
+    flowRunner.run();
+    assertThat(runCount.get()).isEqualTo(0);
+  }
+
   @Test
   public void testRun_reportingLogStatement_noClientId() throws Exception {
     flowRunner.clientId = "";
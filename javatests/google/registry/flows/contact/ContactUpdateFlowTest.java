@@ -14,6 +14,7 @@
 
 package google.registry.flows.contact;
 
+import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.ContactResourceSubject.assertAboutContacts;
 import static google.registry.testing.DatastoreHelper.assertNoBillingEvents;
 import static google.registry.testing.DatastoreHelper.newContactResource;
@@ -23,6 +24,7 @@ import static google.registry.testing.DatastoreHelper.persistResource;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Key;
 import google.registry.flows.ResourceFlowTestCase;
 import google.registry.flows.ResourceFlowUtils.ResourceDoesNotExistException;
 import google.registry.flows.ResourceFlowUtils.ResourceNotOwnedException;
@@ -37,6 +39,9 @@ import google.registry.model.contact.ContactResource;
 import google.registry.model.contact.PostalInfo;
 import google.registry.model.contact.PostalInfo.Type;
 import google.registry.model.eppcommon.StatusValue;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
+import google.registry.rdds.LookupResponseCache.Slot;
 import org.junit.Test;
 
 /** Unit tests for {@link ContactUpdateFlow}. */
@@ -71,6 +76,19 @@ public class ContactUpdateFlowTest
     doSuccessfulTest();
   }
 
+  @Test
+  public void testSuccess_invalidatesCachedLookupsOfReferencingDomains() throws Exception {
+    ContactResource contact = persistActiveContact(getUniqueIdFromCommand());
+    clock.advanceOneMilli();
+    LookupResponseCache.clear();
+    Slot slot = LookupResponseCache.getSlot(ResourceType.DOMAIN, "example.tld", clock.nowUtc());
+    slot.addReferencedKeys(ImmutableList.of(Key.create(contact)));
+    slot.put("whois", "response");
+    runFlowAssertResponse(readFile("contact_update_response.xml"));
+    assertThat(LookupResponseCache.getSlot(ResourceType.DOMAIN, "example.tld", clock.nowUtc())
+        .get("whois")).isNull();
+  }
+
   @Test
   public void testSuccess_removeClientUpdateProhibited() throws Exception {
     setEppInput("contact_update_remove_client_update_prohibited.xml");
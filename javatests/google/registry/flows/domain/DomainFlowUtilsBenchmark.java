@@ -0,0 +1,62 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.domain;
+
+import static google.registry.testing.DatastoreHelper.createTld;
+
+import com.google.common.collect.ImmutableList;
+import google.registry.benchmark.BenchmarkRunner;
+import google.registry.benchmark.SyntheticLabels;
+import java.util.Random;
+
+/**
+ * Microbenchmark of the domain name validation that every domain command and check runs through.
+ *
+ * <p>Half of the names have ASCII labels and half have IDN labels, all from a fixed random seed.
+ *
+ * <p>Usage: {@code DomainFlowUtilsBenchmark [reportFile] [baselineReportFile]}, as for
+ * {@link BenchmarkRunner#runMain}.
+ */
+public final class DomainFlowUtilsBenchmark {
+
+  private static final String TLD = "bench";
+  private static final int LABEL_COUNT = 1000;
+  private static final long RANDOM_SEED = 20161001;
+
+  public static void main(String[] args) throws Throwable {
+    BenchmarkRunner.runMain(args, new BenchmarkRunner.BenchmarkSuite() {
+        @Override
+        public void runBenchmarks(BenchmarkRunner runner) throws Exception {
+          Random random = new Random(RANDOM_SEED);
+          createTld(TLD);
+          ImmutableList<String> labels = SyntheticLabels.randomLabels(random, LABEL_COUNT);
+          ImmutableList<String> idnLabels = SyntheticLabels.randomIdnLabels(random, LABEL_COUNT);
+          ImmutableList.Builder<String> domainNamesBuilder = new ImmutableList.Builder<>();
+          for (int i = 0; i < LABEL_COUNT; i++) {
+            domainNamesBuilder.add((i % 2 == 0 ? labels.get(i) : idnLabels.get(i)) + "." + TLD);
+          }
+          final ImmutableList<String> domainNames = domainNamesBuilder.build();
+          runner.run(new BenchmarkRunner.Benchmark(
+              "DomainFlowUtils.validateDomainName", 100000) {
+                @Override
+                protected Object run(int operation) throws Exception {
+                  return DomainFlowUtils.validateDomainName(
+                      domainNames.get(operation % LABEL_COUNT));
+                }});
+        }});
+  }
+
+  private DomainFlowUtilsBenchmark() {}
+}
@@ -62,6 +62,8 @@ import google.registry.model.poll.PollMessage;
 import google.registry.model.registrar.Registrar;
 import google.registry.model.registry.Registry;
 import google.registry.model.reporting.HistoryEntry;
+import google.registry.rdds.LookupResponseCache;
+import google.registry.rdds.LookupResponseCache.ResourceType;
 import java.util.Map;
 import org.joda.money.Money;
 import org.joda.time.DateTime;
@@ -215,6 +217,28 @@ public class DomainRenewFlowTest extends ResourceFlowTestCase<DomainRenewFlow, D
     doSuccessfulTest("domain_renew_response.xml", 5);
   }
 
+  @Test
+  public void testSuccess_invalidatesCachedLookups() throws Exception {
+    persistDomain();
+    LookupResponseCache.clear();
+    LookupResponseCache.getSlot(ResourceType.DOMAIN, getUniqueIdFromCommand(), clock.nowUtc())
+        .put("whois", "response");
+    doSuccessfulTest("domain_renew_response.xml", 5);
+    assertThat(LookupResponseCache.getSlot(
+        ResourceType.DOMAIN, getUniqueIdFromCommand(), clock.nowUtc()).get("whois")).isNull();
+  }
+
+  @Test
+  public void testDryRun_doesNotInvalidateCachedLookups() throws Exception {
+    persistDomain();
+    LookupResponseCache.clear();
+    LookupResponseCache.getSlot(ResourceType.DOMAIN, getUniqueIdFromCommand(), clock.nowUtc())
+        .put("whois", "response");
+    dryRunFlowAssertResponse(readFile("domain_renew_response.xml"));
+    assertThat(LookupResponseCache.getSlot(
+        ResourceType.DOMAIN, getUniqueIdFromCommand(), clock.nowUtc()).get("whois")).isNotNull();
+  }
+
   @Test
   public void testSuccess_fee_v06() throws Exception {
     setEppInput("domain_renew_fee.xml", FEE_06_MAP);
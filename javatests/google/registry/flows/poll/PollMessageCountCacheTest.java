@@ -0,0 +1,122 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.poll;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatastoreHelper.createHistoryEntryForEppResource;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistActiveDomain;
+import static google.registry.testing.DatastoreHelper.persistResource;
+
+import google.registry.model.poll.PollMessage;
+import google.registry.model.reporting.HistoryEntry;
+import google.registry.testing.AppEngineRule;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PollMessageCountCache}. */
+@RunWith(JUnit4.class)
+public class PollMessageCountCacheTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .build();
+
+  private static final DateTime NOW = DateTime.parse("2011-01-02T01:01:01Z");
+
+  private final PollMessageCountCache cache =
+      new PollMessageCountCache(3, Duration.standardMinutes(1));
+
+  private HistoryEntry historyEntry;
+
+  @Before
+  public void setUp() {
+    createTld("example");
+    historyEntry = createHistoryEntryForEppResource(persistActiveDomain("test.example"));
+  }
+
+  private PollMessage persistPollMessage(String clientId, DateTime eventTime) {
+    return persistResource(
+        new PollMessage.OneTime.Builder()
+            .setClientId(clientId)
+            .setEventTime(eventTime)
+            .setMsg("Test poll message")
+            .setParent(historyEntry)
+            .build());
+  }
+
+  private void persistPollMessages(String clientId, int count) {
+    for (int i = 0; i < count; i++) {
+      persistPollMessage(clientId, NOW.minusDays(1));
+    }
+  }
+
+  @Test
+  public void testGetCount_smallQueue_alwaysCounted() throws Exception {
+    persistPollMessages("TheRegistrar", 2);
+    persistPollMessage("TheRegistrar", NOW.plusDays(1));
+    persistPollMessage("NewRegistrar", NOW.minusDays(1));
+    assertThat(cache.getCount("TheRegistrar", NOW)).isEqualTo(2);
+    persistPollMessage("TheRegistrar", NOW.minusDays(1));
+    assertThat(cache.getCount("TheRegistrar", NOW)).isEqualTo(3);
+  }
+
+  @Test
+  public void testGetCount_largeQueue_cachedUntilExpired() throws Exception {
+    persistPollMessages("TheRegistrar", 3);
+    assertThat(cache.getCount("TheRegistrar", NOW)).isEqualTo(3);
+    persistPollMessage("TheRegistrar", NOW.minusDays(1));
+    assertThat(cache.getCount("TheRegistrar", NOW.plusSeconds(59))).isEqualTo(3);
+    assertThat(cache.getCount("TheRegistrar", NOW.plusMinutes(1))).isEqualTo(4);
+  }
+
+  @Test
+  public void testGetCount_largeQueue_otherRegistrarsCountedSeparately() throws Exception {
+    persistPollMessages("TheRegistrar", 3);
+    persistPollMessage("NewRegistrar", NOW.minusDays(1));
+    assertThat(cache.getCount("TheRegistrar", NOW)).isEqualTo(3);
+    assertThat(cache.getCount("NewRegistrar", NOW)).isEqualTo(1);
+  }
+
+  @Test
+  public void testDecrement_largeQueue_adjustsCachedCount() throws Exception {
+    persistPollMessages("TheRegistrar", 4);
+    assertThat(cache.getCount("TheRegistrar", NOW)).isEqualTo(4);
+    cache.decrement("TheRegistrar");
+    assertThat(cache.getCount("TheRegistrar", NOW)).isEqualTo(3);
+  }
+
+  @Test
+  public void testDecrement_belowLargeQueueSize_countedAgain() throws Exception {
+    persistPollMessages("TheRegistrar", 3);
+    assertThat(cache.getCount("TheRegistrar", NOW)).isEqualTo(3);
+    persistPollMessage("TheRegistrar", NOW.minusDays(1));
+    cache.decrement("TheRegistrar");
+    assertThat(cache.getCount("TheRegistrar", NOW)).isEqualTo(4);
+  }
+
+  @Test
+  public void testDecrement_notCached_doesNothing() throws Exception {
+    persistPollMessages("TheRegistrar", 2);
+    cache.decrement("TheRegistrar");
+    assertThat(cache.getCount("TheRegistrar", NOW)).isEqualTo(2);
+  }
+}
@@ -0,0 +1,178 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.poll;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.testing.DatastoreHelper.createHistoryEntryForEppResource;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.deleteResource;
+import static google.registry.testing.DatastoreHelper.persistActiveDomain;
+import static google.registry.testing.DatastoreHelper.persistResource;
+
+import com.googlecode.objectify.Key;
+import google.registry.model.poll.PollMessage;
+import google.registry.model.reporting.HistoryEntry;
+import google.registry.testing.AppEngineRule;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PollMessagePrefetcher}. */
+@RunWith(JUnit4.class)
+public class PollMessagePrefetcherTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .build();
+
+  private static final DateTime NOW = DateTime.parse("2011-01-02T01:01:01Z");
+
+  private final PollMessagePrefetcher prefetcher =
+      new PollMessagePrefetcher(3, Duration.standardSeconds(30));
+
+  private HistoryEntry historyEntry;
+
+  @Before
+  public void setUp() {
+    createTld("example");
+    historyEntry = createHistoryEntryForEppResource(persistActiveDomain("test.example"));
+  }
+
+  private PollMessage persistPollMessage(DateTime eventTime) {
+    return persistResource(
+        new PollMessage.OneTime.Builder()
+            .setClientId("TheRegistrar")
+            .setEventTime(eventTime)
+            .setMsg("Test poll message")
+            .setParent(historyEntry)
+            .build());
+  }
+
+  private PollMessage.Autorenew persistAutorenewPollMessage(DateTime eventTime) {
+    return persistResource(
+        new PollMessage.Autorenew.Builder()
+            .setClientId("TheRegistrar")
+            .setEventTime(eventTime)
+            .setMsg("Domain was auto-renewed.")
+            .setParent(historyEntry)
+            .setAutorenewEndTime(eventTime.plusYears(10))
+            .setTargetId("test.example")
+            .build());
+  }
+
+  private PollMessage getOldest(DateTime now) {
+    // Each flow runs with a fresh session cache, so make sure that loads here hit Datastore too.
+    ofy().clearSessionCache();
+    return prefetcher.getOldest("TheRegistrar", now);
+  }
+
+  /** Acks a message the way {@link PollAckFlow} does, for one-time messages. */
+  private void ack(PollMessage pollMessage) {
+    deleteResource(pollMessage);
+    prefetcher.onAck("TheRegistrar", Key.create(pollMessage));
+  }
+
+  @Test
+  public void testGetOldest_empty() throws Exception {
+    assertThat(getOldest(NOW)).isNull();
+  }
+
+  @Test
+  public void testGetOldest_drainsQueueInOrder() throws Exception {
+    PollMessage first = persistPollMessage(NOW.minusDays(5));
+    PollMessage second = persistPollMessage(NOW.minusDays(4));
+    PollMessage third = persistPollMessage(NOW.minusDays(3));
+    PollMessage fourth = persistPollMessage(NOW.minusDays(2));
+    PollMessage fifth = persistPollMessage(NOW.minusDays(1));
+    persistPollMessage(NOW.plusDays(1));
+    for (PollMessage expected : new PollMessage[] {first, second, third, fourth, fifth}) {
+      PollMessage pollMessage = getOldest(NOW);
+      assertThat(pollMessage).isEqualTo(expected);
+      ack(pollMessage);
+    }
+    assertThat(getOldest(NOW)).isNull();
+  }
+
+  @Test
+  public void testGetOldest_notAcked_returnsSameMessage() throws Exception {
+    PollMessage first = persistPollMessage(NOW.minusDays(2));
+    persistPollMessage(NOW.minusDays(1));
+    assertThat(getOldest(NOW)).isEqualTo(first);
+    assertThat(getOldest(NOW)).isEqualTo(first);
+  }
+
+  @Test
+  public void testGetOldest_ackedElsewhere_skipped() throws Exception {
+    PollMessage first = persistPollMessage(NOW.minusDays(2));
+    PollMessage second = persistPollMessage(NOW.minusDays(1));
+    assertThat(getOldest(NOW)).isEqualTo(first);
+    // Another instance acked the message, so this one's window never heard about it.
+    deleteResource(first);
+    assertThat(getOldest(NOW)).isEqualTo(second);
+  }
+
+  @Test
+  public void testGetOldest_messageBecameDueLater_deliveredAfterWindow() throws Exception {
+    PollMessage first = persistPollMessage(NOW.minusDays(2));
+    PollMessage second = persistPollMessage(NOW.minusDays(1));
+    PollMessage later = persistPollMessage(NOW.plusSeconds(5));
+    assertThat(getOldest(NOW)).isEqualTo(first);
+    ack(first);
+    assertThat(getOldest(NOW.plusSeconds(10))).isEqualTo(second);
+    ack(second);
+    assertThat(getOldest(NOW.plusSeconds(10))).isEqualTo(later);
+  }
+
+  @Test
+  public void testOnAck_notHead_dropsWindow() throws Exception {
+    PollMessage first = persistPollMessage(NOW.minusDays(3));
+    PollMessage second = persistPollMessage(NOW.minusDays(2));
+    assertThat(getOldest(NOW)).isEqualTo(first);
+    ack(second);
+    // A message that is older than everything in the old window shows up once it's dropped.
+    PollMessage older = persistPollMessage(NOW.minusDays(4));
+    assertThat(getOldest(NOW)).isEqualTo(older);
+  }
+
+  @Test
+  public void testGetOldest_windowExpired_refetched() throws Exception {
+    PollMessage first = persistPollMessage(NOW.minusDays(3));
+    assertThat(getOldest(NOW)).isEqualTo(first);
+    PollMessage older = persistPollMessage(NOW.minusDays(4));
+    assertThat(getOldest(NOW.plusSeconds(29))).isEqualTo(first);
+    assertThat(getOldest(NOW.plusSeconds(30))).isEqualTo(older);
+  }
+
+  @Test
+  public void testGetOldest_autorenewDueAgainWithinWindow_refetched() throws Exception {
+    PollMessage.Autorenew autorenew = persistAutorenewPollMessage(NOW.minusYears(1).minusDays(3));
+    PollMessage middle = persistPollMessage(NOW.minusDays(2));
+    assertThat(getOldest(NOW)).isEqualTo(autorenew);
+    // Acking moves the autorenew forward a year, which is still before the other message, so it
+    // has to be delivered again before that one.
+    PollMessage.Autorenew renewed = persistResource(
+        autorenew.asBuilder().setEventTime(autorenew.getEventTime().plusYears(1)).build());
+    prefetcher.onAck("TheRegistrar", Key.<PollMessage>create(autorenew));
+    assertThat(getOldest(NOW)).isEqualTo(renewed);
+    ack(renewed);
+    assertThat(getOldest(NOW)).isEqualTo(middle);
+  }
+}
@@ -0,0 +1,218 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.loadtest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import google.registry.loadtest.ClosedLoopLoadTest.EppRunner;
+import google.registry.loadtest.ClosedLoopLoadTest.Workload;
+import google.registry.model.domain.DomainRenewData;
+import google.registry.model.eppoutput.CreateData.DomainCreateData;
+import google.registry.model.eppoutput.EppOutput;
+import google.registry.model.eppoutput.EppResponse;
+import google.registry.model.eppoutput.EppResponse.ResponseData;
+import google.registry.model.eppoutput.Result;
+import google.registry.model.eppoutput.Result.Code;
+import google.registry.testing.ExceptionRule;
+import google.registry.testing.FakeClock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ClosedLoopLoadTest}. */
+@RunWith(JUnit4.class)
+public class ClosedLoopLoadTestTest {
+
+  private static final Pattern DOMAIN_NAME = Pattern.compile("<domain:name>(.*)</domain:name>");
+  private static final Pattern CUR_EXP_DATE =
+      Pattern.compile("<domain:curExpDate>(.*)</domain:curExpDate>");
+
+  @Rule
+  public final ExceptionRule thrown = new ExceptionRule();
+
+  private final FakeClock clock = new FakeClock();
+
+  /**
+   * A fake registry that takes ten milliseconds to answer each command, and records the commands
+   * that it was sent.
+   */
+  private class FakeEppRunner implements EppRunner {
+
+    final List<String> commands = new ArrayList<>();
+    final ListMultimap<String, String> renewedExpirationDates = ArrayListMultimap.create();
+    Code contactCreateCode = Code.SUCCESS;
+
+    @Override
+    public synchronized EppOutput run(String clientId, byte[] xmlBytes) {
+      clock.advanceBy(Duration.millis(10));
+      String xml = new String(xmlBytes, UTF_8);
+      if (xml.contains("<contact:create")) {
+        commands.add(clientId + " contact_create");
+        return createOutput(contactCreateCode, null);
+      } else if (xml.contains("<domain:create")) {
+        commands.add(clientId + " domain_create");
+        return createOutput(Code.SUCCESS, DomainCreateData.create(
+            extract(DOMAIN_NAME, xml), clock.nowUtc(), clock.nowUtc().plusYears(2)));
+      } else if (xml.contains("<domain:renew")) {
+        commands.add(clientId + " domain_renew");
+        String domain = extract(DOMAIN_NAME, xml);
+        String curExpDate = extract(CUR_EXP_DATE, xml);
+        renewedExpirationDates.put(domain, curExpDate);
+        return createOutput(Code.SUCCESS, DomainRenewData.create(
+            domain, DateTime.parse(curExpDate + "T00:00:00Z").plusYears(1)));
+      } else if (xml.contains("<transfer op=\"request\">")) {
+        commands.add(clientId + " domain_transfer_request");
+        return createOutput(Code.SUCCESS_WITH_ACTION_PENDING, null);
+      } else if (xml.contains("<transfer op=\"cancel\">")) {
+        commands.add(clientId + " domain_transfer_cancel");
+        return createOutput(Code.SUCCESS, null);
+      } else if (xml.contains("<poll ")) {
+        throw new IllegalStateException("Poll failed");
+      }
+      commands.add(clientId + " other");
+      return createOutput(Code.SUCCESS, null);
+    }
+  }
+
+  private final FakeEppRunner eppRunner = new FakeEppRunner();
+
+  private static EppOutput createOutput(Code code, ResponseData responseData) {
+    return EppOutput.create(new EppResponse.Builder()
+        .setResult(Result.create(code))
+        .setResData(responseData == null ? null : ImmutableList.of(responseData))
+        .build());
+  }
+
+  private static String extract(Pattern pattern, String xml) {
+    Matcher matcher = pattern.matcher(xml);
+    assertThat(matcher.find()).isTrue();
+    return matcher.group(1);
+  }
+
+  private LoadTestResults runLoadTest(
+      ImmutableMap<Workload, Integer> weights, int concurrency, Duration duration) {
+    return new ClosedLoopLoadTest(
+            eppRunner,
+            clock,
+            Executors.defaultThreadFactory(),
+            "tld",
+            "TheRegistrar",
+            Optional.of("NewRegistrar"),
+            weights)
+        .run(concurrency, duration);
+  }
+
+  @Test
+  public void testRun_runsCommandsBackToBackUntilDeadline() {
+    LoadTestResults results =
+        runLoadTest(ImmutableMap.of(Workload.DOMAIN_INFO, 1), 1, Duration.standardSeconds(1));
+    // The setup takes 30 ms, after which a command starts every 10 ms until the deadline.
+    assertThat(eppRunner.commands.subList(0, 3)).containsExactly(
+        "TheRegistrar contact_create", "TheRegistrar other", "TheRegistrar domain_create")
+        .inOrder();
+    assertThat(results.getCount()).isEqualTo(97);
+    assertThat(results.getResultCodeCounts()).isEqualTo(ImmutableMap.of("domain_info 1000", 97));
+  }
+
+  @Test
+  public void testRun_mixesCommandsByWeight() {
+    LoadTestResults results = runLoadTest(
+        ImmutableMap.of(Workload.DOMAIN_CHECK, 1, Workload.HOST_INFO, 1, Workload.POLL, 0),
+        2,
+        Duration.standardSeconds(10));
+    assertThat(results.getResultCodeCounts().keySet())
+        .containsExactly("domain_check 1000", "host_info 1000");
+  }
+
+  @Test
+  public void testRun_renewsWithCurrentExpirationDate() {
+    runLoadTest(ImmutableMap.of(Workload.DOMAIN_RENEW, 1), 1, Duration.standardSeconds(1));
+    List<String> expirationDates = ImmutableList.of(
+        "1972-01-01",
+        "1973-01-01",
+        "1974-01-01",
+        "1975-01-01",
+        "1976-01-01",
+        "1977-01-01",
+        "1978-01-01",
+        "1979-01-01");
+    // Each domain is renewed until it can't be renewed any further, at which point a new one is
+    // created to renew instead.
+    assertThat(eppRunner.renewedExpirationDates.keySet().size()).isGreaterThan(1);
+    for (String domain : eppRunner.renewedExpirationDates.keySet()) {
+      List<String> renewed = eppRunner.renewedExpirationDates.get(domain);
+      assertThat(renewed).isEqualTo(expirationDates.subList(0, renewed.size()));
+    }
+  }
+
+  @Test
+  public void testRun_transfersAsOtherRegistrarAndCancels() {
+    LoadTestResults results = runLoadTest(
+        ImmutableMap.of(Workload.DOMAIN_TRANSFER, 1), 1, Duration.millis(100));
+    assertThat(eppRunner.commands.subList(3, 5)).containsExactly(
+        "NewRegistrar domain_transfer_request", "NewRegistrar domain_transfer_cancel")
+        .inOrder();
+    assertThat(results.getResultCodeCounts()).isEqualTo(ImmutableMap.of(
+        "domain_transfer_cancel 1000", 4, "domain_transfer_request 1001", 4));
+  }
+
+  @Test
+  public void testRun_failedCommandsAreRecorded() {
+    LoadTestResults results =
+        runLoadTest(ImmutableMap.of(Workload.POLL, 1), 1, Duration.millis(100));
+    assertThat(results.getResultCodeCounts())
+        .isEqualTo(ImmutableMap.of("poll IllegalStateException", 7));
+  }
+
+  @Test
+  public void testFailure_setupFailed() {
+    eppRunner.contactCreateCode = Code.OBJECT_EXISTS;
+    thrown.expectRootCause(IllegalStateException.class, "Load test setup contact create failed");
+    runLoadTest(ImmutableMap.of(Workload.DOMAIN_INFO, 1), 1, Duration.standardSeconds(1));
+  }
+
+  @Test
+  public void testFailure_transfersWithoutTransferClientId() {
+    thrown.expect(IllegalArgumentException.class, "Domain transfers need a registrar");
+    new ClosedLoopLoadTest(
+        eppRunner,
+        clock,
+        Executors.defaultThreadFactory(),
+        "tld",
+        "TheRegistrar",
+        Optional.<String>absent(),
+        ImmutableMap.of(Workload.DOMAIN_TRANSFER, 1));
+  }
+
+  @Test
+  public void testFailure_noCommands() {
+    thrown.expect(IllegalArgumentException.class, "No commands to run");
+    runLoadTest(ImmutableMap.of(Workload.POLL, 0), 1, Duration.standardSeconds(1));
+  }
+}
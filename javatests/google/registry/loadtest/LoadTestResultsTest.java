@@ -0,0 +1,82 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.loadtest;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import org.joda.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LoadTestResults}. */
+@RunWith(JUnit4.class)
+public class LoadTestResultsTest {
+
+  private final LoadTestResults results = new LoadTestResults();
+
+  @Test
+  public void testGetPercentile_nearestRank() {
+    long[] values = new long[1000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i + 1;
+    }
+    assertThat(LoadTestResults.getPercentile(values, 0.5)).isEqualTo(500);
+    assertThat(LoadTestResults.getPercentile(values, 0.99)).isEqualTo(990);
+    assertThat(LoadTestResults.getPercentile(values, 0.999)).isEqualTo(999);
+    assertThat(LoadTestResults.getPercentile(values, 1.0)).isEqualTo(1000);
+  }
+
+  @Test
+  public void testGetPercentile_fewValues() {
+    assertThat(LoadTestResults.getPercentile(new long[] {7}, 0.5)).isEqualTo(7);
+    assertThat(LoadTestResults.getPercentile(new long[] {7}, 0.999)).isEqualTo(7);
+    assertThat(LoadTestResults.getPercentile(new long[] {3, 9}, 0.5)).isEqualTo(3);
+    assertThat(LoadTestResults.getPercentile(new long[] {3, 9}, 0.99)).isEqualTo(9);
+  }
+
+  @Test
+  public void testGetResultCodeCounts() {
+    results.record("domain_create", 20, "1000");
+    results.record("domain_create", 10, "2302");
+    results.record("domain_create", 30, "1000");
+    results.record("domain_info", 5, "1000");
+    assertThat(results.getCount()).isEqualTo(4);
+    assertThat(results.getResultCodeCounts())
+        .isEqualTo(ImmutableMap.of(
+            "domain_create 1000", 2, "domain_create 2302", 1, "domain_info 1000", 1));
+    assertThat(results.getResultCodeCounts().keySet())
+        .containsExactly("domain_create 1000", "domain_create 2302", "domain_info 1000")
+        .inOrder();
+  }
+
+  @Test
+  public void testGetSummary() {
+    for (int i = 1; i <= 100; i++) {
+      results.record("domain_info", i, "1000");
+    }
+    results.record("poll", 42, "1300");
+    String summary = results.getSummary(4, Duration.standardSeconds(10));
+    assertThat(summary).startsWith(
+        "Closed-loop load test with 4 concurrent clients for 10.0 s: 101 commands, 10.1/s\n");
+    assertThat(summary).contains(String.format("%-25s %8d %10.1f %8d %8d %8d %8d\n",
+        "domain_info", 100, 10.0, 50, 99, 100, 100));
+    assertThat(summary).contains(String.format("%-25s %8d %10.1f %8d %8d %8d %8d\n",
+        "poll", 1, 0.1, 42, 42, 42, 42));
+    assertThat(summary).contains(String.format("%-34s %8d\n", "domain_info 1000", 100));
+    assertThat(summary).contains(String.format("%-34s %8d\n", "poll 1300", 1));
+  }
+}
@@ -0,0 +1,138 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.newHostResource;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.DatastoreHelper.persistResourceWithCommitLog;
+import static google.registry.util.DateTimeUtils.START_OF_TIME;
+import static org.joda.time.DateTimeZone.UTC;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Key;
+import google.registry.model.host.HostResource;
+import google.registry.model.ofy.Ofy;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.InjectRule;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link PointInTimeResolver}. */
+@RunWith(JUnit4.class)
+public class PointInTimeResolverTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .withTaskQueue()
+      .build();
+
+  @Rule
+  public final InjectRule inject = new InjectRule();
+
+  private final FakeClock clock = new FakeClock(DateTime.now(UTC));
+  private final PointInTimeResolver resolver = new PointInTimeResolver(100);
+
+  @Before
+  public void init() throws Exception {
+    createTld("tld");
+    inject.setStaticField(Ofy.class, "clock", clock);
+  }
+
+  @Test
+  public void testLoadAtPointsInTime_mixOfCurrentRewoundAndNotYetCreated() throws Exception {
+    clock.advanceOneMilli();
+    HostResource oldHost = persistResourceWithCommitLog(
+        newHostResource("ns1.cat.tld").asBuilder()
+            .setCreationTimeForTest(clock.nowUtc())
+            .setCurrentSponsorClientId("OLD")
+            .build());
+    DateTime beforeCreation = clock.nowUtc().minusMillis(1);
+    clock.advanceBy(Duration.standardDays(1));
+    HostResource currentHost = persistResource(oldHost.asBuilder()
+        .setCurrentSponsorClientId("NEW")
+        .build());
+    DateTime beforeUpdate = clock.nowUtc().minusMillis(1);
+    clock.advanceOneMilli();
+    ImmutableMap<DateTime, Optional<HostResource>> result =
+        PointInTimeResolver.loadAtPointsInTime(
+            currentHost, ImmutableSet.of(beforeCreation, beforeUpdate, clock.nowUtc()));
+    assertThat(result.get(beforeCreation)).isEqualTo(Optional.absent());
+    assertThat(result.get(beforeUpdate).get()).isEqualTo(oldHost);
+    assertThat(result.get(clock.nowUtc()).get()).isEqualTo(currentHost);
+  }
+
+  @Test
+  public void testLoadAtPointInTime_multipleResources_omitsInactive() throws Exception {
+    clock.advanceOneMilli();
+    HostResource oldHost1 = persistResourceWithCommitLog(
+        newHostResource("ns1.cat.tld").asBuilder()
+            .setCreationTimeForTest(START_OF_TIME)
+            .setCurrentSponsorClientId("OLD")
+            .build());
+    HostResource host2 = persistResource(
+        newHostResource("ns2.cat.tld").asBuilder()
+            .setCreationTimeForTest(clock.nowUtc().plusDays(1))
+            .build());
+    clock.advanceBy(Duration.standardDays(1));
+    HostResource currentHost1 = persistResource(oldHost1.asBuilder()
+        .setCurrentSponsorClientId("NEW")
+        .build());
+    DateTime beforeUpdate = clock.nowUtc().minusMillis(1);
+    assertThat(PointInTimeResolver.loadAtPointInTime(
+            ImmutableList.of(currentHost1, host2), beforeUpdate))
+        .isEqualTo(ImmutableMap.of(Key.create(oldHost1), oldHost1));
+  }
+
+  @Test
+  public void testLoadHostsAtPointInTime_memoizesResults() throws Exception {
+    clock.advanceOneMilli();
+    HostResource oldHost = persistResourceWithCommitLog(
+        newHostResource("ns1.cat.tld").asBuilder()
+            .setCreationTimeForTest(START_OF_TIME)
+            .setCurrentSponsorClientId("OLD")
+            .build());
+    clock.advanceBy(Duration.standardDays(1));
+    persistResource(oldHost.asBuilder().setCurrentSponsorClientId("NEW").build());
+    DateTime beforeUpdate = clock.nowUtc().minusMillis(1);
+    Key<HostResource> hostKey = Key.create(oldHost);
+    assertThat(resolver.loadHostsAtPointInTime(ImmutableList.of(hostKey), beforeUpdate))
+        .isEqualTo(ImmutableMap.of(hostKey, oldHost));
+    // Delete the host from datastore entirely; the memoized projection should still be returned.
+    ofy().deleteWithoutBackup().key(hostKey).now();
+    ofy().clearSessionCache();
+    assertThat(resolver.loadHostsAtPointInTime(ImmutableList.of(hostKey), beforeUpdate))
+        .isEqualTo(ImmutableMap.of(hostKey, oldHost));
+  }
+
+  @Test
+  public void testLoadHostsAtPointInTime_missingHost_isOmitted() throws Exception {
+    Key<HostResource> hostKey = Key.create(HostResource.class, "missing-ROID");
+    assertThat(resolver.loadHostsAtPointInTime(ImmutableList.of(hostKey), clock.nowUtc()))
+        .isEmpty();
+  }
+}
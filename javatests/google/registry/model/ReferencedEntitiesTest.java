@@ -0,0 +1,113 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.deleteResource;
+import static google.registry.testing.DatastoreHelper.newDomainResource;
+import static google.registry.testing.DatastoreHelper.persistActiveContact;
+import static google.registry.testing.DatastoreHelper.persistActiveHost;
+import static google.registry.testing.DatastoreHelper.persistResource;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Key;
+import google.registry.model.contact.ContactResource;
+import google.registry.model.domain.DomainResource;
+import google.registry.model.host.HostResource;
+import google.registry.testing.AppEngineRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ReferencedEntities}. */
+@RunWith(JUnit4.class)
+public class ReferencedEntitiesTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .build();
+
+  private ContactResource contact;
+  private HostResource host1;
+  private HostResource host2;
+  private DomainResource domain;
+
+  @Before
+  public void setUp() {
+    createTld("tld");
+    contact = persistActiveContact("jd1234");
+    host1 = persistActiveHost("ns1.example.net");
+    host2 = persistActiveHost("ns2.example.net");
+    domain = persistResource(newDomainResource("example.tld", contact)
+        .asBuilder()
+        .setNameservers(ImmutableSet.of(Key.create(host1), Key.create(host2)))
+        .build());
+  }
+
+  @Test
+  public void testLoad_contactsNameserversAndRegistrar() throws Exception {
+    ReferencedEntities references = ReferencedEntities.builder()
+        .addContactsAndNameservers(domain)
+        .addRegistrar("TheRegistrar")
+        .load();
+    assertThat(references.get(domain.getRegistrant())).isEqualTo(contact);
+    assertThat(references.getAll(ImmutableList.of(Key.create(host2), Key.create(host1))))
+        .containsExactly(host2, host1)
+        .inOrder();
+    assertThat(references.getRegistrar("TheRegistrar").getClientId()).isEqualTo("TheRegistrar");
+  }
+
+  @Test
+  public void testLoad_missingEntities_omitted() throws Exception {
+    deleteResource(host1);
+    ReferencedEntities references = ReferencedEntities.builder()
+        .addContactsAndNameservers(domain)
+        .addRegistrar("NoSuchRegistrar")
+        .addRegistrar(null)
+        .load();
+    assertThat(references.get(Key.create(host1))).isNull();
+    assertThat(references.getAll(domain.getNameservers())).containsExactly(host2);
+    assertThat(references.getRegistrar("NoSuchRegistrar")).isNull();
+    assertThat(references.getRegistrar(null)).isNull();
+  }
+
+  @Test
+  public void testGet_notRequested_returnsNull() throws Exception {
+    ReferencedEntities references =
+        ReferencedEntities.builder().addContactsAndNameservers(domain).load();
+    assertThat(references.getRegistrar("TheRegistrar")).isNull();
+  }
+
+  @Test
+  public void testGetKeys() throws Exception {
+    assertThat(ReferencedEntities.builder().addContactsAndNameservers(domain).getKeys())
+        .containsExactly(domain.getRegistrant(), Key.create(host1), Key.create(host2));
+  }
+
+  @Test
+  public void testLoadNow_keepsLoadedEntities() throws Exception {
+    ReferencedEntities references = ReferencedEntities.builder()
+        .addContactsAndNameservers(domain)
+        .load()
+        .loadNow();
+    deleteResource(host1);
+    assertThat(references.getAll(domain.getNameservers())).containsExactly(host1, host2);
+  }
+}
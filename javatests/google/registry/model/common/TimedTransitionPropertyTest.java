@@ -103,6 +103,29 @@ public class TimedTransitionPropertyTest {
     testGetValueAtTime(timedString);
   }
 
+  @Test
+  public void testSuccess_getValueAtTime_repeatedLookups() throws Exception {
+    // Lookups in the same segment as the last one are answered without searching, so check that
+    // alternating between segments and repeating lookups both return the right values.
+    for (int i = 0; i < 2; i++) {
+      testGetValueAtTime(timedString);
+      assertThat(timedString.getValueAtTime(DATE_2.plusMillis(1))).isEqualTo("2");
+      assertThat(timedString.getValueAtTime(DATE_2.plusDays(1))).isEqualTo("2");
+      assertThat(timedString.getValueAtTime(DATE_3.minusMillis(1))).isEqualTo("2");
+      assertThat(timedString.getValueAtTime(DATE_1)).isEqualTo("1");
+      assertThat(timedString.getValueAtTime(START_OF_TIME)).isEqualTo("0");
+      assertThat(timedString.getValueAtTime(A_LONG_TIME_AGO)).isEqualTo("0");
+    }
+  }
+
+  @Test
+  public void testSuccess_getValueAtTime_singleTransition() throws Exception {
+    timedString = forMapify("0", StringTimedTransition.class);
+    assertThat(timedString.getValueAtTime(A_LONG_TIME_AGO)).isEqualTo("0");
+    assertThat(timedString.getValueAtTime(DATE_1)).isEqualTo("0");
+    assertThat(timedString.getValueAtTime(END_OF_TIME)).isEqualTo("0");
+  }
+
   @Test
   public void testSuccess_getNextTransitionAfter() throws Exception {
     assertThat(timedString.getNextTransitionAfter(A_LONG_TIME_AGO)).isEqualTo(DATE_1);
@@ -128,6 +151,22 @@ public class TimedTransitionPropertyTest {
     testGetValueAtTime(timedString);
   }
 
+  @Test
+  public void testSuccess_simulatedLoadAfterLookup() throws Exception {
+    // Just for testing, don't extract transitions from a TimedTransitionProperty in real code.
+    Set<Map.Entry<DateTime, StringTimedTransition>> transitions = timedString.entrySet();
+    timedString = forMapify("0", StringTimedTransition.class);
+    assertThat(timedString.getValueAtTime(DATE_2)).isEqualTo("0");
+    // The values looked up before the simulated load must not be used after it.
+    timedString.clear();
+    for (Map.Entry<DateTime, StringTimedTransition> transition : transitions) {
+      timedString.put(transition.getKey(), transition.getValue());
+    }
+    testGetValueAtTime(timedString);
+    timedString.remove(DATE_3);
+    assertThat(timedString.getValueAtTime(DATE_3)).isEqualTo("2");
+  }
+
   @Test
   public void testFailure_valueMapNotChronologicallyOrdered() throws Exception {
     thrown.expect(IllegalArgumentException.class);
@@ -152,6 +152,32 @@ public class PremiumListTest {
         .isNull();
   }
 
+  @Test
+  public void testSaveWithoutDeletingOldEntries_thenDeleteRevision() throws Exception {
+    PremiumList pl = persistPremiumList("tld", "genius,USD 10", "dolt,JPY 1000");
+    PremiumList pl2 = pl.asBuilder()
+        .setPremiumListMapFromLines(ImmutableList.of("genius,USD 10", "savant,USD 90"))
+        .build()
+        .saveWithoutDeletingOldEntries();
+    assertThat(getPremiumPrice("savant", "tld")).hasValue(Money.parse("USD 90"));
+    assertThat(getPremiumPrice("dolt", "tld")).isAbsent();
+    assertThat(ofy().load().type(PremiumListEntry.class).ancestor(pl.getRevisionKey()).count())
+        .isEqualTo(2);
+    PremiumList.deleteRevision(pl.getRevisionKey());
+    assertThat(ofy().load().type(PremiumListEntry.class).ancestor(pl.getRevisionKey()).count())
+        .isEqualTo(0);
+    assertThat(ofy().load().type(PremiumListEntry.class).ancestor(pl2.getRevisionKey()).count())
+        .isEqualTo(2);
+  }
+
+  @Test
+  public void testDeleteRevision_currentRevision_throws() throws Exception {
+    thrown.expect(
+        IllegalArgumentException.class,
+        "Refusing to delete the current revision of premium list tld");
+    PremiumList.deleteRevision(PremiumList.get("tld").get().getRevisionKey());
+  }
+
   @Test
   public void testGetPremiumPrice_allLabelsAreNonPremium_whenNotInList() throws Exception {
     assertThat(getPremiumPrice("blah", "tld")).isAbsent();
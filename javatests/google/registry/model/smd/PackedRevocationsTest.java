@@ -0,0 +1,96 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.smd;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import google.registry.testing.ExceptionRule;
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PackedRevocations}. */
+@RunWith(JUnit4.class)
+public class PackedRevocationsTest {
+
+  @Rule
+  public final ExceptionRule thrown = new ExceptionRule();
+
+  private static final DateTime TIME = DateTime.parse("2013-01-01T00:00:00Z");
+
+  private static final ImmutableMap<String, DateTime> REVOKES = ImmutableMap.of(
+      "0000001681375789102250-65535", TIME,
+      "1-2", TIME.plusDays(1),
+      "12-1", TIME,
+      "0123456789012345678901234567-999", TIME,
+      "not-an-smd-id", TIME);
+
+  private final PackedRevocations packed = new PackedRevocations.Builder().putAll(REVOKES).build();
+
+  @Test
+  public void testIsRevoked() throws Exception {
+    assertThat(packed.size()).isEqualTo(5);
+    assertThat(packed.isRevoked("0000001681375789102250-65535", TIME.getMillis())).isTrue();
+    assertThat(packed.isRevoked("12-1", TIME.getMillis())).isTrue();
+    assertThat(packed.isRevoked("0123456789012345678901234567-999", TIME.getMillis())).isTrue();
+    assertThat(packed.isRevoked("not-an-smd-id", TIME.getMillis())).isTrue();
+  }
+
+  @Test
+  public void testIsRevoked_beforeRevocationTime() throws Exception {
+    assertThat(packed.isRevoked("1-2", TIME.getMillis())).isFalse();
+    assertThat(packed.isRevoked("1-2", TIME.plusDays(1).getMillis())).isTrue();
+    assertThat(packed.isRevoked("not-an-smd-id", TIME.minusMillis(1).getMillis())).isFalse();
+  }
+
+  @Test
+  public void testIsRevoked_absent() throws Exception {
+    // Prefixes and zero-padded variants of revoked IDs must not collide with them.
+    assertThat(packed.isRevoked("1-20", TIME.plusDays(1).getMillis())).isFalse();
+    assertThat(packed.isRevoked("01-2", TIME.plusDays(1).getMillis())).isFalse();
+    assertThat(packed.isRevoked("12-", TIME.getMillis())).isFalse();
+    assertThat(packed.isRevoked("", TIME.getMillis())).isFalse();
+    assertThat(packed.isRevoked("rofl", TIME.getMillis())).isFalse();
+  }
+
+  @Test
+  public void testToMap_roundTrips() throws Exception {
+    assertThat(packed.toMap()).isEqualTo(REVOKES);
+  }
+
+  @Test
+  public void testEquals_ignoresInsertionOrder() throws Exception {
+    assertThat(new PackedRevocations.Builder()
+            .put("12-1", TIME)
+            .put("1-2", TIME)
+            .build())
+        .isEqualTo(new PackedRevocations.Builder()
+            .put("1-2", TIME)
+            .put("12-1", TIME)
+            .build());
+  }
+
+  @Test
+  public void testDuplicateId_throws() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Duplicate SMD ID: 1-2");
+    new PackedRevocations.Builder()
+        .put("1-2", TIME)
+        .put("1-2", TIME.plusDays(1))
+        .build();
+  }
+}
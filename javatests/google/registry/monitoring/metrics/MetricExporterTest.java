@@ -16,11 +16,13 @@ package google.registry.monitoring.metrics;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Service.State;
 import java.io.IOException;
@@ -29,6 +31,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -42,6 +45,8 @@ public class MetricExporterTest {
 
   @Mock private MetricWriter writer;
   @Mock private MetricPoint<?> point;
+  @Mock private MetricPoint<?> newerPoint;
+  @Mock private Metric<?> metric;
   private MetricExporter exporter;
   private BlockingQueue<Optional<ImmutableList<MetricPoint<?>>>> writeQueue;
   private final Optional<ImmutableList<MetricPoint<?>>> poisonPill = Optional.absent();
@@ -119,6 +124,43 @@ public class MetricExporterTest {
     verify(writer, times(2)).flush();
   }
 
+  @Test
+  public void testRun_afterIOException_retriesWithNewerPointsReplacingOlderOnes() throws Exception {
+    final AtomicLong nanos = new AtomicLong();
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return nanos.get();
+      }};
+    exporter =
+        new MetricExporter(writeQueue, writer, Executors.defaultThreadFactory(), 100, ticker);
+    ImmutableList<String> labelValues = ImmutableList.of("foo");
+    doReturn(metric).when(point).metric();
+    doReturn(labelValues).when(point).labelValues();
+    doReturn(metric).when(newerPoint).metric();
+    doReturn(labelValues).when(newerPoint).labelValues();
+    doThrow(new IOException()).doNothing().when(writer).flush();
+    exporter.startAsync();
+
+    insertAndAssert(Optional.<ImmutableList<MetricPoint<?>>>of(ImmutableList.of(point)));
+    insertAndAssert(Optional.<ImmutableList<MetricPoint<?>>>of(ImmutableList.of(newerPoint)));
+    // Insert another batch in order to block until the exporter has taken the last one
+    insertAndAssert(emptyBatch);
+    nanos.addAndGet(MetricExporter.INITIAL_BACKOFF_NANOS);
+    insertAndAssert(poisonPill);
+    try {
+      exporter.awaitTerminated(500, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException timeout) {
+      fail("MetricExporter did not reach the TERMINATED state after receiving a poison pill");
+    }
+
+    assertThat(exporter.state()).isNotEqualTo(State.FAILED);
+    // The failed point is only written once, because the newer one for the same time series
+    // replaced it in the backlog before the retry.
+    verify(writer).write(point);
+    verify(writer).write(newerPoint);
+  }
+
   /**
    * Helper method to insert into the {@link BlockingQueue} and assert that the item has been
    * enqueued.
@@ -14,6 +14,7 @@
 
 package google.registry.monitoring.metrics;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -21,11 +22,14 @@ import static org.mockito.Mockito.when;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InOrder;
+import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -39,8 +43,15 @@ public class MetricReporterTest {
   @Mock ThreadFactory threadFactory;
   @Mock MetricWriter writer;
   @Mock MetricSchema metricSchema;
+  @Mock MetricPoint<?> point;
   @Mock BlockingQueue<Optional<ImmutableList<MetricPoint<?>>>> writeQueue;
 
+  @Before
+  public void setUp() throws Exception {
+    when(writeQueue.offer(Matchers.<Optional<ImmutableList<MetricPoint<?>>>>any()))
+        .thenReturn(true);
+  }
+
   @Test
   public void testRunOneIteration_enqueuesBatch() throws Exception {
     Metric<?> metric =
@@ -67,4 +78,19 @@ public class MetricReporterTest {
     interactions.verify(writeQueue).offer(Optional.of(ImmutableList.<MetricPoint<?>>of()));
     interactions.verify(writeQueue).offer(Optional.<ImmutableList<MetricPoint<?>>>absent());
   }
+
+  @Test
+  public void testRunOneIteration_queueFull_dropsOldestBatch() throws Exception {
+    when(registry.getRegisteredMetrics()).thenReturn(ImmutableList.<Metric<?>>of());
+    BlockingQueue<Optional<ImmutableList<MetricPoint<?>>>> fullQueue =
+        new ArrayBlockingQueue<>(1);
+    Optional<ImmutableList<MetricPoint<?>>> oldBatch =
+        Optional.<ImmutableList<MetricPoint<?>>>of(ImmutableList.<MetricPoint<?>>of(point));
+    fullQueue.add(oldBatch);
+    MetricReporter reporter = new MetricReporter(writer, 10L, threadFactory, registry, fullQueue);
+
+    reporter.runOneIteration();
+
+    assertThat(fullQueue).containsExactly(Optional.of(ImmutableList.<MetricPoint<?>>of()));
+  }
 }
@@ -24,7 +24,9 @@ import static google.registry.testing.DatastoreHelper.persistActiveDomain;
 import static google.registry.testing.DatastoreHelper.persistActiveHost;
 import static google.registry.testing.DatastoreHelper.persistDomainAsDeleted;
 import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.DatastoreHelper.persistResourceWithCommitLog;
 import static google.registry.testing.DatastoreHelper.persistSimpleResource;
+import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static org.joda.time.DateTimeZone.UTC;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -104,6 +106,7 @@ public class VerifyEntityIntegrityActionTest
     action = new VerifyEntityIntegrityAction();
     action.mrRunner = new MapreduceRunner(Optional.of(2), Optional.of(2));
     action.response = new FakeResponse();
+    action.changedSince = Optional.absent();
     WhiteboxComponent component = mock(WhiteboxComponent.class);
     inject.setStaticField(VerifyEntityIntegrityAction.class, "component", component);
     integrity =
@@ -283,6 +286,78 @@ public class VerifyEntityIntegrityActionTest
             "Foreign key index points to EppResource with different foreign key"));
   }
 
+  @Test
+  public void test_incremental_onlyVerifiesChangedEntities() throws Exception {
+    Key<HostResource> missingHost = Key.create(HostResource.class, "DEADBEEF-ROID");
+    ContactResource contact = persistActiveContact("longbottom");
+    // This domain was saved without a commit log, so it's as if it changed before the last scan.
+    persistResource(
+        newDomainResource("unchanged.tld", contact)
+            .asBuilder()
+            .setNameservers(ImmutableSet.of(missingHost))
+            .build());
+    Key<DomainResource> changedKey = Key.create(persistResourceWithCommitLog(
+        newDomainResource("changed.tld", contact)
+            .asBuilder()
+            .setNameservers(ImmutableSet.of(missingHost))
+            .build()));
+    action.changedSince = Optional.of(START_OF_TIME);
+    runMapreduce();
+    assertIntegrityErrors(
+        IntegrityError.create(changedKey, missingHost, "Target entity does not exist"));
+  }
+
+  @Test
+  public void test_incremental_verifiesWholeForeignKeyGroup() throws Exception {
+    DateTime now = DateTime.now(UTC);
+    persistResource(
+        newContactResource("ricketycricket")
+            .asBuilder()
+            .setCreationTimeForTest(now.minusDays(10))
+            .setDeletionTime(now.minusDays(9))
+            .build());
+    persistResourceWithCommitLog(
+        newContactResource("ricketycricket")
+            .asBuilder()
+            .setCreationTimeForTest(now.minusDays(1))
+            .build());
+    action.changedSince = Optional.of(START_OF_TIME);
+    runMapreduce();
+    verifyZeroInteractions(bigquery);
+  }
+
+  @Test
+  public void test_incremental_missingEppResourceIndex() throws Exception {
+    Key<ContactResource> cooperKey =
+        Key.create(persistResourceWithCommitLog(newContactResource("cooper")));
+    deleteResource(EppResourceIndex.create(cooperKey));
+    action.changedSince = Optional.of(START_OF_TIME);
+    runMapreduce();
+    assertIntegrityErrors(IntegrityError.create(
+        Data.NULL_STRING, cooperKey, "Missing EPP resource index for EPP resource"));
+  }
+
+  @Test
+  public void test_incremental_nothingChanged_doesNotRunMapreduce() throws Exception {
+    persistActiveDomain("ninetails.tld");
+    action.changedSince = Optional.of(START_OF_TIME);
+    action.run();
+    assertThat(((FakeResponse) action.response).getPayload())
+        .startsWith("No entities to verify changed between");
+    verifyZeroInteractions(bigquery);
+  }
+
+  @Test
+  public void test_incremental_changesBeforeChangedSince_ignored() throws Exception {
+    persistResourceWithCommitLog(newContactResource("cooper"));
+    persistResourceWithCommitLog(newContactResource("ricketycricket"));
+    action.changedSince = Optional.of(DateTime.now(UTC));
+    action.run();
+    assertThat(((FakeResponse) action.response).getPayload())
+        .startsWith("No entities to verify changed between");
+    verifyZeroInteractions(bigquery);
+  }
+
   /** Encapsulates the data representing a single integrity error. */
   private static class IntegrityError {
     String source;
@@ -36,6 +36,7 @@ import google.registry.model.ofy.Ofy;
 import google.registry.model.registrar.Registrar;
 import google.registry.model.registry.Registry;
 import google.registry.model.reporting.HistoryEntry;
+import google.registry.rdds.LookupResponseCache;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
 import google.registry.testing.FakeResponse;
@@ -69,6 +70,7 @@ public class RdapDomainActionTest {
 
   @Before
   public void setUp() throws Exception {
+    LookupResponseCache.clear();
     inject.setStaticField(Ofy.class, "clock", clock);
     // lol
     createTld("lol");
@@ -0,0 +1,68 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rdap;
+
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.FullFieldsTestEntityHelper.makeAndPersistContactResource;
+import static google.registry.testing.FullFieldsTestEntityHelper.makeAndPersistHostResource;
+import static google.registry.testing.FullFieldsTestEntityHelper.makeDomainResource;
+import static google.registry.testing.FullFieldsTestEntityHelper.makeRegistrar;
+
+import google.registry.benchmark.BenchmarkRunner;
+import google.registry.model.domain.DomainResource;
+import google.registry.model.registrar.Registrar;
+import google.registry.rdap.RdapJsonFormatter.OutputDataType;
+import org.joda.time.DateTime;
+
+/**
+ * Microbenchmark of formatting a fully populated domain, with its contacts, nameservers and
+ * registrar, as an RDAP response.
+ *
+ * <p>Usage: {@code RdapJsonFormatterBenchmark [reportFile] [baselineReportFile]}, as for
+ * {@link BenchmarkRunner#runMain}.
+ */
+public final class RdapJsonFormatterBenchmark {
+
+  private static final String TLD = "bench";
+  private static final DateTime NOW = DateTime.parse("2016-10-01T00:00:00Z");
+
+  public static void main(String[] args) throws Throwable {
+    BenchmarkRunner.runMain(args, new BenchmarkRunner.BenchmarkSuite() {
+        @Override
+        public void runBenchmarks(BenchmarkRunner runner) throws Exception {
+          createTld(TLD);
+          Registrar registrar = persistResource(
+              makeRegistrar("benchregistrar", "Bench Registrar", Registrar.State.ACTIVE));
+          final DomainResource domain = persistResource(makeDomainResource(
+              "cat." + TLD,
+              makeAndPersistContactResource("5372808-ERL", "Goblin Market", "lol@cat.lol", NOW),
+              makeAndPersistContactResource("5372808-IRL", "Santa Claus", "BOFH@cat.lol", NOW),
+              makeAndPersistContactResource("5372808-TRL", "The Raven", "bog@cat.lol", NOW),
+              makeAndPersistHostResource("ns1.example.net", "1.2.3.4", NOW),
+              makeAndPersistHostResource("ns2.example.net", "bad:f00d:cafe::15:beef", NOW),
+              registrar));
+          runner.run(new BenchmarkRunner.Benchmark(
+              "RdapJsonFormatter.makeRdapJsonForDomain", 2000) {
+                @Override
+                protected Object run(int operation) throws Exception {
+                  return RdapJsonFormatter.makeRdapJsonForDomain(
+                      domain, true, "https://example.tld/rdap/", null, NOW, OutputDataType.FULL);
+                }});
+        }});
+  }
+
+  private RdapJsonFormatterBenchmark() {}
+}
@@ -23,6 +23,7 @@ import com.google.appengine.api.NamespaceManager;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import google.registry.model.ofy.Ofy;
+import google.registry.rdds.LookupResponseCache;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
 import google.registry.testing.FakeResponse;
@@ -54,6 +55,7 @@ public class RdapNameserverActionTest {
 
   @Before
   public void setUp() throws Exception {
+    LookupResponseCache.clear();
     inject.setStaticField(Ofy.class, "clock", clock);
     // normal
     createTld("lol");
@@ -0,0 +1,122 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rdds;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.rdds.LookupResponseCache.ResourceType.DOMAIN;
+import static google.registry.rdds.LookupResponseCache.ResourceType.HOST;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.objectify.Key;
+import google.registry.model.contact.ContactResource;
+import google.registry.rdds.LookupResponseCache.Slot;
+import google.registry.testing.AppEngineRule;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LookupResponseCache}. */
+@RunWith(JUnit4.class)
+public class LookupResponseCacheTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private static final DateTime NOW = DateTime.parse("2009-06-29T20:13:00Z");
+
+  @Before
+  public void setUp() throws Exception {
+    LookupResponseCache.clear();
+  }
+
+  @Test
+  public void testGetSlot_empty_miss() throws Exception {
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).get("whois")).isNull();
+  }
+
+  @Test
+  public void testGetSlot_afterPut_hit() throws Exception {
+    LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).put("whois", "response");
+    Slot slot = LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW.plusSeconds(1));
+    assertThat(slot.<String>get("whois")).isEqualTo("response");
+    assertThat(slot.get("rdap")).isNull();
+  }
+
+  @Test
+  public void testGetSlot_nameIsCaseInsensitive() throws Exception {
+    LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).put("whois", "response");
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "CAT.lol", NOW).<String>get("whois"))
+        .isEqualTo("response");
+  }
+
+  @Test
+  public void testGetSlot_typesAreSeparate() throws Exception {
+    LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).put("whois", "response");
+    assertThat(LookupResponseCache.getSlot(HOST, "cat.lol", NOW).get("whois")).isNull();
+  }
+
+  @Test
+  public void testGetSlot_expired_miss() throws Exception {
+    LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).put("whois", "response");
+    DateTime expiry = NOW.plus(LookupResponseCache.TTL);
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "cat.lol", expiry.minusMillis(1)).get("whois"))
+        .isNotNull();
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "cat.lol", expiry).get("whois")).isNull();
+  }
+
+  @Test
+  public void testInvalidate_miss() throws Exception {
+    LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).put("whois", "response");
+    LookupResponseCache.getSlot(DOMAIN, "dog.lol", NOW).put("whois", "response");
+    LookupResponseCache.invalidate(DOMAIN, "cat.lol");
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).get("whois")).isNull();
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "dog.lol", NOW).get("whois")).isNotNull();
+  }
+
+  @Test
+  public void testInvalidate_duringRendering_responseDiscarded() throws Exception {
+    Slot slot = LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW);
+    LookupResponseCache.invalidate(DOMAIN, "cat.lol");
+    slot.put("whois", "stale response");
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).get("whois")).isNull();
+  }
+
+  @Test
+  public void testInvalidateReferencesTo_dropsSlotsReferencingKey() throws Exception {
+    Key<ContactResource> contactKey = Key.create(ContactResource.class, "1-ROID");
+    Slot slot = LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW);
+    slot.addReferencedKeys(ImmutableList.of(contactKey));
+    slot.put("whois", "response");
+    Slot otherSlot = LookupResponseCache.getSlot(DOMAIN, "dog.lol", NOW);
+    otherSlot.addReferencedKeys(
+        ImmutableList.of(Key.create(ContactResource.class, "2-ROID")));
+    otherSlot.put("whois", "response");
+    LookupResponseCache.invalidateReferencesTo(contactKey);
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).get("whois")).isNull();
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "dog.lol", NOW).get("whois")).isNotNull();
+  }
+
+  @Test
+  public void testInvalidateTask_invalidatesWhenRun() throws Exception {
+    LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).put("whois", "response");
+    Runnable task = LookupResponseCache.invalidateTask(DOMAIN, "cat.lol");
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).get("whois")).isNotNull();
+    task.run();
+    assertThat(LookupResponseCache.getSlot(DOMAIN, "cat.lol", NOW).get("whois")).isNull();
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.util.SerializeUtils.deserialize;
+import static google.registry.util.SerializeUtils.serialize;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import java.io.ByteArrayOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link DepositFragment}. */
+@RunWith(JUnit4.class)
+public class DepositFragmentTest {
+
+  private static final String SMALL_XML = "<rdeHost:host>\n</rdeHost:host>\n";
+  private static final String LARGE_XML =
+      "<rdeDomain:domain>\n"
+          + Strings.repeat("    <rdeDomain:status s=\"clientHold\"/>\n", 100)
+          + "    <rdeDomain:name>ėxample.lol</rdeDomain:name>\n"
+          + "</rdeDomain:domain>\n";
+
+  @Test
+  public void testSmallFragment_isNotDeflated() throws Exception {
+    DepositFragment fragment = DepositFragment.create(RdeResourceType.HOST, SMALL_XML, "");
+    assertThat(fragment.deflated()).isFalse();
+    assertThat(fragment.encodedXml()).isEqualTo(SMALL_XML.getBytes(UTF_8));
+    assertThat(fragment.xml()).isEqualTo(SMALL_XML);
+  }
+
+  @Test
+  public void testLargeFragment_isDeflated() throws Exception {
+    DepositFragment fragment = DepositFragment.create(RdeResourceType.DOMAIN, LARGE_XML, "");
+    assertThat(fragment.deflated()).isTrue();
+    assertThat(fragment.encodedXml().length).isLessThan(LARGE_XML.getBytes(UTF_8).length);
+    assertThat(fragment.xml()).isEqualTo(LARGE_XML);
+  }
+
+  @Test
+  public void testWriteXmlTo_writesUtf8() throws Exception {
+    for (String xml : new String[] {SMALL_XML, LARGE_XML}) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      DepositFragment.create(RdeResourceType.DOMAIN, xml, "").writeXmlTo(output);
+      assertThat(output.toByteArray()).isEqualTo(xml.getBytes(UTF_8));
+    }
+  }
+
+  @Test
+  public void testEmptyXml_isEmpty() throws Exception {
+    DepositFragment fragment = DepositFragment.create(RdeResourceType.REGISTRAR, "", "oh no");
+    assertThat(fragment.isEmpty()).isTrue();
+    assertThat(fragment.xml()).isEmpty();
+    assertThat(fragment.error()).isEqualTo("oh no");
+  }
+
+  @Test
+  public void testSerialization_roundTrips() throws Exception {
+    DepositFragment fragment = DepositFragment.create(RdeResourceType.DOMAIN, LARGE_XML, "");
+    DepositFragment copy = deserialize(DepositFragment.class, serialize(fragment));
+    assertThat(copy).isEqualTo(fragment);
+    assertThat(copy.xml()).isEqualTo(LARGE_XML);
+  }
+}
@@ -21,6 +21,7 @@ import org.junit.runners.Suite.SuiteClasses;
 /** Convenience class for jart@ so she can run all RDE tests inside Eclipse with one keystroke. */
 @RunWith(Suite.class)
 @SuiteClasses({
+  DepositFragmentTest.class,
   DomainResourceToXjcConverterTest.class,
   GhostrydeGpgIntegrationTest.class,
   GhostrydeTest.class,
@@ -0,0 +1,99 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tmch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteSource;
+import google.registry.benchmark.BenchmarkRunner;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.joda.time.DateTime;
+
+/**
+ * Benchmark comparing the streaming {@link ClaimsListParser} against splitting a whole DNL file
+ * into lines and fields up front, as the parser used to.
+ *
+ * <p>This synthesizes a DNL with {@value #ROW_COUNT} rows, and each operation parses all of it.
+ * The datastore is only needed to allocate the id of the resulting shard.
+ *
+ * <p>Usage: {@code ClaimsListParserBenchmark [reportFile] [baselineReportFile]}, as for
+ * {@link BenchmarkRunner#runMain}.
+ */
+public final class ClaimsListParserBenchmark {
+
+  private static final int ROW_COUNT = 1000000;
+
+  public static void main(String[] args) throws Throwable {
+    BenchmarkRunner.runMain(args, new BenchmarkRunner.BenchmarkSuite() {
+        @Override
+        public void runBenchmarks(BenchmarkRunner runner) throws Exception {
+          final byte[] dnl = createSyntheticDnl();
+          runner.run(new BenchmarkRunner.Benchmark("readLines + Splitter", 1) {
+              @Override
+              protected Object run(int operation) throws Exception {
+                return parseSplitting(dnl);
+              }});
+          runner.run(new BenchmarkRunner.Benchmark("ClaimsListParser.parse", 1) {
+              @Override
+              protected Object run(int operation) throws Exception {
+                return parseStreaming(dnl);
+              }});
+        }});
+  }
+
+  private static byte[] createSyntheticDnl() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(ROW_COUNT * 64);
+    StringBuilder line = new StringBuilder("1,2013-11-24T23:15:37.4Z\n")
+        .append("DNL,lookup-key,insertion-datetime\n");
+    for (int i = 0; i < ROW_COUNT; i++) {
+      line.append("label").append(i)
+          .append(",2013112500/").append(i % 10).append('/').append(i % 7).append("/d/Ydu")
+          .append(Integer.toHexString(i * 31))
+          .append(",2013-09-05T00:00:00.0Z\n");
+      if (line.length() > 64 * 1024) {
+        output.write(line.toString().getBytes(US_ASCII));
+        line.setLength(0);
+      }
+    }
+    output.write(line.toString().getBytes(US_ASCII));
+    return output.toByteArray();
+  }
+
+  /** Parses the DNL the way {@link ClaimsListParser} did before it streamed its input. */
+  private static int parseSplitting(byte[] dnl) throws IOException {
+    List<String> lines = ByteSource.wrap(dnl).asCharSource(US_ASCII).readLines();
+    ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<>();
+    for (int i = 2; i < lines.size(); i++) {
+      List<String> currentLine = Splitter.on(',').splitToList(lines.get(i));
+      checkArgument(currentLine.size() == 3, String.format(
+          "Line %d: Expected 3 elements, found %d", i + 1, currentLine.size()));
+      DateTime.parse(currentLine.get(2));
+      builder.put(currentLine.get(0), currentLine.get(1));
+    }
+    return builder.build().size();
+  }
+
+  private static int parseStreaming(byte[] dnl) throws IOException {
+    return ClaimsListParser.parse(new ByteArrayInputStream(dnl)).size();
+  }
+
+  private ClaimsListParserBenchmark() {}
+}
@@ -0,0 +1,225 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tmch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharSource;
+import google.registry.model.tmch.ClaimsListShard;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.ExceptionRule;
+import java.io.InputStream;
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ClaimsListParser}. */
+@RunWith(JUnit4.class)
+public class ClaimsListParserTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .build();
+
+  @Rule
+  public final ExceptionRule thrown = new ExceptionRule();
+
+  private static final CharSource DNL_LATEST_CSV =
+      TmchTestData.loadBytes("dnl-latest.csv").asCharSource(US_ASCII);
+
+  @Test
+  public void testParse() throws Exception {
+    ClaimsListShard claimsList = ClaimsListParser.parse(DNL_LATEST_CSV.readLines());
+    assertThat(claimsList.size()).isEqualTo(113);
+    assertThat(claimsList.getCreationTime()).isEqualTo(DateTime.parse("2013-11-24T23:15:37.4Z"));
+    assertThat(claimsList.getClaimKey("test---validate"))
+        .isEqualTo("2013112500/6/1/d/YduYflFKIFHoOYwDfN");
+    assertThat(claimsList.getClaimKey("test-and-validate"))
+        .isEqualTo("2013112500/c/7/f/xX41rmqoaXkXXrV");
+    assertThat(claimsList.getClaimKey("lookup-key")).isNull();
+  }
+
+  @Test
+  public void testParse_stream() throws Exception {
+    ClaimsListShard claimsList;
+    try (InputStream input = TmchTestData.loadBytes("dnl-latest.csv").openStream()) {
+      claimsList = ClaimsListParser.parse(input);
+    }
+    assertThat(claimsList.getLabelsToKeys())
+        .isEqualTo(ClaimsListParser.parse(DNL_LATEST_CSV.readLines()).getLabelsToKeys());
+    assertThat(claimsList.getCreationTime()).isEqualTo(DateTime.parse("2013-11-24T23:15:37.4Z"));
+  }
+
+  @Test
+  public void testOneRow() throws Exception {
+    ClaimsListShard claimsList = ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime",
+        "example,2013112500/6/1/d/YduYflFKIFHoOYwDfN,2013-09-05T00:00:00.0Z"));
+    assertThat(claimsList.getLabelsToKeys())
+        .containsExactly("example", "2013112500/6/1/d/YduYflFKIFHoOYwDfN");
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    ClaimsListShard claimsList = ClaimsListParser.parse(ImmutableList.of(
+        "1,2014-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime"));
+    assertThat(claimsList.size()).isEqualTo(0);
+    assertThat(claimsList.getCreationTime()).isEqualTo(DateTime.parse("2014-11-24T23:15:37.4Z"));
+  }
+
+  @Test
+  public void testParse_insertionTimeNotParsed() throws Exception {
+    // The insertion time is unused, so a malformed one doesn't fail the whole list.
+    ClaimsListShard claimsList = ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime",
+        "example,2013112500/6/1/d/YduYflFKIFHoOYwDfN,yesterday"));
+    assertThat(claimsList.getClaimKey("example")).isEqualTo("2013112500/6/1/d/YduYflFKIFHoOYwDfN");
+  }
+
+  @Test
+  public void testFail_badVersion() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Line 1: Expected version 1, found 666");
+    ClaimsListParser.parse(ImmutableList.of(
+        "666,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime",
+        "example,2013112500/6/1/d/YduYflFKIFHoOYwDfN,2013-09-05T00:00:00.0Z"));
+  }
+
+  @Test
+  public void testFail_badCreationTime() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "yesterday");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,yesterday",
+        "DNL,lookup-key,insertion-datetime"));
+  }
+
+  @Test
+  public void testFail_firstLineTooManyColumns() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Line 1: Expected 2 elements, found 3");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z,extra",
+        "DNL,lookup-key,insertion-datetime"));
+  }
+
+  @Test
+  public void testFail_badFirstHeader() throws Exception {
+    thrown.expect(
+        IllegalArgumentException.class, "Line 2: Expected header \"DNL\", found \"label\"");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "label,lookup-key,insertion-datetime"));
+  }
+
+  @Test
+  public void testFail_badSecondHeader() throws Exception {
+    thrown.expect(
+        IllegalArgumentException.class,
+        "Line 2: Expected header \"lookup-key\", found \"claim-key\"");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,claim-key,insertion-datetime"));
+  }
+
+  @Test
+  public void testFail_badThirdHeader() throws Exception {
+    thrown.expect(
+        IllegalArgumentException.class,
+        "Line 2: Expected header \"insertion-datetime\", found \"insertion-date\"");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-date"));
+  }
+
+  @Test
+  public void testFail_headerTooFewColumns() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Line 2: Expected 3 elements, found 2");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key"));
+  }
+
+  @Test
+  public void testFail_missingHeader() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Expected at least 2 lines, found 1");
+    ClaimsListParser.parse(ImmutableList.of("1,2013-11-24T23:15:37.4Z"));
+  }
+
+  @Test
+  public void testFail_commentLine() throws Exception {
+    // The DNL format has no comments, so a comment is rejected like any other malformed row
+    // rather than being skipped or taken for a label.
+    thrown.expect(IllegalArgumentException.class, "Line 3: Expected 3 elements, found 1");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime",
+        "# Domain Name Label list",
+        "example,2013112500/6/1/d/YduYflFKIFHoOYwDfN,2013-09-05T00:00:00.0Z"));
+  }
+
+  @Test
+  public void testFail_commentBeforeFirstLine() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Line 1: Expected 2 elements, found 1");
+    ClaimsListParser.parse(ImmutableList.of(
+        "# Domain Name Label list",
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime"));
+  }
+
+  @Test
+  public void testFail_rowTooManyColumns() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Line 4: Expected 3 elements, found 4");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime",
+        "example,2013112500/6/1/d/YduYflFKIFHoOYwDfN,2013-09-05T00:00:00.0Z",
+        "haha,example,2013112500/6/1/d/YduYflFKIFHoOYwDfN,2013-09-05T00:00:00.0Z"));
+  }
+
+  @Test
+  public void testFail_rowTooFewColumns() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Line 3: Expected 3 elements, found 2");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime",
+        "example,2013112500/6/1/d/YduYflFKIFHoOYwDfN"));
+  }
+
+  @Test
+  public void testFail_emptyRow() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Line 3: Expected 3 elements, found 1");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime",
+        ""));
+  }
+
+  @Test
+  public void testFail_duplicateLabel() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Multiple entries with same key");
+    ClaimsListParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:15:37.4Z",
+        "DNL,lookup-key,insertion-datetime",
+        "example,2013112500/6/1/d/YduYflFKIFHoOYwDfN,2013-09-05T00:00:00.0Z",
+        "example,2013112500/7/d/e/feeueD1g7Jsr8Oxsn,2013-09-05T00:00:00.0Z"));
+  }
+}
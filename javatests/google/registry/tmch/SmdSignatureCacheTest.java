@@ -0,0 +1,114 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tmch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.tmch.TmchTestData.loadSmd;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import google.registry.model.smd.SignedMarkRevocationList;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.ExceptionRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.InjectRule;
+import java.security.cert.CertificateExpiredException;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SmdSignatureCache}. */
+@RunWith(JUnit4.class)
+public class SmdSignatureCacheTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .build();
+
+  @Rule
+  public final ExceptionRule thrown = new ExceptionRule();
+
+  @Rule
+  public final InjectRule inject = new InjectRule();
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2013-11-24T23:15:37.4Z"));
+  private final byte[] smdData = loadSmd("active/Court-Agent-Arabic-Active.smd");
+  private CacheStats initialStats;
+
+  @Before
+  public void before() throws Exception {
+    inject.setStaticField(TmchCertificateAuthority.class, "clock", clock);
+    SmdSignatureCache.clear();
+    initialStats = SmdSignatureCache.stats();
+  }
+
+  private CacheStats stats() {
+    return SmdSignatureCache.stats().minus(initialStats);
+  }
+
+  @Test
+  public void testVerify_sameSmdTwice_usesCache() throws Exception {
+    SmdSignatureCache.verify(smdData);
+    SmdSignatureCache.verify(smdData);
+    assertThat(stats().missCount()).isEqualTo(1);
+    assertThat(stats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testVerify_differentSmds_areCachedSeparately() throws Exception {
+    SmdSignatureCache.verify(smdData);
+    SmdSignatureCache.verify(loadSmd("active/Court-Agent-Chinese-Active.smd"));
+    assertThat(stats().missCount()).isEqualTo(2);
+    assertThat(stats().hitCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testVerify_newRevocationList_reverifies() throws Exception {
+    SmdSignatureCache.verify(smdData);
+    SignedMarkRevocationList.create(clock.nowUtc(), ImmutableMap.<String, DateTime>of()).save();
+    SmdSignatureCache.verify(smdData);
+    SmdSignatureCache.verify(smdData);
+    // The hit on the second call was for an entry from an older revocation list, so the SMD was
+    // verified again; the third call then used the new entry.
+    assertThat(stats().hitCount()).isEqualTo(2);
+    assertThat(stats().missCount()).isEqualTo(1);
+    assertThat(stats().evictionCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testVerify_certificateExpiredSinceCaching_throws() throws Exception {
+    SmdSignatureCache.verify(smdData);
+    clock.setTo(DateTime.parse("2023-06-01T00:00:00Z"));
+    thrown.expectRootCause(CertificateExpiredException.class);
+    SmdSignatureCache.verify(smdData);
+  }
+
+  @Test
+  public void testVerify_failuresAreNotCached() throws Exception {
+    byte[] badSmd = loadSmd("invalid/InvalidSignature-Court-Agent-French-Active.smd");
+    try {
+      SmdSignatureCache.verify(badSmd);
+    } catch (XMLSignatureException expected) {
+      // Expected.
+    }
+    thrown.expect(XMLSignatureException.class);
+    SmdSignatureCache.verify(badSmd);
+  }
+}
@@ -25,6 +25,7 @@ import google.registry.model.smd.SignedMarkRevocationList;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.ExceptionRule;
 import google.registry.testing.FakeClock;
+import java.io.InputStream;
 import org.joda.time.DateTime;
 import org.junit.Rule;
 import org.junit.Test;
@@ -54,6 +55,16 @@ public class SmdrlCsvParserTest {
     assertThat(smdrl.getCreationTime()).isEqualTo(DateTime.parse("2013-11-24T23:30:04.3Z"));
   }
 
+  @Test
+  public void testParse_stream() throws Exception {
+    SignedMarkRevocationList smdrl;
+    try (InputStream input = TmchTestData.loadBytes("smdrl-latest.csv").openStream()) {
+      smdrl = SmdrlCsvParser.parse(input);
+    }
+    assertThat(smdrl).isEqualTo(SmdrlCsvParser.parse(SMDRL_LATEST_CSV.readLines()));
+    assertThat(smdrl.size()).isEqualTo(150);
+  }
+
   @Test
   public void testFirstRow() throws Exception {
     SignedMarkRevocationList smdrl = SmdrlCsvParser.parse(SMDRL_LATEST_CSV.readLines());
@@ -134,4 +145,19 @@ public class SmdrlCsvParserTest {
         "smd-id,insertion-datetime",
         "0000001681375789102250-65535,haha,2013-08-09T12:00:00.0Z"));
   }
+
+  @Test
+  public void testFail_tooFewColumns() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Line 3: Expected 2 elements, found 1");
+    SmdrlCsvParser.parse(ImmutableList.of(
+        "1,2013-11-24T23:30:04.3Z",
+        "smd-id,insertion-datetime",
+        "0000001681375789102250-65535"));
+  }
+
+  @Test
+  public void testFail_missingHeader() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Expected at least 2 lines, found 1");
+    SmdrlCsvParser.parse(ImmutableList.of("1,2013-11-24T23:30:04.3Z"));
+  }
 }
@@ -21,9 +21,11 @@ import org.junit.runners.Suite.SuiteClasses;
 /** Convenience class to run all TMCH tests inside Eclipse with one keystroke. */
 @RunWith(Suite.class)
 @SuiteClasses({
+  ClaimsListParserTest.class,
   LordnTaskTest.class,
   NordnUploadAction.class,
   NordnVerifyAction.class,
+  SmdSignatureCacheTest.class,
   SmdrlCsvParserTest.class,
   TmchCertificateAuthorityTest.class,
   TmchCrlActionTest.class,
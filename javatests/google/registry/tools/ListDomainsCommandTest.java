@@ -14,7 +14,15 @@
 
 package google.registry.tools;
 
+import static google.registry.request.JsonResponse.JSON_SAFETY_PREFIX;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.MediaType;
 import google.registry.tools.server.ListDomainsAction;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -35,4 +43,37 @@ public class ListDomainsCommandTest extends ListObjectsCommandTestCase<ListDomai
   final String getTld() {
     return "foo";
   }
+
+  @Test
+  public void testRun_csv_fetchesPagesUntilNoCursor() throws Exception {
+    when(connection.send(
+            eq(ListDomainsAction.PATH),
+            eq(ImmutableMap.<String, Object>of("tld", "foo", "format", "CSV", "pageSize", 2)),
+            eq(MediaType.PLAIN_TEXT_UTF_8),
+            any(byte[].class)))
+        .thenReturn(JSON_SAFETY_PREFIX
+            + "{\"status\":\"success\",\"lines\":[\"a.foo\",\"b.foo\"],\"cursor\":\"page2\"}");
+    when(connection.send(
+            eq(ListDomainsAction.PATH),
+            eq(ImmutableMap.<String, Object>of(
+                "tld", "foo", "format", "CSV", "pageSize", 2, "cursor", "page2")),
+            eq(MediaType.PLAIN_TEXT_UTF_8),
+            any(byte[].class)))
+        .thenReturn(JSON_SAFETY_PREFIX + "{\"status\":\"success\",\"lines\":[\"c.foo\"]}");
+    runCommand("--tld=foo", "--format=CSV", "--page_size=2");
+    assertStdoutIs("a.foo\nb.foo\nc.foo\n");
+  }
+
+  @Test
+  public void testRun_csv_stopsOnError() throws Exception {
+    when(connection.send(
+            eq(ListDomainsAction.PATH),
+            eq(ImmutableMap.<String, Object>of("tld", "foo", "format", "CSV")),
+            eq(MediaType.PLAIN_TEXT_UTF_8),
+            any(byte[].class)))
+        .thenReturn(JSON_SAFETY_PREFIX
+            + "{\"status\":\"error\",\"error\":\"Something broke\",\"cursor\":\"page2\"}");
+    runCommand("--tld=foo", "--format=CSV");
+    assertStdoutIs("Something broke\n");
+  }
 }
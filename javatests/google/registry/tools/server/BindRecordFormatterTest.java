@@ -0,0 +1,93 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tools.server;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.tools.server.GenerateZoneFilesAction.TTL_A;
+import static google.registry.tools.server.GenerateZoneFilesAction.TTL_DS;
+import static google.registry.tools.server.GenerateZoneFilesAction.TTL_NS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import google.registry.model.domain.secdns.DelegationSignerData;
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BindRecordFormatter}. */
+@RunWith(JUnit4.class)
+public class BindRecordFormatterTest {
+
+  private final BindRecordFormatter formatter = new BindRecordFormatter(8);
+
+  private String formatted() {
+    return new String(formatter.toByteArray(), UTF_8);
+  }
+
+  @Test
+  public void testHeader() throws Exception {
+    assertThat(new String(formatter.appendHeader("tld").toByteArray(), UTF_8))
+        .isEqualTo("$ORIGIN\ttld.\n\n");
+  }
+
+  @Test
+  public void testDomainRecords_matchStringFormatOutput() throws Exception {
+    DelegationSignerData dsData =
+        DelegationSignerData.create(12345, 8, 2, new byte[] {0, 1, 2, (byte) 0xab, (byte) 0xff});
+    formatter
+        .appendNs("foo.tld", TTL_NS, "ns1.example.com")
+        .appendNs("foo.tld", TTL_NS, "ns2.foo.tld")
+        .appendDs(
+            "foo.tld",
+            TTL_DS,
+            dsData.getKeyTag(),
+            dsData.getAlgorithm(),
+            dsData.getDigestType(),
+            dsData.getDigest());
+    assertThat(formatted()).isEqualTo(GenerateZoneFilesAction.domainStanza(
+        "foo.tld", ImmutableList.of("ns1.example.com", "ns2.foo.tld"), ImmutableList.of(dsData)));
+  }
+
+  @Test
+  public void testHostRecords_matchStringFormatOutput() throws Exception {
+    ImmutableList<InetAddress> addresses = ImmutableList.of(
+        InetAddress.getByName("127.0.0.1"),
+        InetAddress.getByName("192.168.255.10"),
+        InetAddress.getByName("::1"),
+        InetAddress.getByName("2001:db8::ff00:42:8329"));
+    for (InetAddress address : addresses) {
+      formatter.appendAddress("ns.foo.tld", TTL_A, address);
+    }
+    assertThat(formatted())
+        .isEqualTo(GenerateZoneFilesAction.hostStanza("ns.foo.tld", addresses));
+  }
+
+  @Test
+  public void testFlushTo_emptiesBuffer() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    formatter.appendNs("foo.tld", 0, "ns.foo.tld").flushTo(output);
+    assertThat(formatter.size()).isEqualTo(0);
+    formatter.appendNewline().flushTo(output);
+    assertThat(output.toString(UTF_8.name())).isEqualTo("foo.tld\t0\tIN\tNS\tns.foo.tld.\n\n");
+  }
+
+  @Test
+  public void testNonAsciiName_isEncodedAsUtf8() throws Exception {
+    formatter.appendNs("föö.tld", TTL_NS, "ns.föö.tld");
+    assertThat(formatted()).isEqualTo("föö.tld\t180\tIN\tNS\tns.föö.tld.\n");
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tools.server;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.testing.DatastoreHelper.persistPremiumList;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.objectify.Key;
+import google.registry.model.registry.label.PremiumList;
+import google.registry.model.registry.label.PremiumList.PremiumListEntry;
+import google.registry.model.registry.label.PremiumList.PremiumListRevision;
+import google.registry.request.HttpException.BadRequestException;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.ExceptionRule;
+import google.registry.testing.FakeResponse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link DeletePremiumListRevisionAction}. */
+@RunWith(JUnit4.class)
+public class DeletePremiumListRevisionActionTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .build();
+
+  @Rule
+  public final ExceptionRule thrown = new ExceptionRule();
+
+  private final DeletePremiumListRevisionAction action = new DeletePremiumListRevisionAction();
+  private final FakeResponse response = new FakeResponse();
+
+  private Key<PremiumListRevision> oldRevisionKey;
+
+  @Before
+  public void init() throws Exception {
+    oldRevisionKey = persistPremiumList("foo", "rich,USD 75", "richer,USD 5000").getRevisionKey();
+    PremiumList.get("foo").get().asBuilder()
+        .setPremiumListMapFromLines(ImmutableList.of("poor,USD 0.99"))
+        .build()
+        .saveWithoutDeletingOldEntries();
+    action.response = response;
+  }
+
+  private int countEntries(Key<PremiumListRevision> revisionKey) {
+    return ofy().load().type(PremiumListEntry.class).ancestor(revisionKey).count();
+  }
+
+  @Test
+  public void testSuccess() throws Exception {
+    assertThat(countEntries(oldRevisionKey)).isEqualTo(2);
+    action.revision = oldRevisionKey.getString();
+    action.run();
+    assertThat(countEntries(oldRevisionKey)).isEqualTo(0);
+    assertThat(countEntries(PremiumList.get("foo").get().getRevisionKey())).isEqualTo(1);
+    assertThat(response.getPayload()).startsWith("Deleted premium list revision");
+  }
+
+  @Test
+  public void testCurrentRevision_isNotDeleted() throws Exception {
+    Key<PremiumListRevision> currentRevisionKey = PremiumList.get("foo").get().getRevisionKey();
+    action.revision = currentRevisionKey.getString();
+    action.run();
+    assertThat(countEntries(currentRevisionKey)).isEqualTo(1);
+    assertThat(response.getPayload())
+        .startsWith("Refusing to delete the current revision of premium list foo");
+  }
+
+  @Test
+  public void testFailure_notARevisionKey() throws Exception {
+    thrown.expect(BadRequestException.class, "Not a premium list revision key");
+    action.revision = Key.create(PremiumList.class, "foo").getString();
+    action.run();
+  }
+}
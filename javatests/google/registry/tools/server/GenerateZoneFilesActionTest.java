@@ -35,13 +35,18 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
 import com.googlecode.objectify.Key;
 import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.host.HostResource;
 import google.registry.testing.FakeClock;
 import google.registry.testing.mapreduce.MapreduceTestCase;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.InetAddress;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.junit.Test;
@@ -124,4 +129,59 @@ public class GenerateZoneFilesActionTest extends MapreduceTestCase<GenerateZoneF
     // The remaining lines can be in any order.
     assertThat(generatedFileLines).containsExactlyElementsIn(goldenFileLines);
   }
+
+  @Test
+  public void testGenerate_streaming() throws Exception {
+    DateTime now = DateTime.now(DateTimeZone.UTC).withTimeAtStartOfDay();
+
+    createTld("tld");
+
+    ImmutableSet<InetAddress> ips =
+        ImmutableSet.of(InetAddress.getByName("127.0.0.1"), InetAddress.getByName("::1"));
+    HostResource host =
+        persistResource(newHostResource("ns.foo.tld").asBuilder().addInetAddresses(ips).build());
+    persistResource(newDomainResource("foo.tld").asBuilder()
+        .addNameservers(ImmutableSet.of(Key.create(host)))
+        .setSubordinateHosts(ImmutableSet.of("ns.foo.tld"))
+        .setDsData(ImmutableSet.of(DelegationSignerData.create(1, 2, 3, new byte[] {0, 1, 2})))
+        .build());
+    persistResource(newDomainResource("bar.tld").asBuilder()
+        .addNameservers(ImmutableSet.of(Key.create(host)))
+        .build());
+    persistActiveDomain("ignored_domain.tld");  // No hosts or DS data.
+
+    GenerateZoneFilesAction action = new GenerateZoneFilesAction();
+    action.bucket = "zonefiles-bucket";
+    action.gcsBufferSize = 123;
+    action.datastoreRetention = standardDays(29);
+    action.clock = new FakeClock(now.plusMinutes(2));  // Move past the actions' 2 minute check.
+
+    Map<String, Object> response = action.handleJsonRequest(ImmutableMap.<String, Object>of(
+        "tlds", ImmutableList.of("tld"),
+        "exportTime", now,
+        "streaming", true));
+    assertThat(response).containsEntry(
+        "filenames",
+        ImmutableList.of("gs://zonefiles-bucket/tld-" + now + ".zone.gz"));
+    assertThat(response).doesNotContainKey("jobPath");
+
+    GcsFilename gcsFilename =
+        new GcsFilename("zonefiles-bucket", String.format("tld-%s.zone.gz", now));
+    String generatedFile;
+    try (InputStream input =
+        new GZIPInputStream(new ByteArrayInputStream(readGcsFile(gcsService, gcsFilename)))) {
+      generatedFile = new String(ByteStreams.toByteArray(input), UTF_8);
+    }
+    List<String> generatedFileLines =
+        Splitter.on('\n').omitEmptyStrings().splitToList(generatedFile.replaceAll("\t", " "));
+    // Domains are written in sorted order, each followed by its glue records.
+    assertThat(generatedFileLines.subList(0, 4)).containsExactly(
+        "$ORIGIN tld.",
+        "bar.tld 180 IN NS ns.foo.tld.",
+        "foo.tld 180 IN NS ns.foo.tld.",
+        "foo.tld 86400 IN DS 1 2 3 000102").inOrder();
+    assertThat(generatedFileLines.subList(4, generatedFileLines.size())).containsExactly(
+        "ns.foo.tld 3600 IN A 127.0.0.1",
+        "ns.foo.tld 3600 IN AAAA 0:0:0:0:0:0:0:1");
+  }
 }
@@ -22,6 +22,7 @@ import google.registry.testing.AppEngineRule;
 import google.registry.testing.ExceptionRule;
 import google.registry.testing.FakeJsonResponse;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 import org.junit.Rule;
 
@@ -54,6 +55,20 @@ public class ListActionTestCase {
     assertThat(response.getStatus()).isEqualTo(SC_OK);
   }
 
+  /** Runs the action in one of the paged output formats and returns the response map. */
+  Map<String, ?> runPagedAction(
+      ListObjectsAction<?> action,
+      Optional<String> fields,
+      String format,
+      int pageSize,
+      Optional<String> cursor) {
+    action.format = Optional.of(format);
+    action.pageSize = Optional.of(pageSize);
+    action.cursor = cursor;
+    runAction(action, fields, null, null);
+    return response.getResponseMap();
+  }
+
   void testRunSuccess(
       ListObjectsAction<?> action,
       Optional<String> fields,
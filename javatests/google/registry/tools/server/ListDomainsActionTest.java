@@ -14,12 +14,17 @@
 
 package google.registry.tools.server;
 
+import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.createTlds;
 import static google.registry.testing.DatastoreHelper.persistActiveDomain;
+import static google.registry.testing.DatastoreHelper.persistDeletedDomain;
 
 import com.google.common.base.Optional;
 import google.registry.testing.FakeClock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
@@ -211,4 +216,82 @@ public class ListDomainsActionTest extends ListActionTestCase {
         null,
         "^Field 'badfield' not found - recognized fields are:");
   }
+
+  @Test
+  public void testRun_csv_pagedWithCursors() throws Exception {
+    action.tld = "foo";
+    createTld("bar");
+    persistActiveDomain("dontlist.bar");
+    persistActiveDomain("example1.foo");
+    persistActiveDomain("example2.foo");
+    persistActiveDomain("example3.foo");
+    persistDeletedDomain("deleted.foo", DateTime.parse("1999-12-31TZ"));
+    List<Object> lines = new ArrayList<>();
+    Map<String, ?> page =
+        runPagedAction(action, null, "csv", 2, Optional.<String>absent());
+    assertThat(page.get("status")).isEqualTo("success");
+    assertThat((List<?>) page.get("lines")).hasSize(2);
+    lines.addAll((List<?>) page.get("lines"));
+    assertThat(page.get("cursor")).isNotNull();
+    page = runPagedAction(action, null, "csv", 2, Optional.of((String) page.get("cursor")));
+    assertThat(page.get("status")).isEqualTo("success");
+    assertThat(page).doesNotContainKey("cursor");
+    lines.addAll((List<?>) page.get("lines"));
+    assertThat(lines).containsExactly("example1.foo", "example2.foo", "example3.foo");
+  }
+
+  @Test
+  public void testRun_csv_headerOnFirstPageOnly() throws Exception {
+    action.tld = "foo";
+    persistActiveDomain("example1.foo");
+    persistActiveDomain("example2.foo");
+    Map<String, ?> page =
+        runPagedAction(action, Optional.of("repoId"), "csv", 1, Optional.<String>absent());
+    List<?> lines = (List<?>) page.get("lines");
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0)).isEqualTo("fullyQualifiedDomainName,repoId");
+    assertThat((String) lines.get(1)).containsMatch("^example[12].foo,[0-9A-F]+-FOO$");
+    page = runPagedAction(
+        action, Optional.of("repoId"), "csv", 1, Optional.of((String) page.get("cursor")));
+    lines = (List<?>) page.get("lines");
+    assertThat(lines).hasSize(1);
+    assertThat((String) lines.get(0)).containsMatch("^example[12].foo,[0-9A-F]+-FOO$");
+  }
+
+  @Test
+  public void testRun_json() throws Exception {
+    action.tld = "foo";
+    persistActiveDomain("example1.foo");
+    Map<String, ?> page =
+        runPagedAction(action, Optional.of("repoId"), "json", 10, Optional.<String>absent());
+    List<?> lines = (List<?>) page.get("lines");
+    assertThat(lines).hasSize(1);
+    assertThat((String) lines.get(0)).containsMatch(
+        "^\\{\"fullyQualifiedDomainName\":\"example1.foo\",\"repoId\":\"[0-9A-F]+-FOO\"\\}$");
+    assertThat(page).doesNotContainKey("cursor");
+  }
+
+  @Test
+  public void testRun_csv_wildcard_returnsError() throws Exception {
+    action.tld = "foo";
+    action.format = Optional.of("csv");
+    testRunError(
+        action,
+        Optional.of("*"),
+        null,
+        null,
+        "^Wildcard fields are not supported in CSV format");
+  }
+
+  @Test
+  public void testRun_unknownFormat_returnsError() throws Exception {
+    action.tld = "foo";
+    action.format = Optional.of("xml");
+    testRunError(
+        action,
+        null,
+        null,
+        null,
+        "^Unknown format 'xml'$");
+  }
 }
@@ -14,11 +14,15 @@
 
 package google.registry.tools.server;
 
+import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.persistActiveHost;
+import static google.registry.testing.DatastoreHelper.persistDeletedHost;
 
 import com.google.common.base.Optional;
 import google.registry.testing.FakeClock;
+import java.util.List;
+import java.util.Map;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
@@ -105,4 +109,15 @@ public class ListHostsActionTest extends ListActionTestCase {
         null,
         "^Field 'badfield' not found - recognized fields are:");
   }
+
+  @Test
+  public void testRun_csv_skipsDeletedHosts() throws Exception {
+    persistActiveHost("example2.foo");
+    persistActiveHost("example1.foo");
+    persistDeletedHost("deleted.foo", DateTime.parse("1999-12-31TZ"));
+    Map<String, ?> page = runPagedAction(action, null, "csv", 10, Optional.<String>absent());
+    assertThat(page.get("status")).isEqualTo("success");
+    assertThat((List<?>) page.get("lines")).containsExactly("example1.foo", "example2.foo");
+    assertThat(page).doesNotContainKey("cursor");
+  }
 }
@@ -16,12 +16,20 @@ package google.registry.tools.server;
 
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.DatastoreHelper.createTlds;
+import static google.registry.testing.TaskQueueHelper.assertTasksEnqueued;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 
+import com.googlecode.objectify.Key;
 import google.registry.model.registry.label.PremiumList;
+import google.registry.model.registry.label.PremiumList.PremiumListRevision;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.ExceptionRule;
+import google.registry.testing.FakeClock;
 import google.registry.testing.FakeJsonResponse;
+import google.registry.testing.FakeSleeper;
+import google.registry.testing.TaskQueueHelper.TaskMatcher;
+import google.registry.util.Retrier;
+import google.registry.util.TaskEnqueuer;
 import org.joda.money.Money;
 import org.junit.Before;
 import org.junit.Rule;
@@ -38,6 +46,7 @@ public class UpdatePremiumListActionTest {
   @Rule
   public final AppEngineRule appEngine = AppEngineRule.builder()
       .withDatastore()
+      .withTaskQueue()
       .build();
 
   @Rule
@@ -52,6 +61,7 @@ public class UpdatePremiumListActionTest {
     action = new UpdatePremiumListAction();
     response = new FakeJsonResponse();
     action.response = response;
+    action.taskEnqueuer = new TaskEnqueuer(new Retrier(new FakeSleeper(new FakeClock()), 1));
   }
 
   @Test
@@ -75,6 +85,7 @@ public class UpdatePremiumListActionTest {
 
   @Test
   public void test_success() throws Exception {
+    Key<PremiumListRevision> oldRevisionKey = PremiumList.get("foo").get().getRevisionKey();
     action.name = "foo";
     action.inputData = "rich,USD 75\nricher,USD 5000\npoor, USD 0.99";
     action.run();
@@ -85,5 +96,12 @@ public class UpdatePremiumListActionTest {
     assertThat(premiumList.getPremiumPrice("richer")).hasValue(Money.parse("USD 5000"));
     assertThat(premiumList.getPremiumPrice("poor")).hasValue(Money.parse("USD 0.99"));
     assertThat(premiumList.getPremiumPrice("diamond")).isAbsent();
+    assertThat((String) response.getResponseMap().get("message"))
+        .contains("The old entries will be deleted in the background.");
+    assertTasksEnqueued(
+        DeletePremiumListRevisionAction.QUEUE,
+        new TaskMatcher()
+            .url(DeletePremiumListRevisionAction.PATH)
+            .param(DeletePremiumListRevisionAction.REVISION_PARAM, oldRevisionKey.getString()));
   }
 }
@@ -0,0 +1,169 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tools.server;
+
+import static google.registry.tools.server.GenerateZoneFilesAction.TTL_A;
+import static google.registry.tools.server.GenerateZoneFilesAction.TTL_DS;
+import static google.registry.tools.server.GenerateZoneFilesAction.TTL_NS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import google.registry.benchmark.BenchmarkRunner;
+import google.registry.model.domain.secdns.DelegationSignerData;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Benchmark comparing the mapreduce zone file formatting path against the streaming one.
+ *
+ * <p>This synthesizes a TLD with {@value #DOMAIN_COUNT} domains and formats all of it in each
+ * operation: once with the {@code String.format} stanzas used by {@link GenerateZoneFilesAction}'s
+ * mapper, written through a {@link PrintWriter} as its reducer does, and once with the
+ * {@link BindRecordFormatter} used by {@link StreamingZoneFileGenerator}. Both paths are measured
+ * writing the same uncompressed output, which isolates the formatting cost, and again writing it
+ * through the same gzip stream, as {@link StreamingZoneFileGenerator} does. Datastore and GCS
+ * aren't involved; the mapreduce path additionally pays for serializing every stanza through the
+ * shuffle, which isn't measured here.
+ *
+ * <p>Usage: {@code ZoneFileFormattingBenchmark [reportFile] [baselineReportFile]}, as for
+ * {@link BenchmarkRunner#runMain}.
+ */
+public final class ZoneFileFormattingBenchmark {
+
+  private static final int DOMAIN_COUNT = 1000000;
+
+  public static void main(String[] args) throws Throwable {
+    BenchmarkRunner.runMain(args, new BenchmarkRunner.BenchmarkSuite() {
+        @Override
+        public void runBenchmarks(BenchmarkRunner runner) throws Exception {
+          for (final boolean gzip : new boolean[] {false, true}) {
+            String suffix = gzip ? " + gzip" : "";
+            runner.run(new BenchmarkRunner.Benchmark(
+                "String.format + PrintWriter" + suffix, 1) {
+                  @Override
+                  protected Object run(int operation) throws Exception {
+                    return runMapreduceFormatting(gzip);
+                  }});
+            runner.run(new BenchmarkRunner.Benchmark("BindRecordFormatter" + suffix, 1) {
+                @Override
+                protected Object run(int operation) throws Exception {
+                  return runStreamingFormatting(gzip);
+                }});
+          }
+        }});
+  }
+
+  /** Returns a stream that counts the bytes written to it, gzipped if asked to, and drops them. */
+  private static OutputStream createOutput(CountingOutputStream counter, boolean gzip)
+      throws IOException {
+    return gzip ? new GZIPOutputStream(counter, 8192) : counter;
+  }
+
+  /** Formats the TLD like {@link GenerateZoneFilesAction}, returning the bytes written. */
+  private static long runMapreduceFormatting(boolean gzip) throws IOException {
+    CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+    try (PrintWriter writer =
+        new PrintWriter(new OutputStreamWriter(createOutput(counter, gzip), UTF_8))) {
+      writer.printf("$ORIGIN\t%s.\n\n", SyntheticDomain.TLD);
+      SyntheticDomain domain = new SyntheticDomain();
+      for (int i = 0; i < DOMAIN_COUNT; i++) {
+        domain.set(i);
+        writer.println(GenerateZoneFilesAction.domainStanza(
+            domain.name, domain.nameservers, domain.dsData));
+        if (domain.hasGlue) {
+          writer.println(
+              GenerateZoneFilesAction.hostStanza(domain.glueName, SyntheticDomain.GLUE_ADDRESSES));
+        }
+      }
+    }
+    return counter.getCount();
+  }
+
+  /** Formats the TLD like {@link StreamingZoneFileGenerator}, returning the bytes written. */
+  private static long runStreamingFormatting(boolean gzip) throws IOException {
+    CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+    BindRecordFormatter formatter = new BindRecordFormatter(256 * 1024);
+    try (OutputStream output = createOutput(counter, gzip)) {
+      formatter.appendHeader(SyntheticDomain.TLD);
+      SyntheticDomain domain = new SyntheticDomain();
+      for (int i = 0; i < DOMAIN_COUNT; i++) {
+        domain.set(i);
+        for (String nameserver : domain.nameservers) {
+          formatter.appendNs(domain.name, TTL_NS, nameserver);
+        }
+        for (DelegationSignerData ds : domain.dsData) {
+          formatter.appendDs(domain.name, TTL_DS, ds.getKeyTag(), ds.getAlgorithm(),
+              ds.getDigestType(), ds.getDigest());
+        }
+        formatter.appendNewline();
+        if (domain.hasGlue) {
+          for (InetAddress address : SyntheticDomain.GLUE_ADDRESSES) {
+            formatter.appendAddress(domain.glueName, TTL_A, address);
+          }
+          formatter.appendNewline();
+        }
+        if (i % 500 == 499) {
+          formatter.flushTo(output);
+        }
+      }
+      formatter.flushTo(output);
+    }
+    return counter.getCount();
+  }
+
+  /** Mutable holder for the records of the i'th synthetic domain. */
+  private static final class SyntheticDomain {
+    static final String TLD = "example";
+    static final ImmutableList<InetAddress> GLUE_ADDRESSES;
+    static final ImmutableList<DelegationSignerData> DS_DATA = ImmutableList.of(
+        DelegationSignerData.create(
+            12345, 8, 2, "0123456789abcdef0123456789abcdef".getBytes(UTF_8)));
+
+    static {
+      try {
+        GLUE_ADDRESSES = ImmutableList.of(
+            InetAddress.getByName("192.0.2.53"), InetAddress.getByName("2001:db8::53"));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    String name;
+    String glueName;
+    boolean hasGlue;
+    ImmutableList<String> nameservers;
+    ImmutableList<DelegationSignerData> dsData;
+
+    void set(int i) {
+      name = "domain" + i + "." + TLD;
+      // One in ten domains hosts its own nameserver, and one in four is DNSSEC signed.
+      hasGlue = i % 10 == 0;
+      glueName = hasGlue ? "ns1." + name : null;
+      nameservers = hasGlue
+          ? ImmutableList.of(glueName, "ns2.provider" + (i % 100) + ".net")
+          : ImmutableList.of(
+              "ns1.provider" + (i % 100) + ".net", "ns2.provider" + (i % 100) + ".net");
+      dsData = i % 4 == 0 ? DS_DATA : ImmutableList.<DelegationSignerData>of();
+    }
+  }
+
+  private ZoneFileFormattingBenchmark() {}
+}
@@ -0,0 +1,203 @@
+// Copyright 2016 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.whois;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatastoreHelper.createTlds;
+import static google.registry.whois.WhoisHelper.loadWhoisTestFile;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link Port43WhoisServer}. */
+@RunWith(JUnit4.class)
+public class Port43WhoisServerTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .build();
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2009-06-29T20:13:00Z"));
+
+  private final CountDownLatch slowQueryStarted = new CountDownLatch(1);
+  private final CountDownLatch slowQueryReleased = new CountDownLatch(1);
+
+  /** Echoes queries back, and blocks on "slow" ones until they are released. */
+  private final Port43WhoisServer.Responder responder = new Port43WhoisServer.Responder() {
+      @Override
+      public String getResponseText(String query) {
+        if (query.startsWith("slow")) {
+          slowQueryStarted.countDown();
+          try {
+            slowQueryReleased.await(10, SECONDS);
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        if (query.startsWith("crash")) {
+          throw new IllegalStateException("crashed");
+        }
+        return "Response to " + query;
+      }};
+
+  private Port43WhoisServer server;
+
+  private void startServer(int maxInFlight, int queriesPerSecond, int burst) {
+    server = new Port43WhoisServer(
+        new InetSocketAddress("127.0.0.1", 0),
+        responder,
+        clock,
+        Executors.defaultThreadFactory(),
+        maxInFlight,
+        queriesPerSecond,
+        burst);
+    server.startAsync().awaitRunning();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    slowQueryReleased.countDown();
+    if (server != null) {
+      server.stopAsync().awaitTerminated();
+    }
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket();
+    socket.setSoTimeout(10000);
+    socket.connect(server.getLocalAddress());
+    return socket;
+  }
+
+  private static void send(Socket socket, String data) throws IOException {
+    socket.getOutputStream().write(data.getBytes(UTF_8));
+    socket.getOutputStream().flush();
+  }
+
+  /** Reads everything up to the point where the server closes the connection. */
+  private static String readResponse(Socket socket) throws IOException {
+    try {
+      return new String(ByteStreams.toByteArray(socket.getInputStream()), UTF_8);
+    } finally {
+      socket.close();
+    }
+  }
+
+  private String query(String query) throws IOException {
+    Socket socket = connect();
+    send(socket, query);
+    return readResponse(socket);
+  }
+
+  @Test
+  public void testQuery_returnsResponseAndCloses() throws Exception {
+    startServer(10, 10, 10);
+    assertThat(query("domain cat.lol\r\n")).isEqualTo("Response to domain cat.lol\r\n");
+  }
+
+  @Test
+  public void testQuery_sentInPieces() throws Exception {
+    startServer(10, 10, 10);
+    Socket socket = connect();
+    send(socket, "domain ");
+    Thread.sleep(100);
+    send(socket, "cat.lol\r\n");
+    assertThat(readResponse(socket)).isEqualTo("Response to domain cat.lol\r\n");
+  }
+
+  @Test
+  public void testQuery_tooLong_refused() throws Exception {
+    startServer(10, 10, 10);
+    assertThat(query(Strings.repeat("a", Port43WhoisServer.MAX_QUERY_BYTES)))
+        .isEqualTo(Port43WhoisServer.QUERY_TOO_LONG_RESPONSE);
+  }
+
+  @Test
+  public void testQuery_responderCrashes_internalServerError() throws Exception {
+    startServer(10, 10, 10);
+    assertThat(query("crash\r\n")).isEqualTo("Internal Server Error\r\n");
+  }
+
+  @Test
+  public void testQuery_overRateLimit_refusedUntilRefilled() throws Exception {
+    startServer(10, 1, 2);
+    assertThat(query("one\r\n")).isEqualTo("Response to one\r\n");
+    assertThat(query("two\r\n")).isEqualTo("Response to two\r\n");
+    assertThat(query("three\r\n")).isEqualTo(Port43WhoisServer.RATE_LIMITED_RESPONSE);
+    clock.advanceBy(Duration.standardSeconds(1));
+    assertThat(query("four\r\n")).isEqualTo("Response to four\r\n");
+    assertThat(query("five\r\n")).isEqualTo(Port43WhoisServer.RATE_LIMITED_RESPONSE);
+  }
+
+  @Test
+  public void testQuery_tooManyInFlight_busy() throws Exception {
+    startServer(1, 10, 10);
+    Socket slow = connect();
+    send(slow, "slow\r\n");
+    assertThat(slowQueryStarted.await(10, SECONDS)).isTrue();
+    assertThat(query("fast\r\n")).isEqualTo(Port43WhoisServer.BUSY_RESPONSE);
+    slowQueryReleased.countDown();
+    assertThat(readResponse(slow)).isEqualTo("Response to slow\r\n");
+    assertThat(query("fast\r\n")).isEqualTo("Response to fast\r\n");
+  }
+
+  @Test
+  public void testQuery_noQuerySent_disconnectedAfterTimeout() throws Exception {
+    startServer(10, 10, 10);
+    Socket socket = connect();
+    send(socket, "domain cat");
+    socket.setSoTimeout(1000);
+    // The connection might not have been accepted yet when the clock is first advanced.
+    for (int attempt = 1; ; attempt++) {
+      clock.advanceBy(Port43WhoisServer.TIMEOUT);
+      try {
+        assertThat(socket.getInputStream().read()).isEqualTo(-1);
+        socket.close();
+        return;
+      } catch (SocketTimeoutException e) {
+        if (attempt == 5) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testNewWhoisResponder_answersLikeWhoisServer() throws Exception {
+    createTlds("lol");
+    assertThat(
+            Port43WhoisServer.newWhoisResponder(clock, "Doodle Disclaimer")
+                .getResponseText("domain cat.lol\r\n"))
+        .isEqualTo(loadWhoisTestFile("whois_server_domain_not_found.txt"));
+  }
+}
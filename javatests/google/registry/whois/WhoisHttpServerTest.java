@@ -30,6 +30,7 @@ import google.registry.model.contact.ContactResource;
 import google.registry.model.ofy.Ofy;
 import google.registry.model.registrar.Registrar;
 import google.registry.model.registry.Registry;
+import google.registry.rdds.LookupResponseCache;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
 import google.registry.testing.FakeResponse;
@@ -76,6 +77,7 @@ public class WhoisHttpServerTest {
 
   @Before
   public void setUp() throws Exception {
+    LookupResponseCache.clear();
     createTlds("lol", "xn--q9jyb4c", "1.test");
     inject.setStaticField(Ofy.class, "clock", clock);
   }
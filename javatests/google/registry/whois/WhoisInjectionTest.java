@@ -22,6 +22,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import google.registry.rdds.LookupResponseCache;
 import google.registry.request.RequestModule;
 import google.registry.testing.AppEngineRule;
 import java.io.BufferedReader;
@@ -51,6 +52,7 @@ public final class WhoisInjectionTest {
 
   @Before
   public void setUp() throws Exception {
+    LookupResponseCache.clear();
     when(rsp.getWriter()).thenReturn(new PrintWriter(httpOutput));
   }
 
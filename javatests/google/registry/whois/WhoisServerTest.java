@@ -32,12 +32,14 @@ import google.registry.model.domain.DomainResource;
 import google.registry.model.ofy.Ofy;
 import google.registry.model.registrar.Registrar;
 import google.registry.model.registry.Registry;
+import google.registry.rdds.LookupResponseCache;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
 import google.registry.testing.FakeResponse;
 import google.registry.testing.InjectRule;
 import java.io.StringReader;
 import org.joda.time.DateTime;
+import org.joda.time.Duration;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -71,6 +73,7 @@ public class WhoisServerTest {
 
   @Before
   public void setUp() throws Exception {
+    LookupResponseCache.clear();
     createTlds("lol", "xn--q9jyb4c", "1.test");
     inject.setStaticField(Ofy.class, "clock", clock);
   }
@@ -100,6 +103,49 @@ public class WhoisServerTest {
     assertThat(response.getPayload()).isEqualTo(loadWhoisTestFile("whois_server_domain.txt"));
   }
 
+  private DomainResource persistCatLol() {
+    Registrar registrar = persistResource(makeRegistrar(
+        "evilregistrar", "Yes Virginia <script>", ACTIVE));
+    DomainResource domain = persistResource(makeDomainResource(
+        "cat.lol",
+        persistResource(makeContactResource("5372808-ERL", "Goblin Market", "lol@cat.lol")),
+        persistResource(makeContactResource("5372808-IRL", "Santa Claus", "BOFH@cat.lol")),
+        persistResource(makeContactResource("5372808-TRL", "The Raven", "bog@cat.lol")),
+        persistResource(makeHostResource("ns1.cat.lol", "1.2.3.4")),
+        persistResource(makeHostResource("ns2.cat.lol", "bad:f00d:cafe::15:beef")),
+        registrar));
+    persistSimpleResources(makeRegistrarContacts(registrar));
+    return domain;
+  }
+
+  @Test
+  public void testRun_domainQueryRepeated_servedFromCacheUntilInvalidated() throws Exception {
+    DomainResource domain = persistCatLol();
+    newWhoisServer("domain cat.lol\r\n").run();
+    persistResource(domain.asBuilder().setDeletionTime(clock.nowUtc().minusDays(1)).build());
+    newWhoisServer("domain CAT.lol\r\n").run();
+    assertThat(response.getPayload()).isEqualTo(loadWhoisTestFile("whois_server_domain.txt"));
+    LookupResponseCache.invalidate(LookupResponseCache.ResourceType.DOMAIN, "cat.lol");
+    newWhoisServer("domain cat.lol\r\n").run();
+    assertThat(response.getPayload())
+        .isEqualTo(loadWhoisTestFile("whois_server_domain_not_found.txt"));
+  }
+
+  @Test
+  public void testRun_domainQueryRepeated_servedFromCacheUntilExpired() throws Exception {
+    DomainResource domain = persistCatLol();
+    newWhoisServer("domain cat.lol\r\n").run();
+    persistResource(domain.asBuilder().setDeletionTime(clock.nowUtc().minusDays(1)).build());
+    clock.advanceBy(Duration.standardSeconds(30));
+    newWhoisServer("domain cat.lol\r\n").run();
+    // The cached data is rendered again, with the time of this query.
+    assertThat(response.getPayload()).isEqualTo(loadWhoisTestFile("whois_server_domain.txt")
+        .replace("2009-06-29T20:13:00Z <<<", "2009-06-29T20:13:30Z <<<"));
+    clock.advanceBy(LookupResponseCache.TTL.minus(Duration.standardSeconds(30)));
+    newWhoisServer("domain cat.lol\r\n").run();
+    assertThat(response.getPayload()).contains("Domain not found.");
+  }
+
   @Test
   public void testRun_idnDomain_works() throws Exception {
     Registrar registrar = persistResource(makeRegistrar(